@@ -0,0 +1,20 @@
+package com.ytdevops.batch;
+
+import com.ytdevops.file.FileDetailDto;
+import com.ytdevops.knowledgebase.KnowledgeDocDto;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Accessors(chain = true)
+public class BatchExportDto {
+    /**
+     * 压缩包的文件名（不含后缀）。
+     */
+    private String name;
+    private List<FileDetailDto> files = new ArrayList<>();
+    private List<KnowledgeDocDto> knowledgeDocs = new ArrayList<>();
+}
@@ -0,0 +1,22 @@
+package com.ytdevops.batch;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Accessors(chain = true)
+@Component
+@ConfigurationProperties(prefix = "export.batch")
+public class BatchExportProperties {
+    /**
+     * 所有批量导出共享的渲染线程数。
+     */
+    private int threads = 4;
+
+    /**
+     * 单次批量导出的文档数上限。
+     */
+    private int maxDocuments = 200;
+}
@@ -0,0 +1,37 @@
+package com.ytdevops.batch.rest;
+
+import com.ytdevops.batch.BatchExportDto;
+import com.ytdevops.batch.service.BatchExportService;
+import lombok.Data;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/batch")
+@Data
+public class BatchExportResource {
+    private final BatchExportService batchExportService;
+
+    /**
+     * 压缩包直接写入响应（不带 Content-Length），先完成的文档先发送。
+     */
+    @PostMapping("/word")
+    public void exportWord(@RequestBody BatchExportDto batchExportDto, HttpServletResponse response) throws IOException {
+        batchExportService.validate(batchExportDto);
+        String name = StringUtils.isBlank(batchExportDto.getName()) ? UUID.randomUUID().toString() : batchExportDto.getName();
+        String fileName = URLEncoder.encode(name, StandardCharsets.UTF_8).replaceAll("\\+", "%20");
+        response.setCharacterEncoding("utf-8");
+        response.setContentType("application/zip");
+        response.setHeader("Content-disposition", "attachment;filename*=utf-8''" + fileName + ".zip");
+        batchExportService.exportZip(batchExportDto, response.getOutputStream());
+    }
+}
@@ -0,0 +1,197 @@
+package com.ytdevops.batch.service;
+
+import com.ytdevops.batch.BatchExportDto;
+import com.ytdevops.batch.BatchExportProperties;
+import com.ytdevops.common.service.ExportAdmission;
+import com.ytdevops.common.service.ExportCostEstimator;
+import com.ytdevops.file.FileDetailDto;
+import com.ytdevops.file.service.WordExportService;
+import com.ytdevops.knowledgebase.KnowledgeDocDto;
+import com.ytdevops.knowledgebase.service.KnowledgeBaseWordExportService;
+import com.ytdevops.resource.service.SharedDownloads;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.collections4.ListUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 批量导出：多个文件和知识库文档在有界线程池中并行渲染，共用同一组图片/架构图下载，
+ * 每个文档完成后立即写入压缩包，压缩包边生成边写回响应。整个批次作为一个导出经过准入控制。
+ */
+@Slf4j
+@Data
+@Service
+public class BatchExportService {
+    private static final String FAILURES_ENTRY = "导出失败.txt";
+
+    private final WordExportService wordExportService;
+    private final KnowledgeBaseWordExportService knowledgeBaseWordExportService;
+    private final BatchExportProperties batchExportProperties;
+    private final ExportAdmission exportAdmission;
+    private final ExportCostEstimator exportCostEstimator;
+    private final ThreadPoolExecutor executor;
+
+    private interface DocumentTask {
+        void export(OutputStream outputStream, SharedDownloads sharedDownloads);
+    }
+
+    public BatchExportService(WordExportService wordExportService,
+                              KnowledgeBaseWordExportService knowledgeBaseWordExportService,
+                              BatchExportProperties batchExportProperties,
+                              ExportAdmission exportAdmission,
+                              ExportCostEstimator exportCostEstimator) {
+        this.wordExportService = wordExportService;
+        this.knowledgeBaseWordExportService = knowledgeBaseWordExportService;
+        this.batchExportProperties = batchExportProperties;
+        this.exportAdmission = exportAdmission;
+        this.exportCostEstimator = exportCostEstimator;
+        int threads = batchExportProperties.getThreads();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("batch-export-"));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 在写出任何内容之前调用，文档数为 0 或超过上限时拒绝（400）。
+     */
+    public void validate(BatchExportDto batchExportDto) {
+        int documents = CollectionUtils.size(batchExportDto.getFiles()) + CollectionUtils.size(batchExportDto.getKnowledgeDocs());
+        if (documents == 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "没有需要导出的文档！");
+        }
+        if (documents > batchExportProperties.getMaxDocuments()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "单次最多导出" + batchExportProperties.getMaxDocuments() + "个文档！");
+        }
+    }
+
+    /**
+     * 按完成顺序把文档写入压缩包；导出失败的文档不中断整个批次，失败列表写在压缩包最后。
+     * 写出任何内容之前先按同时渲染的文档估算成本排队，超出预算时拒绝（429）。
+     */
+    public void exportZip(BatchExportDto batchExportDto, OutputStream outputStream) throws IOException {
+        validate(batchExportDto);
+        Map<String, DocumentTask> tasks = collectTasks(batchExportDto);
+        long cost = exportCostEstimator.estimate(batchExportDto, Math.min(tasks.size(), batchExportProperties.getThreads()));
+        File batchDir = new File("/tmp/" + UUID.randomUUID());
+        List<Future<String>> futures = new ArrayList<>(tasks.size());
+        try (ExportAdmission.Permit permit = exportAdmission.admit(tenantOf(batchExportDto), cost);
+             SharedDownloads sharedDownloads = new SharedDownloads(new File(batchDir, "resources"))) {
+            CompletionService<String> completionService = new ExecutorCompletionService<>(executor);
+            Map<Future<String>, String> entryNames = new HashMap<>(tasks.size() * 2);
+            tasks.forEach((entryName, task) -> {
+                Future<String> future = completionService.submit(() -> render(batchDir, entryName, task, sharedDownloads));
+                futures.add(future);
+                entryNames.put(future, entryName);
+            });
+
+            ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream);
+            List<String> failures = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                Future<String> future = completionService.take();
+                String entryName = entryNames.get(future);
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    log.error("批量导出文档失败！文档:{} Error Message:{}", entryName, ExceptionUtils.getStackTrace(e.getCause()));
+                    failures.add(entryName);
+                    continue;
+                }
+                File document = new File(batchDir, entryName);
+                writeEntry(zipOutputStream, document, entryName);
+                FileUtils.deleteQuietly(document);
+            }
+            if (!failures.isEmpty()) {
+                zipOutputStream.putNextEntry(new ZipEntry(FAILURES_ENTRY));
+                zipOutputStream.write(String.join("\n", failures).getBytes(StandardCharsets.UTF_8));
+                zipOutputStream.closeEntry();
+            }
+            zipOutputStream.finish();
+            zipOutputStream.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("批量导出被中断！");
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+            FileUtils.deleteDirectory(batchDir);
+        }
+    }
+
+    private String render(File batchDir, String entryName, DocumentTask task, SharedDownloads sharedDownloads) throws IOException {
+        try (OutputStream documentStream = new BufferedOutputStream(new FileOutputStream(new File(batchDir, entryName)))) {
+            task.export(documentStream, sharedDownloads);
+        }
+        return entryName;
+    }
+
+    /**
+     * docx 本身已经压缩，按 STORED 写入，不再重复压缩。
+     */
+    private void writeEntry(ZipOutputStream zipOutputStream, File document, String entryName) throws IOException {
+        ZipEntry entry = new ZipEntry(entryName);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(document.length());
+        entry.setCompressedSize(document.length());
+        entry.setCrc(FileUtils.checksumCRC32(document));
+        zipOutputStream.putNextEntry(entry);
+        FileUtils.copyFile(document, zipOutputStream);
+        zipOutputStream.closeEntry();
+        // 每个文档写完即发送给客户端
+        zipOutputStream.flush();
+    }
+
+    /**
+     * 压缩包中的文件名 -> 导出任务，重名的文档在名字后加序号。
+     */
+    private Map<String, DocumentTask> collectTasks(BatchExportDto batchExportDto) {
+        Map<String, DocumentTask> tasks = new LinkedHashMap<>();
+        for (FileDetailDto fileDetailDto : ListUtils.emptyIfNull(batchExportDto.getFiles())) {
+            String topic = CollectionUtils.isEmpty(fileDetailDto.getData()) ? null : fileDetailDto.getData().get(0).getTopic();
+            tasks.put(uniqueEntryName(tasks.keySet(), topic), (documentStream, sharedDownloads) ->
+                    wordExportService.exportWord(fileDetailDto, documentStream, sharedDownloads));
+        }
+        for (KnowledgeDocDto knowledgeDocDto : ListUtils.emptyIfNull(batchExportDto.getKnowledgeDocs())) {
+            tasks.put(uniqueEntryName(tasks.keySet(), knowledgeDocDto.getTitle()), (documentStream, sharedDownloads) ->
+                    knowledgeBaseWordExportService.exportWord(knowledgeDocDto, documentStream, sharedDownloads));
+        }
+        return tasks;
+    }
+
+    private static String tenantOf(BatchExportDto batchExportDto) {
+        for (FileDetailDto fileDetailDto : ListUtils.emptyIfNull(batchExportDto.getFiles())) {
+            if (StringUtils.isNotBlank(fileDetailDto.getTenantId())) {
+                return fileDetailDto.getTenantId();
+            }
+        }
+        return ListUtils.emptyIfNull(batchExportDto.getKnowledgeDocs()).stream().map(KnowledgeDocDto::getTenantId)
+                .filter(StringUtils::isNotBlank).findFirst().orElse(null);
+    }
+
+    private static String uniqueEntryName(Set<String> entryNames, String title) {
+        String baseName = StringUtils.isBlank(title) ? "未命名" : title.trim().replaceAll("[\\\\/:*?\"<>|]", "_");
+        String entryName = baseName + ".docx";
+        for (int i = 1; entryNames.contains(entryName); i++) {
+            entryName = baseName + "(" + i + ").docx";
+        }
+        return entryName;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,62 @@
+package com.ytdevops.common;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Accessors(chain = true)
+@Component
+@ConfigurationProperties(prefix = "export.admission")
+public class ExportAdmissionProperties {
+    /**
+     * 关闭后导出接口、批量导出和异步任务不再排队和限流。
+     */
+    private boolean enabled = true;
+
+    /**
+     * 同时进行的导出数上限（批量导出整体算一个）。
+     */
+    private int maxConcurrency = 8;
+
+    /**
+     * 同时进行的导出按估算占用的内存之和的上限，单个导出的估算超过该值时按该值计。
+     */
+    private DataSize memoryBudget = DataSize.ofMegabytes(1024);
+
+    /**
+     * 所有租户排队的请求数上限和单个租户排队的请求数上限，超出时直接拒绝（429）。
+     */
+    private int queueCapacity = 50;
+
+    private int maxQueuedPerTenant = 10;
+
+    /**
+     * 排队等待的最长时间，超时后拒绝（429）。
+     */
+    private Duration queueTimeout = Duration.ofSeconds(30);
+
+    /**
+     * 租户id -> 权重，未配置的租户权重为 1。权重越大，排队时按估算成本计算的份额越大。
+     */
+    private Map<String, Integer> tenantWeights = new HashMap<>();
+
+    /**
+     * 估算导出内存占用：每次导出的固定部分、每个节点、每字节描述 HTML、每张图片、每个架构图。
+     */
+    private DataSize baseCost = DataSize.ofMegabytes(8);
+
+    private DataSize nodeCost = DataSize.ofKilobytes(16);
+
+    private int descriptionCostFactor = 20;
+
+    private DataSize imageCost = DataSize.ofMegabytes(2);
+
+    private DataSize diagramCost = DataSize.ofMegabytes(4);
+}
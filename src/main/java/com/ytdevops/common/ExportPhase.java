@@ -0,0 +1,24 @@
+package com.ytdevops.common;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 导出过程中分别计时的阶段。节点渲染包含其中的 HTML 转换、XHTML 导入和等待架构图的时间。
+ */
+@Getter
+@AllArgsConstructor
+public enum ExportPhase {
+    TREE_WALK("tree-walk", "节点渲染"),
+    IMAGE_FETCH("image-fetch", "图片下载"),
+    IMAGE_OPTIMIZE("image-optimize", "图片优化"),
+    DIAGRAM_RASTERIZE("diagram-rasterize", "架构图渲染"),
+    HTML_TO_XHTML("html-to-xhtml", "HTML转XHTML"),
+    ALT_CHUNK_CONVERT("altchunk-convert", "XHTML导入"),
+    SUBTREE_MERGE("subtree-merge", "子树合并"),
+    PACKAGE_SAVE("package-save", "保存文档"),
+    PDF_RENDER("pdf-render", "PDF渲染");
+
+    private final String tag;
+    private final String label;
+}
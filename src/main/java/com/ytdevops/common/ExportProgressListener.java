@@ -0,0 +1,9 @@
+package com.ytdevops.common;
+
+@FunctionalInterface
+public interface ExportProgressListener {
+    ExportProgressListener NONE = (completed, total) -> {
+    };
+
+    void onProgress(int completed, int total);
+}
@@ -0,0 +1,29 @@
+package com.ytdevops.common;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Data
+@Accessors(chain = true)
+@Component
+@ConfigurationProperties(prefix = "export.result-cache")
+public class ExportResultCacheProperties {
+    private boolean enabled = true;
+
+    private String diskDir = "/tmp/export-s-results";
+
+    /**
+     * 缓存的导出结果总字节上限，超出时按最近最少使用删除。
+     */
+    private DataSize diskBudget = DataSize.ofGigabytes(1);
+
+    /**
+     * 导出结果的有效期。请求内容相同但引用的图片、架构图可能已经更新，超过有效期后重新导出。
+     */
+    private Duration freshFor = Duration.ofMinutes(10);
+}
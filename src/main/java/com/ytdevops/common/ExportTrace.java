@@ -0,0 +1,159 @@
+package com.ytdevops.common;
+
+import com.ytdevops.resource.ResourceContent;
+import lombok.Getter;
+import org.apache.commons.io.output.CountingOutputStream;
+
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 单次导出的各阶段耗时和数量统计。NONE 不计时也不分配任何统计对象，关闭跟踪时使用。
+ * <pre>
+ * long start = trace.start();
+ * ...
+ * trace.stop(ExportPhase.IMAGE_FETCH, start);
+ * </pre>
+ */
+public class ExportTrace {
+    public static final ExportTrace NONE = new ExportTrace();
+
+    @Getter
+    private final boolean enabled;
+    @Getter
+    private final String type;
+    @Getter
+    private final long startedAt;
+    private final AtomicLongArray phaseNanos;
+    private final AtomicInteger nodes;
+    private final AtomicInteger images;
+    private final AtomicLong imageBytes;
+    private final AtomicLong originalImageBytes;
+    private final AtomicLong optimizedImageBytes;
+    /**
+     * 来源名称 -> [图片数, 字节数]
+     */
+    private final Map<String, AtomicLongArray> sourceImages;
+    private CountingOutputStream documentStream;
+
+    private ExportTrace() {
+        this.enabled = false;
+        this.type = null;
+        this.startedAt = 0;
+        this.phaseNanos = null;
+        this.nodes = null;
+        this.images = null;
+        this.imageBytes = null;
+        this.originalImageBytes = null;
+        this.optimizedImageBytes = null;
+        this.sourceImages = null;
+    }
+
+    public ExportTrace(String type) {
+        this.enabled = true;
+        this.type = type;
+        this.startedAt = System.nanoTime();
+        this.phaseNanos = new AtomicLongArray(ExportPhase.values().length);
+        this.nodes = new AtomicInteger();
+        this.images = new AtomicInteger();
+        this.imageBytes = new AtomicLong();
+        this.originalImageBytes = new AtomicLong();
+        this.optimizedImageBytes = new AtomicLong();
+        this.sourceImages = new ConcurrentHashMap<>();
+    }
+
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void stop(ExportPhase phase, long start) {
+        if (enabled) {
+            phaseNanos.addAndGet(phase.ordinal(), System.nanoTime() - start);
+        }
+    }
+
+    public void addNodes(int count) {
+        if (enabled) {
+            nodes.addAndGet(count);
+        }
+    }
+
+    /**
+     * 统计下载到的图片和架构图，并按来源分别统计。
+     */
+    public void addImages(Collection<ResourceContent> contents) {
+        if (enabled) {
+            images.addAndGet(contents.size());
+            contents.forEach(content -> {
+                imageBytes.addAndGet(content.getLength());
+                AtomicLongArray source = sourceImages.computeIfAbsent(Objects.toString(content.getSource(), "unknown"),
+                        name -> new AtomicLongArray(2));
+                source.incrementAndGet(0);
+                source.addAndGet(1, content.getLength());
+            });
+        }
+    }
+
+    /**
+     * 统计图片优化前后的字节数，重复的图片只计入优化前。
+     */
+    public void addImageOptimization(long originalBytes, long optimizedBytes) {
+        if (enabled) {
+            originalImageBytes.addAndGet(originalBytes);
+            optimizedImageBytes.addAndGet(optimizedBytes);
+        }
+    }
+
+    /**
+     * 包装写出文档的输出流，统计文档大小；关闭跟踪时原样返回。
+     */
+    public OutputStream countDocument(OutputStream outputStream) {
+        if (!enabled) {
+            return outputStream;
+        }
+        documentStream = new CountingOutputStream(outputStream);
+        return documentStream;
+    }
+
+    public long getPhaseNanos(ExportPhase phase) {
+        return enabled ? phaseNanos.get(phase.ordinal()) : 0;
+    }
+
+    public int getNodes() {
+        return enabled ? nodes.get() : 0;
+    }
+
+    public int getImages() {
+        return enabled ? images.get() : 0;
+    }
+
+    public long getImageBytes() {
+        return enabled ? imageBytes.get() : 0;
+    }
+
+    public long getOriginalImageBytes() {
+        return enabled ? originalImageBytes.get() : 0;
+    }
+
+    public long getOptimizedImageBytes() {
+        return enabled ? optimizedImageBytes.get() : 0;
+    }
+
+    /**
+     * @return 来源名称 -> [图片数, 字节数]
+     */
+    public Map<String, AtomicLongArray> getSourceImages() {
+        return enabled ? Collections.unmodifiableMap(sourceImages) : Collections.emptyMap();
+    }
+
+    public long getDocumentBytes() {
+        return Objects.isNull(documentStream) ? 0 : documentStream.getByteCount();
+    }
+}
@@ -0,0 +1,24 @@
+package com.ytdevops.common;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Accessors(chain = true)
+@Component
+@ConfigurationProperties(prefix = "export.trace")
+public class ExportTraceProperties {
+    /**
+     * 关闭后各阶段不再计时，也不记录指标。
+     */
+    private boolean enabled = true;
+
+    /**
+     * 单次导出总耗时超过该值时输出各阶段耗时汇总。
+     */
+    private Duration slowThreshold = Duration.ofSeconds(10);
+}
@@ -0,0 +1,29 @@
+package com.ytdevops.common;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 不经过 Spring 注入的地方（DTO 绑定、字段解析）共用的 ObjectMapper，配置与 Spring 的保持一致（忽略未知字段）。
+ * ObjectReader 线程安全，按类型缓存，调用方把 TypeReference 声明为常量即可复用。
+ * 需要额外配置（排序、mixin）时用 {@code MAPPER.rebuild()} 在副本上修改，不影响共用的实例。
+ */
+public final class JsonMappers {
+    public static final JsonMapper MAPPER = JsonMapper.builder()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .build();
+    private static final Map<Type, ObjectReader> READERS = new ConcurrentHashMap<>();
+
+    private JsonMappers() {
+    }
+
+    public static ObjectReader reader(TypeReference<?> typeReference) {
+        return READERS.computeIfAbsent(typeReference.getType(), type -> MAPPER.readerFor(MAPPER.constructType(type)));
+    }
+}
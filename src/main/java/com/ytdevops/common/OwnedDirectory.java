@@ -0,0 +1,95 @@
+package com.ytdevops.common;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * 在可配置的目录下创建本实例独占的子目录，只在其中读写和删除文件。子目录中的标记文件在实例运行期间一直加锁，
+ * 启动时只清理带有标记且锁已释放（上次运行留下）的子目录：配置成 /tmp 或共享卷时不会删除其他文件，
+ * 同一主机上其他实例正在使用的子目录也不受影响。
+ */
+@Slf4j
+public final class OwnedDirectory implements Closeable {
+    private static final String MARKER = ".export-s-owner";
+
+    @Getter
+    private final File dir;
+    private final FileChannel markerChannel;
+    private final FileLock markerLock;
+
+    private OwnedDirectory(File dir, FileChannel markerChannel, FileLock markerLock) {
+        this.dir = dir;
+        this.markerChannel = markerChannel;
+        this.markerLock = markerLock;
+    }
+
+    /**
+     * @param prefix 子目录名前缀，区分使用同一父目录的不同服务
+     */
+    public static OwnedDirectory create(File parent, String prefix) throws IOException {
+        FileUtils.forceMkdir(parent);
+        removeStale(parent, prefix);
+        File dir = new File(parent, prefix + UUID.randomUUID());
+        FileUtils.forceMkdir(dir);
+        FileChannel markerChannel = FileChannel.open(new File(dir, MARKER).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        return new OwnedDirectory(dir, markerChannel, markerChannel.lock());
+    }
+
+    private static void removeStale(File parent, String prefix) {
+        File[] candidates = parent.listFiles(file -> file.isDirectory() && file.getName().startsWith(prefix));
+        if (Objects.isNull(candidates)) {
+            return;
+        }
+        for (File candidate : candidates) {
+            File marker = new File(candidate, MARKER);
+            if (!marker.isFile()) {
+                continue;
+            }
+            boolean stale;
+            try (FileChannel channel = FileChannel.open(marker.toPath(), StandardOpenOption.WRITE)) {
+                FileLock lock = channel.tryLock();
+                stale = Objects.nonNull(lock);
+                if (stale) {
+                    lock.release();
+                }
+            } catch (OverlappingFileLockException e) {
+                // 本进程中仍在使用
+                stale = false;
+            } catch (IOException e) {
+                log.warn("检查目录是否仍在使用失败:{}", candidate);
+                stale = false;
+            }
+            if (stale) {
+                FileUtils.deleteQuietly(candidate);
+            }
+        }
+    }
+
+    /**
+     * 释放标记并删除子目录，重复调用时什么也不做。
+     */
+    @Override
+    public synchronized void close() {
+        if (!markerChannel.isOpen()) {
+            return;
+        }
+        try {
+            markerLock.release();
+            markerChannel.close();
+        } catch (IOException e) {
+            log.warn("释放目录标记失败:{}", dir);
+        }
+        FileUtils.deleteQuietly(dir);
+    }
+}
@@ -0,0 +1,15 @@
+package com.ytdevops.common;
+
+/**
+ * PDF 导出方式。
+ */
+public enum PdfEngine {
+    /**
+     * 调用 wkhtmltopdf 进程转换。
+     */
+    WKHTMLTOPDF,
+    /**
+     * 在 JVM 内渲染，不启动外部进程。
+     */
+    NATIVE
+}
@@ -0,0 +1,21 @@
+package com.ytdevops.common;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@Data
+@Accessors(chain = true)
+@Component
+@ConfigurationProperties(prefix = "export.pdf.native")
+public class PdfRenderProperties {
+    /**
+     * 字体目录，启动时扫描并解析其中的 ttf/otf 字体和 ttc 字体集合，中文内容需要这里有中文字体。
+     */
+    private List<String> fontDirs = new ArrayList<>(Collections.singletonList("/usr/share/fonts"));
+}
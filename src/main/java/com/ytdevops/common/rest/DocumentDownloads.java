@@ -0,0 +1,65 @@
+package com.ytdevops.common.rest;
+
+import org.apache.commons.io.FileUtils;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 导出结果先写入临时文件，再带 Content-Length 通过 FileChannel.transferTo 写回响应，堆内不保留整份文档。
+ */
+public final class DocumentDownloads {
+    private DocumentDownloads() {
+    }
+
+    public interface DocumentWriter {
+        void write(OutputStream outputStream) throws IOException;
+    }
+
+    /**
+     * 文件名要在文档写完后才能确定时使用，返回编码后的文件名（不含后缀）。
+     */
+    public interface NamedDocumentWriter {
+        String write(OutputStream outputStream) throws IOException;
+    }
+
+    public static void download(HttpServletResponse response, String encodedFileName, String suffix, DocumentWriter documentWriter) throws IOException {
+        download(response, suffix, outputStream -> {
+            documentWriter.write(outputStream);
+            return encodedFileName;
+        });
+    }
+
+    public static void download(HttpServletResponse response, String suffix, NamedDocumentWriter documentWriter) throws IOException {
+        File document = Files.createTempFile("export-", suffix).toFile();
+        try {
+            String encodedFileName;
+            try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(document))) {
+                encodedFileName = documentWriter.write(outputStream);
+            }
+            writeAttachment(response, document, encodedFileName + suffix);
+        } finally {
+            FileUtils.deleteQuietly(document);
+        }
+    }
+
+    public static void writeAttachment(HttpServletResponse response, File document, String encodedFileName) throws IOException {
+        response.setCharacterEncoding("utf-8");
+        response.setHeader("Content-disposition", "attachment;filename*=utf-8''" + encodedFileName);
+        response.setContentLengthLong(document.length());
+        try (FileChannel channel = FileChannel.open(document.toPath(), StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, target);
+            }
+        }
+        response.flushBuffer();
+    }
+}
@@ -0,0 +1,233 @@
+package com.ytdevops.common.service;
+
+import com.ytdevops.common.ExportAdmissionProperties;
+import com.ytdevops.common.RetryAfterException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.Closeable;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 导出的准入控制（同步导出、批量导出和异步任务共用）：同时进行的导出数和按估算成本计的内存占用都不超过预算，超出时按租户排队，
+ * 按估算成本和租户权重公平出队（起始时间公平排队，一个租户的大导出不会挡住其他租户）；
+ * 队列已满或排队超时时拒绝（429），并按近期导出耗时给出 Retry-After。
+ * <pre>
+ * try (ExportAdmission.Permit permit = exportAdmission.admit(tenantId, cost)) {
+ *     ...
+ * }
+ * </pre>
+ */
+@Service
+public class ExportAdmission {
+    /**
+     * 关闭准入控制时返回，关闭时什么也不做。
+     */
+    public static final Permit NONE = new Permit(null, 0, 0);
+
+    private static final String DEFAULT_TENANT = "-";
+    private static final long MAX_RETRY_AFTER_SECONDS = 300;
+
+    private final ExportAdmissionProperties exportAdmissionProperties;
+    private final MeterRegistry meterRegistry;
+    private final Timer queueTimer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(
+            Comparator.comparingDouble((Waiter waiter) -> waiter.startTag).thenComparingLong(waiter -> waiter.sequence));
+    private final Map<String, Integer> queuedPerTenant = new HashMap<>();
+    /**
+     * 租户 -> 最近一个请求的虚拟结束时间，不大于 virtualTime 的记录等同于没有，释放时清理。
+     */
+    private final Map<String, Double> tenantFinishTags = new HashMap<>();
+    private double virtualTime;
+    private long sequence;
+    private int running;
+    private long usedMemory;
+    /**
+     * 近期导出耗时的指数移动平均，用于估算 Retry-After。
+     */
+    private double averageHoldNanos;
+
+    public ExportAdmission(ExportAdmissionProperties exportAdmissionProperties, MeterRegistry meterRegistry) {
+        this.exportAdmissionProperties = exportAdmissionProperties;
+        this.meterRegistry = meterRegistry;
+        this.queueTimer = Timer.builder("export.admission.queue.wait").register(meterRegistry);
+        Gauge.builder("export.admission.queue.depth", this, admission -> admission.locked(() -> (double) admission.waiters.size())).register(meterRegistry);
+        Gauge.builder("export.admission.running", this, admission -> admission.locked(() -> (double) admission.running)).register(meterRegistry);
+        Gauge.builder("export.admission.memory.used", this, admission -> admission.locked(() -> (double) admission.usedMemory))
+                .baseUnit("bytes").register(meterRegistry);
+    }
+
+    /**
+     * 等待直到有足够的预算，返回的 Permit 关闭时归还预算。
+     *
+     * @param tenantId 为空时归入同一个默认租户
+     * @param cost     估算的内存占用，见 {@link ExportCostEstimator}
+     */
+    public Permit admit(String tenantId, long cost) {
+        if (!exportAdmissionProperties.isEnabled()) {
+            return NONE;
+        }
+        String tenant = StringUtils.defaultIfBlank(tenantId, DEFAULT_TENANT);
+        long budgetedCost = Math.max(0, Math.min(cost, exportAdmissionProperties.getMemoryBudget().toBytes()));
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            double startTag = Math.max(virtualTime, tenantFinishTags.getOrDefault(tenant, 0D));
+            if (waiters.isEmpty() && fits(budgetedCost)) {
+                tenantFinishTags.put(tenant, startTag + (double) budgetedCost / weight(tenant));
+                return grant(startTag, budgetedCost);
+            }
+            if (waiters.size() >= exportAdmissionProperties.getQueueCapacity()) {
+                throw reject("queue-full", "导出请求过多，请稍后重试！");
+            }
+            if (queuedPerTenant.getOrDefault(tenant, 0) >= exportAdmissionProperties.getMaxQueuedPerTenant()) {
+                throw reject("tenant-queue-full", "当前租户的导出请求过多，请稍后重试！");
+            }
+
+            tenantFinishTags.put(tenant, startTag + (double) budgetedCost / weight(tenant));
+            Waiter waiter = new Waiter(tenant, budgetedCost, startTag, sequence++, lock.newCondition());
+            waiters.add(waiter);
+            queuedPerTenant.merge(tenant, 1, Integer::sum);
+            try {
+                long remaining = exportAdmissionProperties.getQueueTimeout().toNanos();
+                while (!waiter.granted) {
+                    if (remaining <= 0) {
+                        dequeue(waiter);
+                        throw reject("timeout", "导出排队超时，请稍后重试！");
+                    }
+                    remaining = waiter.condition.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (!waiter.granted) {
+                    dequeue(waiter);
+                    throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "导出已中断！");
+                }
+            }
+            return new Permit(this, budgetedCost, System.nanoTime());
+        } finally {
+            lock.unlock();
+            queueTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private int weight(String tenant) {
+        return Math.max(1, exportAdmissionProperties.getTenantWeights().getOrDefault(tenant, 1));
+    }
+
+    private boolean fits(long cost) {
+        return running < exportAdmissionProperties.getMaxConcurrency()
+                && usedMemory + cost <= exportAdmissionProperties.getMemoryBudget().toBytes();
+    }
+
+    private Permit grant(double startTag, long cost) {
+        virtualTime = Math.max(virtualTime, startTag);
+        running++;
+        usedMemory += cost;
+        return new Permit(this, cost, System.nanoTime());
+    }
+
+    /**
+     * 按起始时间依次放行能放下的请求；队首放不下时后面的也不放行，避免大导出一直等不到预算。
+     */
+    private void dispatch() {
+        while (!waiters.isEmpty() && fits(waiters.peek().cost)) {
+            Waiter waiter = waiters.poll();
+            queuedPerTenant.computeIfPresent(waiter.tenant, (tenant, count) -> count > 1 ? count - 1 : null);
+            grant(waiter.startTag, waiter.cost);
+            waiter.granted = true;
+            waiter.condition.signal();
+        }
+    }
+
+    private void dequeue(Waiter waiter) {
+        waiters.remove(waiter);
+        queuedPerTenant.computeIfPresent(waiter.tenant, (tenant, count) -> count > 1 ? count - 1 : null);
+        dispatch();
+    }
+
+    private void release(Permit permit) {
+        lock.lock();
+        try {
+            running--;
+            usedMemory -= permit.cost;
+            long holdNanos = System.nanoTime() - permit.grantedAt;
+            averageHoldNanos = averageHoldNanos == 0 ? holdNanos : averageHoldNanos * 0.8 + holdNanos * 0.2;
+            tenantFinishTags.values().removeIf(finishTag -> finishTag <= virtualTime);
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 调用时持有锁。
+     */
+    private ResponseStatusException reject(String reason, String message) {
+        meterRegistry.counter("export.admission.rejected", "reason", reason).increment();
+        double rounds = (double) (waiters.size() + 1) / Math.max(1, exportAdmissionProperties.getMaxConcurrency());
+        long retryAfterSeconds = (long) Math.ceil(averageHoldNanos * rounds / TimeUnit.SECONDS.toNanos(1));
+        return new RetryAfterException(HttpStatus.TOO_MANY_REQUESTS, message, Math.min(MAX_RETRY_AFTER_SECONDS, Math.max(1, retryAfterSeconds)));
+    }
+
+    private <T> T locked(Supplier<T> supplier) {
+        lock.lock();
+        try {
+            return supplier.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static class Permit implements Closeable {
+        private final ExportAdmission admission;
+        private final long cost;
+        private final long grantedAt;
+        private boolean closed;
+
+        private Permit(ExportAdmission admission, long cost, long grantedAt) {
+            this.admission = admission;
+            this.cost = cost;
+            this.grantedAt = grantedAt;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed || admission == null) {
+                return;
+            }
+            closed = true;
+            admission.release(this);
+        }
+    }
+
+    private static class Waiter {
+        private final String tenant;
+        private final long cost;
+        private final double startTag;
+        private final long sequence;
+        private final Condition condition;
+        private boolean granted;
+
+        private Waiter(String tenant, long cost, double startTag, long sequence, Condition condition) {
+            this.tenant = tenant;
+            this.cost = cost;
+            this.startTag = startTag;
+            this.sequence = sequence;
+            this.condition = condition;
+        }
+    }
+}
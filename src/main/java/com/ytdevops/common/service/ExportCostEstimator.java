@@ -0,0 +1,99 @@
+package com.ytdevops.common.service;
+
+import com.ytdevops.batch.BatchExportDto;
+import com.ytdevops.common.ExportAdmissionProperties;
+import com.ytdevops.file.FieldType;
+import com.ytdevops.file.FileDetailDto;
+import com.ytdevops.file.StreamingExportProperties;
+import org.apache.commons.collections4.ListUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 按请求内容估算导出占用的内存，只统计节点数、描述长度、图片和架构图数量，不解析 HTML。
+ */
+@Service
+public class ExportCostEstimator {
+    private static final String IMAGE_TAG = "<img";
+
+    private final ExportAdmissionProperties exportAdmissionProperties;
+    private final StreamingExportProperties streamingExportProperties;
+
+    public ExportCostEstimator(ExportAdmissionProperties exportAdmissionProperties, StreamingExportProperties streamingExportProperties) {
+        this.exportAdmissionProperties = exportAdmissionProperties;
+        this.streamingExportProperties = streamingExportProperties;
+    }
+
+    public long estimate(FileDetailDto fileDetailDto) {
+        long nodes = 0;
+        long descriptionBytes = 0;
+        long images = 0;
+        long diagrams = 0;
+        if (Objects.nonNull(fileDetailDto.getData())) {
+            for (FileDetailDto.Data data : fileDetailDto.getData()) {
+                nodes++;
+                if (Objects.nonNull(data.getDescription())) {
+                    descriptionBytes += data.getDescription().length();
+                    images += StringUtils.countMatches(data.getDescription(), IMAGE_TAG);
+                }
+                if (Objects.nonNull(data.getArchitectureDiagrams())) {
+                    diagrams += data.getArchitectureDiagrams().size();
+                }
+                if (Objects.nonNull(data.getContent())) {
+                    for (FileDetailDto.Content content : data.getContent()) {
+                        if (FieldType.DRAWIO.equals(content.getFieldType()) && Objects.nonNull(content.getValue())) {
+                            diagrams += Objects.isNull(content.getDrawIoDiagrams()) ? 1 : content.getDrawIoDiagrams().size();
+                        }
+                    }
+                }
+            }
+        }
+        return cost(nodes, descriptionBytes, images, diagrams);
+    }
+
+    /**
+     * 知识库文档整体作为一个节点。
+     */
+    public long estimate(String contentHtml) {
+        if (StringUtils.isEmpty(contentHtml)) {
+            return cost(1, 0, 0, 0);
+        }
+        return cost(1, contentHtml.length(), StringUtils.countMatches(contentHtml, IMAGE_TAG), 0);
+    }
+
+    /**
+     * 批量导出同时渲染的文档不超过 concurrentDocuments 个，按估算最大的几个文档之和计。
+     */
+    public long estimate(BatchExportDto batchExportDto, int concurrentDocuments) {
+        List<Long> costs = new ArrayList<>();
+        ListUtils.emptyIfNull(batchExportDto.getFiles()).forEach(fileDetailDto -> costs.add(estimate(fileDetailDto)));
+        ListUtils.emptyIfNull(batchExportDto.getKnowledgeDocs()).forEach(knowledgeDocDto -> costs.add(estimate(knowledgeDocDto.getContentHtml())));
+        return costs.stream().sorted(Comparator.reverseOrder()).limit(Math.max(1, concurrentDocuments)).mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * 流式导出同时只保留一批节点，按一批的节点数和字节上限计（渲染时原始内容和生成的 WordML 各一份），请求体更小时按请求体大小计。
+     *
+     * @param requestBytes 请求体大小，未知时为 -1
+     */
+    public long estimateStreaming(long requestBytes) {
+        long batchBytes = streamingExportProperties.getMaxBatchBytes().toBytes();
+        if (requestBytes >= 0) {
+            batchBytes = Math.min(batchBytes, requestBytes);
+        }
+        return cost(streamingExportProperties.getMaxBatchNodes(), 0, 0, 0) + 2 * batchBytes;
+    }
+
+    private long cost(long nodes, long descriptionBytes, long images, long diagrams) {
+        return exportAdmissionProperties.getBaseCost().toBytes()
+                + nodes * exportAdmissionProperties.getNodeCost().toBytes()
+                + descriptionBytes * exportAdmissionProperties.getDescriptionCostFactor()
+                + images * exportAdmissionProperties.getImageCost().toBytes()
+                + diagrams * exportAdmissionProperties.getDiagramCost().toBytes();
+    }
+}
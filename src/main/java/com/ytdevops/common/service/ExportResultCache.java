@@ -0,0 +1,253 @@
+package com.ytdevops.common.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.ytdevops.common.ExportResultCacheProperties;
+import com.ytdevops.common.JsonMappers;
+import com.ytdevops.common.OwnedDirectory;
+import com.ytdevops.file.FileDetailDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 导出结果缓存：以请求内容的规范化哈希为键，把导出好的文档存放在磁盘上，超出磁盘预算时按最近最少使用删除。
+ * 同一内容同时只导出一次，其余相同的请求等待这次导出完成后直接读取结果。
+ * 结果文件放在 diskDir 下本实例独占的子目录中。
+ */
+@Slf4j
+@Service
+public class ExportResultCache {
+    public static final String FILE_WORD = "file-word";
+    public static final String KNOWLEDGE_BASE_WORD = "knowledge-base-word";
+
+    /**
+     * 序列化时属性和 Map 的键按字母排序，忽略不影响导出内容的字段（节点的展开状态）。
+     */
+    private static final ObjectWriter CANONICAL_WRITER = JsonMappers.MAPPER.rebuild()
+            .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+            .addMixIn(FileDetailDto.Data.class, VolatileNodeFields.class)
+            .build()
+            .writer();
+
+    private final ExportResultCacheProperties exportResultCacheProperties;
+    private final OwnedDirectory ownedDiskDir;
+    private final File diskDir;
+    private final LinkedHashMap<String, CachedResult> results = new LinkedHashMap<>(16, 0.75F, true);
+    private final Map<String, CompletableFuture<Void>> exporting = new ConcurrentHashMap<>();
+    private long diskBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter shared;
+    private final Counter evictions;
+
+    public interface ResultWriter {
+        void write(OutputStream outputStream) throws IOException;
+    }
+
+    @JsonIgnoreProperties({"expanded"})
+    private interface VolatileNodeFields {
+    }
+
+    private static class CachedResult {
+        private final long size;
+        private final long createdAt = System.currentTimeMillis();
+
+        private CachedResult(long size) {
+            this.size = size;
+        }
+    }
+
+    public ExportResultCache(ExportResultCacheProperties exportResultCacheProperties, MeterRegistry meterRegistry) {
+        this.exportResultCacheProperties = exportResultCacheProperties;
+        this.ownedDiskDir = exportResultCacheProperties.isEnabled() ? createDiskDir(new File(exportResultCacheProperties.getDiskDir())) : null;
+        this.diskDir = Objects.isNull(ownedDiskDir) ? new File(exportResultCacheProperties.getDiskDir()) : ownedDiskDir.getDir();
+        this.hits = meterRegistry.counter("export.result.cache.hits");
+        this.misses = meterRegistry.counter("export.result.cache.misses");
+        this.shared = meterRegistry.counter("export.result.cache.shared");
+        this.evictions = meterRegistry.counter("export.result.cache.evictions");
+        Gauge.builder("export.result.cache.disk.bytes", this, cache -> cache.diskBytes).register(meterRegistry);
+    }
+
+    /**
+     * 命中缓存时直接写出缓存的文档；否则由 resultWriter 导出，结果写入缓存后再写出。
+     *
+     * @param type 导出类型，不同类型的相同内容分开缓存
+     */
+    public void export(String type, Object payload, OutputStream outputStream, ResultWriter resultWriter) throws IOException {
+        if (!exportResultCacheProperties.isEnabled()) {
+            resultWriter.write(outputStream);
+            return;
+        }
+        String key = type + "-" + hash(payload);
+        if (copyCached(key, outputStream)) {
+            hits.increment();
+            return;
+        }
+
+        CompletableFuture<Void> export = new CompletableFuture<>();
+        CompletableFuture<Void> inProgress = exporting.putIfAbsent(key, export);
+        if (inProgress != null) {
+            shared.increment();
+            await(inProgress);
+            if (!copyCached(key, outputStream)) {
+                // 结果过大未缓存或已被淘汰
+                resultWriter.write(outputStream);
+            }
+            return;
+        }
+
+        misses.increment();
+        File result = new File(diskDir, key + "-" + Thread.currentThread().getId() + ".tmp");
+        try {
+            try (OutputStream resultStream = new BufferedOutputStream(new FileOutputStream(result))) {
+                resultWriter.write(resultStream);
+            }
+            try (InputStream inputStream = new FileInputStream(result)) {
+                store(key, result);
+                export.complete(null);
+                inputStream.transferTo(outputStream);
+            }
+        } catch (IOException | RuntimeException | Error e) {
+            export.completeExceptionally(e);
+            throw e;
+        } finally {
+            exporting.remove(key, export);
+            FileUtils.deleteQuietly(result);
+        }
+    }
+
+    /**
+     * 请求内容的 SHA-256，序列化结果直接写入摘要，不在内存中保留整份 JSON。
+     */
+    public static String hash(Object payload) throws IOException {
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        try (OutputStream outputStream = new DigestOutputStream(NullOutputStream.NULL_OUTPUT_STREAM, digest)) {
+            CANONICAL_WRITER.writeValue(outputStream, payload);
+        }
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    private boolean copyCached(String key, OutputStream outputStream) throws IOException {
+        InputStream inputStream;
+        synchronized (this) {
+            CachedResult cached = results.get(key);
+            if (cached == null) {
+                return false;
+            }
+            if (System.currentTimeMillis() - cached.createdAt >= exportResultCacheProperties.getFreshFor().toMillis()) {
+                remove(key);
+                return false;
+            }
+            try {
+                inputStream = new FileInputStream(new File(diskDir, key));
+            } catch (FileNotFoundException e) {
+                log.warn("导出结果缓存文件不存在:{}", key);
+                remove(key);
+                return false;
+            }
+        }
+        // 文件打开后即使被淘汰删除也能读完
+        try (InputStream cachedStream = inputStream) {
+            cachedStream.transferTo(outputStream);
+        }
+        return true;
+    }
+
+    private void store(String key, File result) {
+        long size = result.length();
+        if (size > exportResultCacheProperties.getDiskBudget().toBytes()) {
+            evictions.increment();
+            return;
+        }
+        synchronized (this) {
+            try {
+                Files.move(result.toPath(), new File(diskDir, key).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                log.error("写入导出结果缓存出错！Error Message:{}", ExceptionUtils.getStackTrace(e));
+                return;
+            }
+            CachedResult previous = results.put(key, new CachedResult(size));
+            if (previous != null) {
+                diskBytes -= previous.size;
+            }
+            diskBytes += size;
+
+            Iterator<Map.Entry<String, CachedResult>> iterator = results.entrySet().iterator();
+            while (diskBytes > exportResultCacheProperties.getDiskBudget().toBytes() && iterator.hasNext()) {
+                Map.Entry<String, CachedResult> eldest = iterator.next();
+                iterator.remove();
+                diskBytes -= eldest.getValue().size;
+                FileUtils.deleteQuietly(new File(diskDir, eldest.getKey()));
+                evictions.increment();
+            }
+        }
+    }
+
+    private void remove(String key) {
+        CachedResult removed = results.remove(key);
+        if (removed != null) {
+            diskBytes -= removed.size;
+            FileUtils.deleteQuietly(new File(diskDir, key));
+        }
+    }
+
+    private static void await(CompletableFuture<Void> inProgress) throws IOException {
+        try {
+            inProgress.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待导出结果时被中断！");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private static OwnedDirectory createDiskDir(File parent) {
+        try {
+            return OwnedDirectory.create(parent, "export-result-");
+        } catch (IOException e) {
+            log.error("初始化导出结果缓存目录出错！Error Message:{}", ExceptionUtils.getStackTrace(e));
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (Objects.nonNull(ownedDiskDir)) {
+            ownedDiskDir.close();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.ytdevops.common.service;
+
+import com.ytdevops.common.ExportPhase;
+import com.ytdevops.common.ExportTrace;
+import com.ytdevops.common.ExportTraceProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按导出类型记录各阶段耗时（export.phase）、总耗时（export.duration）以及节点数、图片数和字节数（含图片优化前后的字节数、
+ * 按来源分别的图片数和字节数），总耗时超过阈值时输出一条各阶段耗时汇总。
+ */
+@Slf4j
+@Service
+public class ExportTracer {
+    private final ExportTraceProperties exportTraceProperties;
+    private final MeterRegistry meterRegistry;
+
+    public ExportTracer(ExportTraceProperties exportTraceProperties, MeterRegistry meterRegistry) {
+        this.exportTraceProperties = exportTraceProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param type 导出类型，作为指标的 type 标签
+     */
+    public ExportTrace start(String type) {
+        return exportTraceProperties.isEnabled() ? new ExportTrace(type) : ExportTrace.NONE;
+    }
+
+    public void finish(ExportTrace trace) {
+        if (!trace.isEnabled()) {
+            return;
+        }
+        long totalNanos = System.nanoTime() - trace.getStartedAt();
+        String type = trace.getType();
+        meterRegistry.timer("export.duration", "type", type).record(totalNanos, TimeUnit.NANOSECONDS);
+        for (ExportPhase phase : ExportPhase.values()) {
+            long phaseNanos = trace.getPhaseNanos(phase);
+            if (phaseNanos > 0) {
+                meterRegistry.timer("export.phase", "type", type, "phase", phase.getTag()).record(phaseNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        meterRegistry.counter("export.nodes", "type", type).increment(trace.getNodes());
+        meterRegistry.counter("export.images", "type", type).increment(trace.getImages());
+        meterRegistry.counter("export.image.bytes", "type", type).increment(trace.getImageBytes());
+        trace.getSourceImages().forEach((source, counts) -> {
+            meterRegistry.counter("export.image.source", "type", type, "source", source).increment(counts.get(0));
+            meterRegistry.counter("export.image.source.bytes", "type", type, "source", source).increment(counts.get(1));
+        });
+        if (trace.getOriginalImageBytes() > 0) {
+            meterRegistry.counter("export.image.optimize.original.bytes", "type", type).increment(trace.getOriginalImageBytes());
+            meterRegistry.counter("export.image.optimize.optimized.bytes", "type", type).increment(trace.getOptimizedImageBytes());
+        }
+        DistributionSummary.builder("export.document.bytes").baseUnit("bytes").tag("type", type).register(meterRegistry)
+                .record(trace.getDocumentBytes());
+
+        if (totalNanos >= exportTraceProperties.getSlowThreshold().toNanos()) {
+            StringJoiner phases = new StringJoiner(", ");
+            for (ExportPhase phase : ExportPhase.values()) {
+                long phaseNanos = trace.getPhaseNanos(phase);
+                if (phaseNanos > 0) {
+                    phases.add(phase.getLabel() + " " + TimeUnit.NANOSECONDS.toMillis(phaseNanos) + "ms");
+                }
+            }
+            StringJoiner sources = new StringJoiner("，", "，来源 ", "").setEmptyValue("");
+            trace.getSourceImages().forEach((source, counts) -> sources.add(source + " " + counts.get(0) + "/" + counts.get(1) + "字节"));
+            String images = trace.getImages() + "(" + trace.getImageBytes() + "字节"
+                    + (trace.getOriginalImageBytes() > 0 ? "，优化后" + trace.getOptimizedImageBytes() + "字节" : "") + sources + ")";
+            log.warn("慢导出 type:{} 总耗时:{}ms 节点:{} 图片:{} 文档:{}字节 各阶段:[{}]", type, TimeUnit.NANOSECONDS.toMillis(totalNanos),
+                    trace.getNodes(), images, trace.getDocumentBytes(), phases);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.ytdevops.common.service;
+
+import com.ytdevops.resource.ResourceContent;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.xmlgraphics.image.loader.ImageException;
+import org.apache.xmlgraphics.image.loader.ImageInfo;
+import org.apache.xmlgraphics.image.loader.ImageManager;
+import org.apache.xmlgraphics.image.loader.ImageSource;
+import org.apache.xmlgraphics.image.loader.impl.DefaultImageContext;
+import org.docx4j.convert.in.xhtml.XHTMLImageHandlerDefault;
+import org.docx4j.convert.in.xhtml.XHTMLImporterImpl;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPartAbstractImage;
+import org.docx4j.org.xhtmlrenderer.docx.Docx4jUserAgent;
+import org.docx4j.relationships.Relationship;
+import org.docx4j.wml.P;
+import org.w3c.dom.Element;
+
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 单次导出中图片的内存解析：登记的图片以 "mem:内容哈希" 写入 img 的 src，直接生成 WordML 和导入 XHTML 时
+ * 都从内存取出内容建成图片部件，不再写入临时文件再由导入读回。内容相同的图片在一个文档包中只保存一份。
+ */
+@Slf4j
+public class InMemoryImageResolver {
+    private static final String SRC_PREFIX = "mem:";
+    /**
+     * docx4j 直接支持的格式，其他格式交给 docx4j 转换。
+     */
+    private static final Set<String> SUPPORTED_MIME_TYPES = Set.of("image/png", "image/jpeg", "image/gif", "image/bmp");
+    // 与 docx4j 读取图片信息时使用的配置一致，图片在文档中的尺寸不变
+    private static final ImageManager IMAGE_MANAGER = new ImageManager(new DefaultImageContext());
+
+    private final Map<String, ResourceContent> images = new ConcurrentHashMap<>();
+
+    /**
+     * @return 写入 img 的 src
+     */
+    public String register(ResourceContent content) throws IOException {
+        String src = SRC_PREFIX + content.getContentHash();
+        images.putIfAbsent(src, content);
+        return src;
+    }
+
+    /**
+     * 取得 src 对应的图片部件，imageParts 中已有相同内容的直接复用，新建的部件也记入其中。
+     *
+     * @param imageParts 图片内容哈希 -> wordMLPackage 中已有的图片部件
+     * @return src 不是登记过的图片时返回 null
+     */
+    public BinaryPartAbstractImage imagePart(WordprocessingMLPackage wordMLPackage, Map<String, BinaryPartAbstractImage> imageParts,
+                                             String src) throws Exception {
+        ResourceContent content = images.get(src);
+        if (Objects.isNull(content)) {
+            return null;
+        }
+        String contentHash = content.getContentHash();
+        BinaryPartAbstractImage imagePart = imageParts.get(contentHash);
+        if (Objects.isNull(imagePart)) {
+            imagePart = createImagePart(wordMLPackage, content.getBytes(), src);
+            imageParts.put(contentHash, imagePart);
+        }
+        return imagePart;
+    }
+
+    /**
+     * 让 importer 从内存解析登记过的图片，尺寸和最大宽度的处理仍使用 docx4j 默认的实现。
+     */
+    public void apply(XHTMLImporterImpl importer, Map<String, BinaryPartAbstractImage> imageParts) {
+        importer.setXHTMLImageHandler(new XHTMLImageHandlerDefault(importer) {
+            @Override
+            public void addImage(Docx4jUserAgent docx4jUserAgent, WordprocessingMLPackage wordMLPackage, P p, Element e, Long cx, Long cy) {
+                String src = e.getAttribute("src");
+                if (!imagePartCache.containsKey(src)) {
+                    try {
+                        BinaryPartAbstractImage imagePart = imagePart(wordMLPackage, imageParts, src);
+                        if (Objects.nonNull(imagePart)) {
+                            imagePartCache.put(src, imagePart);
+                        }
+                    } catch (Exception ex) {
+                        InMemoryImageResolver.log.error("插入图片出错！{} Error Message:{}", src, ExceptionUtils.getStackTrace(ex));
+                    }
+                }
+                super.addImage(docx4jUserAgent, wordMLPackage, p, e, cx, cy);
+            }
+        });
+    }
+
+    /**
+     * 在内存中读取图片信息后建立图片部件。docx4j 的 createImagePart 会先把内容写入临时文件再读取图片信息。
+     */
+    public static BinaryPartAbstractImage createImagePart(WordprocessingMLPackage wordMLPackage, byte[] data) throws Exception {
+        return createImagePart(wordMLPackage, data, SRC_PREFIX);
+    }
+
+    /**
+     * 取得文档包副本（转换 AltChunk 得到）中与 source 对应的图片部件。副本中的部件不带 docx4j 只在新建部件时记录的
+     * 图片信息和关系，从原部件带过来后 createImageInline 才能使用；docx4j 没有不弃用的设置方式。
+     *
+     * @return 副本中没有对应的部件时返回 null
+     */
+    @SuppressWarnings("deprecation")
+    public static BinaryPartAbstractImage copiedImagePart(BinaryPartAbstractImage source, WordprocessingMLPackage copy) {
+        Part part = copy.getParts().get(source.getPartName());
+        Relationship relationship = Objects.isNull(source.getRelLast()) ? null
+                : copy.getMainDocumentPart().getRelationshipsPart().getRelationshipByID(source.getRelLast().getId());
+        if (!(part instanceof BinaryPartAbstractImage) || Objects.isNull(relationship)) {
+            return null;
+        }
+        BinaryPartAbstractImage imagePart = (BinaryPartAbstractImage) part;
+        if (Objects.isNull(imagePart.getImageInfo())) {
+            imagePart.setImageInfo(source.getImageInfo());
+        }
+        if (imagePart.getRels().isEmpty()) {
+            imagePart.getRels().add(relationship);
+        }
+        return imagePart;
+    }
+
+    private static BinaryPartAbstractImage createImagePart(WordprocessingMLPackage wordMLPackage, byte[] data, String uri) throws Exception {
+        ImageInfo imageInfo;
+        try {
+            imageInfo = IMAGE_MANAGER.preloadImage(uri,
+                    new ImageSource(new MemoryCacheImageInputStream(new ByteArrayInputStream(data)), uri, true));
+        } catch (ImageException e) {
+            return BinaryPartAbstractImage.createImagePart(wordMLPackage, data);
+        }
+        String mimeType = imageInfo.getMimeType();
+        if (!SUPPORTED_MIME_TYPES.contains(mimeType)) {
+            return BinaryPartAbstractImage.createImagePart(wordMLPackage, data);
+        }
+        return newImagePart(wordMLPackage, data, imageInfo);
+    }
+
+    /**
+     * 用已读取的图片信息建立部件。docx4j 中不读临时文件的 createImagePart 和 setImageInfo 都已弃用但没有替代，
+     * 不弃用的 createImagePart 只能先写临时文件。
+     */
+    @SuppressWarnings("deprecation")
+    private static BinaryPartAbstractImage newImagePart(WordprocessingMLPackage wordMLPackage, byte[] data, ImageInfo imageInfo) throws Exception {
+        String mimeType = imageInfo.getMimeType();
+        BinaryPartAbstractImage imagePart = BinaryPartAbstractImage.createImagePart(wordMLPackage, wordMLPackage.getMainDocumentPart(),
+                data, mimeType, mimeType.substring(mimeType.indexOf('/') + 1));
+        imagePart.setImageInfo(imageInfo);
+        return imagePart;
+    }
+}
@@ -0,0 +1,150 @@
+package com.ytdevops.common.service;
+
+import com.lowagie.text.pdf.BaseFont;
+import com.ytdevops.common.PdfRenderProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.docx4j.Docx4J;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.springframework.stereotype.Service;
+import org.xhtmlrenderer.pdf.ITextFontResolver;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * JVM 内的 PDF 渲染：XHTML 直接排版成 PDF，Word 包先经 docx4j 导出为 XHTML 再排版。
+ * 字体文件在启动时扫描并解析一次，按字体族建立索引，解析结果由 iText 缓存；
+ * 每次渲染只注册文档样式中引用到的字体族，不随字体目录的大小逐个注册全部字体。
+ */
+@Slf4j
+@Service
+public class NativePdfRenderer {
+    private static final String FONT_COLLECTION_SUFFIX = ".ttc";
+    /**
+     * 样式中的 font-family/font 声明和 font 标签的 face 属性。
+     */
+    private static final Pattern FONT_DECLARATION = Pattern.compile("(?i)\\b(?:font-family|font|face)\\s*[:=]\\s*([^;}>]+)");
+
+    /**
+     * 小写的字体族名 -> 字体文件，字体集合中的字体为 "文件名.ttc,序号"。
+     */
+    private final Map<String, List<String>> fontFilesByFamily;
+
+    public NativePdfRenderer(PdfRenderProperties pdfRenderProperties) {
+        this.fontFilesByFamily = indexFonts(pdfRenderProperties.getFontDirs());
+    }
+
+    public void renderXhtml(String xhtml, File baseDir, OutputStream outputStream) throws IOException {
+        ITextRenderer renderer = new ITextRenderer();
+        ITextFontResolver fontResolver = renderer.getFontResolver();
+        try {
+            for (String fontFile : referencedFontFiles(xhtml)) {
+                fontResolver.addFont(fontFile, BaseFont.IDENTITY_H, BaseFont.EMBEDDED);
+            }
+            renderer.setDocumentFromString(xhtml, baseDir.toURI().toString());
+            renderer.layout();
+            renderer.createPDF(outputStream);
+        } catch (com.lowagie.text.DocumentException e) {
+            throw new IOException("PDF渲染失败！", e);
+        }
+    }
+
+    public void renderPackage(WordprocessingMLPackage wordMLPackage, File workDir, OutputStream outputStream) throws IOException {
+        File imageDir = new File(workDir, "pdf-images");
+        ByteArrayOutputStream xhtml = new ByteArrayOutputStream();
+        try {
+            Docx4J.toHTML(wordMLPackage, imageDir.getAbsolutePath(), imageDir.toURI().toString(), xhtml);
+        } catch (Docx4JException e) {
+            throw new IOException("Word转换XHTML失败！", e);
+        }
+        renderXhtml(xhtml.toString(StandardCharsets.UTF_8), workDir, outputStream);
+    }
+
+    private Set<String> referencedFontFiles(String xhtml) {
+        Set<String> declarations = new HashSet<>();
+        Matcher matcher = FONT_DECLARATION.matcher(xhtml);
+        while (matcher.find()) {
+            declarations.add(matcher.group(1).toLowerCase(Locale.ROOT));
+        }
+        Set<String> fontFiles = new LinkedHashSet<>();
+        for (String declaration : declarations) {
+            fontFilesByFamily.forEach((family, files) -> {
+                if (declaration.contains(family)) {
+                    fontFiles.addAll(files);
+                }
+            });
+        }
+        return fontFiles;
+    }
+
+    private static Map<String, List<String>> indexFonts(List<String> fontDirs) {
+        List<String> fontFiles = new ArrayList<>();
+        for (String fontDir : fontDirs) {
+            Path dir = Paths.get(fontDir);
+            if (!Files.isDirectory(dir)) {
+                continue;
+            }
+            try (Stream<Path> paths = Files.walk(dir)) {
+                fontFiles.addAll(paths.map(Path::toString)
+                        .filter(path -> path.toLowerCase().endsWith(".ttf") || path.toLowerCase().endsWith(".otf")
+                                || path.toLowerCase().endsWith(FONT_COLLECTION_SUFFIX))
+                        .sorted()
+                        .collect(Collectors.toList()));
+            } catch (IOException e) {
+                log.warn("扫描字体目录失败:{} Error Message:{}", fontDir, ExceptionUtils.getStackTrace(e));
+            }
+        }
+
+        Map<String, List<String>> fontFilesByFamily = new HashMap<>();
+        int fonts = 0;
+        for (String fontFile : fontFiles) {
+            for (String font : fontFaces(fontFile)) {
+                // 返回原始类型 Set，元素为字体族名
+                Set<?> families;
+                try {
+                    families = ITextFontResolver.getDistinctFontFamilyNames(font, BaseFont.IDENTITY_H, BaseFont.EMBEDDED);
+                } catch (Exception e) {
+                    log.warn("字体无法加载，已忽略:{}", font);
+                    continue;
+                }
+                fonts++;
+                for (Object family : families) {
+                    fontFilesByFamily.computeIfAbsent(String.valueOf(family).toLowerCase(Locale.ROOT), key -> new ArrayList<>()).add(font);
+                }
+            }
+        }
+        log.info("PDF渲染可用字体{}个，字体族{}个", fonts, fontFilesByFamily.size());
+        return Collections.unmodifiableMap(fontFilesByFamily);
+    }
+
+    /**
+     * 字体集合（.ttc）中的每个字体按 "文件名.ttc,序号" 单独注册。
+     */
+    private static List<String> fontFaces(String fontFile) {
+        if (!fontFile.toLowerCase().endsWith(FONT_COLLECTION_SUFFIX)) {
+            return Collections.singletonList(fontFile);
+        }
+        try {
+            int faces = BaseFont.enumerateTTCNames(fontFile).length;
+            List<String> fontFaces = new ArrayList<>(faces);
+            for (int i = 0; i < faces; i++) {
+                fontFaces.add(fontFile + "," + i);
+            }
+            return fontFaces;
+        } catch (Exception e) {
+            log.warn("字体无法加载，已忽略:{}", fontFile);
+            return Collections.emptyList();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.ytdevops.common.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.docx4j.openpackaging.exceptions.InvalidFormatException;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.WordprocessingML.AltChunkType;
+import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 预先创建的空白Word包。createPackage 的开销由后台线程承担，导出时直接取用；池空时退化为当场创建。
+ * 启动完成后先做一次 AltChunk 转换和保存，提前加载 JAXB 上下文和 XHTML 导入器。
+ */
+@Slf4j
+@Service
+public class WordPackagePool {
+    private static final String WARM_UP_XHTML = "<html xmlns=\"http://www.w3.org/1999/xhtml\"><head><meta charset=\"UTF-8\"/><title></title></head><body>"
+            + "<h1>预热</h1><p><b>warm</b> <i>up</i></p><ul><li>1</li></ul><table border=\"1\"><tr><td>1</td></tr></table></body></html>";
+    private final BlockingQueue<WordprocessingMLPackage> packages;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("word-package-pool-"));
+    private final boolean warmUp;
+
+    public WordPackagePool(@Value("${export.word.package-pool-size:4}") int poolSize,
+                           @Value("${export.word.warm-up:true}") boolean warmUp) {
+        this.packages = new ArrayBlockingQueue<>(Math.max(poolSize, 1));
+        this.warmUp = warmUp;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!warmUp) {
+            return;
+        }
+        executor.execute(() -> {
+            long start = System.currentTimeMillis();
+            try {
+                WordprocessingMLPackage wordMLPackage = WordprocessingMLPackage.createPackage();
+                MainDocumentPart mdp = wordMLPackage.getMainDocumentPart();
+                mdp.addStyledParagraphOfText("Heading1", "预热");
+                mdp.addAltChunk(AltChunkType.Xhtml, WARM_UP_XHTML.getBytes(StandardCharsets.UTF_8));
+                mdp.convertAltChunks().save(OutputStream.nullOutputStream());
+                log.info("docx4j预热完成，耗时{}ms", System.currentTimeMillis() - start);
+            } catch (Exception e) {
+                log.warn("docx4j预热失败:{}", ExceptionUtils.getStackTrace(e));
+            }
+        });
+        for (int i = 0; i < packages.remainingCapacity(); i++) {
+            refill();
+        }
+    }
+
+    public WordprocessingMLPackage acquire() throws InvalidFormatException {
+        WordprocessingMLPackage wordMLPackage = packages.poll();
+        refill();
+        return Objects.nonNull(wordMLPackage) ? wordMLPackage : WordprocessingMLPackage.createPackage();
+    }
+
+    private void refill() {
+        if (executor.isShutdown()) {
+            return;
+        }
+        executor.execute(() -> {
+            if (packages.remainingCapacity() == 0) {
+                return;
+            }
+            try {
+                packages.offer(WordprocessingMLPackage.createPackage());
+            } catch (InvalidFormatException e) {
+                log.warn("预创建Word包失败:{}", ExceptionUtils.getStackTrace(e));
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
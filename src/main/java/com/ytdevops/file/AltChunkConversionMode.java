@@ -0,0 +1,15 @@
+package com.ytdevops.file;
+
+/**
+ * 描述与架构图以 AltChunk 形式插入文档后，何时将其转换为 WordML。
+ */
+public enum AltChunkConversionMode {
+    /**
+     * 每插入一个节点就转换一次。convertAltChunks 每次都会克隆整个文档，耗时随节点数平方增长。
+     */
+    PER_NODE,
+    /**
+     * 先累积全部节点的 AltChunk，在保存前按正文顺序逐个导入，替换在原位置。
+     */
+    SINGLE_PASS
+}
@@ -0,0 +1,59 @@
+package com.ytdevops.file;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.StdConverter;
+import com.ytdevops.common.JsonMappers;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 请求绑定时按字段类型把值转成类型化的结构：列表字段以 JSON 字符串给出时解析为 List，
+ * 架构图字段解析为架构图列表，导出时无需再为每个节点反复序列化/反序列化。
+ * 解析失败时保留原值，由导出时的读取逻辑按原来的方式报错。
+ */
+@Slf4j
+public class ContentValueBinder extends StdConverter<FileDetailDto.Content, FileDetailDto.Content> {
+    private static final ObjectReader LIST_READER = JsonMappers.reader(new TypeReference<List<Object>>() {
+    });
+    private static final TypeReference<List<FileDetailDto.ArchitectureDiagram>> DIAGRAMS_TYPE = new TypeReference<List<FileDetailDto.ArchitectureDiagram>>() {
+    };
+    private static final ObjectReader DIAGRAMS_READER = JsonMappers.reader(DIAGRAMS_TYPE);
+
+    @Override
+    public FileDetailDto.Content convert(FileDetailDto.Content content) {
+        Object value = content.getValue();
+        if (Objects.isNull(content.getFieldType()) || Objects.isNull(value)) {
+            return content;
+        }
+        try {
+            if (content.getFieldType() == FieldType.DRAWIO) {
+                content.setDrawIoDiagrams(value instanceof Collection
+                        ? JsonMappers.MAPPER.convertValue(value, DIAGRAMS_TYPE)
+                        : readDiagrams(String.valueOf(value)));
+            } else if (content.getFieldType().getIsList() && value instanceof String && StringUtils.startsWith(StringUtils.trim((String) value), "[")) {
+                content.setValue(LIST_READER.readValue((String) value));
+            }
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            log.warn("字段值解析失败，保留原值 fieldId:{} Error Message:{}", content.getFieldId(), ExceptionUtils.getMessage(e));
+        }
+        return content;
+    }
+
+    /**
+     * 空白内容视为没有架构图。
+     */
+    public static List<FileDetailDto.ArchitectureDiagram> readDiagrams(String value) throws JsonProcessingException {
+        if (StringUtils.isBlank(value)) {
+            return Collections.emptyList();
+        }
+        return DIAGRAMS_READER.readValue(value);
+    }
+}
@@ -0,0 +1,39 @@
+package com.ytdevops.file;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Data
+@Accessors(chain = true)
+@Component
+@ConfigurationProperties(prefix = "export.diagram")
+public class DiagramRasterizeProperties {
+    /**
+     * 输出 PNG 的分辨率，96 即按 SVG 原始像素尺寸输出。
+     */
+    private int dpi = 96;
+
+    private int maxWidth = 4096;
+
+    private int maxHeight = 4096;
+
+    /**
+     * 栅格化线程数，默认等于 CPU 核数。
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 按 SVG 内容哈希缓存 PNG 结果的总字节上限，0 表示不缓存。
+     */
+    private DataSize cacheBudget = DataSize.ofMegabytes(32);
+
+    /**
+     * 导出等待单个架构图栅格化结果的最长时间，包括在线程池中排队的时间。
+     */
+    private Duration timeout = Duration.ofSeconds(60);
+}
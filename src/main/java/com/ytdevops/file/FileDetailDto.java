@@ -2,18 +2,16 @@ package com.ytdevops.file;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import lombok.Data;
 import lombok.experimental.Accessors;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.exception.ExceptionUtils;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 
@@ -27,6 +25,17 @@ public class FileDetailDto {
 
     private List<Data> data;
 
+    /**
+     * 第一个带租户id的节点的租户，用于导出排队，都没有时返回 null。
+     */
+    @JsonIgnore
+    public String getTenantId() {
+        if (Objects.isNull(data)) {
+            return null;
+        }
+        return data.stream().map(Data::getTenantId).filter(StringUtils::isNotBlank).findFirst().orElse(null);
+    }
+
     @lombok.Data
     @Accessors(chain = true)
     @Slf4j
@@ -53,6 +62,7 @@ public class FileDetailDto {
         @JsonProperty("background-color")
         private String backgroundColor;
 
+        @JsonDeserialize(contentConverter = ContentValueBinder.class)
         private List<Content> content = new ArrayList<>();
 
         private List<Attachment> attachments = new ArrayList<>();
@@ -127,6 +137,11 @@ public class FileDetailDto {
         private Boolean show;
         private List<ExtraSelectData> extraData;
         private Object value;
+        /**
+         * 架构图字段在请求绑定时解析出的架构图，不参与序列化。
+         */
+        @JsonIgnore
+        private transient List<ArchitectureDiagram> drawIoDiagrams;
 
         @JsonIgnore
         public String getStringValue() {
@@ -136,22 +151,14 @@ public class FileDetailDto {
             return String.valueOf(value);
         }
 
+        @JsonIgnore
         public Boolean isEmptyContent() {
             if (Objects.isNull(value)) {
                 return true;
             }
 
             if (fieldType.getIsList()) {
-                try {
-                    String writeValueAsString = new ObjectMapper().writeValueAsString(value);
-                    TypeReference<List<String>> listTypeReference = new TypeReference<List<String>>() {
-                    };
-                    List<String> list = new ObjectMapper().readValue(writeValueAsString, listTypeReference);
-                    return CollectionUtils.isEmpty(list);
-                } catch (JsonProcessingException e) {
-                    log.error("isEmptyContent error:{}", ExceptionUtils.getStackTrace(e));
-                    return true;
-                }
+                return !(value instanceof Collection) || CollectionUtils.isEmpty((Collection<?>) value);
             }
 
             return StringUtils.isBlank(String.valueOf(value));
@@ -0,0 +1,20 @@
+package com.ytdevops.file;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@Accessors(chain = true)
+@Component
+@ConfigurationProperties(prefix = "export.fragment-cache")
+public class FragmentCacheProperties {
+    private boolean enabled = true;
+
+    /**
+     * 缓存的描述片段（含其中的图片）总字节上限，超出时按最近最少使用淘汰。
+     */
+    private DataSize memoryBudget = DataSize.ofMegabytes(128);
+}
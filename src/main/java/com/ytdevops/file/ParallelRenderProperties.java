@@ -0,0 +1,24 @@
+package com.ytdevops.file;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Accessors(chain = true)
+@Component
+@ConfigurationProperties(prefix = "export.word.parallel")
+public class ParallelRenderProperties {
+    private boolean enabled = true;
+
+    /**
+     * 渲染子树的 fork-join 线程数，所有导出共享，默认等于 CPU 核数。
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 节点数少于此值的文件按顺序渲染，合并子树的开销抵消不了并行的收益。
+     */
+    private int minNodes = 200;
+}
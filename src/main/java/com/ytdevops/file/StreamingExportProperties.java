@@ -0,0 +1,30 @@
+package com.ytdevops.file;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@Accessors(chain = true)
+@Component
+@ConfigurationProperties(prefix = "export.word.streaming")
+public class StreamingExportProperties {
+    /**
+     * 一批渲染的节点数上限。每批的节点数据、图片和架构图在渲染完成后即写入磁盘并释放，
+     * 堆内存占用由批次大小而不是文件的节点总数决定。
+     */
+    private int maxBatchNodes = 500;
+
+    /**
+     * 一批渲染的估算字节数上限：节点描述的长度加上图片和架构图预取后的大小，与节点数上限先到者为准。
+     * 图片大小在预取前未知，按已渲染批次中预取到的平均大小估算。
+     */
+    private DataSize maxBatchBytes = DataSize.ofMegabytes(32);
+
+    /**
+     * 第一批渲染前估算单个图片或架构图大小所用的值。
+     */
+    private DataSize estimatedResourceSize = DataSize.ofKilobytes(256);
+}
@@ -1,15 +1,18 @@
 package com.ytdevops.file.rest;
 
+import com.ytdevops.common.ExportProgressListener;
+import com.ytdevops.common.rest.DocumentDownloads;
+import com.ytdevops.common.service.ExportAdmission;
+import com.ytdevops.common.service.ExportCostEstimator;
 import com.ytdevops.file.FileDetailDto;
 import com.ytdevops.file.service.WordExportService;
 import lombok.Data;
-import org.apache.commons.io.IOUtils;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.net.URLEncoder;
@@ -20,14 +23,39 @@ import java.nio.charset.StandardCharsets;
 @Data
 public class FileExportResource {
     private final WordExportService wordExportService;
+    private final ExportAdmission exportAdmission;
+    private final ExportCostEstimator exportCostEstimator;
 
+    /**
+     * 按估算成本排队，超出预算时返回 429。
+     */
     @PostMapping("/word")
     public void exportWord(@RequestBody FileDetailDto fileDetailDto, HttpServletResponse response) throws IOException {
-        byte[] bytes = wordExportService.exportWord(fileDetailDto);
-        response.setCharacterEncoding("utf-8");
         String fileName = URLEncoder.encode(fileDetailDto.getData().get(0).getTopic(), StandardCharsets.UTF_8).replaceAll("\\+", "%20");
-        response.setHeader("Content-disposition", "attachment;filename*=utf-8''" + fileName + ".docx");
-        ServletOutputStream outputStream = response.getOutputStream();
-        IOUtils.write(bytes, outputStream);
+        try (ExportAdmission.Permit permit = exportAdmission.admit(fileDetailDto.getTenantId(), exportCostEstimator.estimate(fileDetailDto))) {
+            DocumentDownloads.download(response, fileName, ".docx", outputStream -> wordExportService.exportWord(fileDetailDto, outputStream));
+        }
+    }
+
+    /**
+     * 节点数很多的文件使用，请求体不整体反序列化，内存占用与节点总数无关。
+     * 读取请求体之前无法得知租户，归入默认租户排队。
+     */
+    @PostMapping("/word/stream")
+    public void exportWordStreaming(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        try (ExportAdmission.Permit permit = exportAdmission.admit(null, exportCostEstimator.estimateStreaming(request.getContentLengthLong()))) {
+            DocumentDownloads.download(response, ".docx", outputStream -> {
+                String topic = wordExportService.exportWordStreaming(request.getInputStream(), outputStream, ExportProgressListener.NONE);
+                return URLEncoder.encode(topic, StandardCharsets.UTF_8).replaceAll("\\+", "%20");
+            });
+        }
+    }
+
+    @PostMapping("/pdf")
+    public void exportPdf(@RequestBody FileDetailDto fileDetailDto, HttpServletResponse response) throws IOException {
+        String fileName = URLEncoder.encode(fileDetailDto.getData().get(0).getTopic(), StandardCharsets.UTF_8).replaceAll("\\+", "%20");
+        try (ExportAdmission.Permit permit = exportAdmission.admit(fileDetailDto.getTenantId(), exportCostEstimator.estimate(fileDetailDto))) {
+            DocumentDownloads.download(response, fileName, ".pdf", outputStream -> wordExportService.exportPdf(fileDetailDto, outputStream));
+        }
     }
 }
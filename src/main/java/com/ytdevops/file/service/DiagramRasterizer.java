@@ -0,0 +1,266 @@
+package com.ytdevops.file.service;
+
+import com.ytdevops.file.DiagramRasterizeProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.anim.dom.SVGDOMImplementation;
+import org.apache.batik.transcoder.SVGAbstractTranscoder;
+import org.apache.batik.transcoder.TranscoderException;
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderOutput;
+import org.apache.batik.transcoder.image.PNGTranscoder;
+import org.apache.batik.util.XMLResourceDescriptor;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.svg.SVGDocument;
+
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * draw.io 架构图 SVG -> PNG 栅格化。
+ * 在固定大小的线程池上执行（所有导出共享），结果按 SVG 内容哈希缓存，并发请求同一内容时只栅格化一次。
+ */
+@Slf4j
+@Service
+public class DiagramRasterizer {
+    private static final byte[] SVG_HTML_HEAD = "<!DOCTYPE svg [<!ENTITY nbsp \"&#160;\">]>".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SVG_START_TAG = "<svg".getBytes(StandardCharsets.US_ASCII);
+    private static final String SVG_DOCUMENT_URI = "file:///diagram.svg";
+    private static final float DEFAULT_DPI = 96F;
+
+    private final DiagramRasterizeProperties diagramRasterizeProperties;
+    private final ThreadPoolExecutor executor;
+    private final ThreadLocal<PNGTranscoder> transcoders;
+    private final ThreadLocal<SAXSVGDocumentFactory> documentFactories =
+            ThreadLocal.withInitial(() -> new SAXSVGDocumentFactory(XMLResourceDescriptor.getXMLParserClassName()));
+    private final Map<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, byte[]> results = new LinkedHashMap<>(16, 0.75F, true);
+    private long resultBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public DiagramRasterizer(DiagramRasterizeProperties diagramRasterizeProperties, MeterRegistry meterRegistry) {
+        this.diagramRasterizeProperties = diagramRasterizeProperties;
+        int threads = Math.max(1, diagramRasterizeProperties.getThreads());
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("diagram-rasterizer-"));
+        this.executor.allowCoreThreadTimeOut(true);
+        this.transcoders = ThreadLocal.withInitial(this::createTranscoder);
+        this.hits = meterRegistry.counter("export.diagram.cache.hits");
+        this.misses = meterRegistry.counter("export.diagram.cache.misses");
+    }
+
+    /**
+     * 提交栅格化任务，svgBytes 为解码后的 SVG 原文。
+     */
+    public CompletableFuture<byte[]> rasterize(byte[] svgBytes) {
+        String contentHash = DigestUtils.sha256Hex(svgBytes);
+        byte[] cached = getCached(contentHash);
+        if (cached != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<byte[]> created = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = inFlight.putIfAbsent(contentHash, created);
+        if (existing != null) {
+            hits.increment();
+            return existing;
+        }
+        misses.increment();
+        try {
+            executor.execute(() -> {
+                try {
+                    byte[] pngBytes = transcode(svgBytes);
+                    putCached(contentHash, pngBytes);
+                    inFlight.remove(contentHash);
+                    created.complete(pngBytes);
+                } catch (Throwable e) {
+                    inFlight.remove(contentHash);
+                    created.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 已关闭的线程池不会执行任务，不能让等待方一直挂起
+            inFlight.remove(contentHash);
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+
+    /**
+     * 等待 rasterize 的结果，最多等待 timeout。
+     */
+    public byte[] await(CompletableFuture<byte[]> rasterized) throws InterruptedException, ExecutionException, TimeoutException {
+        return rasterized.get(diagramRasterizeProperties.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private byte[] transcode(byte[] svgBytes) throws TranscoderException {
+        SVGDocument document;
+        try {
+            document = parseSvg(svgBytes);
+        } catch (IOException e) {
+            log.warn("架构图不是合法的XML，改用宽松解析:{}", e.getMessage());
+            return transcodeLenient(svgBytes);
+        }
+        removeSwitchTags(document);
+
+        PNGTranscoder transcoder = transcoders.get();
+        applyOutputSize(transcoder, document.getRootElement().getAttribute("width"), document.getRootElement().getAttribute("height"));
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        transcoder.transcode(new TranscoderInput(document), new TranscoderOutput(byteArrayOutputStream));
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * 跳过原有的 XML 声明和 DOCTYPE，换成声明了 &amp;nbsp; 的 DOCTYPE 后直接按流解析为 SVG DOM，不做字符串拷贝。
+     */
+    private SVGDocument parseSvg(byte[] svgBytes) throws IOException {
+        int svgStart = indexOf(svgBytes, SVG_START_TAG);
+        if (svgStart < 0) {
+            throw new IOException("未找到svg根节点");
+        }
+        InputStream inputStream = new SequenceInputStream(
+                new ByteArrayInputStream(SVG_HTML_HEAD),
+                new ByteArrayInputStream(svgBytes, svgStart, svgBytes.length - svgStart));
+        return documentFactories.get().createSVGDocument(SVG_DOCUMENT_URI, inputStream);
+    }
+
+    /**
+     * Batik 不支持 foreignObject，把 g 下的 switch 替换为其最后一个子元素（draw.io 的纯文本后备）。
+     */
+    private void removeSwitchTags(SVGDocument document) {
+        NodeList switchList = document.getElementsByTagNameNS(SVGDOMImplementation.SVG_NAMESPACE_URI, "switch");
+        List<org.w3c.dom.Element> switches = new ArrayList<>(switchList.getLength());
+        for (int i = 0; i < switchList.getLength(); i++) {
+            switches.add((org.w3c.dom.Element) switchList.item(i));
+        }
+        for (org.w3c.dom.Element switchElement : switches) {
+            Node parent = switchElement.getParentNode();
+            if (!(parent instanceof org.w3c.dom.Element) || !"g".equals(parent.getLocalName())) {
+                continue;
+            }
+            Node fallback = switchElement.getLastChild();
+            while (fallback != null && fallback.getNodeType() != Node.ELEMENT_NODE) {
+                fallback = fallback.getPreviousSibling();
+            }
+            if (fallback == null) {
+                parent.removeChild(switchElement);
+            } else {
+                parent.replaceChild(fallback, switchElement);
+            }
+        }
+    }
+
+    private byte[] transcodeLenient(byte[] svgBytes) throws TranscoderException {
+        Document document = Jsoup.parse(new String(svgBytes, StandardCharsets.UTF_8));
+        Elements switches = document.select("switch");
+        for (Element switchElement : switches) {
+            Element parent = switchElement.parent();
+            if (!parent.tagName().equals("g")) {
+                continue;
+            }
+            parent.append(String.valueOf(switchElement.children().last()));
+            switchElement.remove();
+        }
+
+        Element svg = document.select("svg").first();
+        String content = svg.attr("content");
+        svg.attr("content", content.replaceAll("<", "&lt;").replaceAll(">", "&gt;").replaceAll("\"", "&quot;"));
+        byte[] svgSource = (new String(SVG_HTML_HEAD, StandardCharsets.US_ASCII) + svg.outerHtml()).getBytes(StandardCharsets.UTF_8);
+
+        PNGTranscoder transcoder = transcoders.get();
+        applyOutputSize(transcoder, svg.attr("width"), svg.attr("height"));
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        transcoder.transcode(new TranscoderInput(new ByteArrayInputStream(svgSource)), new TranscoderOutput(byteArrayOutputStream));
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    private PNGTranscoder createTranscoder() {
+        PNGTranscoder transcoder = new PNGTranscoder();
+        transcoder.addTranscodingHint(SVGAbstractTranscoder.KEY_PIXEL_UNIT_TO_MILLIMETER, 25.4F / diagramRasterizeProperties.getDpi());
+        transcoder.addTranscodingHint(SVGAbstractTranscoder.KEY_MAX_WIDTH, (float) diagramRasterizeProperties.getMaxWidth());
+        transcoder.addTranscodingHint(SVGAbstractTranscoder.KEY_MAX_HEIGHT, (float) diagramRasterizeProperties.getMaxHeight());
+        return transcoder;
+    }
+
+    /**
+     * 非 96 DPI 时按比例放大输出尺寸，最大尺寸由 KEY_MAX_WIDTH/KEY_MAX_HEIGHT 限制。
+     */
+    private void applyOutputSize(PNGTranscoder transcoder, String width, String height) {
+        transcoder.removeTranscodingHint(SVGAbstractTranscoder.KEY_WIDTH);
+        transcoder.removeTranscodingHint(SVGAbstractTranscoder.KEY_HEIGHT);
+        float scale = diagramRasterizeProperties.getDpi() / DEFAULT_DPI;
+        if (scale == 1F) {
+            return;
+        }
+        Float pixelWidth = parsePixels(width);
+        Float pixelHeight = parsePixels(height);
+        if (pixelWidth != null) {
+            transcoder.addTranscodingHint(SVGAbstractTranscoder.KEY_WIDTH, pixelWidth * scale);
+        } else if (pixelHeight != null) {
+            transcoder.addTranscodingHint(SVGAbstractTranscoder.KEY_HEIGHT, pixelHeight * scale);
+        }
+    }
+
+    private static Float parsePixels(String length) {
+        String value = StringUtils.removeEndIgnoreCase(StringUtils.trimToEmpty(length), "px");
+        try {
+            return StringUtils.isBlank(value) ? null : Float.parseFloat(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private synchronized byte[] getCached(String contentHash) {
+        return results.get(contentHash);
+    }
+
+    private synchronized void putCached(String contentHash, byte[] pngBytes) {
+        long budget = diagramRasterizeProperties.getCacheBudget().toBytes();
+        if (pngBytes.length > budget) {
+            return;
+        }
+        if (results.put(contentHash, pngBytes) == null) {
+            resultBytes += pngBytes.length;
+        }
+        Iterator<byte[]> iterator = results.values().iterator();
+        while (resultBytes > budget && iterator.hasNext()) {
+            resultBytes -= iterator.next().length;
+            iterator.remove();
+        }
+    }
+
+    private static int indexOf(byte[] data, byte[] target) {
+        outer:
+        for (int i = 0; i <= data.length - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (data[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
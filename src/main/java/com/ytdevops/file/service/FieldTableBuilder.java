@@ -0,0 +1,114 @@
+package com.ytdevops.file.service;
+
+import com.ytdevops.file.ExtraSelectData;
+import com.ytdevops.file.FileDetailDto;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.docx4j.jaxb.Context;
+import org.docx4j.wml.*;
+
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * 把节点的自定义字段直接生成为两列的 WordML 表格（字段名 | 字段值），不经过 HTML 和 Tidy。
+ */
+public class FieldTableBuilder {
+    private static final ObjectFactory FACTORY = Context.getWmlObjectFactory();
+    private static final BigInteger NAME_WIDTH = BigInteger.valueOf(2400);
+    private static final BigInteger VALUE_WIDTH = BigInteger.valueOf(6626);
+    private static final BigInteger FULL_WIDTH_PCT = BigInteger.valueOf(5000);
+    private static final String NAME_FILL = "F2F2F2";
+    private static final Comparator<FileDetailDto.Content> ORDER = Comparator.comparing(FileDetailDto.Content::getOrderNumber,
+            Comparator.nullsLast(Comparator.naturalOrder()));
+
+    /**
+     * 生成字段表格，没有可展示的字段时返回 null。
+     * labelCache 按字段 id 缓存选项值到选项名的映射，同一次导出中同一字段的选项只建一次索引。
+     */
+    public Tbl build(List<FileDetailDto.Content> contents, Map<String, Map<String, String>> labelCache) {
+        if (CollectionUtils.isEmpty(contents)) {
+            return null;
+        }
+        List<FileDetailDto.Content> ordered = new ArrayList<>(contents);
+        ordered.sort(ORDER);
+
+        Tbl tbl = null;
+        for (FileDetailDto.Content content : ordered) {
+            FieldValueFormatter formatter = FieldValueFormatters.get(content.getFieldType());
+            if (Objects.isNull(formatter) || Boolean.FALSE.equals(content.getShow()) || Objects.isNull(content.getValue())) {
+                continue;
+            }
+            String value = formatter.format(content.getValue(), labels(content, labelCache));
+            if (StringUtils.isBlank(value)) {
+                continue;
+            }
+            if (Objects.isNull(tbl)) {
+                tbl = WordMLTables.createTable(FULL_WIDTH_PCT, Arrays.asList(NAME_WIDTH, VALUE_WIDTH));
+            }
+            Tr tr = FACTORY.createTr();
+            tr.getContent().add(createCell(StringUtils.defaultString(content.getName()), NAME_WIDTH, true));
+            tr.getContent().add(createCell(value, VALUE_WIDTH, false));
+            tbl.getContent().add(tr);
+        }
+        return tbl;
+    }
+
+    private static Map<String, String> labels(FileDetailDto.Content content, Map<String, Map<String, String>> labelCache) {
+        if (CollectionUtils.isEmpty(content.getExtraData())) {
+            return Collections.emptyMap();
+        }
+        if (Objects.isNull(content.getFieldId())) {
+            return indexLabels(content.getExtraData());
+        }
+        return labelCache.computeIfAbsent(content.getFieldId(), fieldId -> indexLabels(content.getExtraData()));
+    }
+
+    private static Map<String, String> indexLabels(List<ExtraSelectData> extraData) {
+        Map<String, String> labels = new HashMap<>(extraData.size() * 2);
+        for (ExtraSelectData option : extraData) {
+            if (Objects.nonNull(option.getValue()) && Objects.nonNull(option.getLabel())) {
+                labels.putIfAbsent(option.getValue(), option.getLabel());
+            }
+        }
+        return labels;
+    }
+
+    private static Tc createCell(String text, BigInteger width, boolean isName) {
+        Tc tc = FACTORY.createTc();
+        TcPr tcPr = FACTORY.createTcPr();
+        TblWidth cellWidth = FACTORY.createTblWidth();
+        cellWidth.setType(TblWidth.TYPE_DXA);
+        cellWidth.setW(width);
+        tcPr.setTcW(cellWidth);
+        if (isName) {
+            CTShd shading = FACTORY.createCTShd();
+            shading.setVal(STShd.CLEAR);
+            shading.setFill(NAME_FILL);
+            tcPr.setShd(shading);
+        }
+        tc.setTcPr(tcPr);
+
+        R r = FACTORY.createR();
+        if (isName) {
+            RPr rPr = FACTORY.createRPr();
+            rPr.setB(FACTORY.createBooleanDefaultTrue());
+            r.setRPr(rPr);
+        }
+        // 多行文本按换行拆成多个文本片段，中间插入换行符
+        String[] lines = StringUtils.splitPreserveAllTokens(text.replace("\r\n", "\n"), '\n');
+        for (int i = 0; i < lines.length; i++) {
+            if (i > 0) {
+                r.getContent().add(FACTORY.createBr());
+            }
+            Text t = FACTORY.createText();
+            t.setValue(lines[i]);
+            t.setSpace("preserve");
+            r.getContent().add(FACTORY.createRT(t));
+        }
+        P p = FACTORY.createP();
+        p.getContent().add(r);
+        tc.getContent().add(p);
+        return tc;
+    }
+}
@@ -0,0 +1,11 @@
+package com.ytdevops.file.service;
+
+import java.util.Map;
+
+/**
+ * 把自定义字段的值格式化为表格中显示的文本，labels 为选项值到选项名的映射。
+ */
+@FunctionalInterface
+public interface FieldValueFormatter {
+    String format(Object value, Map<String, String> labels);
+}
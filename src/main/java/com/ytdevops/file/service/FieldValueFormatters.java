@@ -0,0 +1,80 @@
+package com.ytdevops.file.service;
+
+import com.ytdevops.file.FieldType;
+import org.jsoup.Jsoup;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 各字段类型的格式化器，类加载时建好，导出时按类型直接取用。
+ * 未注册的类型（架构图）不进字段表格。
+ */
+public final class FieldValueFormatters {
+    private static final String SEPARATOR = "、";
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneId.systemDefault());
+    private static final Map<FieldType, FieldValueFormatter> FORMATTERS = new EnumMap<>(FieldType.class);
+
+    private static final FieldValueFormatter PLAIN = (value, labels) -> join(elements(value).map(FieldValueFormatters::text));
+    private static final FieldValueFormatter LABELED = (value, labels) -> join(elements(value).map(FieldValueFormatters::text)
+            .map(text -> labels.getOrDefault(text, text)));
+    private static final FieldValueFormatter NUMBER = (value, labels) -> value instanceof Number
+            ? new BigDecimal(value.toString()).stripTrailingZeros().toPlainString()
+            : PLAIN.format(value, labels);
+    private static final FieldValueFormatter DATE = (value, labels) -> value instanceof Number
+            ? DATE_FORMATTER.format(Instant.ofEpochMilli(((Number) value).longValue()))
+            : PLAIN.format(value, labels);
+    private static final FieldValueFormatter RICH_TEXT = (value, labels) -> Objects.isNull(value) ? "" : Jsoup.parse(value.toString()).text();
+
+    static {
+        for (FieldType fieldType : Arrays.asList(FieldType.TEXT, FieldType.TEXTAREA, FieldType.LINK, FieldType.ATTACHMENT)) {
+            FORMATTERS.put(fieldType, PLAIN);
+        }
+        for (FieldType fieldType : Arrays.asList(FieldType.SELECT, FieldType.SELECT_MULTI, FieldType.STATUS, FieldType.VERSION,
+                FieldType.LABEL, FieldType.ARRAY, FieldType.SINGLE_USER_SELECT, FieldType.MULTI_USER_SELECT, FieldType.MULTI_USER_GROUP_SELECT)) {
+            FORMATTERS.put(fieldType, LABELED);
+        }
+        FORMATTERS.put(FieldType.NUMBER, NUMBER);
+        FORMATTERS.put(FieldType.POSITIVE_INTEGER, NUMBER);
+        FORMATTERS.put(FieldType.DATE, DATE);
+        FORMATTERS.put(FieldType.RICH_TEXT, RICH_TEXT);
+    }
+
+    private FieldValueFormatters() {
+    }
+
+    /**
+     * 返回该类型的格式化器，类型不在字段表格中展示时返回 null。
+     */
+    public static FieldValueFormatter get(FieldType fieldType) {
+        return Objects.isNull(fieldType) ? null : FORMATTERS.get(fieldType);
+    }
+
+    private static Stream<?> elements(Object value) {
+        if (Objects.isNull(value)) {
+            return Stream.empty();
+        }
+        return value instanceof Collection ? ((Collection<?>) value).stream().filter(Objects::nonNull) : Stream.of(value);
+    }
+
+    /**
+     * 附件、人员等以对象给出的值取其名称。
+     */
+    private static String text(Object element) {
+        if (element instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) element;
+            Object name = Objects.nonNull(map.get("name")) ? map.get("name") : map.get("label");
+            return String.valueOf(Objects.nonNull(name) ? name : map.get("value"));
+        }
+        return String.valueOf(element);
+    }
+
+    private static String join(Stream<String> texts) {
+        return texts.collect(Collectors.joining(SEPARATOR));
+    }
+}
@@ -0,0 +1,125 @@
+package com.ytdevops.file.service;
+
+import com.ytdevops.file.FileDetailDto;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * 思维导图节点的一次性父子索引：parentId -> 按 index 排序的子节点，遍历使用显式栈而非递归。
+ * 无法从根节点到达的节点（父节点不存在或 parentid 成环）只记录告警，不中断导出。
+ */
+@Slf4j
+@Getter
+public class FileTreeIndex {
+    private static final String ROOT_ID = "root";
+    private static final Comparator<FileDetailDto.Data> INDEX_ORDER =
+            Comparator.comparing(FileDetailDto.Data::getIndex, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final FileDetailDto.Data root;
+    private final Map<String, List<FileDetailDto.Data>> childrenByParentId;
+    private final List<FileDetailDto.Data> orphans = new ArrayList<>();
+    private final List<FileDetailDto.Data> detached = new ArrayList<>();
+
+    private FileTreeIndex(FileDetailDto.Data root, Map<String, List<FileDetailDto.Data>> childrenByParentId) {
+        this.root = root;
+        this.childrenByParentId = childrenByParentId;
+    }
+
+    public static FileTreeIndex build(List<FileDetailDto.Data> dataList) {
+        FileDetailDto.Data root = null;
+        Map<String, FileDetailDto.Data> nodeById = new HashMap<>(dataList.size() * 2);
+        Map<String, List<FileDetailDto.Data>> childrenByParentId = new HashMap<>(dataList.size() * 2);
+        for (FileDetailDto.Data data : dataList) {
+            if (root == null && ROOT_ID.equals(data.getId())) {
+                root = data;
+                nodeById.put(data.getId(), data);
+                continue;
+            }
+            if (nodeById.putIfAbsent(data.getId(), data) != null) {
+                log.warn("思维导图存在重复节点id:{}", data.getId());
+            }
+            childrenByParentId.computeIfAbsent(StringUtils.defaultString(data.getParentId()), k -> new ArrayList<>()).add(data);
+        }
+        if (root == null) {
+            throw new RuntimeException("文件中无根节点！");
+        }
+        childrenByParentId.values().forEach(children -> children.sort(INDEX_ORDER));
+
+        FileTreeIndex index = new FileTreeIndex(root, childrenByParentId);
+        index.detectUnreachable(dataList, nodeById);
+        return index;
+    }
+
+    public List<FileDetailDto.Data> getChildren(FileDetailDto.Data parent) {
+        return childrenByParentId.getOrDefault(parent.getId(), Collections.emptyList());
+    }
+
+    /**
+     * 按先序（与原递归顺序一致）遍历根节点的全部后代，不包含根节点本身。
+     */
+    public void forEachDescendant(Consumer<FileDetailDto.Data> visitor) {
+        forEachDescendant(root, visitor);
+    }
+
+    public void forEachDescendant(FileDetailDto.Data parent, Consumer<FileDetailDto.Data> visitor) {
+        Set<FileDetailDto.Data> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        visited.add(parent);
+        Deque<FileDetailDto.Data> stack = new ArrayDeque<>();
+        pushChildren(stack, parent);
+        while (!stack.isEmpty()) {
+            FileDetailDto.Data node = stack.pop();
+            if (!visited.add(node)) {
+                continue;
+            }
+            visitor.accept(node);
+            pushChildren(stack, node);
+        }
+    }
+
+    public boolean hasUnreachable() {
+        return !orphans.isEmpty() || !detached.isEmpty();
+    }
+
+    private void pushChildren(Deque<FileDetailDto.Data> stack, FileDetailDto.Data parent) {
+        List<FileDetailDto.Data> children = getChildren(parent);
+        for (ListIterator<FileDetailDto.Data> it = children.listIterator(children.size()); it.hasPrevious(); ) {
+            stack.push(it.previous());
+        }
+    }
+
+    private void detectUnreachable(List<FileDetailDto.Data> dataList, Map<String, FileDetailDto.Data> nodeById) {
+        Set<FileDetailDto.Data> reachable = Collections.newSetFromMap(new IdentityHashMap<>());
+        reachable.add(root);
+        forEachDescendant(reachable::add);
+        if (reachable.size() == dataList.size()) {
+            return;
+        }
+
+        for (FileDetailDto.Data data : dataList) {
+            if (reachable.contains(data)) {
+                continue;
+            }
+            if (nodeById.containsKey(data.getParentId())) {
+                detached.add(data);
+            } else {
+                orphans.add(data);
+            }
+        }
+        if (!orphans.isEmpty()) {
+            log.warn("思维导图存在{}个父节点不存在的节点，已跳过:{}", orphans.size(), ids(orphans));
+        }
+        if (!detached.isEmpty()) {
+            log.warn("思维导图存在{}个无法从根节点到达的节点（parentid成环或挂在孤立节点下），已跳过:{}", detached.size(), ids(detached));
+        }
+    }
+
+    private static List<String> ids(List<FileDetailDto.Data> dataList) {
+        List<String> ids = new ArrayList<>(dataList.size());
+        dataList.forEach(data -> ids.add(data.getId()));
+        return ids;
+    }
+}
@@ -0,0 +1,650 @@
+package com.ytdevops.file.service;
+
+import com.ytdevops.common.service.InMemoryImageResolver;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.docx4j.dml.wordprocessingDrawing.Inline;
+import org.docx4j.jaxb.Context;
+import org.docx4j.openpackaging.exceptions.InvalidFormatException;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPartAbstractImage;
+import org.docx4j.openpackaging.parts.WordprocessingML.NumberingDefinitionsPart;
+import org.docx4j.openpackaging.parts.relationships.Namespaces;
+import org.docx4j.relationships.Relationship;
+import org.docx4j.wml.*;
+import org.jsoup.nodes.Attribute;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 把富文本编辑器常用的标记（段落、标题、列表、表格、粗体/斜体/下划线、链接、图片）直接从 Jsoup DOM 生成 WordML，
+ * 不再经过 Tidy 和 XHTML 导入。遇到不支持的标记时返回 null，由调用方回退到原来的 AltChunk 方式。
+ * 图片、超链接和列表编号需要改动文档包，等整段转换成功后再统一执行，回退时文档包不受影响。
+ * 图片的 src 是在 imageResolver 中登记的引用，内容相同的图片在文档包中只保存一份，各处引用同一个图片部件。
+ */
+@Slf4j
+public class HtmlWordMLConverter {
+    private static final ObjectFactory FACTORY = Context.getWmlObjectFactory();
+    private static final int BOLD = 1;
+    private static final int ITALIC = 1 << 1;
+    private static final int UNDERLINE = 1 << 2;
+    private static final int STRIKE = 1 << 3;
+    private static final int SUPERSCRIPT = 1 << 4;
+    private static final int SUBSCRIPT = 1 << 5;
+    private static final int LINK = 1 << 6;
+    private static final Set<String> INLINE_TAGS = Set.of("b", "strong", "i", "em", "u", "ins", "s", "strike", "del",
+            "sup", "sub", "span", "a", "br", "img");
+    private static final Set<String> IGNORED_ATTRIBUTES = Set.of("id", "title", "dir", "lang");
+    private static final Set<String> NO_ATTRIBUTES = Collections.emptySet();
+    private static final Set<String> PARAGRAPH_ATTRIBUTES = Set.of("style", "align");
+    private static final Set<String> TABLE_ATTRIBUTES = Set.of("style", "border", "cellspacing", "cellpadding", "width");
+    private static final Set<String> TABLE_STYLES = Set.of("table-layout", "width", "border-collapse");
+    private static final Set<String> CELL_ATTRIBUTES = Set.of("colspan", "rowspan", "width", "height");
+    private static final Map<String, Integer> HEADING_SIZES = Map.of("h1", 32, "h2", 28, "h3", 26, "h4", 24, "h5", 22, "h6", 21);
+    private static final Map<String, JcEnumeration> ALIGNMENTS = Map.of("left", JcEnumeration.LEFT, "center", JcEnumeration.CENTER,
+            "right", JcEnumeration.RIGHT, "justify", JcEnumeration.BOTH);
+    private static final String[] BULLETS = {"•", "◦", "▪"};
+    private static final String HYPERLINK_COLOR = "0563C1";
+    private static final int MAX_LIST_LEVEL = 8;
+    private static final int LIST_INDENT = 420;
+    private static final int LIST_HANGING = 420;
+    // 与原先给描述中表格设置的 width="60%" 一致
+    private static final BigInteger TABLE_WIDTH_PCT = BigInteger.valueOf(3000);
+    private static final int TABLE_WIDTH_TWIPS = 5400;
+
+    private final WordprocessingMLPackage wordMLPackage;
+    private final AtomicInteger drawingIds;
+    /**
+     * 图片内容哈希 -> 已加入文档包的图片部件。
+     */
+    private final Map<String, BinaryPartAbstractImage> imageParts;
+    private final InMemoryImageResolver imageResolver;
+    private BigInteger bulletNumId;
+
+    public HtmlWordMLConverter(WordprocessingMLPackage wordMLPackage, AtomicInteger drawingIds,
+                               Map<String, BinaryPartAbstractImage> imageParts, InMemoryImageResolver imageResolver) {
+        this.wordMLPackage = wordMLPackage;
+        this.drawingIds = drawingIds;
+        this.imageParts = imageParts;
+        this.imageResolver = imageResolver;
+    }
+
+    /**
+     * 换成转换 AltChunk 后的文档包副本，图片 id 和已建的项目符号列表沿用（副本中的编号定义相同）。
+     */
+    public HtmlWordMLConverter withPackage(WordprocessingMLPackage converted, Map<String, BinaryPartAbstractImage> convertedImageParts) {
+        HtmlWordMLConverter converter = new HtmlWordMLConverter(converted, drawingIds, convertedImageParts, imageResolver);
+        converter.bulletNumId = bulletNumId;
+        return converter;
+    }
+
+    /**
+     * 转换 root 的全部子节点，返回可直接加入正文的段落和表格；含有不支持的标记时返回 null。
+     */
+    public List<Object> convert(Element root) {
+        Conversion conversion = new Conversion();
+        List<Object> content = new ArrayList<>();
+        try {
+            conversion.blocks(root, content, 0);
+        } catch (UnsupportedMarkupException e) {
+            log.debug("富文本含有不支持直接转换的标记，回退到 AltChunk：{}", e.getMessage());
+            return null;
+        }
+        for (PackageChange change : conversion.packageChanges) {
+            change.apply();
+        }
+        return content;
+    }
+
+    private interface PackageChange {
+        void apply();
+    }
+
+    private static class UnsupportedMarkupException extends Exception {
+        UnsupportedMarkupException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private class Conversion {
+        private final List<PackageChange> packageChanges = new ArrayList<>();
+
+        private void blocks(Element container, List<Object> target, int flags) throws UnsupportedMarkupException {
+            P paragraph = null;
+            for (Node node : container.childNodes()) {
+                if (node instanceof TextNode) {
+                    String text = ((TextNode) node).text();
+                    if (Objects.isNull(paragraph) && StringUtils.isBlank(text)) {
+                        continue;
+                    }
+                    if (Objects.isNull(paragraph)) {
+                        paragraph = FACTORY.createP();
+                        target.add(paragraph);
+                    }
+                    text(paragraph, text, flags, 0);
+                } else if (node instanceof Element) {
+                    Element element = (Element) node;
+                    if (INLINE_TAGS.contains(element.tagName())) {
+                        if (Objects.isNull(paragraph)) {
+                            paragraph = FACTORY.createP();
+                            target.add(paragraph);
+                        }
+                        inline(element, paragraph, flags, 0);
+                    } else {
+                        paragraph = null;
+                        block(element, target, flags);
+                    }
+                }
+            }
+        }
+
+        private void block(Element element, List<Object> target, int flags) throws UnsupportedMarkupException {
+            String tag = element.tagName();
+            switch (tag) {
+                case "p":
+                    P paragraph = paragraph(element);
+                    inlineChildren(element, paragraph, flags, 0);
+                    target.add(paragraph);
+                    break;
+                case "h1":
+                case "h2":
+                case "h3":
+                case "h4":
+                case "h5":
+                case "h6":
+                    P heading = paragraph(element);
+                    inlineChildren(element, heading, flags | BOLD, HEADING_SIZES.get(tag));
+                    target.add(heading);
+                    break;
+                case "div":
+                    checkAttributes(element, NO_ATTRIBUTES);
+                    blocks(element, target, flags);
+                    break;
+                case "ul":
+                case "ol":
+                    list(element, target, 0, flags);
+                    break;
+                case "table":
+                    Tbl tbl = table(element);
+                    if (Objects.nonNull(tbl)) {
+                        target.add(tbl);
+                    }
+                    break;
+                default:
+                    throw new UnsupportedMarkupException(tag);
+            }
+        }
+
+        private void inline(Element element, ContentAccessor target, int flags, int size) throws UnsupportedMarkupException {
+            String tag = element.tagName();
+            switch (tag) {
+                case "b":
+                case "strong":
+                    flags |= BOLD;
+                    break;
+                case "i":
+                case "em":
+                    flags |= ITALIC;
+                    break;
+                case "u":
+                case "ins":
+                    flags |= UNDERLINE;
+                    break;
+                case "s":
+                case "strike":
+                case "del":
+                    flags |= STRIKE;
+                    break;
+                case "sup":
+                    flags |= SUPERSCRIPT;
+                    break;
+                case "sub":
+                    flags |= SUBSCRIPT;
+                    break;
+                case "span":
+                    break;
+                case "br":
+                    checkAttributes(element, NO_ATTRIBUTES);
+                    R br = FACTORY.createR();
+                    br.getContent().add(FACTORY.createBr());
+                    target.getContent().add(br);
+                    return;
+                case "img":
+                    image(element, target);
+                    return;
+                case "a":
+                    hyperlink(element, target, flags, size);
+                    return;
+                default:
+                    throw new UnsupportedMarkupException(tag);
+            }
+            checkAttributes(element, NO_ATTRIBUTES);
+            inlineChildren(element, target, flags, size);
+        }
+
+        private void inlineChildren(Element element, ContentAccessor target, int flags, int size) throws UnsupportedMarkupException {
+            for (Node node : element.childNodes()) {
+                if (node instanceof TextNode) {
+                    text(target, ((TextNode) node).text(), flags, size);
+                } else if (node instanceof Element) {
+                    Element child = (Element) node;
+                    if (!INLINE_TAGS.contains(child.tagName())) {
+                        throw new UnsupportedMarkupException(child.tagName());
+                    }
+                    inline(child, target, flags, size);
+                }
+            }
+        }
+
+        private void hyperlink(Element element, ContentAccessor target, int flags, int size) throws UnsupportedMarkupException {
+            checkAttributes(element, Set.of("href", "target", "rel"));
+            String href = element.attr("href");
+            if (StringUtils.isBlank(href)) {
+                inlineChildren(element, target, flags, size);
+                return;
+            }
+            P.Hyperlink hyperlink = FACTORY.createPHyperlink();
+            inlineChildren(element, hyperlink, flags | LINK, size);
+            target.getContent().add(target instanceof P ? FACTORY.createPHyperlink(hyperlink) : hyperlink);
+            packageChanges.add(() -> {
+                Relationship relationship = new org.docx4j.relationships.ObjectFactory().createRelationship();
+                relationship.setType(Namespaces.HYPERLINK);
+                relationship.setTarget(href);
+                relationship.setTargetMode("External");
+                wordMLPackage.getMainDocumentPart().getRelationshipsPart().addRelationship(relationship);
+                hyperlink.setId(relationship.getId());
+            });
+        }
+
+        private void image(Element element, ContentAccessor target) throws UnsupportedMarkupException {
+            checkAttributes(element, Set.of("src", "alt", "width", "height"));
+            String src = element.attr("src");
+            if (StringUtils.isBlank(src)) {
+                return;
+            }
+            String alt = element.attr("alt");
+            R run = FACTORY.createR();
+            target.getContent().add(run);
+            packageChanges.add(() -> {
+                try {
+                    BinaryPartAbstractImage imagePart = imageResolver.imagePart(wordMLPackage, imageParts, src);
+                    if (Objects.isNull(imagePart)) {
+                        log.error("插入图片出错！图片未登记:{}", src);
+                        return;
+                    }
+                    int id = drawingIds.getAndAdd(2);
+                    Inline inline = imagePart.createImageInline(null, alt, id, id + 1, false);
+                    Drawing drawing = FACTORY.createDrawing();
+                    drawing.getAnchorOrInline().add(inline);
+                    run.getContent().add(drawing);
+                } catch (Exception e) {
+                    log.error("插入图片出错！图片{} Error Message:{}", src, ExceptionUtils.getStackTrace(e));
+                }
+            });
+        }
+
+        private void list(Element list, List<Object> target, int level, int flags) throws UnsupportedMarkupException {
+            if (level > MAX_LIST_LEVEL) {
+                throw new UnsupportedMarkupException("list level " + level);
+            }
+            checkAttributes(list, NO_ATTRIBUTES);
+            boolean ordered = "ol".equals(list.tagName());
+            List<PPrBase.NumPr.NumId> numIds = new ArrayList<>();
+            for (Node node : list.childNodes()) {
+                if (node instanceof TextNode && ((TextNode) node).isBlank()) {
+                    continue;
+                }
+                if (!(node instanceof Element) || !"li".equals(((Element) node).tagName())) {
+                    throw new UnsupportedMarkupException(list.tagName() + " > " + node.nodeName());
+                }
+                listItem((Element) node, target, level, flags, numIds);
+            }
+            packageChanges.add(() -> {
+                BigInteger numId = ordered ? addNumbering(true) : bulletNumId();
+                numIds.forEach(id -> id.setVal(numId));
+            });
+        }
+
+        /**
+         * 列表项的第一个段落并入带编号的段落，其后的段落按列表缩进排列，嵌套列表级别加一。
+         */
+        private void listItem(Element item, List<Object> target, int level, int flags, List<PPrBase.NumPr.NumId> numIds) throws UnsupportedMarkupException {
+            checkAttributes(item, NO_ATTRIBUTES);
+            P numbered = FACTORY.createP();
+            PPr pPr = FACTORY.createPPr();
+            PPrBase.NumPr numPr = FACTORY.createPPrBaseNumPr();
+            PPrBase.NumPr.Ilvl ilvl = FACTORY.createPPrBaseNumPrIlvl();
+            ilvl.setVal(BigInteger.valueOf(level));
+            numPr.setIlvl(ilvl);
+            PPrBase.NumPr.NumId numId = FACTORY.createPPrBaseNumPrNumId();
+            numPr.setNumId(numId);
+            numIds.add(numId);
+            pPr.setNumPr(numPr);
+            numbered.setPPr(pPr);
+            target.add(numbered);
+
+            P current = numbered;
+            for (Node node : item.childNodes()) {
+                if (node instanceof TextNode) {
+                    if (Objects.isNull(current)) {
+                        if (((TextNode) node).isBlank()) {
+                            continue;
+                        }
+                        current = indentedParagraph(target, level);
+                    }
+                    text(current, ((TextNode) node).text(), flags, 0);
+                    continue;
+                }
+                if (!(node instanceof Element)) {
+                    continue;
+                }
+                Element child = (Element) node;
+                String tag = child.tagName();
+                if (INLINE_TAGS.contains(tag)) {
+                    if (Objects.isNull(current)) {
+                        current = indentedParagraph(target, level);
+                    }
+                    inline(child, current, flags, 0);
+                } else if ("ul".equals(tag) || "ol".equals(tag)) {
+                    list(child, target, level + 1, flags);
+                    current = null;
+                } else if ("p".equals(tag)) {
+                    checkAttributes(child, NO_ATTRIBUTES);
+                    P paragraph = numbered.getContent().isEmpty() && current == numbered ? numbered : indentedParagraph(target, level);
+                    inlineChildren(child, paragraph, flags, 0);
+                    current = null;
+                } else {
+                    throw new UnsupportedMarkupException("li > " + tag);
+                }
+            }
+        }
+
+        private P indentedParagraph(List<Object> target, int level) {
+            P paragraph = FACTORY.createP();
+            PPr pPr = FACTORY.createPPr();
+            PPrBase.Ind ind = FACTORY.createPPrBaseInd();
+            ind.setLeft(BigInteger.valueOf((long) LIST_INDENT * (level + 1)));
+            pPr.setInd(ind);
+            paragraph.setPPr(pPr);
+            target.add(paragraph);
+            return paragraph;
+        }
+
+        private Tbl table(Element table) throws UnsupportedMarkupException {
+            checkAttributes(table, TABLE_ATTRIBUTES);
+            checkStyles(table, TABLE_STYLES);
+            List<Element> rows = new ArrayList<>();
+            for (Element child : table.children()) {
+                switch (child.tagName()) {
+                    case "thead":
+                    case "tbody":
+                    case "tfoot":
+                        checkAttributes(child, NO_ATTRIBUTES);
+                        for (Element row : child.children()) {
+                            if (!"tr".equals(row.tagName())) {
+                                throw new UnsupportedMarkupException(child.tagName() + " > " + row.tagName());
+                            }
+                            rows.add(row);
+                        }
+                        break;
+                    case "tr":
+                        rows.add(child);
+                        break;
+                    case "colgroup":
+                        break;
+                    default:
+                        throw new UnsupportedMarkupException("table > " + child.tagName());
+                }
+            }
+            int columns = 0;
+            for (Element row : rows) {
+                int rowColumns = 0;
+                for (Element cell : row.children()) {
+                    rowColumns += span(cell);
+                }
+                columns = Math.max(columns, rowColumns);
+            }
+            if (columns == 0) {
+                return null;
+            }
+
+            int columnWidth = TABLE_WIDTH_TWIPS / columns;
+            Tbl tbl = createTable(columns, columnWidth);
+            for (Element row : rows) {
+                checkAttributes(row, NO_ATTRIBUTES);
+                Tr tr = FACTORY.createTr();
+                for (Element cell : row.children()) {
+                    if (!"td".equals(cell.tagName()) && !"th".equals(cell.tagName())) {
+                        throw new UnsupportedMarkupException("tr > " + cell.tagName());
+                    }
+                    checkAttributes(cell, CELL_ATTRIBUTES);
+                    if (StringUtils.isNotBlank(cell.attr("rowspan")) && !"1".equals(cell.attr("rowspan").trim())) {
+                        throw new UnsupportedMarkupException("rowspan");
+                    }
+                    tr.getContent().add(cell(cell, columnWidth));
+                }
+                tbl.getContent().add(tr);
+            }
+            return tbl;
+        }
+
+        private Tc cell(Element cell, int columnWidth) throws UnsupportedMarkupException {
+            int span = span(cell);
+            Tc tc = FACTORY.createTc();
+            TcPr tcPr = FACTORY.createTcPr();
+            TblWidth cellWidth = FACTORY.createTblWidth();
+            cellWidth.setType(TblWidth.TYPE_DXA);
+            cellWidth.setW(BigInteger.valueOf((long) columnWidth * span));
+            tcPr.setTcW(cellWidth);
+            if (span > 1) {
+                TcPrInner.GridSpan gridSpan = FACTORY.createTcPrInnerGridSpan();
+                gridSpan.setVal(BigInteger.valueOf(span));
+                tcPr.setGridSpan(gridSpan);
+            }
+            tc.setTcPr(tcPr);
+            blocks(cell, tc.getContent(), "th".equals(cell.tagName()) ? BOLD : 0);
+            // 单元格中至少要有一个段落
+            if (tc.getContent().isEmpty()) {
+                tc.getContent().add(FACTORY.createP());
+            }
+            return tc;
+        }
+
+        private int span(Element cell) throws UnsupportedMarkupException {
+            String colspan = cell.attr("colspan").trim();
+            if (colspan.isEmpty()) {
+                return 1;
+            }
+            try {
+                return Math.max(1, Integer.parseInt(colspan));
+            } catch (NumberFormatException e) {
+                throw new UnsupportedMarkupException("colspan " + colspan);
+            }
+        }
+
+        private P paragraph(Element element) throws UnsupportedMarkupException {
+            checkAttributes(element, PARAGRAPH_ATTRIBUTES);
+            String alignment = element.attr("align");
+            for (Map.Entry<String, String> declaration : styles(element).entrySet()) {
+                if (!"text-align".equals(declaration.getKey())) {
+                    throw new UnsupportedMarkupException("style " + declaration.getKey());
+                }
+                alignment = declaration.getValue();
+            }
+            P paragraph = FACTORY.createP();
+            if (StringUtils.isNotBlank(alignment)) {
+                JcEnumeration jcEnumeration = ALIGNMENTS.get(alignment.trim().toLowerCase(Locale.ROOT));
+                if (Objects.isNull(jcEnumeration)) {
+                    throw new UnsupportedMarkupException("text-align " + alignment);
+                }
+                Jc jc = FACTORY.createJc();
+                jc.setVal(jcEnumeration);
+                PPr pPr = FACTORY.createPPr();
+                pPr.setJc(jc);
+                paragraph.setPPr(pPr);
+            }
+            return paragraph;
+        }
+
+        private void text(ContentAccessor target, String text, int flags, int size) {
+            if (text.isEmpty()) {
+                return;
+            }
+            R run = FACTORY.createR();
+            if (flags != 0 || size > 0) {
+                run.setRPr(runProperties(flags, size));
+            }
+            Text t = FACTORY.createText();
+            t.setValue(text);
+            t.setSpace("preserve");
+            run.getContent().add(FACTORY.createRT(t));
+            target.getContent().add(run);
+        }
+    }
+
+    private static RPr runProperties(int flags, int size) {
+        RPr rPr = FACTORY.createRPr();
+        if ((flags & BOLD) != 0) {
+            rPr.setB(FACTORY.createBooleanDefaultTrue());
+        }
+        if ((flags & ITALIC) != 0) {
+            rPr.setI(FACTORY.createBooleanDefaultTrue());
+        }
+        if ((flags & (UNDERLINE | LINK)) != 0) {
+            U u = FACTORY.createU();
+            u.setVal(UnderlineEnumeration.SINGLE);
+            rPr.setU(u);
+        }
+        if ((flags & STRIKE) != 0) {
+            rPr.setStrike(FACTORY.createBooleanDefaultTrue());
+        }
+        if ((flags & (SUPERSCRIPT | SUBSCRIPT)) != 0) {
+            CTVerticalAlignRun vertAlign = FACTORY.createCTVerticalAlignRun();
+            vertAlign.setVal((flags & SUPERSCRIPT) != 0 ? STVerticalAlignRun.SUPERSCRIPT : STVerticalAlignRun.SUBSCRIPT);
+            rPr.setVertAlign(vertAlign);
+        }
+        if ((flags & LINK) != 0) {
+            Color color = FACTORY.createColor();
+            color.setVal(HYPERLINK_COLOR);
+            rPr.setColor(color);
+        }
+        if (size > 0) {
+            HpsMeasure sz = FACTORY.createHpsMeasure();
+            sz.setVal(BigInteger.valueOf(size));
+            rPr.setSz(sz);
+            HpsMeasure szCs = FACTORY.createHpsMeasure();
+            szCs.setVal(BigInteger.valueOf(size));
+            rPr.setSzCs(szCs);
+        }
+        return rPr;
+    }
+
+    private static Tbl createTable(int columns, int columnWidth) {
+        Tbl tbl = WordMLTables.createTable(TABLE_WIDTH_PCT, Collections.nCopies(columns, BigInteger.valueOf(columnWidth)));
+        CTTblLayoutType layout = FACTORY.createCTTblLayoutType();
+        layout.setType(STTblLayoutType.FIXED);
+        tbl.getTblPr().setTblLayout(layout);
+        return tbl;
+    }
+
+    private static void checkAttributes(Element element, Set<String> allowed) throws UnsupportedMarkupException {
+        for (Attribute attribute : element.attributes()) {
+            String key = attribute.getKey();
+            if (allowed.contains(key) || IGNORED_ATTRIBUTES.contains(key) || key.startsWith("data-")) {
+                continue;
+            }
+            if (("style".equals(key) || "class".equals(key)) && StringUtils.isBlank(attribute.getValue())) {
+                continue;
+            }
+            throw new UnsupportedMarkupException(element.tagName() + "[" + key + "]");
+        }
+    }
+
+    private static void checkStyles(Element element, Set<String> allowed) throws UnsupportedMarkupException {
+        for (String property : styles(element).keySet()) {
+            if (!allowed.contains(property)) {
+                throw new UnsupportedMarkupException("style " + property);
+            }
+        }
+    }
+
+    private static Map<String, String> styles(Element element) throws UnsupportedMarkupException {
+        String style = element.attr("style");
+        if (StringUtils.isBlank(style)) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> declarations = new LinkedHashMap<>();
+        for (String declaration : style.split(";")) {
+            if (StringUtils.isBlank(declaration)) {
+                continue;
+            }
+            int colon = declaration.indexOf(':');
+            if (colon < 0) {
+                throw new UnsupportedMarkupException("style " + declaration);
+            }
+            declarations.put(declaration.substring(0, colon).trim().toLowerCase(Locale.ROOT), declaration.substring(colon + 1).trim());
+        }
+        return declarations;
+    }
+
+    private BigInteger bulletNumId() {
+        if (Objects.isNull(bulletNumId)) {
+            bulletNumId = addNumbering(false);
+        }
+        return bulletNumId;
+    }
+
+    /**
+     * 新建一组 9 级的编号定义，有序列表每个列表各用一组，编号从 1 开始。
+     */
+    private BigInteger addNumbering(boolean ordered) {
+        try {
+            NumberingDefinitionsPart numberingPart = wordMLPackage.getMainDocumentPart().getNumberingDefinitionsPart();
+            if (Objects.isNull(numberingPart)) {
+                numberingPart = new NumberingDefinitionsPart();
+                numberingPart.setJaxbElement(FACTORY.createNumbering());
+                wordMLPackage.getMainDocumentPart().addTargetPart(numberingPart);
+            }
+            Numbering.AbstractNum abstractNum = FACTORY.createNumberingAbstractNum();
+            Numbering.AbstractNum.MultiLevelType multiLevelType = FACTORY.createNumberingAbstractNumMultiLevelType();
+            multiLevelType.setVal("hybridMultilevel");
+            abstractNum.setMultiLevelType(multiLevelType);
+            for (int level = 0; level <= MAX_LIST_LEVEL; level++) {
+                abstractNum.getLvl().add(level(level, ordered));
+            }
+            return numberingPart.addAbstractListNumberingDefinition(abstractNum).getNumId();
+        } catch (InvalidFormatException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Lvl level(int level, boolean ordered) {
+        Lvl lvl = FACTORY.createLvl();
+        lvl.setIlvl(BigInteger.valueOf(level));
+        Lvl.Start start = FACTORY.createLvlStart();
+        start.setVal(BigInteger.ONE);
+        lvl.setStart(start);
+        NumFmt numFmt = FACTORY.createNumFmt();
+        numFmt.setVal(ordered ? NumberFormat.DECIMAL : NumberFormat.BULLET);
+        lvl.setNumFmt(numFmt);
+        Lvl.LvlText lvlText = FACTORY.createLvlLvlText();
+        lvlText.setVal(ordered ? "%" + (level + 1) + "." : BULLETS[level % BULLETS.length]);
+        lvl.setLvlText(lvlText);
+        Jc jc = FACTORY.createJc();
+        jc.setVal(JcEnumeration.LEFT);
+        lvl.setLvlJc(jc);
+        PPr pPr = FACTORY.createPPr();
+        PPrBase.Ind ind = FACTORY.createPPrBaseInd();
+        ind.setLeft(BigInteger.valueOf((long) LIST_INDENT * (level + 1)));
+        ind.setHanging(BigInteger.valueOf(LIST_HANGING));
+        pPr.setInd(ind);
+        lvl.setPPr(pPr);
+        return lvl;
+    }
+}
@@ -0,0 +1,221 @@
+package com.ytdevops.file.service;
+
+import com.ytdevops.common.service.InMemoryImageResolver;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.docx4j.XmlUtils;
+import org.docx4j.jaxb.Context;
+import org.docx4j.model.listnumbering.ListNumberingDefinition;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPartAbstractImage;
+import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.NumberingDefinitionsPart;
+import org.docx4j.openpackaging.parts.relationships.Namespaces;
+import org.docx4j.openpackaging.parts.relationships.RelationshipsPart;
+import org.docx4j.relationships.Relationship;
+import org.docx4j.wml.Body;
+import org.docx4j.wml.Numbering;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 一段正文的 WordML（节点描述经 XHTML 导入的结果，或并行渲染的整棵子树），连同其中引用的图片、超链接和列表编号定义。
+ * 放入新文档时重新创建图片部件、超链接关系和编号定义，并把正文中的关系 id、编号 id、图片 id 替换为新的值。
+ */
+public class NodeFragment {
+    private static final Pattern RELATIONSHIP_REFERENCE = Pattern.compile("r:(?:embed|id|link)=\"([^\"]+)\"");
+    private static final Pattern NUMBERING_REFERENCE = Pattern.compile("<w:numId w:val=\"(\\d+)\"");
+    private static final Pattern STYLE_REFERENCE = Pattern.compile("<w:(?:pStyle|rStyle|tblStyle) w:val=\"([^\"]+)\"");
+    private static final Pattern REPLACEABLE_ID = Pattern.compile("(r:(?:embed|id|link)=\")([^\"]+)(\")|(<w:numId w:val=\")(\\d+)(\")|(<wp:docPr id=\")(\\d+)(\")");
+
+    private static final String BODY_START = "<w:body xmlns:w=\"" + Namespaces.NS_WORD12 + "\">";
+    private static final String BODY_END = "</w:body>";
+
+    /**
+     * 全部正文内容包在一个 w:body 中，放入文档时只需一次反序列化。
+     */
+    private final String body;
+    private final boolean empty;
+    private final boolean hasReplaceableIds;
+    private final Map<String, byte[]> images;
+    /**
+     * 关系 id -> 图片内容哈希，放入文档时与已有的相同图片共用部件。
+     */
+    private final Map<String, String> imageHashes;
+    private final Map<String, String> hyperlinks;
+    private final Map<String, String> numberings;
+    private final Set<String> styles;
+    private final long size;
+
+    private NodeFragment(String body, boolean empty, Map<String, byte[]> images, Map<String, String> hyperlinks,
+                         Map<String, String> numberings, Set<String> styles) {
+        this.body = body;
+        this.empty = empty;
+        this.hasReplaceableIds = !images.isEmpty() || !hyperlinks.isEmpty() || !numberings.isEmpty() || body.contains("<wp:docPr ");
+        this.images = images;
+        this.imageHashes = new HashMap<>(images.size() * 2);
+        images.forEach((id, image) -> imageHashes.put(id, DigestUtils.sha256Hex(image)));
+        this.hyperlinks = hyperlinks;
+        this.numberings = numberings;
+        this.styles = styles;
+        long bytes = body.length() * 2L;
+        for (byte[] image : images.values()) {
+            bytes += image.length;
+        }
+        for (String numbering : numberings.values()) {
+            bytes += numbering.length() * 2L;
+        }
+        this.size = bytes;
+    }
+
+    /**
+     * 按占用内存估算的大小，用于缓存淘汰。
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * 记录刚加入正文的内容；引用了图片和超链接以外的关系时无法复用，返回 null。
+     */
+    public static NodeFragment capture(WordprocessingMLPackage wordMLPackage, List<Object> bodyContents) {
+        MainDocumentPart mdp = wordMLPackage.getMainDocumentPart();
+        RelationshipsPart relationshipsPart = mdp.getRelationshipsPart();
+        StringBuilder body = new StringBuilder(BODY_START);
+        Map<String, byte[]> images = new HashMap<>();
+        Map<String, String> hyperlinks = new HashMap<>();
+        Map<String, String> numberings = new HashMap<>();
+        Set<String> styles = new HashSet<>();
+        for (Object bodyContent : bodyContents) {
+            String xml = XmlUtils.marshaltoString(bodyContent, true, false);
+            body.append(xml);
+
+            Matcher relationshipMatcher = RELATIONSHIP_REFERENCE.matcher(xml);
+            while (relationshipMatcher.find()) {
+                String id = relationshipMatcher.group(1);
+                Relationship relationship = relationshipsPart.getRelationshipByID(id);
+                if (Objects.isNull(relationship)) {
+                    return null;
+                }
+                if (Namespaces.HYPERLINK.equals(relationship.getType())) {
+                    hyperlinks.put(id, relationship.getTarget());
+                    continue;
+                }
+                Part part = relationshipsPart.getPart(relationship);
+                if (!Namespaces.IMAGE.equals(relationship.getType()) || !(part instanceof BinaryPart)) {
+                    return null;
+                }
+                images.put(id, ((BinaryPart) part).getBytes());
+            }
+
+            Matcher numberingMatcher = NUMBERING_REFERENCE.matcher(xml);
+            while (numberingMatcher.find()) {
+                String numId = numberingMatcher.group(1);
+                if (!numberings.containsKey(numId)) {
+                    Numbering.AbstractNum abstractNum = findAbstractNum(mdp.getNumberingDefinitionsPart(), numId);
+                    if (Objects.isNull(abstractNum)) {
+                        return null;
+                    }
+                    numberings.put(numId, XmlUtils.marshaltoString(abstractNum, true, false, Context.jc, Namespaces.NS_WORD12,
+                            "abstractNum", Numbering.AbstractNum.class));
+                }
+            }
+
+            Matcher styleMatcher = STYLE_REFERENCE.matcher(xml);
+            while (styleMatcher.find()) {
+                styles.add(styleMatcher.group(1));
+            }
+        }
+        body.append(BODY_END);
+        return new NodeFragment(body.toString(), bodyContents.isEmpty(), images, hyperlinks, numberings, styles);
+    }
+
+    /**
+     * 在 wordMLPackage 中重建引用的部件和编号定义，返回可直接加入正文的内容。
+     *
+     * @param imageParts 图片内容哈希 -> wordMLPackage 中已有的图片部件，新建的部件也记入其中
+     */
+    public List<Object> replay(WordprocessingMLPackage wordMLPackage, AtomicInteger drawingIds,
+                               Map<String, BinaryPartAbstractImage> imageParts) throws Exception {
+        if (empty) {
+            return Collections.emptyList();
+        }
+        MainDocumentPart mdp = wordMLPackage.getMainDocumentPart();
+        Map<String, String> relationshipIds = new HashMap<>();
+        for (Map.Entry<String, byte[]> image : images.entrySet()) {
+            String contentHash = imageHashes.get(image.getKey());
+            BinaryPartAbstractImage imagePart = imageParts.get(contentHash);
+            if (Objects.isNull(imagePart)) {
+                imagePart = InMemoryImageResolver.createImagePart(wordMLPackage, image.getValue());
+                imageParts.put(contentHash, imagePart);
+            }
+            relationshipIds.put(image.getKey(), imagePart.getSourceRelationships().get(0).getId());
+        }
+        for (Map.Entry<String, String> hyperlink : hyperlinks.entrySet()) {
+            Relationship relationship = new org.docx4j.relationships.ObjectFactory().createRelationship();
+            relationship.setType(Namespaces.HYPERLINK);
+            relationship.setTarget(hyperlink.getValue());
+            relationship.setTargetMode("External");
+            mdp.getRelationshipsPart().addRelationship(relationship);
+            relationshipIds.put(hyperlink.getKey(), relationship.getId());
+        }
+        Map<String, String> numIds = new HashMap<>();
+        for (Map.Entry<String, String> numbering : numberings.entrySet()) {
+            Numbering.AbstractNum abstractNum = (Numbering.AbstractNum) XmlUtils.unmarshalString(numbering.getValue(), Context.jc, Numbering.AbstractNum.class);
+            // 相同 nsid 的列表会被 Word 合并编号
+            abstractNum.setNsid(null);
+            numIds.put(numbering.getKey(), addNumbering(wordMLPackage, abstractNum).toString());
+        }
+        for (String style : styles) {
+            mdp.getPropertyResolver().activateStyle(style);
+        }
+
+        String xml = hasReplaceableIds ? replaceIds(relationshipIds, numIds, drawingIds) : body;
+        Body replayed = (Body) XmlUtils.unwrap(XmlUtils.unmarshalString(xml, Context.jc, Body.class));
+        return replayed.getContent();
+    }
+
+    private String replaceIds(Map<String, String> relationshipIds, Map<String, String> numIds, AtomicInteger drawingIds) {
+        Matcher matcher = REPLACEABLE_ID.matcher(body);
+        StringBuilder xml = new StringBuilder(body.length());
+        while (matcher.find()) {
+            String replacement;
+            if (Objects.nonNull(matcher.group(2))) {
+                replacement = matcher.group(1) + relationshipIds.getOrDefault(matcher.group(2), matcher.group(2)) + matcher.group(3);
+            } else if (Objects.nonNull(matcher.group(5))) {
+                replacement = matcher.group(4) + numIds.getOrDefault(matcher.group(5), matcher.group(5)) + matcher.group(6);
+            } else {
+                replacement = matcher.group(7) + drawingIds.getAndIncrement() + matcher.group(9);
+            }
+            matcher.appendReplacement(xml, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(xml);
+        return xml.toString();
+    }
+
+    private static Numbering.AbstractNum findAbstractNum(NumberingDefinitionsPart numberingPart, String numId) {
+        if (Objects.isNull(numberingPart)) {
+            return null;
+        }
+        ListNumberingDefinition definition = numberingPart.getInstanceListDefinitions().get(numId);
+        if (Objects.isNull(definition) || Objects.isNull(definition.getAbstractListDefinition())) {
+            return null;
+        }
+        return definition.getAbstractListDefinition().getAbstractNumNode();
+    }
+
+    private static BigInteger addNumbering(WordprocessingMLPackage wordMLPackage, Numbering.AbstractNum abstractNum) throws Exception {
+        NumberingDefinitionsPart numberingPart = wordMLPackage.getMainDocumentPart().getNumberingDefinitionsPart();
+        if (Objects.isNull(numberingPart)) {
+            numberingPart = new NumberingDefinitionsPart();
+            numberingPart.setJaxbElement(Context.getWmlObjectFactory().createNumbering());
+            wordMLPackage.getMainDocumentPart().addTargetPart(numberingPart);
+        }
+        return numberingPart.addAbstractListNumberingDefinition(abstractNum).getNumId();
+    }
+}
@@ -0,0 +1,91 @@
+package com.ytdevops.file.service;
+
+import com.ytdevops.file.FragmentCacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 节点描述导入结果的内存缓存，只缓存不能直接生成 WordML、需要经过 XHTML 导入的描述（直接生成比反序列化缓存的片段更快）。
+ * 键由节点 uuid、更新时间、描述内容和其中图片的内容哈希组成，任何一项变化都会得到新的键，旧片段随最近最少使用淘汰。
+ */
+@Slf4j
+@Service
+public class NodeFragmentCache {
+    private final FragmentCacheProperties fragmentCacheProperties;
+    private final LinkedHashMap<String, NodeFragment> fragments = new LinkedHashMap<>(16, 0.75F, true);
+    private long memoryBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter rejected;
+    private final DistributionSummary hitRatio;
+
+    public NodeFragmentCache(FragmentCacheProperties fragmentCacheProperties, MeterRegistry meterRegistry) {
+        this.fragmentCacheProperties = fragmentCacheProperties;
+        this.hits = meterRegistry.counter("export.fragment.cache.hits");
+        this.misses = meterRegistry.counter("export.fragment.cache.misses");
+        this.evictions = meterRegistry.counter("export.fragment.cache.evictions");
+        this.rejected = meterRegistry.counter("export.fragment.cache.rejected");
+        this.hitRatio = DistributionSummary.builder("export.fragment.cache.hit.ratio")
+                .description("每次导出中需要 XHTML 导入的描述复用缓存片段的比例")
+                .register(meterRegistry);
+        Gauge.builder("export.fragment.cache.memory.bytes", this, cache -> cache.memoryBytes).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return fragmentCacheProperties.isEnabled();
+    }
+
+    public synchronized NodeFragment get(String key) {
+        NodeFragment fragment = fragments.get(key);
+        if (fragment == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return fragment;
+    }
+
+    /**
+     * 放入片段，超出预算时淘汰最近最少使用的片段；单个片段超过整个预算时不缓存，计入 rejected 而不是淘汰。
+     */
+    public synchronized void put(String key, NodeFragment fragment) {
+        if (fragment.getSize() > fragmentCacheProperties.getMemoryBudget().toBytes()) {
+            rejected.increment();
+            return;
+        }
+        NodeFragment previous = fragments.put(key, fragment);
+        if (previous != null) {
+            memoryBytes -= previous.getSize();
+        }
+        memoryBytes += fragment.getSize();
+
+        Iterator<Map.Entry<String, NodeFragment>> iterator = fragments.entrySet().iterator();
+        while (memoryBytes > fragmentCacheProperties.getMemoryBudget().toBytes() && iterator.hasNext()) {
+            Map.Entry<String, NodeFragment> eldest = iterator.next();
+            iterator.remove();
+            memoryBytes -= eldest.getValue().getSize();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * 记录一次导出的片段命中率。
+     */
+    public void recordExport(int reused, int total) {
+        if (total == 0) {
+            return;
+        }
+        hitRatio.record((double) reused / total);
+        log.debug("描述片段缓存命中 {}/{}，命中率 {}%", reused, total, reused * 100 / total);
+    }
+}
@@ -0,0 +1,84 @@
+package com.ytdevops.file.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.ytdevops.file.FileDetailDto;
+import lombok.Getter;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用 Jackson 流式 API 逐个读取请求体中的 data 节点，完整节点写入磁盘，内存中只保留建树所需的骨架
+ * （id、parentid、index、topic、layer），渲染时再按骨架从磁盘读回完整节点。
+ */
+public class SpooledFileDetail implements Closeable {
+    @Getter
+    private final List<FileDetailDto.Data> skeletons = new ArrayList<>();
+    private final Map<FileDetailDto.Data, long[]> positions = new IdentityHashMap<>();
+    private final ObjectReader dataReader;
+    private RandomAccessFile spool;
+
+    private SpooledFileDetail(ObjectMapper objectMapper) {
+        this.dataReader = objectMapper.readerFor(FileDetailDto.Data.class);
+    }
+
+    public static SpooledFileDetail spool(InputStream inputStream, File spoolFile, ObjectMapper objectMapper) throws IOException {
+        SpooledFileDetail spooled = new SpooledFileDetail(objectMapper);
+        ObjectWriter dataWriter = objectMapper.writerFor(FileDetailDto.Data.class);
+        try (JsonParser parser = objectMapper.getFactory().createParser(inputStream);
+             OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(spoolFile))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("文件内容格式错误！");
+            }
+            long offset = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (!"data".equals(fieldName) || value != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    FileDetailDto.Data data = spooled.dataReader.readValue(parser);
+                    byte[] bytes = dataWriter.writeValueAsBytes(data);
+                    outputStream.write(bytes);
+                    FileDetailDto.Data skeleton = new FileDetailDto.Data()
+                            .setId(data.getId())
+                            .setParentId(data.getParentId())
+                            .setIndex(data.getIndex())
+                            .setTopic(data.getTopic())
+                            .setLayer(data.getLayer())
+                            .setContent(null)
+                            .setAttachments(null);
+                    spooled.skeletons.add(skeleton);
+                    spooled.positions.put(skeleton, new long[]{offset, bytes.length});
+                    offset += bytes.length;
+                }
+            }
+        }
+        spooled.spool = new RandomAccessFile(spoolFile, "r");
+        return spooled;
+    }
+
+    public FileDetailDto.Data load(FileDetailDto.Data skeleton) throws IOException {
+        long[] position = positions.get(skeleton);
+        byte[] bytes = new byte[(int) position[1]];
+        spool.seek(position[0]);
+        spool.readFully(bytes);
+        return dataReader.readValue(bytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (spool != null) {
+            spool.close();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.ytdevops.file.service;
+
+import org.apache.commons.io.IOUtils;
+import org.docx4j.XmlUtils;
+import org.docx4j.jaxb.Context;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.NumberingDefinitionsPart;
+import org.docx4j.openpackaging.parts.relationships.Namespaces;
+import org.docx4j.wml.Numbering;
+import org.docx4j.wml.P;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 流式导出时正文、图片和列表编号不留在 docx4j 对象树中：正文逐段序列化后追加到磁盘文件，图片数据写到磁盘后清空，
+ * 列表编号定义序列化到磁盘后从编号部件中移除。
+ * 保存时先保存只含一个占位段落的包，再在复制 zip 的过程中把占位段落换成正文文件、把图片数据和编号定义写回。
+ */
+class StreamingDocumentAssembler implements Closeable {
+    private static final String BODY_PLACEHOLDER = "EXPORT-S-STREAMING-BODY";
+    private static final String DOCUMENT_ENTRY = "word/document.xml";
+    private static final String NUMBERING_ENTRY = "word/numbering.xml";
+    private static final Pattern NAMESPACE_DECLARATION = Pattern.compile("\\s+xmlns:\\w+=\"[^\"]*\"");
+    private final File workDir;
+    private final File bodyFile;
+    private final Writer bodyWriter;
+    private final File abstractNumFile;
+    private final Writer abstractNumWriter;
+    private final File numFile;
+    private final Writer numWriter;
+    private final Map<String, File> spooledMedia = new HashMap<>();
+    private final Set<String> rootNamespaces = new HashSet<>();
+
+    StreamingDocumentAssembler(File workDir) throws IOException {
+        this.workDir = workDir;
+        this.bodyFile = new File(workDir, "body.xml");
+        this.bodyWriter = openWriter(bodyFile);
+        this.abstractNumFile = new File(workDir, "abstract-num.xml");
+        this.abstractNumWriter = openWriter(abstractNumFile);
+        this.numFile = new File(workDir, "num.xml");
+        this.numWriter = openWriter(numFile);
+        // 每个片段都会带上全部命名空间声明，而 document.xml 根节点已经声明过同样的一组，写入时去掉以免正文膨胀
+        Matcher matcher = NAMESPACE_DECLARATION.matcher(XmlUtils.marshaltoString(new P(), true, false));
+        while (matcher.find()) {
+            rootNamespaces.add(matcher.group());
+        }
+    }
+
+    private static Writer openWriter(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+    }
+
+    void append(Object content) throws IOException {
+        writeFragment(bodyWriter, XmlUtils.marshaltoString(content, true, false));
+    }
+
+    private void writeFragment(Writer writer, String xml) throws IOException {
+        int startTagEnd = xml.indexOf('>');
+        String startTag = NAMESPACE_DECLARATION.matcher(xml.substring(0, startTagEnd))
+                .replaceAll(match -> rootNamespaces.contains(match.group()) ? "" : Matcher.quoteReplacement(match.group()));
+        writer.write(startTag);
+        writer.write(xml, startTagEnd, xml.length() - startTagEnd);
+    }
+
+    /**
+     * 正文写入磁盘，新增的图片数据和列表编号定义转存到磁盘并从包中清空。
+     */
+    void flush(WordprocessingMLPackage wordMLPackage) throws IOException {
+        bodyWriter.flush();
+        NumberingDefinitionsPart numberingPart = wordMLPackage.getMainDocumentPart().getNumberingDefinitionsPart();
+        if (Objects.nonNull(numberingPart)) {
+            flushNumbering(numberingPart);
+        }
+        for (Part part : wordMLPackage.getParts().getParts().values()) {
+            if (!(part instanceof BinaryPart) || Objects.nonNull(((BinaryPart) part).getExternalTarget())) {
+                continue;
+            }
+            String entryName = part.getPartName().getName().substring(1);
+            if (spooledMedia.containsKey(entryName)) {
+                continue;
+            }
+            File media = new File(workDir, "media-" + spooledMedia.size());
+            try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(media))) {
+                ((BinaryPart) part).writeDataToOutputStream(outputStream);
+            }
+            ((BinaryPart) part).setBinaryData(new byte[0]);
+            spooledMedia.put(entryName, media);
+        }
+    }
+
+    /**
+     * XHTML 导入时每个列表都会新建一组编号定义，节点多时编号部件会占满堆。
+     * 导入器按定义表的大小分配新编号，所以表中保留编号、只把值置空，已写入磁盘的定义对象即可回收。
+     */
+    private void flushNumbering(NumberingDefinitionsPart numberingPart) throws IOException {
+        Numbering numbering = numberingPart.getJaxbElement();
+        for (Numbering.AbstractNum abstractNum : numbering.getAbstractNum()) {
+            writeFragment(abstractNumWriter, XmlUtils.marshaltoString(abstractNum, true, false, Context.jc,
+                    Namespaces.NS_WORD12, "abstractNum", Numbering.AbstractNum.class));
+            numberingPart.getAbstractListDefinitions().put(abstractNum.getAbstractNumId().toString(), null);
+        }
+        for (Numbering.Num num : numbering.getNum()) {
+            writeFragment(numWriter, XmlUtils.marshaltoString(num, true, false, Context.jc,
+                    Namespaces.NS_WORD12, "num", Numbering.Num.class));
+            numberingPart.getInstanceListDefinitions().put(num.getNumId().toString(), null);
+        }
+        numbering.getAbstractNum().clear();
+        numbering.getNum().clear();
+        abstractNumWriter.flush();
+        numWriter.flush();
+    }
+
+    void save(WordprocessingMLPackage wordMLPackage, OutputStream outputStream) throws IOException, Docx4JException {
+        flush(wordMLPackage);
+        close();
+        wordMLPackage.getMainDocumentPart().addParagraphOfText(BODY_PLACEHOLDER);
+        File packageFile = new File(workDir, "package.docx");
+        wordMLPackage.save(packageFile);
+
+        ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream);
+        try (ZipInputStream zipInputStream = new ZipInputStream(new BufferedInputStream(new FileInputStream(packageFile)))) {
+            ZipEntry entry;
+            while ((entry = zipInputStream.getNextEntry()) != null) {
+                zipOutputStream.putNextEntry(new ZipEntry(entry.getName()));
+                File media = spooledMedia.get(entry.getName());
+                if (DOCUMENT_ENTRY.equals(entry.getName())) {
+                    writeDocument(zipInputStream, zipOutputStream);
+                } else if (NUMBERING_ENTRY.equals(entry.getName())) {
+                    writeNumbering(zipInputStream, zipOutputStream);
+                } else if (Objects.nonNull(media)) {
+                    Files.copy(media.toPath(), zipOutputStream);
+                } else {
+                    IOUtils.copy(zipInputStream, zipOutputStream);
+                }
+                zipOutputStream.closeEntry();
+            }
+        }
+        zipOutputStream.finish();
+    }
+
+    private void writeDocument(InputStream document, OutputStream outputStream) throws IOException {
+        String xml = IOUtils.toString(document, StandardCharsets.UTF_8);
+        int marker = xml.indexOf(BODY_PLACEHOLDER);
+        int start = Math.max(xml.lastIndexOf("<w:p>", marker), xml.lastIndexOf("<w:p ", marker));
+        int end = xml.indexOf("</w:p>", marker) + "</w:p>".length();
+        if (marker < 0 || start < 0) {
+            throw new IOException("文档正文占位段落缺失！");
+        }
+        outputStream.write(xml.substring(0, start).getBytes(StandardCharsets.UTF_8));
+        Files.copy(bodyFile.toPath(), outputStream);
+        outputStream.write(xml.substring(end).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 编号部件中 abstractNum 必须都在 num 之前。
+     */
+    private void writeNumbering(InputStream numbering, OutputStream outputStream) throws IOException {
+        String xml = IOUtils.toString(numbering, StandardCharsets.UTF_8);
+        if (!xml.contains("</w:numbering>") && xml.trim().endsWith("/>")) {
+            // 定义全部转存后编号部件为空，根节点会被写成自闭合标签
+            xml = xml.substring(0, xml.lastIndexOf("/>")) + "></w:numbering>";
+        }
+        int numStart = xml.indexOf("<w:num ");
+        int numEnd = xml.indexOf("<w:numIdMacAtCleanup");
+        if (numEnd < 0) {
+            numEnd = xml.lastIndexOf("</w:numbering>");
+        }
+        if (numEnd < 0) {
+            throw new IOException("列表编号部件格式错误！");
+        }
+        if (numStart < 0) {
+            numStart = numEnd;
+        }
+        outputStream.write(xml.substring(0, numStart).getBytes(StandardCharsets.UTF_8));
+        Files.copy(abstractNumFile.toPath(), outputStream);
+        outputStream.write(xml.substring(numStart, numEnd).getBytes(StandardCharsets.UTF_8));
+        Files.copy(numFile.toPath(), outputStream);
+        outputStream.write(xml.substring(numEnd).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void close() throws IOException {
+        bodyWriter.close();
+        abstractNumWriter.close();
+        numWriter.close();
+    }
+}
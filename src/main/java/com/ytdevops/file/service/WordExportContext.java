@@ -0,0 +1,149 @@
+package com.ytdevops.file.service;
+
+import com.ytdevops.common.ExportProgressListener;
+import com.ytdevops.common.ExportTrace;
+import com.ytdevops.common.service.InMemoryImageResolver;
+import com.ytdevops.resource.ResourceContent;
+import com.ytdevops.resource.service.SharedDownloads;
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.docx4j.XmlUtils;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.JaxbXmlPart;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPartAbstractImage;
+import org.docx4j.openpackaging.parts.WordprocessingML.EndnotesPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.FooterPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.FootnotesPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.HeaderPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 单次文件导出的状态，导出服务本身不持有任何导出相关的状态。
+ */
+@Data
+@Accessors(chain = true)
+public class WordExportContext {
+    /**
+     * XHTML 导入的图片固定使用 docPr id 0 和 1。
+     */
+    private static final int FIRST_DRAWING_ID = 2;
+    private static final Pattern DRAWING_ID = Pattern.compile("<(?:wp:docPr|pic:cNvPr) id=\"(\\d+)\"");
+
+    private File tmpDir;
+    private ExportProgressListener progressListener = ExportProgressListener.NONE;
+    private ExportTrace trace = ExportTrace.NONE;
+    /**
+     * 批量导出时多个文件共用的下载，为空表示单独下载。
+     */
+    private SharedDownloads sharedDownloads;
+    private Map<String, ResourceContent> prefetchedResources = Collections.emptyMap();
+    /**
+     * 描述和架构图中的图片在这里登记，并行渲染的子树共用；需要在 setWordMLPackage 之前设置。
+     */
+    private InMemoryImageResolver imageResolver = new InMemoryImageResolver();
+    private Map<String, CompletableFuture<byte[]>> renderedDiagrams = Collections.emptyMap();
+    private WordprocessingMLPackage wordMLPackage;
+    private MainDocumentPart mdp;
+    /**
+     * 流式导出时正文直接写入磁盘，为空表示普通导出。
+     */
+    private StreamingDocumentAssembler assembler;
+    /**
+     * 字段 id 到选项值/选项名映射的缓存，生成字段表格时使用。
+     */
+    private Map<String, Map<String, String>> fieldLabels = new HashMap<>();
+    /**
+     * 直接生成和合并片段的图片使用的 docPr id，设置文档包时从包中已有的最大 id 之后开始。
+     */
+    private AtomicInteger drawingIds = new AtomicInteger(FIRST_DRAWING_ID);
+    /**
+     * 图片内容哈希 -> 文档包中的图片部件，直接生成和合并片段时共用，内容相同的图片只保存一份。
+     */
+    private Map<String, BinaryPartAbstractImage> imageParts = new HashMap<>();
+    private HtmlWordMLConverter wordMLConverter;
+    /**
+     * 正在记录片段时，加入正文的内容同时记入这里。
+     */
+    private List<Object> recordedContents;
+    /**
+     * 图片链接到内容哈希，计算片段缓存键时使用。
+     */
+    private Map<String, String> resourceHashes = new HashMap<>();
+    private int fragmentLookups;
+    private int fragmentHits;
+    /**
+     * 正文中是否有待转换的 AltChunk，没有时无需再转换（转换时会复制整个文档包）。
+     */
+    private boolean altChunksAdded;
+    /**
+     * 并行渲染的子树：XHTML 立即导入，渲染完后整个正文作为片段合并到最终的文档包。
+     */
+    private boolean renderingSubtree;
+
+    public WordExportContext setWordMLPackage(WordprocessingMLPackage wordMLPackage) {
+        this.wordMLPackage = wordMLPackage;
+        this.mdp = wordMLPackage.getMainDocumentPart();
+        this.imageParts = new HashMap<>();
+        this.drawingIds = new AtomicInteger(Math.max(FIRST_DRAWING_ID, maxDrawingId(wordMLPackage) + 1));
+        this.wordMLConverter = new HtmlWordMLConverter(wordMLPackage, drawingIds, imageParts, imageResolver);
+        return this;
+    }
+
+    /**
+     * 换成当前文档包转换 AltChunk 后得到的副本：图片部件按部件名对应到副本中，已用的图片 id 和项目符号列表沿用，
+     * 只扫描正文中从 convertedFrom 开始新导入的内容。
+     */
+    public WordExportContext setConvertedPackage(WordprocessingMLPackage converted, int convertedFrom) {
+        Map<String, BinaryPartAbstractImage> convertedImageParts = new HashMap<>(imageParts.size() * 2);
+        imageParts.forEach((contentHash, imagePart) -> {
+            BinaryPartAbstractImage convertedPart = InMemoryImageResolver.copiedImagePart(imagePart, converted);
+            if (Objects.nonNull(convertedPart)) {
+                convertedImageParts.put(contentHash, convertedPart);
+            }
+        });
+        this.wordMLPackage = converted;
+        this.mdp = converted.getMainDocumentPart();
+        this.imageParts = convertedImageParts;
+        List<Object> body = mdp.getContent();
+        for (Object content : body.subList(Math.min(convertedFrom, body.size()), body.size())) {
+            drawingIds.accumulateAndGet(maxDrawingId(content) + 1, Math::max);
+        }
+        this.wordMLConverter = wordMLConverter.withPackage(converted, convertedImageParts);
+        return this;
+    }
+
+    /**
+     * 正文、页眉页脚和脚注尾注中已有图片的最大 id，没有图片时返回 -1。
+     */
+    private static int maxDrawingId(WordprocessingMLPackage wordMLPackage) {
+        int max = -1;
+        for (Part part : wordMLPackage.getParts().getParts().values()) {
+            if (part instanceof MainDocumentPart || part instanceof HeaderPart || part instanceof FooterPart
+                    || part instanceof FootnotesPart || part instanceof EndnotesPart) {
+                max = Math.max(max, maxDrawingId(((JaxbXmlPart<?>) part).getJaxbElement()));
+            }
+        }
+        return max;
+    }
+
+    private static int maxDrawingId(Object jaxbElement) {
+        int max = -1;
+        Matcher matcher = DRAWING_ID.matcher(XmlUtils.marshaltoString(jaxbElement, true, false));
+        while (matcher.find()) {
+            max = Math.max(max, Integer.parseInt(matcher.group(1)));
+        }
+        return max;
+    }
+}
@@ -1,108 +1,503 @@
 package com.ytdevops.file.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ytdevops.common.ExportPhase;
+import com.ytdevops.common.ExportProgressListener;
+import com.ytdevops.common.ExportTrace;
+import com.ytdevops.common.service.ExportResultCache;
+import com.ytdevops.common.service.ExportTracer;
+import com.ytdevops.common.service.NativePdfRenderer;
+import com.ytdevops.common.service.WordPackagePool;
+import com.ytdevops.file.AltChunkConversionMode;
+import com.ytdevops.file.ContentValueBinder;
 import com.ytdevops.file.FieldType;
 import com.ytdevops.file.FileDetailDto;
+import com.ytdevops.file.ParallelRenderProperties;
+import com.ytdevops.file.StreamingExportProperties;
+import com.ytdevops.resource.ResourceContent;
+import com.ytdevops.resource.service.ImageOptimizer;
+import com.ytdevops.resource.service.ResourcePrefetchService;
+import com.ytdevops.resource.service.SharedDownloads;
+import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.batik.transcoder.TranscoderInput;
-import org.apache.batik.transcoder.TranscoderOutput;
-import org.apache.batik.transcoder.image.PNGTranscoder;
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.docx4j.XmlUtils;
+import org.docx4j.convert.in.xhtml.XHTMLImporterImpl;
 import org.docx4j.openpackaging.exceptions.Docx4JException;
 import org.docx4j.openpackaging.exceptions.InvalidFormatException;
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.Part;
 import org.docx4j.openpackaging.parts.WordprocessingML.AltChunkType;
+import org.docx4j.openpackaging.parts.WordprocessingML.AlternativeFormatInputPart;
 import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
+import org.docx4j.wml.CTAltChunk;
+import org.docx4j.wml.Tbl;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.context.annotation.RequestScope;
 import org.w3c.tidy.Tidy;
 
+import javax.annotation.PreDestroy;
 import java.io.*;
-import java.net.URL;
-import java.net.URLConnection;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Consumer;
 
 @Slf4j
 @Data
 @Service
-@RequestScope
 public class WordExportService {
-    private final static Integer KNOWLEDGE_UPLOAD_CONNECTION_TIMEOUT = 5 * 1000;
     private static final String HTML_TEMPLATE = "<!DOCTYPE html><html><head><meta charset=\"UTF-8\"></head><body></body></html>";
     private static final String BASE64_DEFAULT_HEAD = "data:image/png;base64,";
     private final static String FILE_EXPORT_OSS_FOLDER = "fileWordExport";
     private final static Integer MAX_HEADING_LEVEL = 9;
-    private final static String SVG_HTML_HEAD = "<!DOCTYPE svg [<!ENTITY nbsp \"&#160;\">]>";
-    private ThreadLocal<String> tmpDir = new ThreadLocal<>();
-    private WordprocessingMLPackage wordMLPackage = WordprocessingMLPackage.createPackage();
-    private MainDocumentPart mdp = wordMLPackage.getMainDocumentPart();
+    private static final String BASE64_MARKER = "base64,";
+    private static final int DATA_URL_HEAD_MAX_LENGTH = 128;
+    private static final String ROOT_ID = "root";
+    private final ResourcePrefetchService resourcePrefetchService;
+    private final ImageOptimizer imageOptimizer;
+    private final DiagramRasterizer diagramRasterizer;
+    private final WordPackagePool wordPackagePool;
+    private final NativePdfRenderer nativePdfRenderer;
+    private final ObjectMapper objectMapper;
+    private final StreamingExportProperties streamingExportProperties;
+    private final ParallelRenderProperties parallelRenderProperties;
+    private final ForkJoinPool subtreeRenderPool;
+    private final ExportResultCache exportResultCache;
+    private final NodeFragmentCache nodeFragmentCache;
+    private final ExportTracer exportTracer;
+    private final FieldTableBuilder fieldTableBuilder = new FieldTableBuilder();
+    @Value("${export.word.alt-chunk-conversion-mode:SINGLE_PASS}")
+    private AltChunkConversionMode altChunkConversionMode = AltChunkConversionMode.SINGLE_PASS;
+    @Value("${export.word.direct-html-conversion:true}")
+    private boolean directHtmlConversion = true;
 
-    public WordExportService() throws InvalidFormatException {
+    public WordExportService(ResourcePrefetchService resourcePrefetchService, ImageOptimizer imageOptimizer,
+                             DiagramRasterizer diagramRasterizer, WordPackagePool wordPackagePool, NativePdfRenderer nativePdfRenderer,
+                             ObjectMapper objectMapper, StreamingExportProperties streamingExportProperties,
+                             ParallelRenderProperties parallelRenderProperties, ExportResultCache exportResultCache, NodeFragmentCache nodeFragmentCache,
+                             ExportTracer exportTracer) {
+        this.resourcePrefetchService = resourcePrefetchService;
+        this.imageOptimizer = imageOptimizer;
+        this.diagramRasterizer = diagramRasterizer;
+        this.wordPackagePool = wordPackagePool;
+        this.nativePdfRenderer = nativePdfRenderer;
+        this.objectMapper = objectMapper;
+        this.streamingExportProperties = streamingExportProperties;
+        this.parallelRenderProperties = parallelRenderProperties;
+        this.subtreeRenderPool = new ForkJoinPool(Math.max(1, parallelRenderProperties.getThreads()), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("subtree-render-" + thread.getPoolIndex());
+            // 默认的工作线程使用系统类加载器，打包运行时找不到 JAXB 和 docx4j 的类
+            thread.setContextClassLoader(WordExportService.class.getClassLoader());
+            return thread;
+        }, null, false);
+        this.exportResultCache = exportResultCache;
+        this.nodeFragmentCache = nodeFragmentCache;
+        this.exportTracer = exportTracer;
     }
 
+    public void exportWord(FileDetailDto fileDetailDto, OutputStream outputStream) {
+        exportWord(fileDetailDto, outputStream, ExportProgressListener.NONE);
+    }
+
+    /**
+     * 内容相同的文件直接使用缓存的导出结果。
+     */
+    @SneakyThrows
+    public void exportWord(FileDetailDto fileDetailDto, OutputStream outputStream, ExportProgressListener progressListener) {
+        exportResultCache.export(ExportResultCache.FILE_WORD, fileDetailDto, outputStream,
+                resultStream -> buildWord(fileDetailDto, resultStream, progressListener, null));
+    }
+
+    /**
+     * 批量导出使用，图片和架构图在 sharedDownloads 中与同批的其他文档共用。
+     */
     @SneakyThrows
-    public byte[] exportWord(FileDetailDto fileDetailDto) {
-        tmpDir.set("/tmp/" + UUID.randomUUID());
+    public void exportWord(FileDetailDto fileDetailDto, OutputStream outputStream, SharedDownloads sharedDownloads) {
+        exportResultCache.export(ExportResultCache.FILE_WORD, fileDetailDto, outputStream,
+                resultStream -> buildWord(fileDetailDto, resultStream, ExportProgressListener.NONE, sharedDownloads));
+    }
+
+    @SneakyThrows
+    private void buildWord(FileDetailDto fileDetailDto, OutputStream outputStream, ExportProgressListener progressListener,
+                           SharedDownloads sharedDownloads) {
+        WordExportContext context = new WordExportContext()
+                .setTmpDir(new File("/tmp/" + UUID.randomUUID()))
+                .setProgressListener(progressListener)
+                .setSharedDownloads(sharedDownloads)
+                .setTrace(exportTracer.start(ExportResultCache.FILE_WORD));
         try {
-            FileUtils.forceMkdir(new File(tmpDir.get()));
-            return generateWordBytes(fileDetailDto);
-        } catch (IOException e) {
+            // 图片都在内存中，临时目录只在开启溢出时由预取创建
+            WordprocessingMLPackage wordMLPackage = generateWord(context, fileDetailDto);
+            long saveStart = context.getTrace().start();
+            wordMLPackage.save(context.getTrace().countDocument(outputStream));
+            context.getTrace().stop(ExportPhase.PACKAGE_SAVE, saveStart);
+        } catch (Docx4JException e) {
             log.error("exportWord error:{}", ExceptionUtils.getStackTrace(e));
             throw new RuntimeException("word导出失败，请联系Mappingspace客服！");
         } finally {
-            FileUtils.deleteDirectory(new File(tmpDir.get()));
+            exportTracer.finish(context.getTrace());
+            FileUtils.deleteDirectory(context.getTmpDir());
+        }
+    }
+
+    /**
+     * 流式导出：请求体边读边写入磁盘，按根节点的每个子节点分段、每段再按批渲染，渲染结果随即写入磁盘。
+     * 返回第一个节点的标题，用作文件名。
+     */
+    @SneakyThrows
+    public String exportWordStreaming(InputStream inputStream, OutputStream outputStream, ExportProgressListener progressListener) {
+        WordExportContext context = new WordExportContext()
+                .setTmpDir(new File("/tmp/" + UUID.randomUUID()))
+                .setProgressListener(progressListener)
+                .setTrace(exportTracer.start("file-word-stream"));
+        try {
+            FileUtils.forceMkdir(context.getTmpDir());
+            try (SpooledFileDetail spooled = SpooledFileDetail.spool(inputStream, new File(context.getTmpDir(), "nodes.json"), objectMapper);
+                 StreamingDocumentAssembler assembler = new StreamingDocumentAssembler(context.getTmpDir())) {
+                if (spooled.getSkeletons().isEmpty()) {
+                    throw new RuntimeException("文件中无根节点！");
+                }
+                context.setAssembler(assembler);
+                generateWordStreaming(context, spooled);
+                long saveStart = context.getTrace().start();
+                assembler.save(context.getWordMLPackage(), context.getTrace().countDocument(outputStream));
+                context.getTrace().stop(ExportPhase.PACKAGE_SAVE, saveStart);
+                return spooled.getSkeletons().get(0).getTopic();
+            }
+        } catch (IOException | Docx4JException e) {
+            log.error("exportWordStreaming error:{}", ExceptionUtils.getStackTrace(e));
+            throw new RuntimeException("word导出失败，请联系Mappingspace客服！");
+        } finally {
+            exportTracer.finish(context.getTrace());
+            FileUtils.deleteDirectory(context.getTmpDir());
+        }
+    }
+
+    /**
+     * 与 Word 导出相同的内容，在 JVM 内渲染为 PDF。
+     */
+    @SneakyThrows
+    public void exportPdf(FileDetailDto fileDetailDto, OutputStream outputStream) {
+        WordExportContext context = new WordExportContext()
+                .setTmpDir(new File("/tmp/" + UUID.randomUUID()))
+                .setTrace(exportTracer.start("file-pdf"));
+        try {
+            FileUtils.forceMkdir(context.getTmpDir());
+            WordprocessingMLPackage wordMLPackage = generateWord(context, fileDetailDto);
+            long renderStart = context.getTrace().start();
+            nativePdfRenderer.renderPackage(wordMLPackage, context.getTmpDir(), context.getTrace().countDocument(outputStream));
+            context.getTrace().stop(ExportPhase.PDF_RENDER, renderStart);
+        } catch (IOException e) {
+            log.error("exportPdf error:{}", ExceptionUtils.getStackTrace(e));
+            throw new RuntimeException("导出PDF失败!");
+        } finally {
+            exportTracer.finish(context.getTrace());
+            FileUtils.deleteDirectory(context.getTmpDir());
         }
     }
 
-    public byte[] generateWordBytes(FileDetailDto fileDetailDto) {
+    private WordprocessingMLPackage generateWord(WordExportContext context, FileDetailDto fileDetailDto) {
         try {
-            List<FileDetailDto.Data> dataList = fileDetailDto.getData();
-            FileDetailDto.Data rootData = dataList.stream().filter(f -> f.getId().equals("root")).findFirst().orElseThrow(() -> new RuntimeException("文件中无根节点！"));
+            context.setWordMLPackage(wordPackagePool.acquire());
+            FileTreeIndex treeIndex = FileTreeIndex.build(fileDetailDto.getData());
+            FileDetailDto.Data rootData = treeIndex.getRoot();
+            List<String> imageUrls = new ArrayList<>();
+            List<String> drawIoUrls = new ArrayList<>();
+            collectResourceUrls(treeIndex, imageUrls, drawIoUrls);
+            ExportTrace trace = context.getTrace();
+            long fetchStart = trace.start();
+            context.setPrefetchedResources(resourcePrefetchService.prefetch(ListUtils.union(imageUrls, drawIoUrls), context.getTmpDir(),
+                    context.getSharedDownloads()));
+            trace.stop(ExportPhase.IMAGE_FETCH, fetchStart);
+            trace.addImages(context.getPrefetchedResources().values());
+            context.setPrefetchedResources(imageOptimizer.optimize(context.getPrefetchedResources(), imageUrls, trace));
+            context.setRenderedDiagrams(rasterizeDiagrams(context, drawIoUrls));
+
+            ExportProgressListener progressListener = context.getProgressListener();
+            int totalNodes = fileDetailDto.getData().size();
+            int[] completedNodes = {0};
+            progressListener.onProgress(completedNodes[0], totalNodes);
+            trace.addNodes(totalNodes);
+            long walkStart = trace.start();
 
-            insertDescription(rootData);
-            insertDrawIoDiagrams(rootData);
+            insertFieldTable(context, rootData);
+            insertDescription(context, rootData);
+            insertDrawIoDiagrams(context, rootData);
+            progressListener.onProgress(++completedNodes[0], totalNodes);
 
-            List<FileDetailDto.Data> directChildren = dataList.stream().filter(f -> f.getParentId().equals(rootData.getId())).collect(Collectors.toList());
-            if (CollectionUtils.isNotEmpty(directChildren)) {
-                insertChildrenContent(dataList, directChildren);
+            List<List<FileDetailDto.Data>> sections = splitSections(treeIndex);
+            if (parallelRenderProperties.isEnabled() && parallelRenderProperties.getThreads() > 1
+                    && totalNodes >= parallelRenderProperties.getMinNodes() && sections.size() > 1) {
+                renderSubtrees(context, sections, completedNodes, totalNodes);
+            } else {
+                treeIndex.forEachDescendant(data -> {
+                    insertNodeContent(context, data);
+                    progressListener.onProgress(++completedNodes[0], totalNodes);
+                });
             }
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            WordprocessingMLPackage pkgOut = mdp.convertAltChunks();
-            pkgOut.save(byteArrayOutputStream);
-            return byteArrayOutputStream.toByteArray();
+            trace.stop(ExportPhase.TREE_WALK, walkStart);
+            nodeFragmentCache.recordExport(context.getFragmentHits(), context.getFragmentLookups());
+            if (!context.isAltChunksAdded()) {
+                return context.getWordMLPackage();
+            }
+            long convertStart = trace.start();
+            importAltChunks(context);
+            trace.stop(ExportPhase.ALT_CHUNK_CONVERT, convertStart);
+            return context.getWordMLPackage();
+        } catch (CancellationException e) {
+            // 异步导出任务被取消，由调用方处理
+            throw e;
         } catch (Exception e) {
             log.error("word export error : {}", ExceptionUtils.getStackTrace(e));
             throw new RuntimeException("导出Word失败!");
         }
     }
 
-    private void insertChildrenContent(List<FileDetailDto.Data> dataList, List<FileDetailDto.Data> directChildren) {
-        directChildren.forEach(child -> {
-            mdp.addStyledParagraphOfText("Heading" + Math.min(child.getLayer() - 1, MAX_HEADING_LEVEL), child.getTopic());
-            insertDescription(child);
-            insertDrawIoDiagrams(child);
-            List<FileDetailDto.Data> childChildren = dataList.stream().filter(f -> f.getParentId().equals(child.getId())).collect(Collectors.toList());
-            if (CollectionUtils.isNotEmpty(childChildren)) {
-                insertChildrenContent(dataList, childChildren);
+    /**
+     * 按先序把根节点的后代分成以根节点各子节点开头的几段，每段即一棵子树，按 index 排列。
+     */
+    private List<List<FileDetailDto.Data>> splitSections(FileTreeIndex treeIndex) {
+        Set<FileDetailDto.Data> sectionRoots = Collections.newSetFromMap(new IdentityHashMap<>());
+        sectionRoots.addAll(treeIndex.getChildren(treeIndex.getRoot()));
+        List<List<FileDetailDto.Data>> sections = new ArrayList<>(sectionRoots.size());
+        treeIndex.forEachDescendant(data -> {
+            if (sectionRoots.contains(data)) {
+                sections.add(new ArrayList<>());
             }
+            sections.get(sections.size() - 1).add(data);
         });
+        return sections;
+    }
+
+    @AllArgsConstructor
+    private static class RenderedSubtree {
+        private final NodeFragment fragment;
+        private final int fragmentLookups;
+        private final int fragmentHits;
+    }
+
+    /**
+     * 各子树在 fork-join 线程池中分别渲染到独立的文档包并记录为片段，当前线程按顺序把片段合并到 context 的文档包，
+     * 图片、超链接和列表编号在合并时重新建立。进度在每棵子树合并后汇报，取消导出的检查仍在当前线程。
+     */
+    private void renderSubtrees(WordExportContext context, List<List<FileDetailDto.Data>> sections, int[] completedNodes,
+                                int totalNodes) throws Exception {
+        List<ForkJoinTask<RenderedSubtree>> tasks = new ArrayList<>(sections.size());
+        for (List<FileDetailDto.Data> section : sections) {
+            tasks.add(subtreeRenderPool.submit(() -> renderSubtree(context, section)));
+        }
+        try {
+            for (int i = 0; i < sections.size(); i++) {
+                RenderedSubtree subtree;
+                try {
+                    subtree = tasks.get(i).get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+                }
+                long mergeStart = context.getTrace().start();
+                if (Objects.isNull(subtree.fragment)) {
+                    // 引用了片段不支持的关系，在当前线程重新渲染
+                    sections.get(i).forEach(data -> insertNodeContent(context, data));
+                } else {
+                    subtree.fragment.replay(context.getWordMLPackage(), context.getDrawingIds(), context.getImageParts())
+                            .forEach(content -> addToBody(context, content));
+                }
+                context.getTrace().stop(ExportPhase.SUBTREE_MERGE, mergeStart);
+                context.setFragmentLookups(context.getFragmentLookups() + subtree.fragmentLookups);
+                context.setFragmentHits(context.getFragmentHits() + subtree.fragmentHits);
+                completedNodes[0] += sections.get(i).size();
+                context.getProgressListener().onProgress(completedNodes[0], totalNodes);
+            }
+        } finally {
+            tasks.forEach(task -> task.cancel(false));
+        }
+    }
+
+    private RenderedSubtree renderSubtree(WordExportContext context, List<FileDetailDto.Data> section) throws InvalidFormatException {
+        WordExportContext subtree = new WordExportContext()
+                .setTmpDir(context.getTmpDir())
+                .setTrace(context.getTrace())
+                .setPrefetchedResources(context.getPrefetchedResources())
+                .setRenderedDiagrams(context.getRenderedDiagrams())
+                .setImageResolver(context.getImageResolver())
+                .setRenderingSubtree(true)
+                .setWordMLPackage(wordPackagePool.acquire());
+        section.forEach(data -> insertNodeContent(subtree, data));
+        NodeFragment fragment = NodeFragment.capture(subtree.getWordMLPackage(), subtree.getMdp().getContent());
+        return new RenderedSubtree(fragment, subtree.getFragmentLookups(), subtree.getFragmentHits());
+    }
+
+    /**
+     * 流式导出的批次按估算字节数划分：描述的长度加上图片和架构图的大小，图片大小在预取前未知，
+     * 按已预取内容的平均大小估算，还没有预取过时使用配置的初始值。
+     */
+    private static class BatchBudget {
+        private final long maxBytes;
+        private final long estimatedResourceSize;
+        private long resourceBytes;
+        private long resources;
+
+        private BatchBudget(StreamingExportProperties streamingExportProperties) {
+            this.maxBytes = streamingExportProperties.getMaxBatchBytes().toBytes();
+            this.estimatedResourceSize = streamingExportProperties.getEstimatedResourceSize().toBytes();
+        }
+
+        private long estimate(FileDetailDto.Data data, int diagrams) {
+            String description = StringUtils.defaultString(data.getDescription());
+            long averageResourceSize = resources == 0 ? estimatedResourceSize : resourceBytes / resources;
+            return description.length() + (StringUtils.countMatches(description, "<img") + diagrams) * averageResourceSize;
+        }
+
+        private void recordPrefetched(Collection<ResourceContent> contents) {
+            for (ResourceContent content : contents) {
+                resourceBytes += content.getLength();
+                resources++;
+            }
+        }
+    }
+
+    private void generateWordStreaming(WordExportContext context, SpooledFileDetail spooled) throws IOException, Docx4JException {
+        context.setWordMLPackage(wordPackagePool.acquire());
+        FileTreeIndex treeIndex = FileTreeIndex.build(spooled.getSkeletons());
+        FileDetailDto.Data root = treeIndex.getRoot();
+        int totalNodes = spooled.getSkeletons().size();
+        int[] completedNodes = {0};
+        context.getProgressListener().onProgress(completedNodes[0], totalNodes);
+        context.getTrace().addNodes(totalNodes);
+
+        BatchBudget budget = new BatchBudget(streamingExportProperties);
+        renderBatch(context, Collections.singletonList(spooled.load(root)), completedNodes, totalNodes, budget);
+        for (FileDetailDto.Data section : treeIndex.getChildren(root)) {
+            List<FileDetailDto.Data> sectionNodes = new ArrayList<>();
+            sectionNodes.add(section);
+            treeIndex.forEachDescendant(section, sectionNodes::add);
+            List<FileDetailDto.Data> nodes = new ArrayList<>();
+            long estimatedBytes = 0;
+            for (FileDetailDto.Data skeleton : sectionNodes) {
+                FileDetailDto.Data data = spooled.load(skeleton);
+                nodes.add(data);
+                estimatedBytes += budget.estimate(data, getDrawIoDiagrams(data).size());
+                if (nodes.size() >= streamingExportProperties.getMaxBatchNodes() || estimatedBytes >= budget.maxBytes) {
+                    renderBatch(context, nodes, completedNodes, totalNodes, budget);
+                    nodes = new ArrayList<>();
+                    estimatedBytes = 0;
+                }
+            }
+            if (!nodes.isEmpty()) {
+                renderBatch(context, nodes, completedNodes, totalNodes, budget);
+            }
+        }
+        nodeFragmentCache.recordExport(context.getFragmentHits(), context.getFragmentLookups());
+    }
+
+    /**
+     * 渲染一批节点：预取本批的图片和架构图，渲染后把正文和图片写入磁盘，删除本批的临时文件。
+     */
+    private void renderBatch(WordExportContext context, List<FileDetailDto.Data> nodes, int[] completedNodes, int totalNodes,
+                             BatchBudget budget) throws IOException {
+        File batchDir = new File(context.getTmpDir(), UUID.randomUUID().toString());
+        FileUtils.forceMkdir(batchDir);
+        try {
+            List<String> imageUrls = new ArrayList<>();
+            List<String> drawIoUrls = new ArrayList<>();
+            nodes.forEach(data -> collectResourceUrls(data, imageUrls, drawIoUrls));
+            ExportTrace trace = context.getTrace();
+            long fetchStart = trace.start();
+            context.setPrefetchedResources(resourcePrefetchService.prefetch(ListUtils.union(imageUrls, drawIoUrls), batchDir));
+            trace.stop(ExportPhase.IMAGE_FETCH, fetchStart);
+            trace.addImages(context.getPrefetchedResources().values());
+            budget.recordPrefetched(context.getPrefetchedResources().values());
+            context.setPrefetchedResources(imageOptimizer.optimize(context.getPrefetchedResources(), imageUrls, trace));
+            context.setRenderedDiagrams(rasterizeDiagrams(context, drawIoUrls));
+            long walkStart = trace.start();
+            for (FileDetailDto.Data data : nodes) {
+                if (ROOT_ID.equals(data.getId())) {
+                    insertFieldTable(context, data);
+                    insertDescription(context, data);
+                    insertDrawIoDiagrams(context, data);
+                } else {
+                    insertNodeContent(context, data);
+                }
+                context.getProgressListener().onProgress(++completedNodes[0], totalNodes);
+            }
+            trace.stop(ExportPhase.TREE_WALK, walkStart);
+            long flushStart = trace.start();
+            context.getAssembler().flush(context.getWordMLPackage());
+            trace.stop(ExportPhase.PACKAGE_SAVE, flushStart);
+        } finally {
+            context.setPrefetchedResources(Collections.emptyMap());
+            context.setRenderedDiagrams(Collections.emptyMap());
+            FileUtils.deleteDirectory(batchDir);
+        }
+    }
+
+    private void collectResourceUrls(FileTreeIndex treeIndex, List<String> imageUrls, List<String> drawIoUrls) {
+        Consumer<FileDetailDto.Data> collector = data -> collectResourceUrls(data, imageUrls, drawIoUrls);
+        collector.accept(treeIndex.getRoot());
+        treeIndex.forEachDescendant(collector);
+    }
+
+    private void collectResourceUrls(FileDetailDto.Data data, List<String> imageUrls, List<String> drawIoUrls) {
+        if (StringUtils.isNotBlank(data.getDescription())) {
+            Jsoup.parse(data.getDescription()).select("img").forEach(image -> imageUrls.add(image.attr("src")));
+        }
+        getDrawIoDiagrams(data).forEach(diagram -> drawIoUrls.add(diagram.getData()));
+    }
+
+    private void insertNodeContent(WordExportContext context, FileDetailDto.Data data) {
+        String styleId = "Heading" + Math.min(data.getLayer() - 1, MAX_HEADING_LEVEL);
+        addToBody(context, context.getMdp().createStyledParagraphOfText(styleId, data.getTopic()));
+        insertFieldTable(context, data);
+        insertDescription(context, data);
+        insertDrawIoDiagrams(context, data);
+    }
+
+    private void insertFieldTable(WordExportContext context, FileDetailDto.Data data) {
+        Tbl fieldTable = fieldTableBuilder.build(data.getContent(), context.getFieldLabels());
+        if (Objects.nonNull(fieldTable)) {
+            addToBody(context, fieldTable);
+        }
+    }
+
+    /**
+     * 流式导出时写入磁盘，否则直接加入正文。
+     */
+    private void addToBody(WordExportContext context, Object content) {
+        if (Objects.nonNull(context.getRecordedContents())) {
+            context.getRecordedContents().add(content);
+        }
+        if (Objects.isNull(context.getAssembler())) {
+            context.getMdp().addObject(content);
+            return;
+        }
+        try {
+            context.getAssembler().append(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
-    private void insertDescription(FileDetailDto.Data data) {
+    void insertDescription(WordExportContext context, FileDetailDto.Data data) {
         if (StringUtils.isBlank(data.getDescription())) {
             return;
         }
@@ -120,151 +515,291 @@ public class WordExportService {
         });
 
         Elements images = description.select("img");
+        List<String> imageUrls = new ArrayList<>(images.size());
         images.forEach(image -> {
             String imageUrl = image.attr("src");
-            String imagePath = downloadImage(imageUrl);
+            imageUrls.add(imageUrl);
+            String imagePath = downloadImage(context, imageUrl);
             image.attr("src", imagePath);
             image.removeAttr("style");
             image.removeAttr("width");
         });
+        if (insertDirectly(context, description.body())) {
+            return;
+        }
         body.append(description.html());
-        insertHtmlToDoc(document.html());
+        if (!nodeFragmentCache.isEnabled()) {
+            insertHtmlToDoc(context, document.html(), !images.isEmpty());
+            return;
+        }
+        insertCachedDescription(context, data, imageUrls, document.html());
+    }
+
+    /**
+     * 需要经过 XHTML 导入的描述，复用之前导入的结果，否则导入后记录为新的片段。
+     * 键包含节点 uuid、更新时间、描述内容和其中图片内容的哈希，图片更新后即使描述没变也会重新导入。
+     */
+    private void insertCachedDescription(WordExportContext context, FileDetailDto.Data data, List<String> imageUrls, String html) {
+        context.setFragmentLookups(context.getFragmentLookups() + 1);
+        String fragmentKey = fragmentKey(context, data, imageUrls);
+        NodeFragment fragment = nodeFragmentCache.get(fragmentKey);
+        if (Objects.nonNull(fragment)) {
+            try {
+                fragment.replay(context.getWordMLPackage(), context.getDrawingIds(), context.getImageParts())
+                        .forEach(content -> addToBody(context, content));
+                context.setFragmentHits(context.getFragmentHits() + 1);
+                return;
+            } catch (Exception e) {
+                log.error("复用节点片段出错，重新导入 nodeId:{} Error Message:{}", data.getId(), ExceptionUtils.getStackTrace(e));
+            }
+        }
+        context.setRecordedContents(new ArrayList<>());
+        try {
+            insertHtmlToDoc(context, html, !imageUrls.isEmpty());
+            cacheFragment(context, data, fragmentKey);
+        } finally {
+            context.setRecordedContents(null);
+        }
+    }
+
+    private void cacheFragment(WordExportContext context, FileDetailDto.Data data, String fragmentKey) {
+        try {
+            NodeFragment captured = NodeFragment.capture(context.getWordMLPackage(), context.getRecordedContents());
+            if (Objects.nonNull(captured)) {
+                nodeFragmentCache.put(fragmentKey, captured);
+            }
+        } catch (RuntimeException e) {
+            log.warn("记录节点片段失败 nodeId:{} Error Message:{}", data.getId(), ExceptionUtils.getMessage(e));
+        }
     }
 
-    private void insertHtmlToDoc(String html) {
+    private String fragmentKey(WordExportContext context, FileDetailDto.Data data, List<String> imageUrls) {
+        StringBuilder content = new StringBuilder(data.getDescription());
+        for (String imageUrl : imageUrls) {
+            content.append('\n').append(context.getResourceHashes().computeIfAbsent(imageUrl, url -> hashResource(context, url)));
+        }
+        return StringUtils.defaultIfBlank(data.getNodeUuid(), data.getId()) + "|" + data.getUpdatedAt() + "|" + DigestUtils.sha256Hex(content.toString());
+    }
+
+    private String hashResource(WordExportContext context, String url) {
+        ResourceContent resource = context.getPrefetchedResources().get(url);
+        if (Objects.isNull(resource)) {
+            return "-";
+        }
         try {
+            return resource.getContentHash();
+        } catch (IOException e) {
+            log.warn("计算图片哈希失败:{}", url);
+            return "-";
+        }
+    }
+
+    /**
+     * 常见标记直接生成 WordML，含有不支持的标记时返回 false，由调用方走 Tidy + AltChunk。
+     */
+    private boolean insertDirectly(WordExportContext context, Element root) {
+        if (!directHtmlConversion) {
+            return false;
+        }
+        List<Object> contents = context.getWordMLConverter().convert(root);
+        if (Objects.isNull(contents)) {
+            return false;
+        }
+        contents.forEach(content -> addToBody(context, content));
+        return true;
+    }
+
+    /**
+     * @param embedsImages html 中是否有登记在内存中的图片，AltChunk 统一转换时无法从内存解析图片，需要立即导入
+     */
+    private void insertHtmlToDoc(WordExportContext context, String html, boolean embedsImages) {
+        try {
+            ExportTrace trace = context.getTrace();
+            long tidyStart = trace.start();
             String xhtml = convertToXhtml(html);
-            mdp.addAltChunk(AltChunkType.Xhtml, xhtml.getBytes());
-            wordMLPackage = mdp.convertAltChunks();
-            mdp = wordMLPackage.getMainDocumentPart();
+            trace.stop(ExportPhase.HTML_TO_XHTML, tidyStart);
+            // 流式导出、记录片段和并行渲染子树时需要立即得到 WordML，不能等到最后统一转换 AltChunk
+            if (embedsImages || Objects.nonNull(context.getAssembler()) || Objects.nonNull(context.getRecordedContents())
+                    || context.isRenderingSubtree()) {
+                long importStart = trace.start();
+                XHTMLImporterImpl importer = new XHTMLImporterImpl(context.getWordMLPackage());
+                context.getImageResolver().apply(importer, context.getImageParts());
+                importer.convert(xhtml, null).forEach(content -> addToBody(context, content));
+                trace.stop(ExportPhase.ALT_CHUNK_CONVERT, importStart);
+                return;
+            }
+            context.getMdp().addAltChunk(AltChunkType.Xhtml, xhtml.getBytes(StandardCharsets.UTF_8));
+            context.setAltChunksAdded(true);
+            if (altChunkConversionMode == AltChunkConversionMode.PER_NODE) {
+                long convertStart = trace.start();
+                // AltChunk 是正文的最后一项，转换后从这里开始是新导入的内容
+                int convertedFrom = context.getMdp().getContent().size() - 1;
+                context.setConvertedPackage(context.getMdp().convertAltChunks(), convertedFrom);
+                trace.stop(ExportPhase.ALT_CHUNK_CONVERT, convertStart);
+                context.setAltChunksAdded(false);
+            }
         } catch (Docx4JException e) {
             log.error("addAltChunk error:{}", ExceptionUtils.getStackTrace(e));
             throw new RuntimeException("导出Word失败!");
         }
     }
 
-    private void insertDrawIoDiagrams(FileDetailDto.Data data) {
-        List<FileDetailDto.ArchitectureDiagram> drawIoDiagramList = CollectionUtils.isEmpty(data.getArchitectureDiagrams()) ? new ArrayList<>() : data.getArchitectureDiagrams();
-        if (CollectionUtils.isNotEmpty(getDrawIoInCustomFields(data))) {
-            drawIoDiagramList.addAll(getDrawIoInCustomFields(data));
+    /**
+     * 按正文顺序逐个导入累积的 AltChunk，导入结果替换在原 AltChunk 的位置，并删除其 AlternativeFormatInputPart。
+     * 不用 MainDocumentPart.convertAltChunks：它一次性算好所有 AltChunk 的位置再替换，多段内容会错位、丢失。
+     */
+    private void importAltChunks(WordExportContext context) throws Docx4JException {
+        MainDocumentPart mdp = context.getMdp();
+        List<Object> body = mdp.getContent();
+        List<Object> imported = new ArrayList<>(body.size());
+        for (Object content : body) {
+            Object unwrapped = XmlUtils.unwrap(content);
+            if (!(unwrapped instanceof CTAltChunk)) {
+                imported.add(content);
+                continue;
+            }
+            Part part = mdp.getRelationshipsPart().getPart(((CTAltChunk) unwrapped).getId());
+            if (!(part instanceof AlternativeFormatInputPart)) {
+                log.warn("AltChunk 缺少对应的内容:{}", ((CTAltChunk) unwrapped).getId());
+                continue;
+            }
+            XHTMLImporterImpl importer = new XHTMLImporterImpl(context.getWordMLPackage());
+            context.getImageResolver().apply(importer, context.getImageParts());
+            imported.addAll(importer.convert(new String(((AlternativeFormatInputPart) part).getBytes(), StandardCharsets.UTF_8), null));
+            mdp.getRelationshipsPart().removePart(part.getPartName());
         }
+        body.clear();
+        body.addAll(imported);
+        context.setAltChunksAdded(false);
+    }
+
+    private void insertDrawIoDiagrams(WordExportContext context, FileDetailDto.Data data) {
+        List<FileDetailDto.ArchitectureDiagram> drawIoDiagramList = getDrawIoDiagrams(data);
 
         Document diagrams = Jsoup.parse(HTML_TEMPLATE);
         Element body = diagrams.body();
         if (CollectionUtils.isNotEmpty(drawIoDiagramList)) {
             drawIoDiagramList.forEach(diagram -> {
-                String imagePath = downloadDiagram(diagram.getData());
+                String imagePath = downloadDiagram(context, diagram.getData());
                 body.append(String.format("<p><img src=\"%s\"></p>", imagePath));
             });
-            insertHtmlToDoc(diagrams.outerHtml());
+            if (insertDirectly(context, body)) {
+                return;
+            }
+            insertHtmlToDoc(context, diagrams.outerHtml(), true);
         }
     }
 
+    private List<FileDetailDto.ArchitectureDiagram> getDrawIoDiagrams(FileDetailDto.Data data) {
+        List<FileDetailDto.ArchitectureDiagram> drawIoDiagramList = CollectionUtils.isEmpty(data.getArchitectureDiagrams()) ? new ArrayList<>() : new ArrayList<>(data.getArchitectureDiagrams());
+        drawIoDiagramList.addAll(getDrawIoInCustomFields(data));
+        return drawIoDiagramList;
+    }
+
     private List<FileDetailDto.ArchitectureDiagram> getDrawIoInCustomFields(FileDetailDto.Data data) {
         List<FileDetailDto.Content> contentList = data.getContent();
         if (CollectionUtils.isEmpty(contentList)) {
             return new ArrayList<>();
         }
-
-        List<FileDetailDto.Content> drawIoContentList = contentList.stream().filter(f -> f.getFieldType().equals(FieldType.DRAWIO) && Objects.nonNull(f.getValue())).collect(Collectors.toList());
-        if (CollectionUtils.isEmpty(drawIoContentList)) {
-            return new ArrayList<>();
+        List<FileDetailDto.ArchitectureDiagram> diagrams = new ArrayList<>();
+        for (FileDetailDto.Content content : contentList) {
+            if (FieldType.DRAWIO.equals(content.getFieldType()) && Objects.nonNull(content.getValue())) {
+                diagrams.addAll(readDrawIoDiagrams(content));
+            }
         }
-        List<String> drawIoStringValue = drawIoContentList.stream().map(FileDetailDto.Content::getStringValue).filter(StringUtils::isNotBlank).collect(Collectors.toList());
+        return diagrams;
+    }
 
-        return drawIoStringValue.stream().flatMap(fm -> {
-            List<FileDetailDto.ArchitectureDiagram> diagrams;
-            try {
-                ObjectMapper objectMapper = new ObjectMapper();
-                diagrams = objectMapper.readValue(fm, new TypeReference<List<FileDetailDto.ArchitectureDiagram>>() {
-                });
-            } catch (JsonProcessingException e) {
-                log.error("Get drawIo in custom fields error: {}", ExceptionUtils.getStackTrace(e));
-                throw new RuntimeException("读取架构图失败！");
-            }
-            return diagrams.stream();
-        }).collect(Collectors.toList());
+    /**
+     * 请求绑定时已解析的直接使用，否则（绑定时解析失败或节点不是经 JSON 绑定得到）在此解析。
+     */
+    private List<FileDetailDto.ArchitectureDiagram> readDrawIoDiagrams(FileDetailDto.Content content) {
+        if (Objects.nonNull(content.getDrawIoDiagrams())) {
+            return content.getDrawIoDiagrams();
+        }
+        try {
+            return ContentValueBinder.readDiagrams(content.getStringValue());
+        } catch (JsonProcessingException e) {
+            log.error("Get drawIo in custom fields error: {}", ExceptionUtils.getStackTrace(e));
+            throw new RuntimeException("读取架构图失败！");
+        }
     }
 
-    private String downloadImage(String imageUrl) {
+    /**
+     * @return 图片在 context 的 imageResolver 中登记的引用，读取失败时返回空串
+     */
+    private String downloadImage(WordExportContext context, String imageUrl) {
+        ResourceContent image = context.getPrefetchedResources().get(imageUrl);
+        if (Objects.isNull(image)) {
+            log.error("读取图片出错！失败链接{}", imageUrl);
+            return "";
+        }
         try {
-            URL url = new URL(imageUrl);
-            URLConnection urlConnection = url.openConnection();
-            urlConnection.setConnectTimeout(KNOWLEDGE_UPLOAD_CONNECTION_TIMEOUT);
-            InputStream inputStream = urlConnection.getInputStream();
-            byte[] imageData = IOUtils.toByteArray(inputStream);
-            String image = tmpDir.get() + "/" + UUID.randomUUID() + ".png";
-            FileUtils.writeByteArrayToFile(new File(image), imageData);
-            return image;
-        } catch (Exception e) {
+            return context.getImageResolver().register(image);
+        } catch (IOException e) {
             log.error("读取图片出错！失败链接{} Error Message:{}", imageUrl, ExceptionUtils.getStackTrace(e));
             return "";
         }
     }
 
-    private String downloadDiagram(String drawIoUrl) {
-        String diagramBase64;
-        byte[] pngBytes;
+    Map<String, CompletableFuture<byte[]>> rasterizeDiagrams(WordExportContext context, Collection<String> drawIoUrls) {
+        Map<String, CompletableFuture<byte[]>> diagrams = new HashMap<>();
+        drawIoUrls.forEach(drawIoUrl -> diagrams.computeIfAbsent(drawIoUrl, url -> rasterizeDiagram(context, url)));
+        return diagrams;
+    }
+
+    private CompletableFuture<byte[]> rasterizeDiagram(WordExportContext context, String drawIoUrl) {
         try {
-            URL url = new URL(drawIoUrl);
-            URLConnection urlConnection = url.openConnection();
-            urlConnection.setConnectTimeout(KNOWLEDGE_UPLOAD_CONNECTION_TIMEOUT);
+            ResourceContent prefetched = context.getPrefetchedResources().get(drawIoUrl);
+            if (Objects.isNull(prefetched)) {
+                throw new FileNotFoundException("架构图未能预取");
+            }
 
-            InputStream inputStream = urlConnection.getInputStream();
-            byte[] imageData = IOUtils.toByteArray(inputStream);
+            byte[] imageData = prefetched.getBytes();
             if (imageData.length == 0) {
-                return "";
+                return CompletableFuture.completedFuture(imageData);
             }
 
-            diagramBase64 = new String(imageData);
-            String[] arr = diagramBase64.split("base64,");
-            String pureBase64 = arr[1];
-            byte[] pureBytes = Base64.getDecoder().decode(pureBase64);
-
-            if (diagramBase64.contains(BASE64_DEFAULT_HEAD)) {
-                String image = tmpDir.get() + "/" + UUID.randomUUID() + ".png";
-                FileUtils.writeByteArrayToFile(new File(image), pureBytes);
-                return image;
+            String dataUrlHead = new String(imageData, 0, Math.min(imageData.length, DATA_URL_HEAD_MAX_LENGTH), StandardCharsets.US_ASCII);
+            int base64Start = dataUrlHead.indexOf(BASE64_MARKER);
+            if (base64Start < 0) {
+                throw new IOException("架构图不是base64格式");
             }
+            int pureStart = base64Start + BASE64_MARKER.length();
+            ByteBuffer decoded = Base64.getDecoder().decode(ByteBuffer.wrap(imageData, pureStart, imageData.length - pureStart));
+            byte[] pureBytes = Arrays.copyOfRange(decoded.array(), decoded.position(), decoded.limit());
 
-            String svgSource = new String(pureBytes, StandardCharsets.UTF_8);
-            svgSource = removeSwitchTags(svgSource);
-            PNGTranscoder transcoder = new PNGTranscoder();
-            TranscoderInput input = new TranscoderInput(new ByteArrayInputStream(svgSource.getBytes()));
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            TranscoderOutput output = new TranscoderOutput(byteArrayOutputStream);
-            transcoder.transcode(input, output);
-            pngBytes = byteArrayOutputStream.toByteArray();
-
-            String image = tmpDir.get() + "/" + UUID.randomUUID() + ".png";
-            FileUtils.writeByteArrayToFile(new File(image), pngBytes);
-            return image;
+            if (dataUrlHead.startsWith(BASE64_DEFAULT_HEAD)) {
+                return CompletableFuture.completedFuture(pureBytes);
+            }
+            return diagramRasterizer.rasterize(pureBytes);
         } catch (Exception e) {
-            log.error("读取drawio图片出错！失败链接{} Error Message:{}", drawIoUrl, ExceptionUtils.getStackTrace(e));
-            throw new RuntimeException("读取架构图文件失败!");
+            return CompletableFuture.failedFuture(e);
         }
     }
 
-    private String removeSwitchTags(String xmlStr) {
-        Document document = Jsoup.parse(xmlStr);
-        Elements switches = document.select("switch");
-        for (Element switchElement : switches) {
-            Element parent = switchElement.parent();
-            if (!parent.tagName().equals("g")) {
-                continue;
+    String downloadDiagram(WordExportContext context, String drawIoUrl) {
+        try {
+            long rasterizeStart = context.getTrace().start();
+            byte[] pngBytes = diagramRasterizer.await(context.getRenderedDiagrams().get(drawIoUrl));
+            context.getTrace().stop(ExportPhase.DIAGRAM_RASTERIZE, rasterizeStart);
+            if (pngBytes.length == 0) {
+                return "";
             }
-            parent.append(String.valueOf(switchElement.children().last()));
-            switchElement.remove();
-        }
 
-        Element svg = document.select("svg").first();
-        String content = svg.attr("content");
-        svg.attr("content", content.replaceAll("<", "&lt;").replaceAll(">", "&gt;").replaceAll("\"", "&quot;"));
+            return context.getImageResolver().register(ResourceContent.of(pngBytes));
+        } catch (Exception e) {
+            log.error("读取drawio图片出错！失败链接{} Error Message:{}", drawIoUrl, ExceptionUtils.getStackTrace(e));
+            throw new RuntimeException("读取架构图文件失败!");
+        }
+    }
 
-        return SVG_HTML_HEAD + svg.outerHtml();
+    @PreDestroy
+    public void shutdown() {
+        subtreeRenderPool.shutdownNow();
     }
 
-    private String convertToXhtml(String html) {
+    String convertToXhtml(String html) {
         Tidy tidy = new Tidy();
         tidy.setInputEncoding("UTF-8");
         tidy.setOutputEncoding("UTF-8");
@@ -0,0 +1,57 @@
+package com.ytdevops.file.service;
+
+import org.docx4j.jaxb.Context;
+import org.docx4j.wml.*;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * 直接生成 WordML 时字段表格和描述中的表格共用的表格结构：按百分比设置宽度，四周和内部都是单线边框。
+ */
+final class WordMLTables {
+    private static final ObjectFactory FACTORY = Context.getWmlObjectFactory();
+    private static final BigInteger BORDER_SIZE = BigInteger.valueOf(4);
+
+    private WordMLTables() {
+    }
+
+    /**
+     * @param widthPct     表格宽度，5000 为 100%
+     * @param columnWidths 各列宽度，单位 twip
+     */
+    static Tbl createTable(BigInteger widthPct, List<BigInteger> columnWidths) {
+        Tbl tbl = FACTORY.createTbl();
+        TblPr tblPr = FACTORY.createTblPr();
+        TblWidth tblWidth = FACTORY.createTblWidth();
+        tblWidth.setType("pct");
+        tblWidth.setW(widthPct);
+        tblPr.setTblW(tblWidth);
+        TblBorders borders = FACTORY.createTblBorders();
+        borders.setTop(createBorder());
+        borders.setLeft(createBorder());
+        borders.setBottom(createBorder());
+        borders.setRight(createBorder());
+        borders.setInsideH(createBorder());
+        borders.setInsideV(createBorder());
+        tblPr.setTblBorders(borders);
+        tbl.setTblPr(tblPr);
+
+        TblGrid tblGrid = FACTORY.createTblGrid();
+        for (BigInteger width : columnWidths) {
+            TblGridCol gridCol = FACTORY.createTblGridCol();
+            gridCol.setW(width);
+            tblGrid.getGridCol().add(gridCol);
+        }
+        tbl.setTblGrid(tblGrid);
+        return tbl;
+    }
+
+    private static CTBorder createBorder() {
+        CTBorder border = FACTORY.createCTBorder();
+        border.setVal(STBorder.SINGLE);
+        border.setSz(BORDER_SIZE);
+        border.setColor("auto");
+        return border;
+    }
+}
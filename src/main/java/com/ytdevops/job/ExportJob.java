@@ -0,0 +1,41 @@
+package com.ytdevops.job;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.io.File;
+import java.util.concurrent.Future;
+
+@Data
+@Accessors(chain = true)
+public class ExportJob {
+    private String id;
+
+    private ExportJobType type;
+
+    private volatile ExportJobStatus status;
+
+    /**
+     * 0-100
+     */
+    private volatile int progress;
+
+    private String errorMessage;
+
+    private long createdAt;
+
+    private volatile long finishedAt;
+
+    @JsonIgnore
+    private String fileName;
+
+    @JsonIgnore
+    private String suffix;
+
+    @JsonIgnore
+    private File result;
+
+    @JsonIgnore
+    private Future<?> future;
+}
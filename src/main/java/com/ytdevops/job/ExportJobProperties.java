@@ -0,0 +1,31 @@
+package com.ytdevops.job;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Accessors(chain = true)
+@Component
+@ConfigurationProperties(prefix = "export.job")
+public class ExportJobProperties {
+    private int threads = 2;
+
+    /**
+     * 排队任务数上限，队列满时拒绝新任务。
+     */
+    private int queueCapacity = 20;
+
+    /**
+     * 结果文件写入其中本服务独占的子目录，目录本身和其他文件不会被清理。
+     */
+    private String resultDir = "/tmp/export-s-jobs";
+
+    /**
+     * 任务结束后结果文件保留的时间。
+     */
+    private Duration resultTtl = Duration.ofMinutes(30);
+}
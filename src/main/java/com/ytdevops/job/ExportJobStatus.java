@@ -0,0 +1,15 @@
+package com.ytdevops.job;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum ExportJobStatus {
+    QUEUED(false),
+    RUNNING(false),
+    SUCCEEDED(true),
+    FAILED(true),
+    CANCELLED(true);
+    private final Boolean finished;
+}
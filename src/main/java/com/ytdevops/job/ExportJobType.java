@@ -0,0 +1,6 @@
+package com.ytdevops.job;
+
+public enum ExportJobType {
+    FILE_WORD,
+    KNOWLEDGE_BASE_WORD
+}
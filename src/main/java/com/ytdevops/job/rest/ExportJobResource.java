@@ -0,0 +1,45 @@
+package com.ytdevops.job.rest;
+
+import com.ytdevops.common.rest.DocumentDownloads;
+import com.ytdevops.file.FileDetailDto;
+import com.ytdevops.job.ExportJob;
+import com.ytdevops.job.service.ExportJobService;
+import com.ytdevops.knowledgebase.KnowledgeDocDto;
+import lombok.Data;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/job")
+@Data
+public class ExportJobResource {
+    private final ExportJobService exportJobService;
+
+    @PostMapping("/file/word")
+    public ExportJob submitFileWord(@RequestBody FileDetailDto fileDetailDto) {
+        return exportJobService.submitFileWord(fileDetailDto);
+    }
+
+    @PostMapping("/knowledgeBase/word")
+    public ExportJob submitKnowledgeBaseWord(@RequestBody KnowledgeDocDto knowledgeDocDto) {
+        return exportJobService.submitKnowledgeBaseWord(knowledgeDocDto);
+    }
+
+    @GetMapping("/{jobId}")
+    public ExportJob getJob(@PathVariable String jobId) {
+        return exportJobService.getJob(jobId);
+    }
+
+    @GetMapping("/{jobId}/result")
+    public void downloadResult(@PathVariable String jobId, HttpServletResponse response) throws IOException {
+        ExportJob job = exportJobService.getJob(jobId);
+        DocumentDownloads.writeAttachment(response, exportJobService.getResult(jobId), job.getFileName() + job.getSuffix());
+    }
+
+    @DeleteMapping("/{jobId}")
+    public ExportJob cancel(@PathVariable String jobId) {
+        return exportJobService.cancel(jobId);
+    }
+}
@@ -0,0 +1,209 @@
+package com.ytdevops.job.service;
+
+import com.ytdevops.common.ExportProgressListener;
+import com.ytdevops.common.OwnedDirectory;
+import com.ytdevops.common.RetryAfterException;
+import com.ytdevops.common.service.ExportAdmission;
+import com.ytdevops.common.service.ExportCostEstimator;
+import com.ytdevops.file.FileDetailDto;
+import com.ytdevops.file.service.WordExportService;
+import com.ytdevops.job.ExportJob;
+import com.ytdevops.job.ExportJobProperties;
+import com.ytdevops.job.ExportJobStatus;
+import com.ytdevops.job.ExportJobType;
+import com.ytdevops.knowledgebase.KnowledgeDocDto;
+import com.ytdevops.knowledgebase.service.KnowledgeBaseWordExportService;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+/**
+ * 异步导出任务：提交后立即返回任务id，由有界线程池和有界队列执行，队列满时拒绝提交（429）。
+ * 结果写入磁盘，任务结束超过保留时间后连同结果文件一起清理。
+ * 任务开始导出前与同步导出一起经过准入控制，等待期间仍为排队状态；被拒绝时按 Retry-After 等待后重新排队。
+ */
+@Slf4j
+@Data
+@Service
+public class ExportJobService {
+    private final WordExportService wordExportService;
+    private final KnowledgeBaseWordExportService knowledgeBaseWordExportService;
+    private final ExportJobProperties exportJobProperties;
+    private final ExportAdmission exportAdmission;
+    private final ExportCostEstimator exportCostEstimator;
+    private final ThreadPoolExecutor executor;
+    private final OwnedDirectory resultDir;
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+
+    private interface ExportTask {
+        void export(OutputStream outputStream, ExportProgressListener progressListener);
+    }
+
+    public ExportJobService(WordExportService wordExportService,
+                            KnowledgeBaseWordExportService knowledgeBaseWordExportService,
+                            ExportJobProperties exportJobProperties,
+                            ExportAdmission exportAdmission,
+                            ExportCostEstimator exportCostEstimator) throws IOException {
+        this.wordExportService = wordExportService;
+        this.knowledgeBaseWordExportService = knowledgeBaseWordExportService;
+        this.exportJobProperties = exportJobProperties;
+        this.exportAdmission = exportAdmission;
+        this.exportCostEstimator = exportCostEstimator;
+        this.executor = new ThreadPoolExecutor(exportJobProperties.getThreads(), exportJobProperties.getThreads(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(exportJobProperties.getQueueCapacity()), new CustomizableThreadFactory("export-job-"));
+        // 配置的目录可能与其他程序共用，只清理本服务上次运行留下的结果
+        this.resultDir = OwnedDirectory.create(new File(exportJobProperties.getResultDir()), "export-job-");
+    }
+
+    public ExportJob submitFileWord(FileDetailDto fileDetailDto) {
+        String fileName = URLEncoder.encode(fileDetailDto.getData().get(0).getTopic(), StandardCharsets.UTF_8).replaceAll("\\+", "%20");
+        return submit(ExportJobType.FILE_WORD, fileName, fileDetailDto.getTenantId(), exportCostEstimator.estimate(fileDetailDto),
+                (outputStream, progressListener) ->
+                wordExportService.exportWord(fileDetailDto, outputStream, progressListener));
+    }
+
+    public ExportJob submitKnowledgeBaseWord(KnowledgeDocDto knowledgeDocDto) {
+        return submit(ExportJobType.KNOWLEDGE_BASE_WORD, UUID.randomUUID().toString(), knowledgeDocDto.getTenantId(),
+                exportCostEstimator.estimate(knowledgeDocDto.getContentHtml()), (outputStream, progressListener) ->
+                knowledgeBaseWordExportService.exportWord(knowledgeDocDto, outputStream, progressListener));
+    }
+
+    public ExportJob getJob(String jobId) {
+        ExportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "导出任务不存在或已过期！");
+        }
+        return job;
+    }
+
+    public File getResult(String jobId) {
+        ExportJob job = getJob(jobId);
+        if (job.getStatus() != ExportJobStatus.SUCCEEDED || !job.getResult().exists()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "导出任务尚未完成！");
+        }
+        return job.getResult();
+    }
+
+    public ExportJob cancel(String jobId) {
+        ExportJob job = getJob(jobId);
+        synchronized (job) {
+            if (job.getStatus().getFinished()) {
+                return job;
+            }
+            job.setStatus(ExportJobStatus.CANCELLED).setFinishedAt(System.currentTimeMillis());
+        }
+        job.getFuture().cancel(true);
+        executor.purge();
+        FileUtils.deleteQuietly(job.getResult());
+        return job;
+    }
+
+    @Scheduled(fixedDelayString = "${export.job.cleanup-interval:60000}")
+    public void removeExpiredJobs() {
+        long expiredBefore = System.currentTimeMillis() - exportJobProperties.getResultTtl().toMillis();
+        jobs.values().removeIf(job -> {
+            if (!job.getStatus().getFinished() || job.getFinishedAt() > expiredBefore) {
+                return false;
+            }
+            FileUtils.deleteQuietly(job.getResult());
+            return true;
+        });
+    }
+
+    private ExportJob submit(ExportJobType type, String fileName, String tenantId, long cost, ExportTask task) {
+        String jobId = UUID.randomUUID().toString();
+        ExportJob job = new ExportJob()
+                .setId(jobId)
+                .setType(type)
+                .setStatus(ExportJobStatus.QUEUED)
+                .setCreatedAt(System.currentTimeMillis())
+                .setFileName(fileName)
+                .setSuffix(".docx")
+                .setResult(new File(resultDir.getDir(), jobId + ".docx"));
+        jobs.put(jobId, job);
+        try {
+            job.setFuture(executor.submit(() -> run(job, tenantId, cost, task)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(jobId);
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "导出任务过多，请稍后重试！");
+        }
+        return job;
+    }
+
+    private void run(ExportJob job, String tenantId, long cost, ExportTask task) {
+        if (job.getStatus() != ExportJobStatus.QUEUED) {
+            return;
+        }
+        try (ExportAdmission.Permit permit = admit(tenantId, cost)) {
+            synchronized (job) {
+                if (job.getStatus() != ExportJobStatus.QUEUED) {
+                    return;
+                }
+                job.setStatus(ExportJobStatus.RUNNING);
+            }
+            try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(job.getResult()))) {
+                task.export(outputStream, (completed, total) -> {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new CancellationException();
+                    }
+                    job.setProgress(total <= 0 ? 0 : (int) (completed * 100L / total));
+                });
+            }
+        } catch (Exception e) {
+            if (!(e instanceof CancellationException) && job.getStatus() != ExportJobStatus.CANCELLED) {
+                log.error("异步导出失败！jobId:{} Error Message:{}", job.getId(), ExceptionUtils.getStackTrace(e));
+            }
+            finish(job, ExportJobStatus.FAILED, e.getMessage());
+            return;
+        }
+        finish(job, ExportJobStatus.SUCCEEDED, null);
+    }
+
+    /**
+     * 异步任务没有等待中的客户端，准入控制拒绝（排队已满或超时）时等待 Retry-After 后重试，直到取得许可或任务被取消。
+     */
+    private ExportAdmission.Permit admit(String tenantId, long cost) throws InterruptedException {
+        while (true) {
+            try {
+                return exportAdmission.admit(tenantId, cost);
+            } catch (RetryAfterException e) {
+                TimeUnit.SECONDS.sleep(e.getRetryAfterSeconds());
+            }
+        }
+    }
+
+    private void finish(ExportJob job, ExportJobStatus status, String errorMessage) {
+        synchronized (job) {
+            if (job.getStatus() == ExportJobStatus.CANCELLED) {
+                FileUtils.deleteQuietly(job.getResult());
+                return;
+            }
+            job.setStatus(status).setErrorMessage(errorMessage).setFinishedAt(System.currentTimeMillis());
+            if (status == ExportJobStatus.SUCCEEDED) {
+                job.setProgress(100);
+            } else {
+                FileUtils.deleteQuietly(job.getResult());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        resultDir.close();
+    }
+}
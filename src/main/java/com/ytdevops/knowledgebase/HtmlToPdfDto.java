@@ -8,4 +8,8 @@ import lombok.experimental.Accessors;
 public class HtmlToPdfDto {
     private String contentHtml;
     private String title;
+    /**
+     * 排队导出时按租户公平出队，为空时归入默认租户。
+     */
+    private String tenantId;
 }
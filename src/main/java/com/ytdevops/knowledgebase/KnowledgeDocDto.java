@@ -8,4 +8,8 @@ import lombok.experimental.Accessors;
 public class KnowledgeDocDto {
     private String title;
     private String contentHtml;
+    /**
+     * 排队导出时按租户公平出队，为空时归入默认租户。
+     */
+    private String tenantId;
 }
@@ -0,0 +1,44 @@
+package com.ytdevops.knowledgebase;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Data
+@Accessors(chain = true)
+@Component
+@ConfigurationProperties(prefix = "export.pdf")
+public class PdfConvertProperties {
+    /**
+     * 转换命令，HTML 从标准输入读入，PDF 写到标准输出。退出码不为 0 即视为失败，
+     * 默认忽略图片等外部资源的加载错误，资源加载失败时仍生成文档。
+     */
+    private List<String> command = new ArrayList<>(Arrays.asList("wkhtmltopdf", "--quiet", "--encoding", "utf-8",
+            "--load-error-handling", "ignore", "--load-media-error-handling", "ignore", "-", "-"));
+
+    /**
+     * 同时运行的转换进程数上限。
+     */
+    private int maxConcurrency = 2;
+
+    /**
+     * 等待转换的请求数上限，超出时直接拒绝。
+     */
+    private int queueCapacity = 20;
+
+    /**
+     * 排队等待的最长时间。
+     */
+    private Duration queueTimeout = Duration.ofSeconds(30);
+
+    /**
+     * 单次转换的最长时间，超时后强制结束进程。
+     */
+    private Duration timeout = Duration.ofSeconds(60);
+}
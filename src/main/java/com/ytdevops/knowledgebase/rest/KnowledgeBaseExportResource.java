@@ -1,24 +1,24 @@
 package com.ytdevops.knowledgebase.rest;
 
+import com.ytdevops.common.PdfEngine;
+import com.ytdevops.common.rest.DocumentDownloads;
+import com.ytdevops.common.service.ExportAdmission;
+import com.ytdevops.common.service.ExportCostEstimator;
 import com.ytdevops.knowledgebase.HtmlToPdfDto;
 import com.ytdevops.knowledgebase.KnowledgeDocDto;
 import com.ytdevops.knowledgebase.service.KnowledgeBaseWordExportService;
+import com.ytdevops.knowledgebase.service.PdfConverter;
 import lombok.Data;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
-import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 
 @RestController
@@ -27,42 +27,44 @@ import java.util.UUID;
 @Slf4j
 public class KnowledgeBaseExportResource {
     private final KnowledgeBaseWordExportService knowledgeBaseWordExportService;
-    public static final String TMP_HTML_TO_PDF = "/tmp/htmlToPdf/";
+    private final PdfConverter pdfConverter;
+    private final ExportAdmission exportAdmission;
+    private final ExportCostEstimator exportCostEstimator;
+    @Value("${export.pdf.engine:WKHTMLTOPDF}")
+    private PdfEngine pdfEngine = PdfEngine.WKHTMLTOPDF;
 
+    /**
+     * 按估算成本排队，超出预算时返回 429。
+     */
     @PostMapping("/word")
     public void exportWord(@RequestBody KnowledgeDocDto knowledgeDocDto, HttpServletResponse response) throws IOException {
-        byte[] bytes = knowledgeBaseWordExportService.exportWord(knowledgeDocDto);
-        response.setCharacterEncoding("utf-8");
-        response.setHeader("Content-disposition", "attachment;filename*=utf-8''" + UUID.randomUUID() + ".docx");
-        ServletOutputStream outputStream = response.getOutputStream();
-        IOUtils.write(bytes, outputStream);
+        try (ExportAdmission.Permit permit = exportAdmission.admit(knowledgeDocDto.getTenantId(),
+                exportCostEstimator.estimate(knowledgeDocDto.getContentHtml()))) {
+            DocumentDownloads.download(response, UUID.randomUUID().toString(), ".docx", outputStream -> knowledgeBaseWordExportService.exportWord(knowledgeDocDto, outputStream));
+        }
     }
 
-    @SneakyThrows
     @PostMapping("/pdf")
-    public void htmlToPdf(@RequestBody HtmlToPdfDto htmlToPdfDto, HttpServletResponse response) {
-        File htmlFile = new File(TMP_HTML_TO_PDF + UUID.randomUUID() + ".html");
-        File pdfFile = new File(TMP_HTML_TO_PDF + UUID.randomUUID() + ".pdf");
+    public void htmlToPdf(@RequestBody HtmlToPdfDto htmlToPdfDto, HttpServletResponse response) throws IOException {
+        try (ExportAdmission.Permit permit = exportAdmission.admit(htmlToPdfDto.getTenantId(),
+                exportCostEstimator.estimate(htmlToPdfDto.getContentHtml()))) {
+            convertToPdf(htmlToPdfDto, response);
+        }
+    }
+
+    /**
+     * 转换结果先写入临时文件，进程正常退出后才写回响应，转换失败或超时时客户端不会收到不完整的 PDF。
+     */
+    private void convertToPdf(HtmlToPdfDto htmlToPdfDto, HttpServletResponse response) throws IOException {
+        if (pdfEngine == PdfEngine.NATIVE) {
+            DocumentDownloads.download(response, UUID.randomUUID().toString(), ".pdf", outputStream -> knowledgeBaseWordExportService.exportPdf(htmlToPdfDto.getContentHtml(), outputStream));
+            return;
+        }
         try {
-            FileUtils.write(htmlFile, htmlToPdfDto.getContentHtml(), StandardCharsets.UTF_8);
-            ProcessBuilder builder = new ProcessBuilder();
-            String command = String.format("wkhtmltopdf %s %s", htmlFile.getAbsolutePath(), pdfFile.getAbsolutePath());
-            log.info(command);
-            builder.command("sh", "-c", command);
-            builder.directory(new File("/"));
-            Process process = builder.start();
-            log.info(IOUtils.toString(process.getInputStream(), StandardCharsets.UTF_8));
-            log.error(IOUtils.toString(process.getErrorStream(), StandardCharsets.UTF_8));
-            byte[] fileByteArray = FileUtils.readFileToByteArray(pdfFile);
-            response.setCharacterEncoding("utf-8");
-            response.setHeader("Content-disposition", "attachment;filename*=utf-8''" + UUID.randomUUID() + ".pdf");
-            ServletOutputStream outputStream = response.getOutputStream();
-            IOUtils.write(fileByteArray, outputStream);
-        } catch (Exception e) {
+            DocumentDownloads.download(response, UUID.randomUUID().toString(), ".pdf", outputStream -> pdfConverter.convert(htmlToPdfDto.getContentHtml(), outputStream));
+        } catch (IOException e) {
             log.error("htmlToPdf error:{}", ExceptionUtils.getStackTrace(e));
-        } finally {
-            FileUtils.forceDelete(htmlFile);
-            FileUtils.forceDelete(pdfFile);
+            throw new RuntimeException("导出PDF失败!");
         }
     }
 }
@@ -0,0 +1,46 @@
+package com.ytdevops.knowledgebase.service;
+
+import com.ytdevops.common.ExportProgressListener;
+import com.ytdevops.common.ExportTrace;
+import com.ytdevops.common.service.InMemoryImageResolver;
+import com.ytdevops.resource.ResourceContent;
+import com.ytdevops.resource.service.SharedDownloads;
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPartAbstractImage;
+import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 单次知识库导出的状态。
+ */
+@Data
+@Accessors(chain = true)
+public class KnowledgeBaseWordExportContext {
+    private File tmpDir;
+    private ExportProgressListener progressListener = ExportProgressListener.NONE;
+    private ExportTrace trace = ExportTrace.NONE;
+    /**
+     * 批量导出时多个文档共用的下载，为空表示单独下载。
+     */
+    private SharedDownloads sharedDownloads;
+    private Map<String, ResourceContent> prefetchedResources = Collections.emptyMap();
+    /**
+     * 导出 Word 时图片从内存嵌入；为空时图片写入临时目录，由 PDF 渲染按文件读取。
+     */
+    private InMemoryImageResolver imageResolver;
+    private Map<String, BinaryPartAbstractImage> imageParts = new HashMap<>();
+    private WordprocessingMLPackage wordMLPackage;
+    private MainDocumentPart mdp;
+
+    public KnowledgeBaseWordExportContext setWordMLPackage(WordprocessingMLPackage wordMLPackage) {
+        this.wordMLPackage = wordMLPackage;
+        this.mdp = wordMLPackage.getMainDocumentPart();
+        return this;
+    }
+}
@@ -1,72 +1,142 @@
 package com.ytdevops.knowledgebase.service;
 
+import com.ytdevops.common.ExportPhase;
+import com.ytdevops.common.ExportProgressListener;
+import com.ytdevops.common.service.ExportResultCache;
+import com.ytdevops.common.service.ExportTracer;
+import com.ytdevops.common.service.InMemoryImageResolver;
+import com.ytdevops.common.service.NativePdfRenderer;
+import com.ytdevops.common.service.WordPackagePool;
 import com.ytdevops.knowledgebase.ImageInfoDto;
 import com.ytdevops.knowledgebase.KnowledgeDocDto;
+import com.ytdevops.resource.ResourceContent;
+import com.ytdevops.resource.service.ImageOptimizer;
+import com.ytdevops.resource.service.ImageSizeProbe;
+import com.ytdevops.resource.service.ResourcePrefetchService;
+import com.ytdevops.resource.service.SharedDownloads;
 import lombok.Data;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.docx4j.openpackaging.exceptions.Docx4JException;
-import org.docx4j.openpackaging.exceptions.InvalidFormatException;
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.convert.in.xhtml.XHTMLImporterImpl;
 import org.docx4j.openpackaging.parts.WordprocessingML.AltChunkType;
-import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.select.Elements;
 import org.springframework.stereotype.Service;
-import org.springframework.web.context.annotation.RequestScope;
 import org.w3c.tidy.Tidy;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
+import java.awt.Dimension;
 import java.io.*;
-import java.net.URL;
-import java.net.URLConnection;
 import java.nio.charset.StandardCharsets;
-import java.util.UUID;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Data
 @Service
-@RequestScope
 public class KnowledgeBaseWordExportService {
-    private final static Integer KNOWLEDGE_UPLOAD_CONNECTION_TIMEOUT = 5 * 1000;
-    private final static Float IMAGE_DEFAULT_SIZE = 540F;
-    private ThreadLocal<String> tmpDir = new ThreadLocal<>();
-    private WordprocessingMLPackage wordMLPackage = WordprocessingMLPackage.createPackage();
-    private MainDocumentPart mdp = wordMLPackage.getMainDocumentPart();
+    private final ResourcePrefetchService resourcePrefetchService;
+    private final ImageOptimizer imageOptimizer;
+    private final WordPackagePool wordPackagePool;
+    private final NativePdfRenderer nativePdfRenderer;
+    private final ExportResultCache exportResultCache;
+    private final ExportTracer exportTracer;
 
-    public KnowledgeBaseWordExportService() throws InvalidFormatException {
+    public KnowledgeBaseWordExportService(ResourcePrefetchService resourcePrefetchService, ImageOptimizer imageOptimizer,
+                                          WordPackagePool wordPackagePool, NativePdfRenderer nativePdfRenderer,
+                                          ExportResultCache exportResultCache, ExportTracer exportTracer) {
+        this.resourcePrefetchService = resourcePrefetchService;
+        this.imageOptimizer = imageOptimizer;
+        this.wordPackagePool = wordPackagePool;
+        this.nativePdfRenderer = nativePdfRenderer;
+        this.exportResultCache = exportResultCache;
+        this.exportTracer = exportTracer;
     }
 
+    public void exportWord(KnowledgeDocDto knowledgeDocDto, OutputStream outputStream) {
+        exportWord(knowledgeDocDto, outputStream, ExportProgressListener.NONE);
+    }
+
+    /**
+     * 内容相同的文档直接使用缓存的导出结果。
+     */
+    @SneakyThrows
+    public void exportWord(KnowledgeDocDto knowledgeDocDto, OutputStream outputStream, ExportProgressListener progressListener) {
+        exportResultCache.export(ExportResultCache.KNOWLEDGE_BASE_WORD, knowledgeDocDto, outputStream,
+                resultStream -> buildWord(knowledgeDocDto, resultStream, progressListener, null));
+    }
+
+    /**
+     * 批量导出使用，图片在 sharedDownloads 中与同批的其他文档共用。
+     */
+    @SneakyThrows
+    public void exportWord(KnowledgeDocDto knowledgeDocDto, OutputStream outputStream, SharedDownloads sharedDownloads) {
+        exportResultCache.export(ExportResultCache.KNOWLEDGE_BASE_WORD, knowledgeDocDto, outputStream,
+                resultStream -> buildWord(knowledgeDocDto, resultStream, ExportProgressListener.NONE, sharedDownloads));
+    }
 
     @SneakyThrows
-    public byte[] exportWord(KnowledgeDocDto knowledgeDocDto) {
-        tmpDir.set("/tmp/" + UUID.randomUUID());
+    private void buildWord(KnowledgeDocDto knowledgeDocDto, OutputStream outputStream, ExportProgressListener progressListener,
+                           SharedDownloads sharedDownloads) {
+        KnowledgeBaseWordExportContext context = new KnowledgeBaseWordExportContext()
+                .setTmpDir(new File("/tmp/" + UUID.randomUUID()))
+                .setProgressListener(progressListener)
+                .setSharedDownloads(sharedDownloads)
+                .setImageResolver(new InMemoryImageResolver())
+                .setTrace(exportTracer.start(ExportResultCache.KNOWLEDGE_BASE_WORD));
         try {
-            FileUtils.forceMkdir(new File(tmpDir.get()));
-            return generateWordBytes(knowledgeDocDto.getContentHtml());
-        } catch (IOException e) {
-            log.error("exportWord error:{}", ExceptionUtils.getStackTrace(e));
-            throw new RuntimeException("word导出失败，请联系Mappingspace客服！");
+            generateWord(context, knowledgeDocDto.getContentHtml(), outputStream);
         } finally {
-            FileUtils.deleteDirectory(new File(tmpDir.get()));
+            exportTracer.finish(context.getTrace());
+            FileUtils.deleteDirectory(context.getTmpDir());
         }
     }
 
-    public byte[] generateWordBytes(String contentHtml) {
+    /**
+     * 按 Word 导出相同的方式整理 HTML（表格样式、图片预取和尺寸），在 JVM 内渲染为 PDF。
+     */
+    @SneakyThrows
+    public void exportPdf(String contentHtml, OutputStream outputStream) {
+        KnowledgeBaseWordExportContext context = new KnowledgeBaseWordExportContext()
+                .setTmpDir(new File("/tmp/" + UUID.randomUUID()))
+                .setTrace(exportTracer.start("knowledge-base-pdf"));
         try {
-            insertContent(contentHtml);
+            FileUtils.forceMkdir(context.getTmpDir());
+            String html = StringUtils.isBlank(contentHtml) ? "<html><body></body></html>" : sanitizeContent(context, Jsoup.parse(contentHtml));
+            String xhtml = convertToXhtml(context, html);
+            long renderStart = context.getTrace().start();
+            nativePdfRenderer.renderXhtml(xhtml, context.getTmpDir(), context.getTrace().countDocument(outputStream));
+            context.getTrace().stop(ExportPhase.PDF_RENDER, renderStart);
+        } catch (IOException e) {
+            log.error("exportPdf error:{}", ExceptionUtils.getStackTrace(e));
+            throw new RuntimeException("导出PDF失败!");
+        } finally {
+            exportTracer.finish(context.getTrace());
+            FileUtils.deleteDirectory(context.getTmpDir());
+        }
+    }
 
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            WordprocessingMLPackage pkgOut = mdp.convertAltChunks();
-            pkgOut.save(byteArrayOutputStream);
+    private void generateWord(KnowledgeBaseWordExportContext context, String contentHtml, OutputStream outputStream) {
+        try {
+            context.setWordMLPackage(wordPackagePool.acquire());
+            context.getProgressListener().onProgress(0, 1);
+            long walkStart = context.getTrace().start();
+            insertContent(context, contentHtml);
+            context.getTrace().stop(ExportPhase.TREE_WALK, walkStart);
+            context.getTrace().addNodes(1);
+            context.getProgressListener().onProgress(1, 1);
 
-            return byteArrayOutputStream.toByteArray();
+            long convertStart = context.getTrace().start();
+            WordprocessingMLPackage pkgOut = context.getMdp().convertAltChunks();
+            context.getTrace().stop(ExportPhase.ALT_CHUNK_CONVERT, convertStart);
+            long saveStart = context.getTrace().start();
+            pkgOut.save(context.getTrace().countDocument(outputStream));
+            context.getTrace().stop(ExportPhase.PACKAGE_SAVE, saveStart);
         } catch (Docx4JException e) {
             log.error("导出word出错！Error Message:{}", ExceptionUtils.getStackTrace(e));
             throw new RuntimeException(e);
@@ -74,12 +144,16 @@ public class KnowledgeBaseWordExportService {
     }
 
 
-    private void insertContent(String contentHtml) {
+    private void insertContent(KnowledgeBaseWordExportContext context, String contentHtml) {
         if (StringUtils.isBlank(contentHtml)) {
             return;
         }
-
         Document content = Jsoup.parse(contentHtml);
+        boolean embedsImages = !content.select("img").isEmpty();
+        insertHtmlToDoc(context, sanitizeContent(context, content), embedsImages);
+    }
+
+    private String sanitizeContent(KnowledgeBaseWordExportContext context, Document content) {
         Elements tables = content.select("table");
         tables.forEach(table -> {
             table.attr("border", "1");
@@ -90,59 +164,95 @@ public class KnowledgeBaseWordExportService {
         });
 
         Elements images = content.select("img");
+        List<String> imageUrls = images.stream().map(image -> image.attr("src")).collect(Collectors.toList());
+        long fetchStart = context.getTrace().start();
+        context.setPrefetchedResources(resourcePrefetchService.prefetch(imageUrls, context.getTmpDir(), context.getSharedDownloads()));
+        context.getTrace().stop(ExportPhase.IMAGE_FETCH, fetchStart);
+        context.getTrace().addImages(context.getPrefetchedResources().values());
+        context.setPrefetchedResources(imageOptimizer.optimize(context.getPrefetchedResources(), imageUrls, context.getTrace()));
         images.forEach(image -> {
             String imageUrl = image.attr("src");
-            ImageInfoDto imageInfoDto = downloadImage(imageUrl);
-            image.attr("src", "file://" + imageInfoDto.getImgPath());
+            ImageInfoDto imageInfoDto = downloadImage(context, imageUrl);
+            image.attr("src", imageInfoDto.getImgPath());
             image.removeAttr("style");
             image.removeAttr("width");
+            image.removeAttr("height");
+            if (Objects.nonNull(imageInfoDto.getWidth())) {
+                image.attr("width", String.valueOf(Math.round(imageInfoDto.getWidth())));
+                image.attr("height", String.valueOf(Math.round(imageInfoDto.getHeight())));
+            }
         });
-        insertHtmlToDoc(content.html());
+        return content.html();
     }
 
 
-    private ImageInfoDto downloadImage(String imageUrl) {
+    private ImageInfoDto downloadImage(KnowledgeBaseWordExportContext context, String imageUrl) {
         ImageInfoDto imageInfoDto = new ImageInfoDto();
-        try {
-            URL url = new URL(imageUrl);
-            URLConnection urlConnection = url.openConnection();
-            urlConnection.setConnectTimeout(KNOWLEDGE_UPLOAD_CONNECTION_TIMEOUT);
-            InputStream inputStream = urlConnection.getInputStream();
-            byte[] imageData = IOUtils.toByteArray(inputStream);
-            String image = tmpDir.get() + "/" + UUID.randomUUID() + ".png";
-            FileUtils.writeByteArrayToFile(new File(image), imageData);
-            imageInfoDto.setImgPath(image);
-        } catch (Exception e) {
-            log.error("读取图片出错！失败链接:{} Error Message:{}", imageUrl, ExceptionUtils.getStackTrace(e));
+        ResourceContent image = context.getPrefetchedResources().get(imageUrl);
+        if (Objects.isNull(image)) {
+            log.error("读取图片出错！失败链接:{}", imageUrl);
             return new ImageInfoDto();
         }
 
         try {
-            URL url = new URL(imageUrl);
-            BufferedImage image = ImageIO.read(url);
-            imageInfoDto.setWidth((float) image.getWidth()).setHeight((float) image.getHeight());
-        } catch (Exception e) {
+            imageInfoDto.setImgPath(imageSrc(context, image));
+            Dimension dimension = ImageSizeProbe.probe(image);
+            if (Objects.isNull(dimension) || dimension.width <= 0 || dimension.height <= 0) {
+                log.error("读取图片大小出错！无法识别的图片格式，失败链接:{}", imageUrl);
+                return imageInfoDto;
+            }
+            imageInfoDto.setWidth((float) dimension.width).setHeight((float) dimension.height);
+        } catch (IOException e) {
             log.error("读取图片大小出错！失败链接:{} Error Message:{}", imageUrl, ExceptionUtils.getStackTrace(e));
-            return imageInfoDto.setWidth(IMAGE_DEFAULT_SIZE).setHeight(IMAGE_DEFAULT_SIZE);
+            return imageInfoDto;
         }
         imageInfoDto.getReasonableSize();
 
         return imageInfoDto;
     }
 
+    /**
+     * Word 中引用登记在内存中的图片；PDF 渲染按文件读取，内存中的图片写入临时目录。
+     */
+    private String imageSrc(KnowledgeBaseWordExportContext context, ResourceContent image) throws IOException {
+        if (Objects.nonNull(context.getImageResolver())) {
+            return context.getImageResolver().register(image);
+        }
+        File imageFile = image.getFile();
+        if (!image.isSpilled()) {
+            imageFile = new File(context.getTmpDir(), UUID.randomUUID() + ".png");
+            FileUtils.writeByteArrayToFile(imageFile, image.getBytes());
+        }
+        return "file://" + imageFile.getAbsolutePath();
+    }
 
-    private void insertHtmlToDoc(String html) {
+
+    /**
+     * 含图片的内容立即导入，AltChunk 统一转换时无法从内存解析图片。
+     */
+    private void insertHtmlToDoc(KnowledgeBaseWordExportContext context, String html, boolean embedsImages) {
         try {
-            String xhtml = convertToXhtml(html);
-            mdp.addAltChunk(AltChunkType.Xhtml, xhtml.getBytes());
-            wordMLPackage = mdp.convertAltChunks();
-            mdp = wordMLPackage.getMainDocumentPart();
+            String xhtml = convertToXhtml(context, html);
+            if (embedsImages) {
+                XHTMLImporterImpl importer = new XHTMLImporterImpl(context.getWordMLPackage());
+                context.getImageResolver().apply(importer, context.getImageParts());
+                context.getMdp().getContent().addAll(importer.convert(xhtml, null));
+                return;
+            }
+            context.getMdp().addAltChunk(AltChunkType.Xhtml, xhtml.getBytes(StandardCharsets.UTF_8));
         } catch (Docx4JException e) {
             log.error("addAltChunk error:{}", ExceptionUtils.getStackTrace(e));
             throw new RuntimeException("导出Word失败!");
         }
     }
 
+    private String convertToXhtml(KnowledgeBaseWordExportContext context, String html) {
+        long tidyStart = context.getTrace().start();
+        String xhtml = convertToXhtml(html);
+        context.getTrace().stop(ExportPhase.HTML_TO_XHTML, tidyStart);
+        return xhtml;
+    }
+
     private String convertToXhtml(String html) {
         Tidy tidy = new Tidy();
         tidy.setInputEncoding("UTF-8");
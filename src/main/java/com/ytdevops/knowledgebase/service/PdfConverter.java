@@ -0,0 +1,188 @@
+package com.ytdevops.knowledgebase.service;
+
+import com.ytdevops.common.RetryAfterException;
+import com.ytdevops.knowledgebase.PdfConvertProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * wkhtmltopdf 转换：限制同时运行的进程数并排队，HTML 经标准输入写入、PDF 从标准输出读出，
+ * 标准错误由单独线程读取，避免缓冲区写满导致进程挂起；超时强制结束进程。
+ * 退出码不为 0 时抛出异常，调用方应先把输出写入临时文件，转换成功后再写回响应。
+ */
+@Slf4j
+@Service
+public class PdfConverter {
+    private static final int STDERR_TAIL_LENGTH = 4096;
+    private static final long MAX_RETRY_AFTER_SECONDS = 300;
+    private final PdfConvertProperties pdfConvertProperties;
+    private final Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final ExecutorService streamExecutor = Executors.newCachedThreadPool(new CustomizableThreadFactory("pdf-converter-io-"));
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("pdf-converter-watchdog-"));
+    private final MeterRegistry meterRegistry;
+    private final Timer queueTimer;
+    /**
+     * 近期转换耗时的指数移动平均，用于估算 Retry-After。
+     */
+    private final AtomicLong averageConversionNanos = new AtomicLong();
+
+    public PdfConverter(PdfConvertProperties pdfConvertProperties, MeterRegistry meterRegistry) {
+        this.pdfConvertProperties = pdfConvertProperties;
+        this.permits = new Semaphore(pdfConvertProperties.getMaxConcurrency(), true);
+        this.meterRegistry = meterRegistry;
+        this.queueTimer = Timer.builder("export.pdf.queue.wait").register(meterRegistry);
+        Gauge.builder("export.pdf.queue.depth", waiting, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("export.pdf.running", running, AtomicInteger::get).register(meterRegistry);
+    }
+
+    public void convert(String html, OutputStream outputStream) throws IOException {
+        acquire();
+        running.incrementAndGet();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failure";
+        try {
+            runProcess(html, outputStream);
+            outcome = "success";
+        } catch (TimeoutException e) {
+            outcome = "timeout";
+            throw new IOException("PDF转换超时！", e);
+        } finally {
+            running.decrementAndGet();
+            permits.release();
+            long conversionNanos = sample.stop(meterRegistry.timer("export.pdf.conversion", "outcome", outcome));
+            averageConversionNanos.updateAndGet(average -> average == 0 ? conversionNanos : (long) (average * 0.8 + conversionNanos * 0.2));
+        }
+    }
+
+    private void acquire() {
+        if (waiting.incrementAndGet() > pdfConvertProperties.getQueueCapacity()) {
+            waiting.decrementAndGet();
+            throw new RetryAfterException(HttpStatus.TOO_MANY_REQUESTS, "PDF导出任务过多，请稍后重试！", retryAfterSeconds());
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(pdfConvertProperties.getQueueTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new RetryAfterException(HttpStatus.SERVICE_UNAVAILABLE, "PDF导出排队超时，请稍后重试！", retryAfterSeconds());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "PDF导出已中断！");
+        } finally {
+            waiting.decrementAndGet();
+            queueTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 排在前面的转换按近期平均耗时全部完成所需的时间。
+     */
+    private long retryAfterSeconds() {
+        double rounds = (double) (waiting.get() + 1) / Math.max(1, pdfConvertProperties.getMaxConcurrency());
+        long seconds = (long) Math.ceil(averageConversionNanos.get() * rounds / TimeUnit.SECONDS.toNanos(1));
+        return Math.min(MAX_RETRY_AFTER_SECONDS, Math.max(1, seconds));
+    }
+
+    private void runProcess(String html, OutputStream outputStream) throws IOException, TimeoutException {
+        Process process = new ProcessBuilder(pdfConvertProperties.getCommand()).directory(new File("/")).start();
+        AtomicBoolean killed = new AtomicBoolean();
+        ScheduledFuture<?> timeoutKill = watchdog.schedule(() -> {
+            killed.set(true);
+            destroy(process);
+        }, pdfConvertProperties.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        try {
+            Future<?> stdin = streamExecutor.submit(() -> {
+                try (OutputStream processInput = process.getOutputStream()) {
+                    processInput.write(html.getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+            Future<String> stderr = streamExecutor.submit(() -> readTail(process.getErrorStream()));
+
+            try (InputStream processOutput = process.getInputStream()) {
+                IOUtils.copyLarge(processOutput, outputStream);
+            }
+            int exitCode = process.waitFor();
+            String errorOutput = stderr.get();
+            if (killed.get()) {
+                throw new TimeoutException();
+            }
+            waitQuietly(stdin);
+            if (exitCode != 0) {
+                throw new IOException("PDF转换失败，退出码:" + exitCode + " " + errorOutput);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("PDF转换被中断！");
+        } catch (ExecutionException e) {
+            if (killed.get()) {
+                throw new TimeoutException();
+            }
+            throw new IOException(e.getCause());
+        } catch (IOException e) {
+            // 超时结束进程后读取输出可能先报 Stream closed
+            if (killed.get()) {
+                throw new TimeoutException();
+            }
+            throw e;
+        } finally {
+            timeoutKill.cancel(false);
+            if (process.isAlive()) {
+                destroy(process);
+            }
+        }
+    }
+
+    private static void destroy(Process process) {
+        // 子进程继承了标准输出，只结束父进程时读取端不会结束
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    private void waitQuietly(Future<?> stdin) throws InterruptedException {
+        try {
+            stdin.get();
+        } catch (ExecutionException e) {
+            // 进程不读完输入就退出时写入会失败，以退出码和输出为准
+            log.debug("写入PDF转换输入失败:{}", ExceptionUtils.getStackTrace(e.getCause()));
+        }
+    }
+
+    private static String readTail(InputStream inputStream) throws IOException {
+        StringBuilder tail = new StringBuilder();
+        try (Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+            char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                tail.append(buffer, 0, read);
+                if (tail.length() > STDERR_TAIL_LENGTH * 2) {
+                    tail.delete(0, tail.length() - STDERR_TAIL_LENGTH);
+                }
+            }
+        }
+        return tail.length() > STDERR_TAIL_LENGTH ? tail.substring(tail.length() - STDERR_TAIL_LENGTH) : tail.toString();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+        streamExecutor.shutdownNow();
+    }
+}
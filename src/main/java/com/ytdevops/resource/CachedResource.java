@@ -0,0 +1,15 @@
+package com.ytdevops.resource;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+@Data
+@Accessors(chain = true)
+public class CachedResource {
+    private String url;
+    private String etag;
+    private String lastModified;
+    private String contentHash;
+    private long validatedAt;
+    private byte[] content;
+}
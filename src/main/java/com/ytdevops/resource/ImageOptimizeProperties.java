@@ -0,0 +1,50 @@
+package com.ytdevops.resource;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@Accessors(chain = true)
+@Component
+@ConfigurationProperties(prefix = "export.image")
+public class ImageOptimizeProperties {
+    private boolean enabled = true;
+
+    /**
+     * 文档中图片的最大显示宽度（像素，按 96 DPI），与 ImageInfoDto 的 MAX_IMAGE_WIDTH 一致。
+     */
+    private int displayWidth = 540;
+
+    /**
+     * 按显示宽度缩小时保留的分辨率，150 即缩小到 540 / 96 * 150 = 844 像素宽。
+     */
+    private int dpi = 150;
+
+    /**
+     * 宽度不超过目标宽度但文件超过此大小的图片也重新编码（照片类 PNG 转 JPEG）。
+     */
+    private DataSize transcodeThreshold = DataSize.ofKilobytes(256);
+
+    /**
+     * 像素数超过此值的图片不解码，原样嵌入。解码后每像素约占 4 字节，24MP 约 96MB。
+     */
+    private long maxPixels = 24_000_000L;
+
+    /**
+     * 所有线程同时解码的图片按每像素 4 字节估算的内存总上限，超出时等待其他图片处理完成；单张超出此值的图片原样嵌入。
+     */
+    private DataSize decodeMemory = DataSize.ofMegabytes(256);
+
+    /**
+     * 照片转为 JPEG 的质量，0~1。
+     */
+    private float jpegQuality = 0.85F;
+
+    /**
+     * 解码和编码的线程数，所有导出共享。
+     */
+    private int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+}
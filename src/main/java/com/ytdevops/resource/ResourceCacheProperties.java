@@ -0,0 +1,39 @@
+package com.ytdevops.resource;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Data
+@Accessors(chain = true)
+@Component
+@ConfigurationProperties(prefix = "export.cache")
+public class ResourceCacheProperties {
+    private boolean enabled = true;
+
+    /**
+     * 内存中缓存内容的总字节上限，超出时按最近最少使用溢出到磁盘。
+     */
+    private DataSize memoryBudget = DataSize.ofMegabytes(64);
+
+    /**
+     * 磁盘缓存的总字节上限，超出时按最近最少使用删除。
+     */
+    private DataSize diskBudget = DataSize.ofMegabytes(512);
+
+    private String diskDir = "/tmp/export-s-cache";
+
+    /**
+     * 缓存的链接数上限。
+     */
+    private int maxUrls = 10000;
+
+    /**
+     * 在此时间内直接使用缓存，超过后通过 ETag/Last-Modified 向源站重新验证。
+     */
+    private Duration freshFor = Duration.ofMinutes(10);
+}
@@ -0,0 +1,73 @@
+package com.ytdevops.resource;
+
+import lombok.Getter;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+
+import java.io.*;
+import java.util.Objects;
+
+/**
+ * 预取得到的图片或架构图内容，默认保存在内存中；开启溢出且超过阈值时保存在临时目录的文件中。
+ */
+public final class ResourceContent {
+    private final byte[] data;
+    @Getter
+    private final File file;
+    @Getter
+    private final long length;
+    /**
+     * 取得内容的来源名称，不是预取得到的内容为空。
+     */
+    @Getter
+    private final String source;
+    private volatile String contentHash;
+
+    private ResourceContent(byte[] data, File file, long length, String source) {
+        this.data = data;
+        this.file = file;
+        this.length = length;
+        this.source = source;
+    }
+
+    public static ResourceContent of(byte[] data) {
+        return of(data, null);
+    }
+
+    public static ResourceContent of(byte[] data, String source) {
+        return new ResourceContent(data, null, data.length, source);
+    }
+
+    public static ResourceContent spilled(File file, String source) {
+        return new ResourceContent(null, file, file.length(), source);
+    }
+
+    public boolean isSpilled() {
+        return Objects.nonNull(file);
+    }
+
+    /**
+     * 在内存中时直接返回内部数组，调用方不能修改。
+     */
+    public byte[] getBytes() throws IOException {
+        return isSpilled() ? FileUtils.readFileToByteArray(file) : data;
+    }
+
+    public InputStream openStream() throws IOException {
+        return isSpilled() ? new BufferedInputStream(new FileInputStream(file)) : new ByteArrayInputStream(data);
+    }
+
+    /**
+     * 内容的 SHA-256，第一次使用时计算。
+     */
+    public String getContentHash() throws IOException {
+        String hash = contentHash;
+        if (Objects.isNull(hash)) {
+            try (InputStream inputStream = openStream()) {
+                hash = DigestUtils.sha256Hex(inputStream);
+            }
+            contentHash = hash;
+        }
+        return hash;
+    }
+}
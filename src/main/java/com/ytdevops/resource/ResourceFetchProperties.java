@@ -0,0 +1,73 @@
+package com.ytdevops.resource;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Accessors(chain = true)
+@Component
+@ConfigurationProperties(prefix = "export.fetch")
+public class ResourceFetchProperties {
+    private Duration connectTimeout = Duration.ofSeconds(5);
+
+    private Duration readTimeout = Duration.ofSeconds(20);
+
+    /**
+     * 所有导出共享的下载线程数上限。
+     */
+    private int maxConcurrency = 16;
+
+    /**
+     * 同一主机同时进行的下载数上限。
+     */
+    private int maxPerHost = 6;
+
+    /**
+     * 单次导出预取全部图片和架构图的总时限，超时未完成的下载会被放弃。
+     */
+    private Duration deadline = Duration.ofSeconds(60);
+
+    /**
+     * 单个图片或架构图的大小上限。响应的 Content-Length 超出时不下载，没有 Content-Length 时读到超出为止，本地挂载的文件超出时不读取。
+     */
+    private DataSize maxResourceSize = DataSize.ofMegabytes(64);
+
+    /**
+     * 下载的内容默认留在内存中；开启后超过 spillThreshold 的写入导出的临时目录，内存不足的节点使用。
+     */
+    private boolean spillToDisk = false;
+
+    private DataSize spillThreshold = DataSize.ofMegabytes(8);
+
+    /**
+     * 读取没有 Content-Length 的响应时使用的缓冲块大小和池中保留的块数，所有下载共享。
+     */
+    private DataSize bufferChunkSize = DataSize.ofKilobytes(256);
+
+    private int bufferPoolChunks = 64;
+
+    /**
+     * 链接前缀 -> 本地挂载目录，匹配的链接直接读取目录下对应路径的文件，不经过 HTTP。
+     * <pre>
+     * export.fetch.mounts[0].url-prefix=https://oss.example.com/bucket/
+     * export.fetch.mounts[0].dir=/mnt/oss/bucket
+     * </pre>
+     */
+    private List<Mount> mounts = new ArrayList<>();
+
+    @Data
+    @Accessors(chain = true)
+    public static class Mount {
+        private String urlPrefix;
+
+        private File dir;
+    }
+}
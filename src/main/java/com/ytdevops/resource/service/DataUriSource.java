@@ -0,0 +1,48 @@
+package com.ytdevops.resource.service;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 直接解码富文本中内嵌的 data: 图片。
+ */
+@Order(1)
+@Component
+public class DataUriSource implements ResourceSource {
+    private static final String SCHEME = "data:";
+    private static final String BASE64_SUFFIX = ";base64";
+
+    @Override
+    public String getName() {
+        return "data";
+    }
+
+    @Override
+    public boolean supports(String resourceUrl) {
+        return resourceUrl.regionMatches(true, 0, SCHEME, 0, SCHEME.length());
+    }
+
+    @Override
+    public byte[] read(String resourceUrl) throws IOException {
+        int comma = resourceUrl.indexOf(',');
+        if (comma < 0) {
+            throw new IOException("data URI 缺少内容");
+        }
+        String header = resourceUrl.substring(SCHEME.length(), comma);
+        String payload = resourceUrl.substring(comma + 1);
+        try {
+            if (header.regionMatches(true, header.length() - BASE64_SUFFIX.length(), BASE64_SUFFIX, 0, BASE64_SUFFIX.length())) {
+                // 富文本中的 base64 可能带有换行
+                return Base64.getMimeDecoder().decode(payload);
+            }
+            return URLDecoder.decode(payload.replace("+", "%2B"), StandardCharsets.UTF_8).getBytes(StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("data URI 内容无法解码", e);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.ytdevops.resource.service;
+
+import com.ytdevops.common.ExportPhase;
+import com.ytdevops.common.ExportTrace;
+import com.ytdevops.resource.ImageOptimizeProperties;
+import com.ytdevops.resource.ResourceContent;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 嵌入文档前优化下载到的图片：宽度超过显示宽度的缩小到目标分辨率，照片重新编码为 JPEG、线条图和截图为 PNG，
+ * 结果不比原图小时保留原图。内容相同的图片对应同一份内容，在文档中只保存一份。优化结果保存在内存中。
+ * 重新编码会丢失 EXIF，带方向信息的 JPEG 解码后先按方向旋转；同时解码的图片按估算的内存占用限流。
+ */
+@Slf4j
+@Service
+public class ImageOptimizer {
+    private static final byte[] GIF_SIGNATURE = {'G', 'I', 'F', '8'};
+    private static final float DEFAULT_DPI = 96F;
+    private static final int COLOR_SAMPLES_PER_SIDE = 64;
+    /**
+     * 解码为 TYPE_INT_RGB/ARGB 时每像素占用的字节数。
+     */
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private final ImageOptimizeProperties imageOptimizeProperties;
+    private final ThreadPoolExecutor executor;
+    /**
+     * 解码内存预算，以 KB 为单位的许可。
+     */
+    private final Semaphore decodeMemory;
+    private final int decodeMemoryKilobytes;
+
+    @AllArgsConstructor
+    private static class Optimized {
+        private final String contentHash;
+        private final ResourceContent content;
+        private final long originalBytes;
+    }
+
+    public ImageOptimizer(ImageOptimizeProperties imageOptimizeProperties) {
+        this.imageOptimizeProperties = imageOptimizeProperties;
+        int threads = Math.max(1, imageOptimizeProperties.getThreads());
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("image-optimizer-"));
+        this.executor.allowCoreThreadTimeOut(true);
+        this.decodeMemoryKilobytes = (int) Math.min(Integer.MAX_VALUE, Math.max(1, imageOptimizeProperties.getDecodeMemory().toKilobytes()));
+        this.decodeMemory = new Semaphore(decodeMemoryKilobytes);
+    }
+
+    /**
+     * 优化 resources 中 imageUrls 对应的图片，原内容不变。
+     *
+     * @return 替换为优化后内容的新映射，其他链接（如架构图）保持不变
+     */
+    public Map<String, ResourceContent> optimize(Map<String, ResourceContent> resources, Collection<String> imageUrls, ExportTrace trace) {
+        if (!imageOptimizeProperties.isEnabled()) {
+            return resources;
+        }
+        Map<ResourceContent, Future<Optimized>> futures = new LinkedHashMap<>();
+        for (String imageUrl : imageUrls) {
+            ResourceContent image = resources.get(imageUrl);
+            if (Objects.nonNull(image)) {
+                futures.computeIfAbsent(image, source -> executor.submit(() -> optimize(source)));
+            }
+        }
+        if (futures.isEmpty()) {
+            return resources;
+        }
+
+        long start = trace.start();
+        Map<ResourceContent, ResourceContent> replacements = new HashMap<>(futures.size() * 2);
+        Map<String, ResourceContent> contents = new HashMap<>(futures.size() * 2);
+        long originalBytes = 0;
+        long optimizedBytes = 0;
+        int transcoded = 0;
+        int duplicates = 0;
+        for (Map.Entry<ResourceContent, Future<Optimized>> entry : futures.entrySet()) {
+            Optimized optimized;
+            try {
+                optimized = entry.getValue().get();
+            } catch (ExecutionException e) {
+                log.error("图片优化出错，使用原图 Error Message:{}", ExceptionUtils.getStackTrace(e.getCause()));
+                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.values().forEach(future -> future.cancel(true));
+                throw new RuntimeException("图片优化被中断！");
+            }
+            originalBytes += optimized.originalBytes;
+            ResourceContent shared = contents.putIfAbsent(optimized.contentHash, optimized.content);
+            if (Objects.nonNull(shared)) {
+                duplicates++;
+                replacements.put(entry.getKey(), shared);
+                continue;
+            }
+            if (optimized.content != entry.getKey()) {
+                transcoded++;
+            }
+            optimizedBytes += optimized.content.getLength();
+            replacements.put(entry.getKey(), optimized.content);
+        }
+        trace.stop(ExportPhase.IMAGE_OPTIMIZE, start);
+        trace.addImageOptimization(originalBytes, optimizedBytes);
+        log.info("图片优化 图片:{} 重新编码:{} 重复:{} 优化前:{}字节 优化后:{}字节", futures.size(), transcoded, duplicates,
+                originalBytes, optimizedBytes);
+
+        Map<String, ResourceContent> optimizedResources = new HashMap<>(resources);
+        optimizedResources.replaceAll((url, content) -> replacements.getOrDefault(content, content));
+        return optimizedResources;
+    }
+
+    private Optimized optimize(ResourceContent source) throws IOException {
+        byte[] data = source.getBytes();
+        String contentHash = source.getContentHash();
+        try {
+            byte[] transcoded = transcode(source, data);
+            return new Optimized(contentHash, Objects.isNull(transcoded) ? source : ResourceContent.of(transcoded), data.length);
+        } catch (Exception e) {
+            log.warn("图片优化失败，使用原图 Error Message:{}", ExceptionUtils.getMessage(e));
+            return new Optimized(contentHash, source, data.length);
+        }
+    }
+
+    /**
+     * @return 重新编码后的内容，不需要优化或结果不比原图小时返回 null
+     */
+    private byte[] transcode(ResourceContent source, byte[] data) throws IOException {
+        Dimension dimension = ImageSizeProbe.probe(source);
+        // 动图解码后只剩第一帧
+        if (Objects.isNull(dimension) || startsWith(data, GIF_SIGNATURE)) {
+            return null;
+        }
+        int orientation = ImageSizeProbe.jpegOrientation(data);
+        boolean oriented = orientation != ImageSizeProbe.DEFAULT_ORIENTATION;
+        boolean transposed = orientation >= 5;
+        int displayedWidth = transposed ? dimension.height : dimension.width;
+        int targetWidth = Math.round(imageOptimizeProperties.getDisplayWidth() * imageOptimizeProperties.getDpi() / DEFAULT_DPI);
+        boolean oversized = displayedWidth > targetWidth;
+        if (!oversized && !oriented && data.length <= imageOptimizeProperties.getTranscodeThreshold().toBytes()) {
+            return null;
+        }
+        long pixels = (long) dimension.width * dimension.height;
+        long decodeKilobytes = (pixels * BYTES_PER_PIXEL + 1023) / 1024;
+        if (pixels > imageOptimizeProperties.getMaxPixels() || decodeKilobytes > decodeMemoryKilobytes) {
+            return null;
+        }
+        BufferedImage image;
+        try {
+            decodeMemory.acquire((int) decodeKilobytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待解码内存时被中断！");
+        }
+        try {
+            image = ImageIO.read(new ByteArrayInputStream(data));
+            if (Objects.isNull(image)) {
+                return null;
+            }
+            if (oversized) {
+                // 缩小后显示宽度为目标宽度，方向为 5~8 时存储的高度才是显示宽度
+                int scaledWidth = Math.max(1, (int) Math.round((double) image.getWidth() * targetWidth / displayedWidth));
+                image = downscale(image, scaledWidth);
+            }
+            if (oriented) {
+                image = orient(image, orientation);
+            }
+        } finally {
+            decodeMemory.release((int) decodeKilobytes);
+        }
+
+        boolean photo = !image.getColorModel().hasAlpha() && isPhoto(image);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        if (photo) {
+            writeJpeg(image, outputStream);
+        } else {
+            ImageIO.write(image, "png", outputStream);
+        }
+        // 原图带方向信息时嵌入后显示方向不对，即使结果更大也使用旋转后的图片
+        if (outputStream.size() >= data.length && !oriented) {
+            return null;
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * 每次缩小一半，最后一步缩到目标宽度，比一次双线性缩放更清晰。
+     */
+    private static BufferedImage downscale(BufferedImage image, int targetWidth) {
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = image;
+        int width = image.getWidth();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            int height = Math.max(1, (int) Math.round((double) image.getHeight() * width / image.getWidth()));
+            BufferedImage scaled = new BufferedImage(width, height, type);
+            Graphics2D graphics = scaled.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(current, 0, 0, width, height, null);
+            graphics.dispose();
+            current = scaled;
+        } while (width > targetWidth);
+        return current;
+    }
+
+    /**
+     * 按 EXIF 方向旋转或翻转，结果为正向显示的图片。
+     */
+    private static BufferedImage orient(BufferedImage image, int orientation) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        AffineTransform transform;
+        switch (orientation) {
+            case 2:
+                transform = new AffineTransform(-1, 0, 0, 1, width, 0);
+                break;
+            case 3:
+                transform = new AffineTransform(-1, 0, 0, -1, width, height);
+                break;
+            case 4:
+                transform = new AffineTransform(1, 0, 0, -1, 0, height);
+                break;
+            case 5:
+                transform = new AffineTransform(0, 1, 1, 0, 0, 0);
+                break;
+            case 6:
+                transform = new AffineTransform(0, 1, -1, 0, height, 0);
+                break;
+            case 7:
+                transform = new AffineTransform(0, -1, -1, 0, height, width);
+                break;
+            case 8:
+                transform = new AffineTransform(0, -1, 1, 0, 0, width);
+                break;
+            default:
+                return image;
+        }
+        boolean transposed = orientation >= 5;
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage oriented = new BufferedImage(transposed ? height : width, transposed ? width : height, type);
+        Graphics2D graphics = oriented.createGraphics();
+        graphics.drawImage(image, transform, null);
+        graphics.dispose();
+        return oriented;
+    }
+
+    /**
+     * 按网格取样，不同颜色占样本四分之一以上的视为照片；截图和线条图的颜色数很少。
+     */
+    private static boolean isPhoto(BufferedImage image) {
+        int stepX = Math.max(1, image.getWidth() / COLOR_SAMPLES_PER_SIDE);
+        int stepY = Math.max(1, image.getHeight() / COLOR_SAMPLES_PER_SIDE);
+        Set<Integer> colors = new HashSet<>();
+        int samples = 0;
+        for (int y = 0; y < image.getHeight(); y += stepY) {
+            for (int x = 0; x < image.getWidth(); x += stepX) {
+                colors.add(image.getRGB(x, y) & 0xFFFFFF);
+                samples++;
+            }
+        }
+        return colors.size() * 4 > samples;
+    }
+
+    private void writeJpeg(BufferedImage image, OutputStream outputStream) throws IOException {
+        BufferedImage rgb = image;
+        int type = image.getType();
+        if (type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_3BYTE_BGR && type != BufferedImage.TYPE_BYTE_GRAY) {
+            rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = rgb.createGraphics();
+            graphics.drawImage(image, 0, 0, null);
+            graphics.dispose();
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(outputStream)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(imageOptimizeProperties.getJpegQuality());
+            writer.setOutput(imageOutputStream);
+            writer.write(null, new IIOImage(rgb, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        if (data.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,248 @@
+package com.ytdevops.resource.service;
+
+import com.ytdevops.resource.ResourceContent;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.Dimension;
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * 只读取文件头获取图片宽高，不解码像素。支持 PNG/JPEG/GIF/WebP，其他格式交给 ImageIO 的 ImageReader 读取头信息。
+ * 文件头被截断或损坏时同样交给 ImageReader，ImageReader 也无法识别时返回 null。
+ */
+public final class ImageSizeProbe {
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] EXIF_HEADER = {'E', 'x', 'i', 'f', 0, 0};
+    private static final int ORIENTATION_TAG = 0x0112;
+    public static final int DEFAULT_ORIENTATION = 1;
+
+    private ImageSizeProbe() {
+    }
+
+    /**
+     * @return 图片宽高，无法识别时返回 null
+     */
+    public static Dimension probe(ResourceContent content) throws IOException {
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(content.openStream()))) {
+            Dimension dimension = probe(inputStream);
+            if (isValid(dimension)) {
+                return dimension;
+            }
+        } catch (EOFException e) {
+            // 文件头不完整
+        }
+        return probeWithImageReader(content);
+    }
+
+    private static Dimension probe(DataInputStream inputStream) throws IOException {
+        byte[] head = new byte[12];
+        inputStream.mark(head.length);
+        int read = inputStream.read(head);
+        inputStream.reset();
+        if (read < head.length) {
+            return null;
+        }
+
+        if (startsWith(head, PNG_SIGNATURE)) {
+            return probePng(inputStream);
+        }
+        if ((head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xD8) {
+            return probeJpeg(inputStream);
+        }
+        if (startsWith(head, "GIF8".getBytes(StandardCharsets.US_ASCII))) {
+            return probeGif(inputStream);
+        }
+        if (startsWith(head, "RIFF".getBytes(StandardCharsets.US_ASCII))
+                && new String(head, 8, 4, StandardCharsets.US_ASCII).equals("WEBP")) {
+            return probeWebp(inputStream);
+        }
+        return null;
+    }
+
+    private static Dimension probePng(DataInputStream inputStream) throws IOException {
+        // 签名(8) + IHDR 长度(4) + "IHDR"(4)
+        skipFully(inputStream, 16);
+        return new Dimension(inputStream.readInt(), inputStream.readInt());
+    }
+
+    private static Dimension probeGif(DataInputStream inputStream) throws IOException {
+        skipFully(inputStream, 6);
+        int width = inputStream.readUnsignedByte() | inputStream.readUnsignedByte() << 8;
+        int height = inputStream.readUnsignedByte() | inputStream.readUnsignedByte() << 8;
+        return new Dimension(width, height);
+    }
+
+    private static Dimension probeJpeg(DataInputStream inputStream) throws IOException {
+        skipFully(inputStream, 2);
+        while (true) {
+            if (inputStream.readUnsignedByte() != 0xFF) {
+                return null;
+            }
+            int marker = inputStream.readUnsignedByte();
+            while (marker == 0xFF) {
+                marker = inputStream.readUnsignedByte();
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                return null;
+            }
+            int length = inputStream.readUnsignedShort();
+            if (length < 2) {
+                return null;
+            }
+            boolean startOfFrame = marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+            if (startOfFrame) {
+                skipFully(inputStream, 1);
+                int height = inputStream.readUnsignedShort();
+                int width = inputStream.readUnsignedShort();
+                return new Dimension(width, height);
+            }
+            skipFully(inputStream, length - 2);
+        }
+    }
+
+    private static Dimension probeWebp(DataInputStream inputStream) throws IOException {
+        skipFully(inputStream, 12);
+        byte[] chunkType = new byte[4];
+        inputStream.readFully(chunkType);
+        String chunk = new String(chunkType, StandardCharsets.US_ASCII);
+        skipFully(inputStream, 4);
+        switch (chunk) {
+            case "VP8 ":
+                // 帧标记(3) + 起始码 9D 01 2A(3)
+                skipFully(inputStream, 6);
+                return new Dimension(readLittleEndian(inputStream, 2) & 0x3FFF, readLittleEndian(inputStream, 2) & 0x3FFF);
+            case "VP8L":
+                skipFully(inputStream, 1);
+                int bits = readLittleEndian(inputStream, 4);
+                return new Dimension((bits & 0x3FFF) + 1, ((bits >> 14) & 0x3FFF) + 1);
+            case "VP8X":
+                skipFully(inputStream, 4);
+                return new Dimension(readLittleEndian(inputStream, 3) + 1, readLittleEndian(inputStream, 3) + 1);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 读取 JPEG 的 EXIF 方向（1~8），不是 JPEG、没有 EXIF 或 EXIF 损坏时返回 {@link #DEFAULT_ORIENTATION}。
+     * 宽高按存储的像素返回，方向为 5~8 时显示的宽高与之互换。
+     */
+    public static int jpegOrientation(byte[] data) {
+        if (data.length < 4 || (data[0] & 0xFF) != 0xFF || (data[1] & 0xFF) != 0xD8) {
+            return DEFAULT_ORIENTATION;
+        }
+        int offset = 2;
+        while (offset + 4 <= data.length && (data[offset] & 0xFF) == 0xFF) {
+            int marker = data[offset + 1] & 0xFF;
+            if (marker == 0xD9 || marker == 0xDA) {
+                break;
+            }
+            int length = (data[offset + 2] & 0xFF) << 8 | data[offset + 3] & 0xFF;
+            if (length < 2) {
+                break;
+            }
+            int start = offset + 4;
+            int end = Math.min(data.length, offset + 2 + length);
+            if (marker == 0xE1 && end - start > EXIF_HEADER.length && startsWith(data, start, EXIF_HEADER)) {
+                return exifOrientation(ByteBuffer.wrap(data, start + EXIF_HEADER.length, end - start - EXIF_HEADER.length).slice());
+            }
+            offset += 2 + length;
+        }
+        return DEFAULT_ORIENTATION;
+    }
+
+    private static int exifOrientation(ByteBuffer tiff) {
+        try {
+            short byteOrder = tiff.getShort(0);
+            if (byteOrder == 0x4949) {
+                tiff.order(ByteOrder.LITTLE_ENDIAN);
+            } else if (byteOrder != 0x4D4D) {
+                return DEFAULT_ORIENTATION;
+            }
+            int ifd = tiff.getInt(4);
+            int entries = tiff.getShort(ifd) & 0xFFFF;
+            for (int i = 0; i < entries; i++) {
+                int entry = ifd + 2 + i * 12;
+                if ((tiff.getShort(entry) & 0xFFFF) == ORIENTATION_TAG) {
+                    int orientation = tiff.getShort(entry + 8) & 0xFFFF;
+                    return orientation >= 1 && orientation <= 8 ? orientation : DEFAULT_ORIENTATION;
+                }
+            }
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            // EXIF 被截断
+        }
+        return DEFAULT_ORIENTATION;
+    }
+
+    private static Dimension probeWithImageReader(ResourceContent content) throws IOException {
+        // 内存中的内容不经过 ImageIO 的磁盘缓存
+        try (ImageInputStream imageInputStream = content.isSpilled() ? ImageIO.createImageInputStream(content.getFile())
+                : new MemoryCacheImageInputStream(content.openStream())) {
+            if (imageInputStream == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInputStream, true, true);
+                Dimension dimension = new Dimension(reader.getWidth(0), reader.getHeight(0));
+                return isValid(dimension) ? dimension : null;
+            } catch (IIOException | EOFException e) {
+                return null;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static boolean isValid(Dimension dimension) {
+        return dimension != null && dimension.width > 0 && dimension.height > 0;
+    }
+
+    private static void skipFully(DataInputStream inputStream, int bytes) throws IOException {
+        while (bytes > 0) {
+            int skipped = inputStream.skipBytes(bytes);
+            if (skipped <= 0) {
+                inputStream.readByte();
+                skipped = 1;
+            }
+            bytes -= skipped;
+        }
+    }
+
+    private static int readLittleEndian(DataInputStream inputStream, int bytes) throws IOException {
+        int value = 0;
+        for (int i = 0; i < bytes; i++) {
+            value |= inputStream.readUnsignedByte() << (8 * i);
+        }
+        return value;
+    }
+
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        return startsWith(data, 0, prefix);
+    }
+
+    private static boolean startsWith(byte[] data, int offset, byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
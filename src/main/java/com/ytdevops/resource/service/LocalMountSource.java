@@ -0,0 +1,71 @@
+package com.ytdevops.resource.service;
+
+import com.ytdevops.resource.ResourceFetchProperties;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * 指向我们自己对象存储的链接，按 export.fetch.mounts 的配置直接读取本地挂载的文件。
+ * 本地没有对应文件（挂载未同步）时不支持该链接，仍通过 HTTP 下载。
+ */
+@Order(2)
+@Component
+public class LocalMountSource implements ResourceSource {
+    private final ResourceFetchProperties resourceFetchProperties;
+
+    public LocalMountSource(ResourceFetchProperties resourceFetchProperties) {
+        this.resourceFetchProperties = resourceFetchProperties;
+    }
+
+    @Override
+    public String getName() {
+        return "mount";
+    }
+
+    @Override
+    public boolean supports(String resourceUrl) {
+        return Objects.nonNull(resolve(resourceUrl));
+    }
+
+    @Override
+    public byte[] read(String resourceUrl) throws IOException {
+        File file = resolve(resourceUrl);
+        if (Objects.isNull(file)) {
+            throw new FileNotFoundException(resourceUrl);
+        }
+        long maxResourceSize = resourceFetchProperties.getMaxResourceSize().toBytes();
+        if (file.length() > maxResourceSize) {
+            throw new IOException("文件大小 " + file.length() + " 字节超过上限 " + maxResourceSize + " 字节:" + resourceUrl);
+        }
+        return FileUtils.readFileToByteArray(file);
+    }
+
+    private File resolve(String resourceUrl) {
+        for (ResourceFetchProperties.Mount mount : resourceFetchProperties.getMounts()) {
+            if (StringUtils.isBlank(mount.getUrlPrefix()) || Objects.isNull(mount.getDir()) || !resourceUrl.startsWith(mount.getUrlPrefix())) {
+                continue;
+            }
+            String path = StringUtils.substringBefore(StringUtils.substringBefore(resourceUrl.substring(mount.getUrlPrefix().length()), "?"), "#");
+            try {
+                File dir = mount.getDir().getCanonicalFile();
+                File file = new File(dir, URLDecoder.decode(path.replace("+", "%2B"), StandardCharsets.UTF_8)).getCanonicalFile();
+                // 不允许通过 ../ 读取挂载目录之外的文件
+                if (file.toPath().startsWith(dir.toPath()) && file.isFile()) {
+                    return file;
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
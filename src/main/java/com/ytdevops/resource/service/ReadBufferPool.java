@@ -0,0 +1,68 @@
+package com.ytdevops.resource.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 读取长度未知的内容时使用的缓冲块池：先读入池中固定大小的块，读完后只复制一次到大小正好的数组，
+ * 下载大图片时不再因为反复扩容产生几倍于图片的垃圾。池中最多保留 maxChunks 块，不够时临时分配。
+ */
+public class ReadBufferPool {
+    private static final long MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    private final int chunkSize;
+    private final BlockingQueue<byte[]> chunks;
+
+    public ReadBufferPool(int chunkSize, int maxChunks) {
+        this.chunkSize = chunkSize;
+        this.chunks = new ArrayBlockingQueue<>(Math.max(1, maxChunks));
+    }
+
+    /**
+     * @param maxLength 内容长度上限，读到超过上限时放弃并抛出 IOException，已读的块归还池中
+     */
+    public byte[] read(InputStream inputStream, long maxLength) throws IOException {
+        long limit = Math.min(maxLength, MAX_ARRAY_LENGTH);
+        List<byte[]> used = new ArrayList<>();
+        try {
+            long total = 0;
+            int filled = chunkSize;
+            while (true) {
+                if (filled == chunkSize) {
+                    used.add(lease());
+                    filled = 0;
+                }
+                int read = inputStream.read(used.get(used.size() - 1), filled, chunkSize - filled);
+                if (read < 0) {
+                    break;
+                }
+                filled += read;
+                total += read;
+                if (total > limit) {
+                    throw new IOException("内容超过 " + limit + " 字节");
+                }
+            }
+
+            byte[] result = new byte[(int) total];
+            int offset = 0;
+            for (byte[] chunk : used) {
+                int length = (int) Math.min(chunkSize, total - offset);
+                System.arraycopy(chunk, 0, result, offset, length);
+                offset += length;
+            }
+            return result;
+        } finally {
+            used.forEach(chunks::offer);
+        }
+    }
+
+    private byte[] lease() {
+        byte[] chunk = chunks.poll();
+        return Objects.isNull(chunk) ? new byte[chunkSize] : chunk;
+    }
+}
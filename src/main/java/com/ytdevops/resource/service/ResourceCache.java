@@ -0,0 +1,237 @@
+package com.ytdevops.resource.service;
+
+import com.ytdevops.common.OwnedDirectory;
+import com.ytdevops.resource.CachedResource;
+import com.ytdevops.resource.ResourceCacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * 所有导出共享的图片/架构图内容缓存。
+ * 链接只记录 ETag/Last-Modified 与内容哈希，内容按哈希去重存放：先放内存，超出内存预算时溢出到磁盘，超出磁盘预算时删除，均按最近最少使用淘汰。
+ * 在锁内只选出要溢出和删除的内容，读写磁盘都在锁外进行；正在写入磁盘的内容仍可从 spilling 中读取。
+ * 磁盘内容放在 diskDir 下本实例独占的子目录中。
+ */
+@Slf4j
+@Service
+public class ResourceCache {
+    private final ResourceCacheProperties resourceCacheProperties;
+    private final OwnedDirectory ownedDiskDir;
+    private final File diskDir;
+    private final Map<String, CachedResource> resourceByUrl;
+    private final LinkedHashMap<String, byte[]> memoryContent = new LinkedHashMap<>(16, 0.75F, true);
+    private final LinkedHashMap<String, Long> diskContent = new LinkedHashMap<>(16, 0.75F, true);
+    private final Map<String, byte[]> spilling = new HashMap<>();
+    private long memoryBytes;
+    private long diskBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter revalidations;
+    private final Counter evictions;
+
+    public ResourceCache(ResourceCacheProperties resourceCacheProperties, MeterRegistry meterRegistry) {
+        this.resourceCacheProperties = resourceCacheProperties;
+        this.ownedDiskDir = resourceCacheProperties.isEnabled() ? createDiskDir(new File(resourceCacheProperties.getDiskDir())) : null;
+        this.diskDir = Objects.isNull(ownedDiskDir) ? new File(resourceCacheProperties.getDiskDir()) : ownedDiskDir.getDir();
+        this.resourceByUrl = new LinkedHashMap<String, CachedResource>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResource> eldest) {
+                return size() > resourceCacheProperties.getMaxUrls();
+            }
+        };
+        this.hits = meterRegistry.counter("export.resource.cache.hits");
+        this.misses = meterRegistry.counter("export.resource.cache.misses");
+        this.revalidations = meterRegistry.counter("export.resource.cache.revalidations");
+        this.evictions = meterRegistry.counter("export.resource.cache.evictions");
+        Gauge.builder("export.resource.cache.memory.bytes", this, cache -> cache.memoryBytes).register(meterRegistry);
+        Gauge.builder("export.resource.cache.disk.bytes", this, cache -> cache.diskBytes).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return resourceCacheProperties.isEnabled();
+    }
+
+    /**
+     * @return 缓存的资源（包含内容），内容已被淘汰或从未缓存时返回 null
+     */
+    public CachedResource get(String url) {
+        CachedResource cached;
+        byte[] content;
+        synchronized (this) {
+            cached = resourceByUrl.get(url);
+            if (cached == null) {
+                return null;
+            }
+            content = memoryContent.get(cached.getContentHash());
+            if (content == null) {
+                content = spilling.get(cached.getContentHash());
+            }
+        }
+        if (content == null) {
+            content = readFromDisk(cached.getContentHash());
+        }
+        if (content == null) {
+            synchronized (this) {
+                resourceByUrl.remove(url);
+            }
+            return null;
+        }
+        return new CachedResource()
+                .setUrl(url)
+                .setEtag(cached.getEtag())
+                .setLastModified(cached.getLastModified())
+                .setContentHash(cached.getContentHash())
+                .setValidatedAt(cached.getValidatedAt())
+                .setContent(content);
+    }
+
+    public boolean isFresh(CachedResource cached) {
+        return System.currentTimeMillis() - cached.getValidatedAt() < resourceCacheProperties.getFreshFor().toMillis();
+    }
+
+    public synchronized void markRevalidated(String url) {
+        CachedResource cached = resourceByUrl.get(url);
+        if (cached != null) {
+            cached.setValidatedAt(System.currentTimeMillis());
+        }
+        revalidations.increment();
+        hits.increment();
+    }
+
+    public void recordHit() {
+        hits.increment();
+    }
+
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    public void put(String url, String etag, String lastModified, byte[] content) {
+        String contentHash = DigestUtils.sha256Hex(content);
+        Map<String, byte[]> toSpill = new LinkedHashMap<>();
+        synchronized (this) {
+            resourceByUrl.put(url, new CachedResource()
+                    .setUrl(url)
+                    .setEtag(etag)
+                    .setLastModified(lastModified)
+                    .setContentHash(contentHash)
+                    .setValidatedAt(System.currentTimeMillis()));
+            if (memoryContent.containsKey(contentHash) || diskContent.containsKey(contentHash) || spilling.containsKey(contentHash)) {
+                return;
+            }
+            if (content.length > resourceCacheProperties.getMemoryBudget().toBytes()) {
+                toSpill.put(contentHash, content);
+            } else {
+                memoryContent.put(contentHash, content);
+                memoryBytes += content.length;
+                evictFromMemory(toSpill);
+            }
+            toSpill.entrySet().removeIf(entry -> !startSpill(entry.getKey(), entry.getValue()));
+        }
+        toSpill.forEach(this::spillToDisk);
+    }
+
+    /**
+     * 调用时持有锁，选出超出内存预算的内容。
+     */
+    private void evictFromMemory(Map<String, byte[]> toSpill) {
+        Iterator<Map.Entry<String, byte[]>> iterator = memoryContent.entrySet().iterator();
+        while (memoryBytes > resourceCacheProperties.getMemoryBudget().toBytes() && iterator.hasNext()) {
+            Map.Entry<String, byte[]> eldest = iterator.next();
+            iterator.remove();
+            memoryBytes -= eldest.getValue().length;
+            toSpill.put(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    /**
+     * 调用时持有锁。
+     *
+     * @return 是否需要写入磁盘
+     */
+    private boolean startSpill(String contentHash, byte[] content) {
+        if (content.length > resourceCacheProperties.getDiskBudget().toBytes()) {
+            evictions.increment();
+            return false;
+        }
+        spilling.put(contentHash, content);
+        return true;
+    }
+
+    /**
+     * 在锁外写入磁盘，写完后在锁内登记并选出超出磁盘预算的内容，再在锁外删除。
+     */
+    private void spillToDisk(String contentHash, byte[] content) {
+        boolean written;
+        try {
+            FileUtils.writeByteArrayToFile(new File(diskDir, contentHash), content);
+            written = true;
+        } catch (IOException e) {
+            log.error("写入磁盘缓存出错！Error Message:{}", ExceptionUtils.getStackTrace(e));
+            written = false;
+        }
+
+        List<String> toDelete = new ArrayList<>();
+        synchronized (this) {
+            spilling.remove(contentHash);
+            if (!written) {
+                evictions.increment();
+                return;
+            }
+            diskContent.put(contentHash, (long) content.length);
+            diskBytes += content.length;
+
+            Iterator<Map.Entry<String, Long>> iterator = diskContent.entrySet().iterator();
+            while (diskBytes > resourceCacheProperties.getDiskBudget().toBytes() && iterator.hasNext()) {
+                Map.Entry<String, Long> eldest = iterator.next();
+                iterator.remove();
+                diskBytes -= eldest.getValue();
+                toDelete.add(eldest.getKey());
+                evictions.increment();
+            }
+        }
+        toDelete.forEach(eldest -> FileUtils.deleteQuietly(new File(diskDir, eldest)));
+    }
+
+    private byte[] readFromDisk(String contentHash) {
+        synchronized (this) {
+            if (diskContent.get(contentHash) == null) {
+                return null;
+            }
+        }
+        try {
+            return FileUtils.readFileToByteArray(new File(diskDir, contentHash));
+        } catch (IOException e) {
+            log.warn("读取磁盘缓存失败:{}", contentHash);
+            return null;
+        }
+    }
+
+    private static OwnedDirectory createDiskDir(File parent) {
+        try {
+            return OwnedDirectory.create(parent, "resource-cache-");
+        } catch (IOException e) {
+            log.error("初始化磁盘缓存目录出错！Error Message:{}", ExceptionUtils.getStackTrace(e));
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (Objects.nonNull(ownedDiskDir)) {
+            ownedDiskDir.close();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.ytdevops.resource.service;
+
+import com.ytdevops.resource.CachedResource;
+import com.ytdevops.resource.ResourceFetchProperties;
+import lombok.Data;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+
+@Data
+@Service
+public class ResourceFetcher {
+    private static final long MAX_KNOWN_LENGTH = Integer.MAX_VALUE - 8;
+
+    private final ResourceFetchProperties resourceFetchProperties;
+    private final ResourceCache resourceCache;
+    private final ReadBufferPool readBufferPool;
+
+    public ResourceFetcher(ResourceFetchProperties resourceFetchProperties, ResourceCache resourceCache) {
+        this.resourceFetchProperties = resourceFetchProperties;
+        this.resourceCache = resourceCache;
+        this.readBufferPool = new ReadBufferPool((int) resourceFetchProperties.getBufferChunkSize().toBytes(),
+                resourceFetchProperties.getBufferPoolChunks());
+    }
+
+    public byte[] fetch(String resourceUrl) throws IOException {
+        if (!resourceCache.isEnabled()) {
+            return download(openConnection(resourceUrl));
+        }
+
+        CachedResource cached = resourceCache.get(resourceUrl);
+        if (cached != null && resourceCache.isFresh(cached)) {
+            resourceCache.recordHit();
+            return cached.getContent();
+        }
+
+        URLConnection urlConnection = openConnection(resourceUrl);
+        if (cached != null && urlConnection instanceof HttpURLConnection) {
+            if (StringUtils.isNotBlank(cached.getEtag())) {
+                urlConnection.setRequestProperty("If-None-Match", cached.getEtag());
+            }
+            if (StringUtils.isNotBlank(cached.getLastModified())) {
+                urlConnection.setRequestProperty("If-Modified-Since", cached.getLastModified());
+            }
+            if (((HttpURLConnection) urlConnection).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                resourceCache.markRevalidated(resourceUrl);
+                return cached.getContent();
+            }
+        }
+
+        resourceCache.recordMiss();
+        byte[] content = download(urlConnection);
+        resourceCache.put(resourceUrl, urlConnection.getHeaderField("ETag"), urlConnection.getHeaderField("Last-Modified"), content);
+        return content;
+    }
+
+    private URLConnection openConnection(String resourceUrl) throws IOException {
+        URLConnection urlConnection = new URL(resourceUrl).openConnection();
+        urlConnection.setConnectTimeout((int) resourceFetchProperties.getConnectTimeout().toMillis());
+        urlConnection.setReadTimeout((int) resourceFetchProperties.getReadTimeout().toMillis());
+        return urlConnection;
+    }
+
+    /**
+     * 知道长度时一次分配正好的数组，否则读入缓冲块池。Content-Length 超过上限时不读取内容，直接断开连接。
+     */
+    private byte[] download(URLConnection urlConnection) throws IOException {
+        long maxResourceSize = Math.min(resourceFetchProperties.getMaxResourceSize().toBytes(), MAX_KNOWN_LENGTH);
+        long contentLength = urlConnection.getContentLengthLong();
+        if (contentLength > maxResourceSize) {
+            if (urlConnection instanceof HttpURLConnection) {
+                ((HttpURLConnection) urlConnection).disconnect();
+            }
+            throw new IOException("资源大小 " + contentLength + " 字节超过上限 " + maxResourceSize + " 字节:" + urlConnection.getURL());
+        }
+        try (InputStream inputStream = urlConnection.getInputStream()) {
+            if (contentLength >= 0) {
+                byte[] data = new byte[(int) contentLength];
+                IOUtils.readFully(inputStream, data);
+                return data;
+            }
+            return readBufferPool.read(inputStream, maxResourceSize);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.ytdevops.resource.service;
+
+import com.ytdevops.resource.ResourceContent;
+import com.ytdevops.resource.ResourceFetchProperties;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 在组装文档之前并发下载整份文档用到的图片和架构图。
+ * 线程池在所有导出间共享，并按主机限制并发数：超出名额的下载在该主机的队列中等待，不占用线程池的线程，
+ * 一个慢主机不会拖住其他主机和本地来源的下载。单次预取受总时限约束，失败或超时的链接不会出现在结果中。
+ * 链接依次交给 resourceSources，都不支持时才通过 HTTP 下载。
+ * 下载的内容留在内存中，开启溢出时超过阈值的写入 targetDir。
+ */
+@Slf4j
+@Data
+@Service
+public class ResourcePrefetchService {
+    public static final String HTTP_SOURCE = "http";
+
+    private final List<ResourceSource> resourceSources;
+    private final ResourceFetcher resourceFetcher;
+    private final ResourceFetchProperties resourceFetchProperties;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, HostQueue> hostQueues = new ConcurrentHashMap<>();
+
+    public ResourcePrefetchService(List<ResourceSource> resourceSources, ResourceFetcher resourceFetcher,
+                                   ResourceFetchProperties resourceFetchProperties) {
+        this.resourceSources = resourceSources;
+        this.resourceFetcher = resourceFetcher;
+        this.resourceFetchProperties = resourceFetchProperties;
+        int threads = resourceFetchProperties.getMaxConcurrency();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("resource-prefetch-"));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return 链接 -> 下载到的内容
+     */
+    public Map<String, ResourceContent> prefetch(Collection<String> resourceUrls, File targetDir) {
+        return prefetch(resourceUrls, targetDir, null);
+    }
+
+    /**
+     * sharedDownloads 不为空时，链接在这组下载中只下载一次，已开始或已完成的下载直接复用，溢出的文件保存在共享目录下。
+     */
+    public Map<String, ResourceContent> prefetch(Collection<String> resourceUrls, File targetDir, SharedDownloads sharedDownloads) {
+        Set<String> distinctUrls = new LinkedHashSet<>();
+        resourceUrls.stream().filter(StringUtils::isNotBlank).forEach(distinctUrls::add);
+        if (distinctUrls.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        long deadline = System.nanoTime() + resourceFetchProperties.getDeadline().toNanos();
+        Map<String, Future<ResourceContent>> futures = new LinkedHashMap<>();
+        if (Objects.isNull(sharedDownloads)) {
+            distinctUrls.forEach(resourceUrl -> futures.put(resourceUrl, submit(resourceUrl, targetDir, deadline)));
+        } else {
+            distinctUrls.forEach(resourceUrl -> futures.put(resourceUrl, sharedDownloads.downloads.computeIfAbsent(resourceUrl,
+                    url -> submit(url, sharedDownloads.getDir(), deadline))));
+        }
+
+        Map<String, ResourceContent> prefetched = new HashMap<>(futures.size() * 2);
+        for (Map.Entry<String, Future<ResourceContent>> entry : futures.entrySet()) {
+            Future<ResourceContent> future = entry.getValue();
+            try {
+                prefetched.put(entry.getKey(), future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                // 共享的下载可能还有其他导出在等待
+                if (Objects.isNull(sharedDownloads)) {
+                    future.cancel(true);
+                }
+                log.error("预取资源超时！失败链接:{}", entry.getKey());
+            } catch (CancellationException e) {
+                log.error("预取资源已取消！失败链接:{}", entry.getKey());
+            } catch (ExecutionException e) {
+                log.error("预取资源出错！失败链接:{} Error Message:{}", entry.getKey(), ExceptionUtils.getStackTrace(e.getCause()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.values().forEach(f -> f.cancel(true));
+                throw new RuntimeException("预取资源被中断！");
+            }
+        }
+        return prefetched;
+    }
+
+    /**
+     * 本地来源直接提交到线程池，HTTP 下载进入主机的队列，轮到时才提交。
+     */
+    private Future<ResourceContent> submit(String resourceUrl, File targetDir, long deadline) {
+        for (ResourceSource resourceSource : resourceSources) {
+            if (resourceSource.supports(resourceUrl)) {
+                return executor.submit(() -> toContent(resourceSource.read(resourceUrl), resourceSource.getName(), targetDir, deadline));
+            }
+        }
+
+        String host;
+        try {
+            host = new URL(resourceUrl).getHost();
+        } catch (MalformedURLException e) {
+            CompletableFuture<ResourceContent> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        FutureTask<ResourceContent> task = new FutureTask<>(() -> {
+            if (System.nanoTime() - deadline > 0) {
+                throw new TimeoutException("等待主机下载名额超时");
+            }
+            return toContent(resourceFetcher.fetch(resourceUrl), HTTP_SOURCE, targetDir, deadline);
+        });
+        // 加入队列与空闲队列的移除都在 compute 中进行，不会加入一个刚被移除的队列
+        HostQueue hostQueue = hostQueues.compute(host, (key, queue) -> {
+            HostQueue target = Objects.isNull(queue) ? new HostQueue(key) : queue;
+            target.add(task);
+            return target;
+        });
+        hostQueue.schedule();
+        return task;
+    }
+
+    /**
+     * 超过总时限（导出可能已删除 targetDir）或已取消的下载不再写入磁盘。
+     */
+    private ResourceContent toContent(byte[] data, String source, File targetDir, long deadline) throws Exception {
+        if (!resourceFetchProperties.isSpillToDisk() || data.length <= resourceFetchProperties.getSpillThreshold().toBytes()) {
+            return ResourceContent.of(data, source);
+        }
+        if (System.nanoTime() - deadline > 0 || Thread.currentThread().isInterrupted()) {
+            throw new TimeoutException("预取已超时，不再写入磁盘");
+        }
+        File file = new File(targetDir, UUID.randomUUID() + ".png");
+        FileUtils.writeByteArrayToFile(file, data);
+        return ResourceContent.spilled(file, source);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 一个主机的下载队列：同时提交到线程池的下载不超过 maxPerHost，完成一个再提交下一个，已取消的直接跳过。
+     * 队列排空且没有进行中的下载时从 hostQueues 中移除。
+     */
+    private class HostQueue {
+        private final String host;
+        private final Deque<FutureTask<ResourceContent>> pending = new ArrayDeque<>();
+        private int active;
+
+        HostQueue(String host) {
+            this.host = host;
+        }
+
+        synchronized void add(FutureTask<ResourceContent> task) {
+            pending.add(task);
+        }
+
+        private void schedule() {
+            while (true) {
+                FutureTask<ResourceContent> task;
+                synchronized (this) {
+                    if (active >= resourceFetchProperties.getMaxPerHost()) {
+                        return;
+                    }
+                    do {
+                        task = pending.poll();
+                    } while (Objects.nonNull(task) && task.isDone());
+                    if (Objects.nonNull(task)) {
+                        active++;
+                    }
+                }
+                if (Objects.isNull(task)) {
+                    // 在队列的锁之外移除，与 compute 的加锁顺序一致
+                    removeIfIdle();
+                    return;
+                }
+                FutureTask<ResourceContent> next = task;
+                try {
+                    executor.execute(() -> {
+                        try {
+                            next.run();
+                        } finally {
+                            finished();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    next.cancel(false);
+                    synchronized (this) {
+                        active--;
+                    }
+                    return;
+                }
+            }
+        }
+
+        private void finished() {
+            synchronized (this) {
+                active--;
+            }
+            schedule();
+        }
+
+        private synchronized boolean isIdle() {
+            return active == 0 && pending.isEmpty();
+        }
+
+        private void removeIfIdle() {
+            hostQueues.computeIfPresent(host, (key, queue) -> queue == this && isIdle() ? null : queue);
+        }
+    }
+}
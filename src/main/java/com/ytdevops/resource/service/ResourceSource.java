@@ -0,0 +1,17 @@
+package com.ytdevops.resource.service;
+
+import java.io.IOException;
+
+/**
+ * 不经过网络就能取得内容的资源来源，预取时按顺序询问，都不支持的链接再通过 HTTP 下载。
+ */
+public interface ResourceSource {
+    /**
+     * 统计中使用的来源名称。
+     */
+    String getName();
+
+    boolean supports(String resourceUrl);
+
+    byte[] read(String resourceUrl) throws IOException;
+}
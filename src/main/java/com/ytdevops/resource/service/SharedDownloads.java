@@ -0,0 +1,32 @@
+package com.ytdevops.resource.service;
+
+import com.ytdevops.resource.ResourceContent;
+import lombok.Getter;
+import org.apache.commons.io.FileUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+
+/**
+ * 多个导出共用的一组下载：同一链接只下载一次，溢出到磁盘的文件保存在 dir 下，关闭时统一删除。
+ */
+public class SharedDownloads implements Closeable {
+    @Getter
+    private final File dir;
+    final Map<String, Future<ResourceContent>> downloads = new ConcurrentHashMap<>();
+
+    public SharedDownloads(File dir) throws IOException {
+        this.dir = dir;
+        FileUtils.forceMkdir(dir);
+    }
+
+    @Override
+    public void close() throws IOException {
+        downloads.values().forEach(download -> download.cancel(true));
+        FileUtils.deleteDirectory(dir);
+    }
+}
@@ -0,0 +1,123 @@
+package com.ytdevops.batch.service;
+
+import com.ytdevops.batch.BatchExportDto;
+import com.ytdevops.batch.BatchExportProperties;
+import com.ytdevops.common.ExportAdmissionProperties;
+import com.ytdevops.common.service.ExportAdmission;
+import com.ytdevops.common.service.ExportCostEstimator;
+import com.ytdevops.file.StreamingExportProperties;
+import com.ytdevops.file.FileDetailDto;
+import com.ytdevops.file.service.WordExportService;
+import com.ytdevops.knowledgebase.KnowledgeDocDto;
+import com.ytdevops.knowledgebase.service.KnowledgeBaseWordExportService;
+import com.ytdevops.resource.service.SharedDownloads;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class BatchExportServiceTests {
+    private final WordExportService wordExportService = mock(WordExportService.class);
+    private final KnowledgeBaseWordExportService knowledgeBaseWordExportService = mock(KnowledgeBaseWordExportService.class);
+    private final Set<SharedDownloads> sharedDownloads = Collections.synchronizedSet(new HashSet<>());
+    private final ExportAdmissionProperties exportAdmissionProperties = new ExportAdmissionProperties().setMaxConcurrency(1).setQueueCapacity(0);
+    private final ExportAdmission exportAdmission = new ExportAdmission(exportAdmissionProperties, new SimpleMeterRegistry());
+
+    private BatchExportService batchExportService;
+
+    @BeforeEach
+    void setUp() {
+        batchExportService = new BatchExportService(wordExportService, knowledgeBaseWordExportService, new BatchExportProperties().setThreads(3),
+                exportAdmission, new ExportCostEstimator(exportAdmissionProperties, new StreamingExportProperties()));
+        doAnswer(invocation -> {
+            FileDetailDto fileDetailDto = invocation.getArgument(0);
+            String topic = fileDetailDto.getData().get(0).getTopic();
+            if (topic.startsWith("失败")) {
+                throw new RuntimeException("导出Word失败!");
+            }
+            Thread.sleep(topic.startsWith("慢") ? 500 : 0);
+            sharedDownloads.add(invocation.getArgument(2));
+            invocation.<OutputStream>getArgument(1).write(topic.getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(wordExportService).exportWord(any(FileDetailDto.class), any(OutputStream.class), any(SharedDownloads.class));
+        doAnswer(invocation -> {
+            sharedDownloads.add(invocation.getArgument(2));
+            invocation.<OutputStream>getArgument(1).write(invocation.<KnowledgeDocDto>getArgument(0).getContentHtml().getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(knowledgeBaseWordExportService).exportWord(any(KnowledgeDocDto.class), any(OutputStream.class), any(SharedDownloads.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        batchExportService.shutdown();
+    }
+
+    @Test
+    void writesDocumentsInCompletionOrderWithSharedDownloads() throws Exception {
+        BatchExportDto batchExportDto = new BatchExportDto()
+                .setFiles(List.of(file("慢文件"), file("失败文件"), file("需求/设计")))
+                .setKnowledgeDocs(List.of(new KnowledgeDocDto().setTitle("需求/设计").setContentHtml("<p>知识库</p>")));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        batchExportService.exportZip(batchExportDto, outputStream);
+
+        Map<String, String> entries = readZip(outputStream.toByteArray());
+        assertThat(entries).containsEntry("慢文件.docx", "慢文件")
+                .containsEntry("需求_设计.docx", "需求/设计")
+                .containsEntry("需求_设计(1).docx", "<p>知识库</p>")
+                .containsEntry("导出失败.txt", "失败文件.docx");
+        List<String> names = new ArrayList<>(entries.keySet());
+        assertThat(names.indexOf("慢文件.docx")).isEqualTo(names.size() - 2);
+        assertThat(sharedDownloads).hasSize(1);
+        assertThat(sharedDownloads.iterator().next().getDir()).doesNotExist();
+    }
+
+    /**
+     * 整个批次作为一个导出排队，没有名额时在写出任何内容之前拒绝。
+     */
+    @Test
+    void rejectsBatchWhenAdmissionIsFull() throws Exception {
+        BatchExportDto batchExportDto = new BatchExportDto().setFiles(List.of(file("文件")));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try (ExportAdmission.Permit running = exportAdmission.admit("a", 1)) {
+            assertThatThrownBy(() -> batchExportService.exportZip(batchExportDto, outputStream))
+                    .isInstanceOfSatisfying(ResponseStatusException.class, e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS));
+        }
+        assertThat(outputStream.size()).isZero();
+
+        batchExportService.exportZip(batchExportDto, outputStream);
+        assertThat(readZip(outputStream.toByteArray())).containsOnlyKeys("文件.docx");
+    }
+
+    private static FileDetailDto file(String topic) {
+        return new FileDetailDto().setData(List.of(new FileDetailDto.Data().setId("root").setIsroot(true).setTopic(topic)));
+    }
+
+    private static Map<String, String> readZip(byte[] zip) throws Exception {
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(zip), StandardCharsets.UTF_8)) {
+            ZipEntry entry;
+            while ((entry = zipInputStream.getNextEntry()) != null) {
+                entries.put(entry.getName(), new String(zipInputStream.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return entries;
+    }
+}
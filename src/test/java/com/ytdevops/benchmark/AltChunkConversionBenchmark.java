@@ -0,0 +1,99 @@
+package com.ytdevops.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ytdevops.common.ExportResultCacheProperties;
+import com.ytdevops.common.ExportTraceProperties;
+import com.ytdevops.common.PdfRenderProperties;
+import com.ytdevops.common.service.ExportResultCache;
+import com.ytdevops.common.service.ExportTracer;
+import com.ytdevops.common.service.NativePdfRenderer;
+import com.ytdevops.common.service.WordPackagePool;
+import com.ytdevops.file.AltChunkConversionMode;
+import com.ytdevops.file.DiagramRasterizeProperties;
+import com.ytdevops.file.FileDetailDto;
+import com.ytdevops.file.FragmentCacheProperties;
+import com.ytdevops.file.ParallelRenderProperties;
+import com.ytdevops.file.StreamingExportProperties;
+import com.ytdevops.file.service.DiagramRasterizer;
+import com.ytdevops.file.service.NodeFragmentCache;
+import com.ytdevops.file.service.WordExportService;
+import com.ytdevops.resource.ImageOptimizeProperties;
+import com.ytdevops.resource.ResourceCacheProperties;
+import com.ytdevops.resource.ResourceFetchProperties;
+import com.ytdevops.resource.service.DataUriSource;
+import com.ytdevops.resource.service.ImageOptimizer;
+import com.ytdevops.resource.service.ResourceCache;
+import com.ytdevops.resource.service.ResourceFetcher;
+import com.ytdevops.resource.service.ResourcePrefetchService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比逐节点转换与单次转换 AltChunk 的导出耗时。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class AltChunkConversionBenchmark {
+    @Param({"100", "1000", "5000"})
+    private int nodeCount;
+
+    @Param({"PER_NODE", "SINGLE_PASS"})
+    private AltChunkConversionMode mode;
+
+    private FileDetailDto fileDetailDto;
+
+    private ResourcePrefetchService resourcePrefetchService;
+
+    private DiagramRasterizer diagramRasterizer;
+
+    private WordExportService wordExportService;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        fileDetailDto = FileDetailDtoGenerator.generate(nodeCount);
+        ResourceFetchProperties resourceFetchProperties = new ResourceFetchProperties();
+        diagramRasterizer = new DiagramRasterizer(new DiagramRasterizeProperties(), new SimpleMeterRegistry());
+        resourcePrefetchService = new ResourcePrefetchService(List.of(new DataUriSource()), new ResourceFetcher(resourceFetchProperties,
+                new ResourceCache(new ResourceCacheProperties(), new SimpleMeterRegistry())), resourceFetchProperties);
+        wordExportService = new WordExportService(resourcePrefetchService, new ImageOptimizer(new ImageOptimizeProperties().setEnabled(false)),
+                diagramRasterizer, new WordPackagePool(0, false),
+                new NativePdfRenderer(new PdfRenderProperties()), new ObjectMapper(), new StreamingExportProperties(),
+                new ParallelRenderProperties().setEnabled(false),
+                new ExportResultCache(new ExportResultCacheProperties().setEnabled(false), new SimpleMeterRegistry()),
+                new NodeFragmentCache(new FragmentCacheProperties().setEnabled(false), new SimpleMeterRegistry()),
+                new ExportTracer(new ExportTraceProperties().setEnabled(false), new SimpleMeterRegistry()));
+        wordExportService.setAltChunkConversionMode(mode);
+        wordExportService.setDirectHtmlConversion(false);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        resourcePrefetchService.shutdown();
+        diagramRasterizer.shutdown();
+    }
+
+
+    @Benchmark
+    public void exportWord() {
+        wordExportService.exportWord(fileDetailDto, OutputStream.nullOutputStream());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AltChunkConversionBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,175 @@
+package com.ytdevops.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import com.ytdevops.common.JsonMappers;
+import com.ytdevops.file.ExtraSelectData;
+import com.ytdevops.file.FieldType;
+import com.ytdevops.file.FileDetailDto;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次导出中对自定义字段的检查：每个字段判空、每个节点读两次架构图字段（收集资源、插入架构图）。
+ * legacyInspect 为原先每次新建 ObjectMapper 的写法，inspect 使用绑定时解析好的值；legacyBind/bind 对比绑定本身的开销。
+ * 可加 -prof gc 查看每次操作的分配量。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentBindingBenchmark {
+    @Param({"1000"})
+    private int nodeCount;
+
+    private byte[] payload;
+
+    private ObjectReader legacyReader;
+
+    private ObjectReader reader;
+
+    private FileDetailDto fileDetailDto;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        FileDetailDto generated = FileDetailDtoGenerator.generate(nodeCount);
+        generated.getData().forEach(data -> data.setContent(contents(data.getId())));
+        payload = JsonMappers.MAPPER.writeValueAsBytes(generated);
+        legacyReader = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .setAnnotationIntrospector(new LegacyAnnotationIntrospector())
+                .readerFor(FileDetailDto.class);
+        reader = JsonMappers.MAPPER.readerFor(FileDetailDto.class);
+        fileDetailDto = reader.readValue(payload);
+    }
+
+    @Benchmark
+    public FileDetailDto legacyBind() throws IOException {
+        return legacyReader.readValue(payload);
+    }
+
+    @Benchmark
+    public FileDetailDto bind() throws IOException {
+        return reader.readValue(payload);
+    }
+
+    @Benchmark
+    public void legacyInspect(Blackhole blackhole) throws JsonProcessingException {
+        for (FileDetailDto.Data data : fileDetailDto.getData()) {
+            for (FileDetailDto.Content content : data.getContent()) {
+                blackhole.consume(legacyIsEmptyContent(content));
+            }
+            for (int pass = 0; pass < 2; pass++) {
+                for (FileDetailDto.Content content : data.getContent()) {
+                    if (content.getFieldType() == FieldType.DRAWIO && Objects.nonNull(content.getValue())) {
+                        blackhole.consume(new ObjectMapper().readValue(content.getStringValue(), new TypeReference<List<FileDetailDto.ArchitectureDiagram>>() {
+                        }));
+                    }
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void inspect(Blackhole blackhole) {
+        for (FileDetailDto.Data data : fileDetailDto.getData()) {
+            for (FileDetailDto.Content content : data.getContent()) {
+                blackhole.consume(content.isEmptyContent());
+            }
+            for (int pass = 0; pass < 2; pass++) {
+                for (FileDetailDto.Content content : data.getContent()) {
+                    if (content.getFieldType() == FieldType.DRAWIO && Objects.nonNull(content.getValue())) {
+                        blackhole.consume(content.getDrawIoDiagrams());
+                    }
+                }
+            }
+        }
+    }
+
+    private static Boolean legacyIsEmptyContent(FileDetailDto.Content content) {
+        Object value = content.getValue();
+        if (Objects.isNull(value)) {
+            return true;
+        }
+        if (content.getFieldType().getIsList()) {
+            try {
+                String writeValueAsString = new ObjectMapper().writeValueAsString(value);
+                List<String> list = new ObjectMapper().readValue(writeValueAsString, new TypeReference<List<String>>() {
+                });
+                return CollectionUtils.isEmpty(list);
+            } catch (JsonProcessingException e) {
+                return true;
+            }
+        }
+        return StringUtils.isBlank(String.valueOf(value));
+    }
+
+    private static List<FileDetailDto.Content> contents(String nodeId) {
+        List<ExtraSelectData> options = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            options.add(new ExtraSelectData().setValue("option-" + i).setLabel("选项 " + i));
+        }
+        String diagrams = "[{\"id\":\"" + nodeId + "-1\",\"name\":\"架构图\",\"data\":\"https://oss.example.com/drawio/" + nodeId + "-1.txt\"},"
+                + "{\"id\":\"" + nodeId + "-2\",\"name\":\"流程图\",\"data\":\"https://oss.example.com/drawio/" + nodeId + "-2.txt\"}]";
+        return Arrays.asList(
+                content("f-text", FieldType.TEXT, "文本内容", null),
+                content("f-textarea", FieldType.TEXTAREA, "多行\n文本", null),
+                content("f-number", FieldType.NUMBER, 42, null),
+                content("f-date", FieldType.DATE, 1_700_000_000_000L, null),
+                content("f-select", FieldType.SELECT, "option-3", options),
+                content("f-status", FieldType.STATUS, "option-1", options),
+                content("f-multi", FieldType.SELECT_MULTI, Arrays.asList("option-1", "option-5", "option-7"), options),
+                content("f-label", FieldType.LABEL, Arrays.asList("前端", "后端"), null),
+                content("f-users", FieldType.MULTI_USER_SELECT, Arrays.asList("10001", "10002"), null),
+                content("f-array", FieldType.ARRAY, new ArrayList<>(), null),
+                content("f-link", FieldType.LINK, "https://example.com/" + nodeId, null),
+                content("f-drawio", FieldType.DRAWIO, diagrams, null));
+    }
+
+    private static FileDetailDto.Content content(String fieldId, FieldType fieldType, Object value, List<ExtraSelectData> extraData) {
+        return new FileDetailDto.Content()
+                .setFieldId(fieldId)
+                .setName(fieldId)
+                .setFieldType(fieldType)
+                .setShow(true)
+                .setExtraData(extraData)
+                .setValue(value);
+    }
+
+    /**
+     * 忽略字段值转换，还原原先的绑定方式。
+     */
+    static class LegacyAnnotationIntrospector extends JacksonAnnotationIntrospector {
+        @Override
+        public Object findDeserializationContentConverter(AnnotatedMember annotatedMember) {
+            return null;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ContentBindingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,100 @@
+package com.ytdevops.benchmark;
+
+import com.ytdevops.common.service.InMemoryImageResolver;
+import com.ytdevops.file.service.HtmlWordMLConverter;
+import org.docx4j.convert.in.xhtml.XHTMLImporterImpl;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.exceptions.InvalidFormatException;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.w3c.tidy.Tidy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个节点描述的转换开销：legacy 为原来的 Jsoup → Tidy → XHTML 导入，direct 为直接从 Jsoup DOM 生成 WordML。
+ * 每轮迭代重建文档包，避免编号定义和关系无限增长。可加 -prof gc 查看每次操作的分配量。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DescriptionConversionBenchmark {
+    private static final String HTML_TEMPLATE = "<!DOCTYPE html><html><head><meta charset=\"UTF-8\"></head><body></body></html>";
+    private static final Map<String, String> SAMPLES = Map.of(
+            "text", "<p>登录页面需要支持<b>手机号</b>和<i>邮箱</i>两种方式，详见<a href=\"https://example.com/spec\">需求说明</a>。</p>"
+                    + "<p>密码输错 5 次后锁定账号 30 分钟。</p>",
+            "list", "<h3>验收标准</h3><ol><li>输入合法手机号后发送验证码</li><li>验证码 60 秒内有效<ul><li>过期后提示重新获取</li>"
+                    + "<li>同一手机号每天最多 10 次</li></ul></li><li>登录成功后跳转首页</li></ol>",
+            "table", "<table><tbody><tr><th>字段</th><th>类型</th><th>说明</th></tr><tr><td>phone</td><td>string</td><td>手机号</td></tr>"
+                    + "<tr><td>code</td><td>string</td><td>验证码</td></tr><tr><td colspan=\"3\">所有字段必填</td></tr></tbody></table>",
+            "mixed", "<h2>背景</h2><p>现有登录流程只支持账号密码。</p><ul><li>支持<strong>短信</strong>登录</li><li>支持扫码登录</li></ul>"
+                    + "<table><tbody><tr><th>场景</th><th>结果</th></tr><tr><td>验证码正确</td><td>登录成功</td></tr>"
+                    + "<tr><td>验证码错误</td><td>提示错误</td></tr></tbody></table><p style=\"text-align:center\">—— 完 ——</p>");
+
+    @Param({"text", "list", "table", "mixed"})
+    private String sample;
+
+    private String description;
+
+    private WordprocessingMLPackage wordMLPackage;
+
+    private HtmlWordMLConverter converter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        description = SAMPLES.get(sample);
+    }
+
+    @Setup(Level.Iteration)
+    public void newPackage() throws InvalidFormatException {
+        wordMLPackage = WordprocessingMLPackage.createPackage();
+        converter = new HtmlWordMLConverter(wordMLPackage, new AtomicInteger(100000), new HashMap<>(), new InMemoryImageResolver());
+    }
+
+    @Benchmark
+    public List<Object> legacy() throws Docx4JException {
+        Document document = Jsoup.parse(HTML_TEMPLATE);
+        document.body().append(Jsoup.parse(description).html());
+        return new XHTMLImporterImpl(wordMLPackage).convert(convertToXhtml(document.html()), null);
+    }
+
+    @Benchmark
+    public List<Object> direct() {
+        return converter.convert(Jsoup.parse(description).body());
+    }
+
+    private static String convertToXhtml(String html) {
+        Tidy tidy = new Tidy();
+        tidy.setInputEncoding("UTF-8");
+        tidy.setOutputEncoding("UTF-8");
+        tidy.setXHTML(true);
+        tidy.setQuiet(true);
+        tidy.setShowWarnings(false);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        tidy.parseDOM(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), outputStream);
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(DescriptionConversionBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,108 @@
+package com.ytdevops.benchmark;
+
+import com.ytdevops.file.DiagramRasterizeProperties;
+import com.ytdevops.file.service.DiagramRasterizer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderOutput;
+import org.apache.batik.transcoder.image.PNGTranscoder;
+import org.apache.commons.io.IOUtils;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在 draw.io 样例 SVG 上对比原先的 Jsoup 字符串改写 + 新建 PNGTranscoder 与 DiagramRasterizer（不缓存/缓存命中）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DiagramRasterizerBenchmark {
+    private static final String SVG_HTML_HEAD = "<!DOCTYPE svg [<!ENTITY nbsp \"&#160;\">]>";
+
+    @Param({"flowchart", "architecture", "sequence"})
+    private String diagram;
+
+    private byte[] svgBytes;
+
+    private DiagramRasterizer uncachedRasterizer;
+
+    private DiagramRasterizer cachedRasterizer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        try (InputStream inputStream = getClass().getResourceAsStream("/drawio/" + diagram + ".svg")) {
+            svgBytes = IOUtils.toByteArray(inputStream);
+        }
+        uncachedRasterizer = new DiagramRasterizer(new DiagramRasterizeProperties().setThreads(1).setCacheBudget(DataSize.ofBytes(0)), new SimpleMeterRegistry());
+        cachedRasterizer = new DiagramRasterizer(new DiagramRasterizeProperties().setThreads(1), new SimpleMeterRegistry());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        uncachedRasterizer.shutdown();
+        cachedRasterizer.shutdown();
+    }
+
+    @Benchmark
+    public byte[] legacy() throws Exception {
+        String svgSource = removeSwitchTags(new String(svgBytes, StandardCharsets.UTF_8));
+        PNGTranscoder transcoder = new PNGTranscoder();
+        TranscoderInput input = new TranscoderInput(new ByteArrayInputStream(svgSource.getBytes()));
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        transcoder.transcode(input, new TranscoderOutput(byteArrayOutputStream));
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] rasterizer() throws Exception {
+        return uncachedRasterizer.rasterize(svgBytes).get();
+    }
+
+    @Benchmark
+    public byte[] rasterizerCached() throws Exception {
+        return cachedRasterizer.rasterize(svgBytes).get();
+    }
+
+    private static String removeSwitchTags(String xmlStr) {
+        Document document = Jsoup.parse(xmlStr);
+        Elements switches = document.select("switch");
+        for (Element switchElement : switches) {
+            Element parent = switchElement.parent();
+            if (!parent.tagName().equals("g")) {
+                continue;
+            }
+            parent.append(String.valueOf(switchElement.children().last()));
+            switchElement.remove();
+        }
+
+        Element svg = document.select("svg").first();
+        String content = svg.attr("content");
+        svg.attr("content", content.replaceAll("<", "&lt;").replaceAll(">", "&gt;").replaceAll("\"", "&quot;"));
+        return SVG_HTML_HEAD + svg.outerHtml();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(DiagramRasterizerBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
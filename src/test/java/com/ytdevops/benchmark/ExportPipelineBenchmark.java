@@ -0,0 +1,122 @@
+package com.ytdevops.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ytdevops.common.ExportResultCacheProperties;
+import com.ytdevops.common.ExportTraceProperties;
+import com.ytdevops.common.PdfRenderProperties;
+import com.ytdevops.common.service.ExportResultCache;
+import com.ytdevops.common.service.ExportTracer;
+import com.ytdevops.common.service.NativePdfRenderer;
+import com.ytdevops.common.service.WordPackagePool;
+import com.ytdevops.file.DiagramRasterizeProperties;
+import com.ytdevops.file.FileDetailDto;
+import com.ytdevops.file.FragmentCacheProperties;
+import com.ytdevops.file.ParallelRenderProperties;
+import com.ytdevops.file.StreamingExportProperties;
+import com.ytdevops.file.service.DiagramRasterizer;
+import com.ytdevops.file.service.NodeFragmentCache;
+import com.ytdevops.file.service.WordExportService;
+import com.ytdevops.resource.ImageOptimizeProperties;
+import com.ytdevops.resource.ResourceCacheProperties;
+import com.ytdevops.resource.ResourceFetchProperties;
+import com.ytdevops.resource.service.DataUriSource;
+import com.ytdevops.resource.service.ImageOptimizer;
+import com.ytdevops.resource.service.ResourceCache;
+import com.ytdevops.resource.service.ResourceFetcher;
+import com.ytdevops.resource.service.ResourcePrefetchService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 整份文件导出为 docx 的吞吐，图片和架构图来自本地的 FakeResourceServer，结果缓存和片段缓存关闭，资源缓存和架构图缓存保持默认。
+ * 形状：baseline 为 500 个简单节点，其余各自加重一个维度（描述长度、图片、架构图、层数）。
+ * mvn -Pbenchmark test -Djmh.args="ExportPipelineBenchmark -prof gc" 运行。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ExportPipelineBenchmark {
+    private static final Map<String, FileDetailDtoGenerator.Shape> SHAPES = Map.of(
+            "baseline", new FileDetailDtoGenerator.Shape().setNodeCount(500),
+            "text-heavy", new FileDetailDtoGenerator.Shape().setNodeCount(500).setDescriptionParagraphs(10),
+            "images", new FileDetailDtoGenerator.Shape().setNodeCount(500).setImageCount(200),
+            "diagrams", new FileDetailDtoGenerator.Shape().setNodeCount(500).setDrawIoCount(20),
+            "deep", new FileDetailDtoGenerator.Shape().setNodeCount(500).setDepth(12));
+
+    @Param({"baseline", "text-heavy", "images", "diagrams", "deep"})
+    private String shape;
+
+    private FakeResourceServer resourceServer;
+
+    private FileDetailDto fileDetailDto;
+
+    private ResourcePrefetchService resourcePrefetchService;
+
+    private ImageOptimizer imageOptimizer;
+
+    private DiagramRasterizer diagramRasterizer;
+
+    private WordPackagePool wordPackagePool;
+
+    private WordExportService wordExportService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        resourceServer = new FakeResourceServer();
+        fileDetailDto = FileDetailDtoGenerator.generate(SHAPES.get(shape).setResourceBaseUrl(resourceServer.getBaseUrl()));
+        ResourceFetchProperties resourceFetchProperties = new ResourceFetchProperties();
+        diagramRasterizer = new DiagramRasterizer(new DiagramRasterizeProperties(), new SimpleMeterRegistry());
+        resourcePrefetchService = new ResourcePrefetchService(List.of(new DataUriSource()), new ResourceFetcher(resourceFetchProperties,
+                new ResourceCache(new ResourceCacheProperties(), new SimpleMeterRegistry())), resourceFetchProperties);
+        imageOptimizer = new ImageOptimizer(new ImageOptimizeProperties());
+        wordPackagePool = new WordPackagePool(0, false);
+        wordExportService = new WordExportService(resourcePrefetchService, imageOptimizer, diagramRasterizer, wordPackagePool,
+                new NativePdfRenderer(new PdfRenderProperties()), new ObjectMapper(), new StreamingExportProperties(),
+                new ParallelRenderProperties(),
+                new ExportResultCache(new ExportResultCacheProperties().setEnabled(false), new SimpleMeterRegistry()),
+                new NodeFragmentCache(new FragmentCacheProperties().setEnabled(false), new SimpleMeterRegistry()),
+                new ExportTracer(new ExportTraceProperties().setEnabled(false), new SimpleMeterRegistry()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        resourcePrefetchService.shutdown();
+        imageOptimizer.shutdown();
+        diagramRasterizer.shutdown();
+        wordPackagePool.shutdown();
+        resourceServer.close();
+    }
+
+    /**
+     * 返回文档字节数。
+     */
+    @Benchmark
+    public long generateWordBytes() {
+        CountingOutputStream outputStream = new CountingOutputStream(NullOutputStream.NULL_OUTPUT_STREAM);
+        wordExportService.exportWord(fileDetailDto, outputStream);
+        return outputStream.getByteCount();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ExportPipelineBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,82 @@
+package com.ytdevops.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 基准测试用的本地图片/架构图服务，与 FileDetailDtoGenerator.Shape 生成的链接对应：
+ * /image/{n}.png 返回 PNG，/drawio/{n} 返回 draw.io 导出的 data:image/svg+xml;base64 文本（轮流使用 test 资源中的样例）。
+ */
+public class FakeResourceServer implements AutoCloseable {
+    private static final String[] DIAGRAMS = {"flowchart", "architecture", "sequence"};
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+    private final byte[] image;
+    private final byte[][] diagrams = new byte[DIAGRAMS.length][];
+
+    public FakeResourceServer() throws IOException {
+        image = renderImage();
+        for (int i = 0; i < DIAGRAMS.length; i++) {
+            try (InputStream inputStream = getClass().getResourceAsStream("/drawio/" + DIAGRAMS[i] + ".svg")) {
+                String dataUrl = "data:image/svg+xml;base64," + Base64.getEncoder().encodeToString(IOUtils.toByteArray(inputStream));
+                diagrams[i] = dataUrl.getBytes(StandardCharsets.US_ASCII);
+            }
+        }
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/image/", exchange -> respond(exchange, image));
+        server.createContext("/drawio/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            int index = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+            respond(exchange, diagrams[index % diagrams.length]);
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static void respond(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    private static byte[] renderImage() throws IOException {
+        BufferedImage bufferedImage = new BufferedImage(640, 360, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = bufferedImage.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.WHITE, 640, 360, new Color(70, 130, 180)));
+        graphics.fillRect(0, 0, 640, 360);
+        graphics.setColor(Color.DARK_GRAY);
+        for (int x = 0; x < 640; x += 40) {
+            graphics.drawLine(x, 0, 640 - x, 360);
+        }
+        graphics.dispose();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(bufferedImage, "png", outputStream);
+        return outputStream.toByteArray();
+    }
+}
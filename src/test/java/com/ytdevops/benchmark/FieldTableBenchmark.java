@@ -0,0 +1,151 @@
+package com.ytdevops.benchmark;
+
+import com.ytdevops.file.ExtraSelectData;
+import com.ytdevops.file.FieldType;
+import com.ytdevops.file.FileDetailDto;
+import com.ytdevops.file.service.FieldTableBuilder;
+import org.docx4j.convert.in.xhtml.XHTMLImporterImpl;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.web.util.HtmlUtils;
+import org.w3c.tidy.Tidy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 一次导出中所有节点的字段表格：FieldTableBuilder 直接生成 WordML，对比逐个扫描选项列表、拼 HTML 表格再经 Tidy 和 XHTML 导入。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FieldTableBenchmark {
+    private static final FieldType[] FIELD_TYPES = {FieldType.TEXT, FieldType.NUMBER, FieldType.SELECT, FieldType.SELECT_MULTI,
+            FieldType.DATE, FieldType.LABEL, FieldType.MULTI_USER_SELECT, FieldType.STATUS, FieldType.TEXTAREA, FieldType.VERSION};
+    private static final int OPTION_COUNT = 50;
+
+    @Param({"200", "2000"})
+    private int nodeCount;
+
+    @Param({"10", "40"})
+    private int fieldsPerNode;
+
+    private List<List<FileDetailDto.Content>> nodeContents;
+
+    private FieldTableBuilder fieldTableBuilder;
+
+    private WordprocessingMLPackage wordMLPackage;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Docx4JException {
+        Random random = new Random(42);
+        nodeContents = new ArrayList<>(nodeCount);
+        for (int node = 0; node < nodeCount; node++) {
+            List<FileDetailDto.Content> contents = new ArrayList<>(fieldsPerNode);
+            for (int field = 0; field < fieldsPerNode; field++) {
+                contents.add(content(field, FIELD_TYPES[field % FIELD_TYPES.length], random));
+            }
+            nodeContents.add(contents);
+        }
+        fieldTableBuilder = new FieldTableBuilder();
+        wordMLPackage = WordprocessingMLPackage.createPackage();
+    }
+
+    @Benchmark
+    public void wordml(Blackhole blackhole) {
+        Map<String, Map<String, String>> labelCache = new HashMap<>();
+        for (List<FileDetailDto.Content> contents : nodeContents) {
+            blackhole.consume(fieldTableBuilder.build(contents, labelCache));
+        }
+    }
+
+    @Benchmark
+    public void htmlTidy(Blackhole blackhole) throws Docx4JException {
+        XHTMLImporterImpl importer = new XHTMLImporterImpl(wordMLPackage);
+        for (List<FileDetailDto.Content> contents : nodeContents) {
+            StringBuilder html = new StringBuilder("<!DOCTYPE html><html><head><meta charset=\"UTF-8\"></head><body><table border=\"1\" cellspacing=\"0\" width=\"100%\">");
+            for (FileDetailDto.Content content : contents) {
+                html.append("<tr><td><b>").append(HtmlUtils.htmlEscape(content.getName())).append("</b></td><td>")
+                        .append(HtmlUtils.htmlEscape(scanLabels(content))).append("</td></tr>");
+            }
+            html.append("</table></body></html>");
+            blackhole.consume(importer.convert(convertToXhtml(html.toString()), null));
+        }
+    }
+
+    private static String scanLabels(FileDetailDto.Content content) {
+        Collection<?> values = content.getValue() instanceof Collection ? (Collection<?>) content.getValue() : Collections.singletonList(content.getValue());
+        return values.stream().map(String::valueOf)
+                .map(value -> content.getExtraData().stream().filter(option -> value.equals(option.getValue()))
+                        .map(ExtraSelectData::getLabel).findFirst().orElse(value))
+                .collect(Collectors.joining("、"));
+    }
+
+    private static String convertToXhtml(String html) {
+        Tidy tidy = new Tidy();
+        tidy.setInputEncoding("UTF-8");
+        tidy.setOutputEncoding("UTF-8");
+        tidy.setXHTML(true);
+        tidy.setQuiet(true);
+        tidy.setShowWarnings(false);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        tidy.parseDOM(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), outputStream);
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+
+    private static FileDetailDto.Content content(int field, FieldType fieldType, Random random) {
+        List<ExtraSelectData> options = new ArrayList<>(OPTION_COUNT);
+        for (int option = 0; option < OPTION_COUNT; option++) {
+            options.add(new ExtraSelectData().setValue("option-" + field + "-" + option).setLabel("选项 " + option));
+        }
+        Object value;
+        switch (fieldType) {
+            case NUMBER:
+                value = random.nextInt(10_000);
+                break;
+            case DATE:
+                value = 1_700_000_000_000L + random.nextInt(1_000_000_000);
+                break;
+            case SELECT_MULTI:
+            case LABEL:
+            case MULTI_USER_SELECT:
+                value = Arrays.asList("option-" + field + "-" + random.nextInt(OPTION_COUNT), "option-" + field + "-" + random.nextInt(OPTION_COUNT));
+                break;
+            case SELECT:
+            case STATUS:
+            case VERSION:
+                value = "option-" + field + "-" + random.nextInt(OPTION_COUNT);
+                break;
+            default:
+                value = "字段 " + field + " 的文本内容\n第二行";
+        }
+        return new FileDetailDto.Content()
+                .setFieldId("field-" + field)
+                .setOrderNumber(field)
+                .setName("字段 " + field)
+                .setFieldType(fieldType)
+                .setShow(true)
+                .setExtraData(options)
+                .setValue(value);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(FieldTableBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
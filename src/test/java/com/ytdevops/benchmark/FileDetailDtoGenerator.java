@@ -0,0 +1,120 @@
+package com.ytdevops.benchmark;
+
+import com.ytdevops.file.FileDetailDto;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public final class FileDetailDtoGenerator {
+    private static final String ROOT_ID = "root";
+    private static final int BRANCHING_FACTOR = 5;
+
+    private FileDetailDtoGenerator() {
+    }
+
+    /**
+     * 生成文件的形状。图片和架构图依次分配给各节点，链接指向 resourceBaseUrl 下的 /image/{n}.png 和 /drawio/{n}（见 FakeResourceServer）。
+     */
+    @Data
+    @Accessors(chain = true)
+    public static class Shape {
+        private int nodeCount = 100;
+        /**
+         * 最大层数（根节点为第 1 层），按能容纳所有节点的最小分支数逐层填满。
+         */
+        private int depth = 4;
+        /**
+         * 每个节点描述中的段落数，每段附带一个列表和一个表格行。
+         */
+        private int descriptionParagraphs = 1;
+        private int imageCount;
+        private int drawIoCount;
+        private String resourceBaseUrl;
+    }
+
+    public static FileDetailDto generate(int nodeCount) {
+        List<FileDetailDto.Data> dataList = new ArrayList<>(nodeCount);
+        List<Integer> layers = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            dataList.add(node(i, BRANCHING_FACTOR, layers).setDescription(description(i)));
+        }
+        return new FileDetailDto()
+                .setMeta(new FileDetailDto.Meta().setName("benchmark-" + nodeCount))
+                .setFormat("node_array")
+                .setData(dataList);
+    }
+
+    public static FileDetailDto generate(Shape shape) {
+        int nodeCount = shape.getNodeCount();
+        int branchingFactor = branchingFactor(nodeCount, shape.getDepth());
+        List<FileDetailDto.Data> dataList = new ArrayList<>(nodeCount);
+        List<Integer> layers = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            StringBuilder description = new StringBuilder();
+            for (int p = 0; p < shape.getDescriptionParagraphs(); p++) {
+                description.append(description(i));
+            }
+            for (int image = i; image < shape.getImageCount(); image += nodeCount) {
+                description.append("<p><img src=\"").append(shape.getResourceBaseUrl()).append("/image/").append(image).append(".png\"></p>");
+            }
+            List<FileDetailDto.ArchitectureDiagram> diagrams = new ArrayList<>();
+            for (int diagram = i; diagram < shape.getDrawIoCount(); diagram += nodeCount) {
+                diagrams.add(new FileDetailDto.ArchitectureDiagram()
+                        .setId("diagram-" + diagram)
+                        .setName("架构图 " + diagram)
+                        .setData(shape.getResourceBaseUrl() + "/drawio/" + diagram));
+            }
+            dataList.add(node(i, branchingFactor, layers)
+                    .setDescription(description.toString())
+                    .setArchitectureDiagrams(diagrams));
+        }
+        return new FileDetailDto()
+                .setMeta(new FileDetailDto.Meta().setName("benchmark-" + nodeCount))
+                .setFormat("node_array")
+                .setData(dataList);
+    }
+
+    private static FileDetailDto.Data node(int i, int branchingFactor, List<Integer> layers) {
+        boolean isRoot = i == 0;
+        int parent = isRoot ? -1 : (i - 1) / branchingFactor;
+        int layer = isRoot ? 1 : layers.get(parent) + 1;
+        layers.add(layer);
+        return new FileDetailDto.Data()
+                .setNodeUuid(UUID.randomUUID().toString())
+                .setId(isRoot ? ROOT_ID : "node-" + i)
+                .setParentId(isRoot ? "" : parent == 0 ? ROOT_ID : "node-" + parent)
+                .setIsroot(isRoot)
+                .setIndex(isRoot ? 0 : (i - 1) % branchingFactor)
+                .setLayer(layer)
+                .setTopic("节点 " + i);
+    }
+
+    /**
+     * depth 层、每个节点 b 个子节点的完全树最多容纳 1 + b + ... + b^(depth-1) 个节点。
+     */
+    private static int branchingFactor(int nodeCount, int depth) {
+        if (depth <= 2) {
+            return Math.max(1, nodeCount - 1);
+        }
+        for (int branchingFactor = 1; ; branchingFactor++) {
+            long capacity = 0;
+            long layerSize = 1;
+            for (int layer = 0; layer < depth && capacity < nodeCount; layer++) {
+                capacity += layerSize;
+                layerSize *= branchingFactor;
+            }
+            if (capacity >= nodeCount) {
+                return branchingFactor;
+            }
+        }
+    }
+
+    private static String description(int i) {
+        return "<p>第 " + i + " 个节点的<b>描述</b>，包含<i>格式化</i>文本。</p>"
+                + "<ul><li>条目一</li><li>条目二</li></ul>"
+                + "<table><tr><td>单元格 A</td><td>单元格 B</td></tr></table>";
+    }
+}
@@ -0,0 +1,119 @@
+package com.ytdevops.benchmark;
+
+import com.ytdevops.common.ExportResultCacheProperties;
+import com.ytdevops.common.ExportTraceProperties;
+import com.ytdevops.common.PdfEngine;
+import com.ytdevops.common.PdfRenderProperties;
+import com.ytdevops.common.service.ExportResultCache;
+import com.ytdevops.common.service.ExportTracer;
+import com.ytdevops.common.service.NativePdfRenderer;
+import com.ytdevops.common.service.WordPackagePool;
+import com.ytdevops.knowledgebase.PdfConvertProperties;
+import com.ytdevops.knowledgebase.service.KnowledgeBaseWordExportService;
+import com.ytdevops.knowledgebase.service.PdfConverter;
+import com.ytdevops.resource.ImageOptimizeProperties;
+import com.ytdevops.resource.ResourceCacheProperties;
+import com.ytdevops.resource.ResourceFetchProperties;
+import com.ytdevops.resource.service.DataUriSource;
+import com.ytdevops.resource.service.ImageOptimizer;
+import com.ytdevops.resource.service.ResourceCache;
+import com.ytdevops.resource.service.ResourceFetcher;
+import com.ytdevops.resource.service.ResourcePrefetchService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 知识库 HTML 转 PDF 的吞吐：JVM 内渲染与 wkhtmltopdf 进程，4 个线程并发。
+ * WKHTMLTOPDF 需要本机安装 wkhtmltopdf。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Threads(4)
+@Fork(1)
+public class PdfRenderBenchmark {
+    @Param({"NATIVE", "WKHTMLTOPDF"})
+    private PdfEngine engine;
+
+    @Param({"20", "200"})
+    private int sectionCount;
+
+    private String html;
+
+    private ResourcePrefetchService resourcePrefetchService;
+
+    private ImageOptimizer imageOptimizer;
+
+    private KnowledgeBaseWordExportService knowledgeBaseWordExportService;
+
+    private PdfConverter pdfConverter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        html = generateHtml(sectionCount);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ResourceFetchProperties resourceFetchProperties = new ResourceFetchProperties();
+        resourcePrefetchService = new ResourcePrefetchService(List.of(new DataUriSource()), new ResourceFetcher(resourceFetchProperties,
+                new ResourceCache(new ResourceCacheProperties(), meterRegistry)), resourceFetchProperties);
+        imageOptimizer = new ImageOptimizer(new ImageOptimizeProperties());
+        knowledgeBaseWordExportService = new KnowledgeBaseWordExportService(resourcePrefetchService, imageOptimizer, new WordPackagePool(0, false),
+                new NativePdfRenderer(new PdfRenderProperties()), new ExportResultCache(new ExportResultCacheProperties().setEnabled(false), meterRegistry),
+                new ExportTracer(new ExportTraceProperties().setEnabled(false), meterRegistry));
+        if (engine == PdfEngine.WKHTMLTOPDF) {
+            new ProcessBuilder("wkhtmltopdf", "--version").start();
+        }
+        pdfConverter = new PdfConverter(new PdfConvertProperties().setMaxConcurrency(4), meterRegistry);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        resourcePrefetchService.shutdown();
+        imageOptimizer.shutdown();
+        pdfConverter.shutdown();
+    }
+
+    @Benchmark
+    public void htmlToPdf() throws IOException {
+        if (engine == PdfEngine.NATIVE) {
+            knowledgeBaseWordExportService.exportPdf(html, OutputStream.nullOutputStream());
+        } else {
+            pdfConverter.convert(html, OutputStream.nullOutputStream());
+        }
+    }
+
+    private static String generateHtml(int sectionCount) {
+        StringBuilder html = new StringBuilder("<html><head><meta charset=\"UTF-8\"></head><body>");
+        for (int i = 0; i < sectionCount; i++) {
+            html.append("<h2>Section ").append(i).append("</h2>")
+                    .append("<p>Paragraph with <b>bold</b>, <i>italic</i> and <u>underlined</u> text, ")
+                    .append("repeated to make a realistic line length for layout. ".repeat(4)).append("</p>")
+                    .append("<ul><li>first item</li><li>second item</li></ul>");
+            if (i % 5 == 0) {
+                html.append("<table><tr><th>Key</th><th>Value</th></tr>");
+                for (int row = 0; row < 5; row++) {
+                    html.append("<tr><td>key ").append(row).append("</td><td>value ").append(row).append("</td></tr>");
+                }
+                html.append("</table>");
+            }
+        }
+        return html.append("</body></html>").toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PdfRenderBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,41 @@
+package com.ytdevops.common;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OwnedDirectoryTests {
+    @TempDir
+    File parent;
+
+    /**
+     * 只清理上次运行留下的带标记的子目录，其他文件和仍在使用的子目录保留。
+     */
+    @Test
+    void removesOnlyStaleOwnedDirectories() throws Exception {
+        File unrelated = new File(parent, "unrelated/data.txt");
+        FileUtils.writeStringToFile(unrelated, "keep", StandardCharsets.UTF_8);
+        File unmarked = new File(parent, "cache-unmarked");
+        FileUtils.forceMkdir(unmarked);
+        File stale = new File(parent, "cache-stale");
+        FileUtils.writeStringToFile(new File(stale, ".export-s-owner"), "", StandardCharsets.UTF_8);
+
+        try (OwnedDirectory live = OwnedDirectory.create(parent, "cache-")) {
+            FileUtils.writeStringToFile(new File(live.getDir(), "content"), "live", StandardCharsets.UTF_8);
+            try (OwnedDirectory other = OwnedDirectory.create(parent, "cache-")) {
+                assertThat(other.getDir()).isNotEqualTo(live.getDir());
+                assertThat(new File(live.getDir(), "content")).exists();
+                assertThat(stale).doesNotExist();
+                assertThat(unmarked).exists();
+                assertThat(unrelated).exists();
+            }
+            assertThat(live.getDir()).exists();
+        }
+        assertThat(parent.list()).containsExactlyInAnyOrder("unrelated", "cache-unmarked");
+    }
+}
@@ -0,0 +1,86 @@
+package com.ytdevops.common.service;
+
+import com.ytdevops.common.ExportAdmissionProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExportAdmissionTests {
+    private static final long COST = 1024 * 1024;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 租户 a 先排了三个导出，之后到达的租户 b 不用等 a 的导出全部完成。
+     */
+    @Test
+    void queuesTenantsFairly() throws Exception {
+        ExportAdmission exportAdmission = new ExportAdmission(new ExportAdmissionProperties().setMaxConcurrency(1), meterRegistry);
+        List<String> order = new CopyOnWriteArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        ExportAdmission.Permit running = exportAdmission.admit("a", COST);
+        for (String tenant : List.of("a", "a", "a", "b")) {
+            futures.add(executor.submit(() -> {
+                try (ExportAdmission.Permit permit = exportAdmission.admit(tenant, COST)) {
+                    order.add(tenant);
+                }
+            }));
+            awaitQueueDepth(futures.size());
+        }
+
+        running.close();
+        for (Future<?> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        assertThat(order).containsExactly("b", "a", "a", "a");
+    }
+
+    @Test
+    void shedsLoadWithRetryAfter() throws Exception {
+        ExportAdmission exportAdmission = new ExportAdmission(new ExportAdmissionProperties()
+                .setMaxConcurrency(1).setQueueCapacity(1).setQueueTimeout(Duration.ofMillis(200)), meterRegistry);
+        try (ExportAdmission.Permit running = exportAdmission.admit("a", COST)) {
+            Future<?> queued = executor.submit(() -> exportAdmission.admit("b", COST).close());
+            awaitQueueDepth(1);
+
+            assertThatThrownBy(() -> exportAdmission.admit("c", COST))
+                    .isInstanceOfSatisfying(ResponseStatusException.class, e -> {
+                        assertThat(e.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+                        assertThat(e.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+                    });
+            assertThatThrownBy(() -> queued.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(ResponseStatusException.class);
+        }
+        assertThat(meterRegistry.get("export.admission.rejected").tag("reason", "queue-full").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("export.admission.rejected").tag("reason", "timeout").counter().count()).isEqualTo(1);
+        exportAdmission.admit("c", COST).close();
+    }
+
+    private void awaitQueueDepth(int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("export.admission.queue.depth").gauge().value() < depth && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
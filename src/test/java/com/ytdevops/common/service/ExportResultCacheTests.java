@@ -0,0 +1,146 @@
+package com.ytdevops.common.service;
+
+import com.ytdevops.common.ExportResultCacheProperties;
+import com.ytdevops.file.FileDetailDto;
+import com.ytdevops.knowledgebase.KnowledgeDocDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExportResultCacheTests {
+    private final AtomicInteger builds = new AtomicInteger();
+
+    private ExportResultCache exportResultCache;
+
+    @TempDir
+    File tmpDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FileUtils.writeStringToFile(new File(tmpDir, "results/unrelated.txt"), "keep", StandardCharsets.UTF_8);
+        ExportResultCacheProperties exportResultCacheProperties = new ExportResultCacheProperties()
+                .setDiskDir(new File(tmpDir, "results").getAbsolutePath())
+                .setDiskBudget(DataSize.ofBytes(64));
+        exportResultCache = new ExportResultCache(exportResultCacheProperties, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        exportResultCache.shutdown();
+    }
+
+    /**
+     * 结果只写在独占的子目录中，配置的目录里原有的文件不受影响，关闭时删除子目录。
+     */
+    @Test
+    void keepsResultsInOwnedSubdirectory() throws Exception {
+        File results = new File(tmpDir, "results");
+        export(knowledgeDoc("1"), "v1");
+        assertThat(results.list()).hasSize(2).contains("unrelated.txt");
+
+        exportResultCache.shutdown();
+        assertThat(results.list()).containsExactly("unrelated.txt");
+    }
+
+    @Test
+    void reusesResultWhenOnlyVolatileFieldsChange() throws Exception {
+        assertThat(export(fileDetail(false), "v1")).isEqualTo("v1");
+        assertThat(export(fileDetail(true), "v2")).isEqualTo("v1");
+        assertThat(builds).hasValue(1);
+
+        FileDetailDto changed = fileDetail(false);
+        changed.getData().get(0).setTopic("新主题");
+        assertThat(export(changed, "v3")).isEqualTo("v3");
+        assertThat(builds).hasValue(2);
+    }
+
+    @Test
+    void buildsConcurrentIdenticalRequestsOnce() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> {
+                    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                    exportResultCache.export(ExportResultCache.FILE_WORD, fileDetail(false), outputStream, resultStream -> {
+                        builds.incrementAndGet();
+                        started.countDown();
+                        try {
+                            release.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        resultStream.write("shared".getBytes(StandardCharsets.UTF_8));
+                    });
+                    return outputStream.toString(StandardCharsets.UTF_8);
+                }));
+            }
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("shared");
+            }
+            assertThat(builds).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedResultsOverBudget() throws Exception {
+        String first = "a".repeat(30);
+        String second = "b".repeat(30);
+        String third = "c".repeat(30);
+        export(knowledgeDoc("1"), first);
+        export(knowledgeDoc("2"), second);
+        export(knowledgeDoc("1"), "rebuilt");
+        export(knowledgeDoc("3"), third);
+        assertThat(builds).hasValue(3);
+
+        assertThat(export(knowledgeDoc("1"), "rebuilt")).isEqualTo(first);
+        assertThat(export(knowledgeDoc("2"), "rebuilt")).isEqualTo("rebuilt");
+        assertThat(builds).hasValue(4);
+    }
+
+    private String export(Object payload, String content) throws Exception {
+        String type = payload instanceof FileDetailDto ? ExportResultCache.FILE_WORD : ExportResultCache.KNOWLEDGE_BASE_WORD;
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        exportResultCache.export(type, payload, outputStream, resultStream -> {
+            builds.incrementAndGet();
+            resultStream.write(content.getBytes(StandardCharsets.UTF_8));
+        });
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+
+    private static FileDetailDto fileDetail(boolean expanded) {
+        FileDetailDto.Data root = new FileDetailDto.Data()
+                .setId("root")
+                .setIsroot(true)
+                .setTopic("主题")
+                .setDescription("<p>描述</p>")
+                .setExpanded(expanded);
+        return new FileDetailDto().setData(Collections.singletonList(root));
+    }
+
+    private static KnowledgeDocDto knowledgeDoc(String id) {
+        return new KnowledgeDocDto().setTitle(id).setContentHtml("<p>" + id + "</p>");
+    }
+}
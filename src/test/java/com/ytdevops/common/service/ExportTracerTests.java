@@ -0,0 +1,52 @@
+package com.ytdevops.common.service;
+
+import com.ytdevops.common.ExportPhase;
+import com.ytdevops.common.ExportTrace;
+import com.ytdevops.common.ExportTraceProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExportTracerTests {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void recordsPhasesAndCounts() throws Exception {
+        ExportTracer exportTracer = new ExportTracer(new ExportTraceProperties(), meterRegistry);
+        ExportTrace trace = exportTracer.start("file-word");
+        long start = trace.start();
+        Thread.sleep(20);
+        trace.stop(ExportPhase.IMAGE_FETCH, start);
+        trace.addNodes(3);
+        try (OutputStream outputStream = trace.countDocument(new ByteArrayOutputStream())) {
+            outputStream.write(new byte[128]);
+        }
+        exportTracer.finish(trace);
+
+        assertThat(meterRegistry.get("export.phase").tags("type", "file-word", "phase", "image-fetch").timer().totalTime(TimeUnit.MILLISECONDS))
+                .isGreaterThanOrEqualTo(20);
+        assertThat(meterRegistry.find("export.phase").tag("phase", "tree-walk").timer()).isNull();
+        assertThat(meterRegistry.get("export.nodes").counter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("export.document.bytes").summary().totalAmount()).isEqualTo(128);
+        assertThat(meterRegistry.get("export.duration").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void disabledTraceRecordsNothing() {
+        ExportTracer exportTracer = new ExportTracer(new ExportTraceProperties().setEnabled(false), meterRegistry);
+        ExportTrace trace = exportTracer.start("file-word");
+        OutputStream outputStream = new ByteArrayOutputStream();
+
+        trace.stop(ExportPhase.TREE_WALK, trace.start());
+        exportTracer.finish(trace);
+
+        assertThat(trace).isSameAs(ExportTrace.NONE);
+        assertThat(trace.countDocument(outputStream)).isSameAs(outputStream);
+        assertThat(meterRegistry.getMeters()).isEmpty();
+    }
+}
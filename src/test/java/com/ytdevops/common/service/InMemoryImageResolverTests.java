@@ -0,0 +1,75 @@
+package com.ytdevops.common.service;
+
+import com.ytdevops.resource.ResourceContent;
+import org.docx4j.XmlUtils;
+import org.docx4j.convert.in.xhtml.XHTMLImporterImpl;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPartAbstractImage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryImageResolverTests {
+    private final InMemoryImageResolver imageResolver = new InMemoryImageResolver();
+    private final Map<String, BinaryPartAbstractImage> imageParts = new HashMap<>();
+    private WordprocessingMLPackage wordMLPackage;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        wordMLPackage = WordprocessingMLPackage.createPackage();
+    }
+
+    /**
+     * src 由内容哈希决定，相同内容的图片只建一个部件，未登记的 src 返回 null。
+     */
+    @Test
+    void sharesImagePartsByContent() throws Exception {
+        String png = imageResolver.register(ResourceContent.of(encode("png", 40, 30)));
+        String copy = imageResolver.register(ResourceContent.of(encode("png", 40, 30)));
+        String jpeg = imageResolver.register(ResourceContent.of(encode("jpg", 40, 30)));
+        assertThat(png).startsWith("mem:").isEqualTo(copy).isNotEqualTo(jpeg);
+
+        BinaryPartAbstractImage pngPart = imageResolver.imagePart(wordMLPackage, imageParts, png);
+        BinaryPartAbstractImage jpegPart = imageResolver.imagePart(wordMLPackage, imageParts, jpeg);
+
+        assertThat(imageResolver.imagePart(wordMLPackage, imageParts, copy)).isSameAs(pngPart);
+        assertThat(imageResolver.imagePart(wordMLPackage, imageParts, "mem:unknown")).isNull();
+        assertThat(imageParts).hasSize(2);
+        assertThat(pngPart.getContentType()).isEqualTo("image/png");
+        assertThat(jpegPart.getContentType()).isEqualTo("image/jpeg");
+        assertThat(pngPart.getImageInfo().getSize().getWidthPx()).isEqualTo(40);
+        assertThat(pngPart.getImageInfo().getSize().getHeightPx()).isEqualTo(30);
+    }
+
+    /**
+     * 导入 XHTML 时从内存取出登记的图片，同一张图片引用两次只保存一份。
+     */
+    @Test
+    void resolvesRegisteredImagesDuringXhtmlImport() throws Exception {
+        String src = imageResolver.register(ResourceContent.of(encode("png", 40, 30)));
+        XHTMLImporterImpl importer = new XHTMLImporterImpl(wordMLPackage);
+        imageResolver.apply(importer, imageParts);
+
+        List<Object> contents = importer.convert("<html><body><p><img src=\"" + src + "\"/><img src=\"" + src + "\"/></p></body></html>", null);
+
+        String xml = contents.stream().map(XmlUtils::marshaltoString).collect(Collectors.joining());
+        assertThat(imageParts).hasSize(1);
+        String relationshipId = imageParts.values().iterator().next().getSourceRelationships().get(0).getId();
+        assertThat(xml.split("r:embed=\"" + relationshipId + "\"", -1)).hasSize(3);
+    }
+
+    private static byte[] encode(String format, int width, int height) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format, outputStream);
+        return outputStream.toByteArray();
+    }
+}
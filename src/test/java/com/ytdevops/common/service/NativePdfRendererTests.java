@@ -0,0 +1,83 @@
+package com.ytdevops.common.service;
+
+import com.ytdevops.common.PdfRenderProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class NativePdfRendererTests {
+    private static final Path DEJAVU = Paths.get("/usr/share/fonts/truetype/dejavu");
+
+    @TempDir
+    File fontDir;
+
+    @TempDir
+    File baseDir;
+
+    /**
+     * 字体集合中的字体按序号注册，只有样式中引用到的字体族嵌入 PDF。
+     */
+    @Test
+    void registersReferencedFacesFromFontCollections() throws Exception {
+        assumeTrue(Files.isRegularFile(DEJAVU.resolve("DejaVuSerif.ttf")) && Files.isRegularFile(DEJAVU.resolve("DejaVuSansMono.ttf")));
+        Files.write(new File(fontDir, "dejavu.ttc").toPath(), collection(List.of(
+                Files.readAllBytes(DEJAVU.resolve("DejaVuSansMono.ttf")), Files.readAllBytes(DEJAVU.resolve("DejaVuSerif.ttf")))));
+        NativePdfRenderer renderer = new NativePdfRenderer(new PdfRenderProperties().setFontDirs(Collections.singletonList(fontDir.getPath())));
+
+        String serif = render(renderer, "<p style=\"font-family: 'DejaVu Serif'\">serif</p>");
+        String plain = render(renderer, "<p>plain</p>");
+
+        assertThat(serif).contains("DejaVuSerif").doesNotContain("DejaVuSansMono");
+        assertThat(plain).doesNotContain("DejaVu");
+    }
+
+    private String render(NativePdfRenderer renderer, String body) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        renderer.renderXhtml("<html><head></head><body>" + body + "</body></html>", baseDir, outputStream);
+        return outputStream.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * 把几个 TrueType 字体拼成字体集合：文件头后依次放各字体，表目录中的偏移改为相对集合文件开头。
+     */
+    private static byte[] collection(List<byte[]> fonts) {
+        int headerLength = 12 + 4 * fonts.size();
+        int length = headerLength;
+        for (byte[] font : fonts) {
+            length += (font.length + 3) & ~3;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.put("ttcf".getBytes(StandardCharsets.US_ASCII)).putInt(0x00010000).putInt(fonts.size());
+        int base = headerLength;
+        for (byte[] font : fonts) {
+            buffer.putInt(base);
+            base += (font.length + 3) & ~3;
+        }
+        base = headerLength;
+        for (byte[] font : fonts) {
+            ByteBuffer relocated = ByteBuffer.wrap(font.clone());
+            int tables = relocated.getShort(4) & 0xFFFF;
+            for (int i = 0; i < tables; i++) {
+                int record = 12 + 16 * i + 8;
+                relocated.putInt(record, relocated.getInt(record) + base);
+            }
+            buffer.position(base);
+            buffer.put(relocated.array());
+            base += (font.length + 3) & ~3;
+        }
+        return buffer.array();
+    }
+}
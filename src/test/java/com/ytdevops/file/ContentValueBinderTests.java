@@ -0,0 +1,94 @@
+package com.ytdevops.file;
+
+import com.ytdevops.common.JsonMappers;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(OutputCaptureExtension.class)
+class ContentValueBinderTests {
+    private static final String DIAGRAMS_JSON = "[{\"id\":\"d1\",\"name\":\"架构图\",\"data\":\"http://example.com/d1\"}]";
+
+    private final ContentValueBinder contentValueBinder = new ContentValueBinder();
+
+    @Test
+    void parsesListFieldGivenAsJsonString() {
+        FileDetailDto.Content content = contentValueBinder.convert(new FileDetailDto.Content()
+                .setFieldType(FieldType.SELECT_MULTI).setValue(" [\"a\", {\"name\": \"张三\"}]"));
+
+        assertThat(content.getValue()).isEqualTo(List.of("a", Map.of("name", "张三")));
+    }
+
+    /**
+     * 非列表字段和不以 [ 开头的字符串保持原样。
+     */
+    @Test
+    void keepsPlainStrings() {
+        assertThat(contentValueBinder.convert(new FileDetailDto.Content().setFieldType(FieldType.TEXT).setValue("[标题]")).getValue())
+                .isEqualTo("[标题]");
+        assertThat(contentValueBinder.convert(new FileDetailDto.Content().setFieldType(FieldType.LABEL).setValue("标签")).getValue())
+                .isEqualTo("标签");
+    }
+
+    @Test
+    void parsesDiagramsGivenAsString() {
+        FileDetailDto.Content content = contentValueBinder.convert(new FileDetailDto.Content()
+                .setFieldType(FieldType.DRAWIO).setValue(DIAGRAMS_JSON));
+
+        assertThat(content.getDrawIoDiagrams()).singleElement().satisfies(diagram -> {
+            assertThat(diagram.getId()).isEqualTo("d1");
+            assertThat(diagram.getName()).isEqualTo("架构图");
+            assertThat(diagram.getData()).isEqualTo("http://example.com/d1");
+        });
+        assertThat(content.getValue()).isEqualTo(DIAGRAMS_JSON);
+    }
+
+    @Test
+    void parsesDiagramsGivenAsCollection() {
+        FileDetailDto.Content content = contentValueBinder.convert(new FileDetailDto.Content()
+                .setFieldType(FieldType.DRAWIO).setValue(List.of(Map.of("id", "d1", "name", "架构图", "data", "http://example.com/d1"))));
+
+        assertThat(content.getDrawIoDiagrams()).extracting(FileDetailDto.ArchitectureDiagram::getData).containsExactly("http://example.com/d1");
+    }
+
+    @Test
+    void treatsBlankDiagramValueAsNoDiagrams() {
+        FileDetailDto.Content content = contentValueBinder.convert(new FileDetailDto.Content().setFieldType(FieldType.DRAWIO).setValue("  "));
+
+        assertThat(content.getDrawIoDiagrams()).isEmpty();
+    }
+
+    /**
+     * 解析失败时保留原值并记录告警，由导出时的读取逻辑报错。
+     */
+    @Test
+    void keepsMalformedValuesWithWarning(CapturedOutput output) {
+        FileDetailDto.Content list = contentValueBinder.convert(new FileDetailDto.Content()
+                .setFieldId("broken-list").setFieldType(FieldType.ARRAY).setValue("[\"a\","));
+        FileDetailDto.Content diagrams = contentValueBinder.convert(new FileDetailDto.Content()
+                .setFieldId("broken-diagram").setFieldType(FieldType.DRAWIO).setValue("{not json"));
+
+        assertThat(list.getValue()).isEqualTo("[\"a\",");
+        assertThat(diagrams.getValue()).isEqualTo("{not json");
+        assertThat(diagrams.getDrawIoDiagrams()).isNull();
+        assertThat(output).contains("WARN", "fieldId:broken-list", "fieldId:broken-diagram");
+    }
+
+    /**
+     * 反序列化请求时节点的每个字段都经过 ContentValueBinder。
+     */
+    @Test
+    void bindsContentsWhenDeserializingNodes() throws Exception {
+        FileDetailDto.Data data = JsonMappers.MAPPER.readValue("{\"content\":[{\"fieldType\":\"LABEL\",\"value\":\"[\\\"x\\\",\\\"y\\\"]\"},"
+                + "{\"fieldType\":\"DRAWIO\",\"value\":" + JsonMappers.MAPPER.writeValueAsString(DIAGRAMS_JSON) + "}]}", FileDetailDto.Data.class);
+
+        assertThat(data.getContent().get(0).getValue()).isEqualTo(List.of("x", "y"));
+        assertThat(data.getContent().get(1).getDrawIoDiagrams()).hasSize(1);
+    }
+}
@@ -0,0 +1,99 @@
+package com.ytdevops.file.service;
+
+import com.ytdevops.file.DiagramRasterizeProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DiagramRasterizerTests {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final DiagramRasterizeProperties diagramRasterizeProperties = new DiagramRasterizeProperties().setThreads(1);
+
+    private DiagramRasterizer diagramRasterizer = new DiagramRasterizer(diagramRasterizeProperties, meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        diagramRasterizer.shutdown();
+    }
+
+    /**
+     * 同一内容在栅格化完成前再次提交时共用同一个结果，只栅格化一次。
+     */
+    @Test
+    void sharesInFlightRasterization() throws Exception {
+        // 单线程，前一个任务未完成时后两次提交的内容一定还在排队
+        CompletableFuture<byte[]> busy = diagramRasterizer.rasterize(svg("blue", 400));
+        CompletableFuture<byte[]> first = diagramRasterizer.rasterize(svg("red", 10));
+        CompletableFuture<byte[]> second = diagramRasterizer.rasterize(svg("red", 10));
+
+        assertThat(second).isSameAs(first);
+        assertThat(diagramRasterizer.await(first)).isNotEmpty();
+        assertThat(diagramRasterizer.await(busy)).isNotEmpty();
+        assertThat(meterRegistry.counter("export.diagram.cache.misses").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("export.diagram.cache.hits").count()).isEqualTo(1);
+    }
+
+    /**
+     * 缓存超出预算时淘汰最近最少使用的结果，单个超出预算的结果不缓存。
+     */
+    @Test
+    void evictsLeastRecentlyUsedResultsOverBudget() throws Exception {
+        byte[] a = svg("red", 10);
+        byte[] b = svg("green", 20);
+        byte[] c = svg("blue", 30);
+        int sizeB = diagramRasterizer.await(diagramRasterizer.rasterize(b)).length;
+        int sizeC = diagramRasterizer.await(diagramRasterizer.rasterize(c)).length;
+        diagramRasterizer.shutdown();
+        meterRegistry.clear();
+        diagramRasterizer = new DiagramRasterizer(diagramRasterizeProperties.setCacheBudget(DataSize.ofBytes(sizeB + sizeC)), meterRegistry);
+
+        diagramRasterizer.await(diagramRasterizer.rasterize(a));
+        diagramRasterizer.await(diagramRasterizer.rasterize(b));
+        diagramRasterizer.await(diagramRasterizer.rasterize(c));
+        diagramRasterizer.await(diagramRasterizer.rasterize(b));
+        diagramRasterizer.await(diagramRasterizer.rasterize(c));
+        assertThat(meterRegistry.counter("export.diagram.cache.misses").count()).isEqualTo(3);
+        assertThat(meterRegistry.counter("export.diagram.cache.hits").count()).isEqualTo(2);
+
+        diagramRasterizer.await(diagramRasterizer.rasterize(a));
+        assertThat(meterRegistry.counter("export.diagram.cache.misses").count()).isEqualTo(4);
+
+        diagramRasterizeProperties.setCacheBudget(DataSize.ofBytes(1));
+        byte[] d = svg("black", 40);
+        diagramRasterizer.await(diagramRasterizer.rasterize(d));
+        diagramRasterizer.await(diagramRasterizer.rasterize(d));
+        assertThat(meterRegistry.counter("export.diagram.cache.misses").count()).isEqualTo(6);
+    }
+
+    /**
+     * 线程池关闭后提交的任务立即失败，不会留在 inFlight 中让之后相同内容的请求一直等待。
+     */
+    @Test
+    void failsRasterizationRejectedAfterShutdown() {
+        diagramRasterizer.shutdown();
+
+        CompletableFuture<byte[]> first = diagramRasterizer.rasterize(svg("red", 10));
+        CompletableFuture<byte[]> second = diagramRasterizer.rasterize(svg("red", 10));
+
+        assertThat(second).isNotSameAs(first);
+        assertThatThrownBy(() -> diagramRasterizer.await(first))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(second).isCompletedExceptionally();
+    }
+
+    private static byte[] svg(String color, int width) {
+        return ("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + width + "\" height=\"10\">"
+                + "<rect width=\"" + width + "\" height=\"10\" fill=\"" + color + "\"/></svg>").getBytes(StandardCharsets.UTF_8);
+    }
+}
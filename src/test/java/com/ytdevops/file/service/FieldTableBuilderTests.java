@@ -0,0 +1,152 @@
+package com.ytdevops.file.service;
+
+import com.ytdevops.file.ExtraSelectData;
+import com.ytdevops.file.FieldType;
+import com.ytdevops.file.FileDetailDto;
+import org.docx4j.XmlUtils;
+import org.docx4j.wml.Br;
+import org.docx4j.wml.P;
+import org.docx4j.wml.R;
+import org.docx4j.wml.Tbl;
+import org.docx4j.wml.Tc;
+import org.docx4j.wml.Text;
+import org.docx4j.wml.Tr;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FieldTableBuilderTests {
+    /**
+     * 2024-03-15T12:00:00Z，各时区都在同一天。
+     */
+    private static final long MIDDAY_EPOCH_MILLIS = 1710504000000L;
+
+    private final FieldTableBuilder fieldTableBuilder = new FieldTableBuilder();
+
+    /**
+     * 按 orderNumber 排序（为空的排最后），跳过不展示、值为空、格式化后为空白和架构图字段。
+     */
+    @Test
+    void ordersRowsAndSkipsFieldsNotShown() {
+        Tbl tbl = fieldTableBuilder.build(List.of(
+                text("乙", 2, "二"),
+                text("末", null, "三"),
+                text("甲", 1, "一"),
+                text("隐藏", 0, "x").setShow(false),
+                text("空值", 0, null),
+                text("空白", 0, "  "),
+                new FileDetailDto.Content().setName("架构图").setOrderNumber(0).setFieldType(FieldType.DRAWIO).setValue("data:image/svg+xml;base64,")),
+                new HashMap<>());
+
+        assertThat(rows(tbl)).containsExactly(List.of("甲", "一"), List.of("乙", "二"), List.of("末", "三"));
+    }
+
+    @Test
+    void returnsNullWithoutFieldsToShow() {
+        assertThat(fieldTableBuilder.build(null, new HashMap<>())).isNull();
+        assertThat(fieldTableBuilder.build(List.of(text("空值", 1, null)), new HashMap<>())).isNull();
+    }
+
+    /**
+     * 选项值按 extraData 换成选项名，没有对应选项的保持原值；同一字段 id 的选项只索引一次。
+     */
+    @Test
+    void resolvesOptionLabelsOncePerField() {
+        Map<String, Map<String, String>> labelCache = new HashMap<>();
+        FileDetailDto.Content first = new FileDetailDto.Content().setFieldId("status").setName("状态").setFieldType(FieldType.SELECT_MULTI)
+                .setExtraData(List.of(option("a", "甲"), option("b", "乙"), option("a", "重复")))
+                .setValue(List.of("a", "b", "c"));
+        FileDetailDto.Content second = new FileDetailDto.Content().setFieldId("status").setName("状态").setFieldType(FieldType.SELECT)
+                .setExtraData(List.of(option("a", "另一个")))
+                .setValue("a");
+        FileDetailDto.Content users = new FileDetailDto.Content().setName("人员").setFieldType(FieldType.MULTI_USER_SELECT)
+                .setValue(List.of(Map.of("name", "张三"), Map.of("label", "李四"), Map.of("value", "u3")));
+
+        Tbl tbl = fieldTableBuilder.build(List.of(first, second, users), labelCache);
+
+        assertThat(rows(tbl)).extracting(row -> row.get(1)).containsExactly("甲、乙、c", "甲", "张三、李四、u3");
+        assertThat(labelCache).containsOnlyKeys("status");
+        assertThat(labelCache.get("status")).containsOnly(Map.entry("a", "甲"), Map.entry("b", "乙"));
+    }
+
+    /**
+     * 数字去掉末尾的 0，日期按毫秒时间戳格式化为 yyyy-MM-dd，已是字符串的值原样输出，富文本只取文字。
+     */
+    @Test
+    void formatsNumbersDatesAndRichText() {
+        Tbl tbl = fieldTableBuilder.build(List.of(
+                field(FieldType.NUMBER, 1, 12.50D),
+                field(FieldType.NUMBER, 2, new BigDecimal("100.000")),
+                field(FieldType.POSITIVE_INTEGER, 3, 7),
+                field(FieldType.NUMBER, 4, "3.10"),
+                field(FieldType.DATE, 5, MIDDAY_EPOCH_MILLIS),
+                field(FieldType.DATE, 6, "2024-01-01"),
+                field(FieldType.RICH_TEXT, 7, "<p>富<b>文本</b></p>")), new HashMap<>());
+
+        assertThat(rows(tbl)).extracting(row -> row.get(1))
+                .containsExactly("12.5", "100", "7", "3.10", "2024-03-15", "2024-01-01", "富文本");
+    }
+
+    /**
+     * 多行文本按行拆成多个文本片段，行之间插入 w:br。
+     */
+    @Test
+    void splitsMultiLineValuesWithBreaks() {
+        Tbl tbl = fieldTableBuilder.build(List.of(text("说明", 1, "一\r\n二\n\n三")), new HashMap<>());
+
+        Tc valueCell = (Tc) XmlUtils.unwrap(((Tr) tbl.getContent().get(0)).getContent().get(1));
+        R r = (R) ((P) valueCell.getContent().get(0)).getContent().get(0);
+        List<Object> runContent = new ArrayList<>();
+        r.getContent().forEach(content -> runContent.add(XmlUtils.unwrap(content)));
+        assertThat(runContent).hasSize(7);
+        assertThat(runContent).filteredOn(Br.class::isInstance).hasSize(3);
+        assertThat(rows(tbl).get(0).get(1)).isEqualTo("一\n二\n\n三");
+    }
+
+    private static List<List<String>> rows(Tbl tbl) {
+        List<List<String>> rows = new ArrayList<>();
+        for (Object row : tbl.getContent()) {
+            List<String> cells = new ArrayList<>();
+            for (Object cell : ((Tr) row).getContent()) {
+                cells.add(cellText((Tc) XmlUtils.unwrap(cell)));
+            }
+            rows.add(cells);
+        }
+        return rows;
+    }
+
+    private static String cellText(Tc tc) {
+        StringBuilder text = new StringBuilder();
+        for (Object p : tc.getContent()) {
+            for (Object r : ((P) p).getContent()) {
+                for (Object content : ((R) r).getContent()) {
+                    Object unwrapped = XmlUtils.unwrap(content);
+                    if (unwrapped instanceof Text) {
+                        text.append(((Text) unwrapped).getValue());
+                    } else if (unwrapped instanceof Br) {
+                        text.append('\n');
+                    }
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    private static FileDetailDto.Content text(String name, Integer orderNumber, String value) {
+        return new FileDetailDto.Content().setName(name).setOrderNumber(orderNumber).setFieldType(FieldType.TEXT).setValue(value);
+    }
+
+    private static FileDetailDto.Content field(FieldType fieldType, Integer orderNumber, Object value) {
+        return new FileDetailDto.Content().setName(fieldType.name()).setOrderNumber(orderNumber).setFieldType(fieldType).setValue(value);
+    }
+
+    private static ExtraSelectData option(String value, String label) {
+        return new ExtraSelectData().setValue(value).setLabel(label);
+    }
+}
@@ -0,0 +1,134 @@
+package com.ytdevops.file.service;
+
+import com.ytdevops.benchmark.FileDetailDtoGenerator;
+import com.ytdevops.file.FileDetailDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FileTreeIndexTests {
+
+    /**
+     * 显式栈遍历与原来按 index 排序后逐层递归的顺序一致。
+     */
+    @Test
+    void walksInRecursivePreOrder() {
+        List<FileDetailDto.Data> dataList = FileDetailDtoGenerator.generate(200).getData();
+        Collections.shuffle(dataList);
+        FileTreeIndex index = FileTreeIndex.build(dataList);
+
+        List<String> expected = new ArrayList<>();
+        walkRecursively(dataList, "root", expected);
+        assertThat(ids(index)).hasSize(199).containsExactlyElementsOf(expected);
+        assertThat(index.hasUnreachable()).isFalse();
+    }
+
+    /**
+     * index 为空的子节点排在最后，index 相同的子节点保持原来的先后顺序。
+     */
+    @Test
+    void ordersChildrenByIndexWithNullsLastAndStableTies() {
+        FileTreeIndex index = FileTreeIndex.build(List.of(
+                node("root", "", 0),
+                node("none", "root", null),
+                node("second", "root", 1),
+                node("first-a", "root", 0),
+                node("first-b", "root", 0)));
+
+        assertThat(ids(index)).containsExactly("first-a", "first-b", "second", "none");
+    }
+
+    /**
+     * 父节点不存在的节点记为孤立节点，parentid 成环或挂在孤立节点下的记为不可达，都跳过且不影响其余节点。
+     */
+    @Test
+    void skipsOrphansAndCycles() {
+        FileTreeIndex index = FileTreeIndex.build(List.of(
+                node("root", "", 0),
+                node("a", "root", 0),
+                node("orphan", "missing", 0),
+                node("under-orphan", "orphan", 0),
+                node("cycle-1", "cycle-2", 0),
+                node("cycle-2", "cycle-1", 0)));
+
+        assertThat(ids(index)).containsExactly("a");
+        assertThat(index.hasUnreachable()).isTrue();
+        assertThat(index.getOrphans()).extracting(FileDetailDto.Data::getId).containsExactly("orphan");
+        assertThat(index.getDetached()).extracting(FileDetailDto.Data::getId).containsExactly("under-orphan", "cycle-1", "cycle-2");
+    }
+
+    /**
+     * 重复 id 的节点都会导出，挂在该 id 下的子节点只导出一次。
+     */
+    @Test
+    void visitsDuplicateIdsOnceEach() {
+        FileDetailDto.Data first = node("dup", "root", 0);
+        FileDetailDto.Data second = node("dup", "root", 1);
+        FileTreeIndex index = FileTreeIndex.build(List.of(
+                node("root", "", 0),
+                first,
+                second,
+                node("child", "dup", 0)));
+
+        List<FileDetailDto.Data> visited = new ArrayList<>();
+        index.forEachDescendant(visited::add);
+        assertThat(visited).extracting(FileDetailDto.Data::getId).containsExactly("dup", "child", "dup");
+        assertThat(visited.get(0)).isSameAs(first);
+        assertThat(visited.get(2)).isSameAs(second);
+        assertThat(index.hasUnreachable()).isFalse();
+    }
+
+    /**
+     * 十万层的单链不会栈溢出。
+     */
+    @Test
+    void walksDeepChainWithoutStackOverflow() {
+        int depth = 100_000;
+        List<FileDetailDto.Data> dataList = new ArrayList<>(depth + 1);
+        dataList.add(node("root", "", 0));
+        for (int i = 0; i < depth; i++) {
+            dataList.add(node("node-" + i, i == 0 ? "root" : "node-" + (i - 1), 0));
+        }
+        FileTreeIndex index = FileTreeIndex.build(dataList);
+
+        List<String> ids = ids(index);
+        assertThat(ids).hasSize(depth);
+        assertThat(ids.get(0)).isEqualTo("node-0");
+        assertThat(ids.get(depth - 1)).isEqualTo("node-" + (depth - 1));
+        assertThat(index.hasUnreachable()).isFalse();
+    }
+
+    @Test
+    void rejectsTreeWithoutRoot() {
+        assertThatThrownBy(() -> FileTreeIndex.build(List.of(node("a", "root", 0))))
+                .hasMessage("文件中无根节点！");
+    }
+
+    private static void walkRecursively(List<FileDetailDto.Data> dataList, String parentId, List<String> ids) {
+        List<FileDetailDto.Data> children = dataList.stream()
+                .filter(data -> parentId.equals(data.getParentId()))
+                .sorted(Comparator.comparing(FileDetailDto.Data::getIndex, Comparator.nullsLast(Comparator.naturalOrder())))
+                .collect(Collectors.toList());
+        for (FileDetailDto.Data child : children) {
+            ids.add(child.getId());
+            walkRecursively(dataList, child.getId(), ids);
+        }
+    }
+
+    private static List<String> ids(FileTreeIndex index) {
+        List<String> ids = new ArrayList<>();
+        index.forEachDescendant(data -> ids.add(data.getId()));
+        return ids;
+    }
+
+    private static FileDetailDto.Data node(String id, String parentId, Integer index) {
+        return new FileDetailDto.Data().setId(id).setParentId(parentId).setIndex(index).setTopic(id);
+    }
+}
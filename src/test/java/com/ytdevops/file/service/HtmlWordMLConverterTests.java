@@ -0,0 +1,228 @@
+package com.ytdevops.file.service;
+
+import com.ytdevops.common.service.InMemoryImageResolver;
+import com.ytdevops.resource.ResourceContent;
+import org.docx4j.XmlUtils;
+import org.docx4j.dml.wordprocessingDrawing.Inline;
+import org.docx4j.jaxb.Context;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPartAbstractImage;
+import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
+import org.docx4j.openpackaging.parts.relationships.Namespaces;
+import org.docx4j.relationships.Relationship;
+import org.docx4j.wml.Drawing;
+import org.docx4j.wml.P;
+import org.docx4j.wml.R;
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HtmlWordMLConverterTests {
+    private static final Pattern DOC_PR_ID = Pattern.compile("<wp:docPr id=\"(\\d+)\"");
+
+    private final InMemoryImageResolver imageResolver = new InMemoryImageResolver();
+    private final Map<String, BinaryPartAbstractImage> imageParts = new HashMap<>();
+    private final AtomicInteger drawingIds = new AtomicInteger(10);
+    private WordprocessingMLPackage wordMLPackage;
+    private HtmlWordMLConverter converter;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        wordMLPackage = WordprocessingMLPackage.createPackage();
+        converter = new HtmlWordMLConverter(wordMLPackage, drawingIds, imageParts, imageResolver);
+    }
+
+    @Test
+    void convertsParagraphsAndHeadings() {
+        String xml = convert("<p style=\"text-align: center\">居中</p><p align=\"right\">靠右</p><h1>一级</h1><h6>六级</h6>");
+
+        assertThat(xml).contains("<w:jc w:val=\"center\"/>", "<w:jc w:val=\"right\"/>", "居中", "靠右")
+                .contains("<w:b/>", "<w:sz w:val=\"32\"/>", "一级")
+                .contains("<w:sz w:val=\"21\"/>", "六级");
+    }
+
+    @Test
+    void convertsInlineFormatting() {
+        List<Object> content = converter.convert(Jsoup.parse("<p><b>粗</b><i>斜</i><u>下划线</u><s>删除</s>x<sup>2</sup>H<sub>2</sub>O<br>换行</p>").body());
+
+        assertThat(content).hasSize(1);
+        List<String> runs = ((P) content.get(0)).getContent().stream().map(XmlUtils::marshaltoString).collect(Collectors.toList());
+        assertThat(runs).hasSize(11);
+        assertThat(runs.get(0)).contains("<w:b/>", "粗");
+        assertThat(runs.get(1)).contains("<w:i/>", "斜");
+        assertThat(runs.get(2)).contains("<w:u w:val=\"single\"/>", "下划线");
+        assertThat(runs.get(3)).contains("<w:strike/>", "删除");
+        assertThat(runs.get(4)).doesNotContain("<w:rPr>").contains("x");
+        assertThat(runs.get(5)).contains("<w:vertAlign w:val=\"superscript\"/>");
+        assertThat(runs.get(7)).contains("<w:vertAlign w:val=\"subscript\"/>");
+        assertThat(runs.get(9)).contains("<w:br/>");
+    }
+
+    /**
+     * 嵌套列表级别加一，列表项中的第一个段落并入带编号的段落，有序和无序列表使用不同的编号定义。
+     */
+    @Test
+    void convertsNestedLists() {
+        List<Object> content = converter.convert(Jsoup.parse("<ol><li>一<ul><li>甲</li><li>乙</li></ul></li><li><p>二</p><p>补充</p></li></ol>").body());
+
+        assertThat(content).hasSize(5);
+        List<String> paragraphs = content.stream().map(XmlUtils::marshaltoString).collect(Collectors.toList());
+        String orderedNumId = numId(paragraphs.get(0));
+        String bulletNumId = numId(paragraphs.get(1));
+        assertThat(paragraphs.get(0)).contains("<w:ilvl w:val=\"0\"/>", "一");
+        assertThat(paragraphs.get(1)).contains("<w:ilvl w:val=\"1\"/>", "甲");
+        assertThat(numId(paragraphs.get(2))).isEqualTo(bulletNumId);
+        assertThat(paragraphs.get(3)).contains("<w:ilvl w:val=\"0\"/>", "二");
+        assertThat(numId(paragraphs.get(3))).isEqualTo(orderedNumId);
+        assertThat(paragraphs.get(4)).doesNotContain("<w:numPr>").contains("<w:ind w:left=\"420\"/>", "补充");
+        assertThat(orderedNumId).isNotEqualTo(bulletNumId);
+        assertThat(wordMLPackage.getMainDocumentPart().getNumberingDefinitionsPart().getInstanceListDefinitions()).hasSize(2);
+    }
+
+    @Test
+    void convertsTablesWithColspan() {
+        String xml = convert("<table border=\"1\" style=\"width: 100%\"><thead><tr><th colspan=\"2\">表头</th></tr></thead>"
+                + "<tbody><tr><td>甲</td><td>乙</td></tr><tr><td></td><td colspan=\"1\">丙</td></tr></tbody></table>");
+
+        assertThat(count(xml, "<w:gridCol ")).isEqualTo(2);
+        assertThat(count(xml, "<w:tr>")).isEqualTo(3);
+        assertThat(count(xml, "<w:tc>")).isEqualTo(5);
+        assertThat(count(xml, "<w:gridSpan w:val=\"2\"/>")).isEqualTo(1);
+        assertThat(xml).contains("<w:tcW w:w=\"5400\" w:type=\"dxa\"/>", "<w:tcW w:w=\"2700\" w:type=\"dxa\"/>");
+        assertThat(xml.substring(0, xml.indexOf("表头"))).contains("<w:b/>");
+        // 空单元格中也有一个段落
+        assertThat(count(xml, "<w:p>") + count(xml, "<w:p/>")).isEqualTo(5);
+    }
+
+    /**
+     * 链接和图片在整段转换成功后才加入文档包，相同内容的图片只保存一份，每处引用的 docPr id 不同。
+     */
+    @Test
+    void addsHyperlinksAndImagesToPackage() throws Exception {
+        String src = imageResolver.register(ResourceContent.of(png()));
+        String copy = imageResolver.register(ResourceContent.of(png()));
+        List<Object> content = converter.convert(Jsoup.parse("<p><a href=\"http://example.com/a\" target=\"_blank\">链接</a>"
+                + "<img src=\"" + src + "\" alt=\"图一\"><img src=\"" + copy + "\"></p><p><img src=\"\"></p>").body());
+
+        String xml = content.stream().map(XmlUtils::marshaltoString).collect(Collectors.joining());
+        MainDocumentPart mdp = wordMLPackage.getMainDocumentPart();
+        List<Relationship> hyperlinks = new ArrayList<>();
+        List<Relationship> images = new ArrayList<>();
+        for (Relationship relationship : mdp.getRelationshipsPart().getRelationships().getRelationship()) {
+            if (Namespaces.HYPERLINK.equals(relationship.getType())) {
+                hyperlinks.add(relationship);
+            } else if (Namespaces.IMAGE.equals(relationship.getType())) {
+                images.add(relationship);
+            }
+        }
+        assertThat(hyperlinks).singleElement().satisfies(relationship -> {
+            assertThat(relationship.getTarget()).isEqualTo("http://example.com/a");
+            assertThat(relationship.getTargetMode()).isEqualTo("External");
+            assertThat(xml).contains("r:id=\"" + relationship.getId() + "\"");
+        });
+        assertThat(xml).contains("<w:u w:val=\"single\"/>", "<w:color w:val=\"0563C1\"/>", "链接");
+        assertThat(images).hasSize(1);
+        assertThat(imageParts).hasSize(1);
+        assertThat(count(xml, "r:embed=\"" + images.get(0).getId() + "\"")).isEqualTo(2);
+        assertThat(xml).contains("descr=\"图一\"");
+        assertThat(docPrIds(xml)).containsExactly(10, 12);
+        assertThat(drawingIds.get()).isEqualTo(14);
+    }
+
+    /**
+     * 不支持的标记使整段返回 null，之前已转换的列表、链接和图片都不会改动文档包。
+     */
+    @Test
+    void leavesPackageUntouchedForUnsupportedMarkup() throws Exception {
+        String src = imageResolver.register(ResourceContent.of(png()));
+        String supported = "<ol><li>一</li></ol><ul><li>甲</li></ul><p><a href=\"http://example.com\">链接</a><img src=\"" + src + "\"></p>";
+        int relationships = wordMLPackage.getMainDocumentPart().getRelationshipsPart().getRelationships().getRelationship().size();
+        int parts = wordMLPackage.getParts().getParts().size();
+
+        for (String unsupported : List.of("<p class=\"note\">样式类</p>",
+                "<table><tr><td rowspan=\"2\">甲</td></tr><tr></tr></table>",
+                "<blockquote>引用</blockquote>",
+                "<p><font color=\"red\">未知</font></p>",
+                "<p style=\"color: red\">颜色</p>",
+                "<p style=\"text-align: center; margin-left: 2em\">缩进</p>",
+                "<ol><li><table><tr><td>表格</td></tr></table></li></ol>")) {
+            assertThat(converter.convert(Jsoup.parse(supported + unsupported).body())).as(unsupported).isNull();
+        }
+
+        assertThat(wordMLPackage.getMainDocumentPart().getNumberingDefinitionsPart()).isNull();
+        assertThat(wordMLPackage.getMainDocumentPart().getRelationshipsPart().getRelationships().getRelationship()).hasSize(relationships);
+        assertThat(wordMLPackage.getParts().getParts()).hasSize(parts);
+        assertThat(imageParts).isEmpty();
+        assertThat(drawingIds.get()).isEqualTo(10);
+    }
+
+    /**
+     * 文档包中已有图片时，直接生成的图片 id 从已有的最大 id 之后开始。
+     */
+    @Test
+    void seedsDrawingIdsFromPackage() throws Exception {
+        assertThat(new WordExportContext().setWordMLPackage(wordMLPackage).getDrawingIds().get()).isEqualTo(2);
+
+        BinaryPartAbstractImage imagePart = InMemoryImageResolver.createImagePart(wordMLPackage, png());
+        Inline inline = imagePart.createImageInline(null, null, 7, 8, false);
+        Drawing drawing = Context.getWmlObjectFactory().createDrawing();
+        drawing.getAnchorOrInline().add(inline);
+        R run = Context.getWmlObjectFactory().createR();
+        run.getContent().add(drawing);
+        P paragraph = Context.getWmlObjectFactory().createP();
+        paragraph.getContent().add(run);
+        wordMLPackage.getMainDocumentPart().addObject(paragraph);
+
+        assertThat(new WordExportContext().setWordMLPackage(wordMLPackage).getDrawingIds().get()).isEqualTo(9);
+    }
+
+    private String convert(String html) {
+        List<Object> content = converter.convert(Jsoup.parse(html).body());
+        assertThat(content).isNotNull();
+        return content.stream().map(XmlUtils::marshaltoString).collect(Collectors.joining());
+    }
+
+    private static String numId(String paragraph) {
+        Matcher matcher = Pattern.compile("<w:numId w:val=\"(\\d+)\"/>").matcher(paragraph);
+        assertThat(matcher.find()).isTrue();
+        return matcher.group(1);
+    }
+
+    private static List<Integer> docPrIds(String xml) {
+        List<Integer> ids = new ArrayList<>();
+        Matcher matcher = DOC_PR_ID.matcher(xml);
+        while (matcher.find()) {
+            ids.add(Integer.parseInt(matcher.group(1)));
+        }
+        return ids;
+    }
+
+    private static int count(String text, String pattern) {
+        int count = 0;
+        for (int index = text.indexOf(pattern); index >= 0; index = text.indexOf(pattern, index + pattern.length())) {
+            count++;
+        }
+        return count;
+    }
+
+    private static byte[] png() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB), "png", outputStream);
+        return outputStream.toByteArray();
+    }
+}
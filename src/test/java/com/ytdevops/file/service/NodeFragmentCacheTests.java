@@ -0,0 +1,73 @@
+package com.ytdevops.file.service;
+
+import com.ytdevops.file.FragmentCacheProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.docx4j.jaxb.Context;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.wml.P;
+import org.docx4j.wml.R;
+import org.docx4j.wml.Text;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NodeFragmentCacheTests {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    /**
+     * 按片段大小累计占用，超出预算时淘汰最近最少使用的片段；替换同一个键时不重复计算，超过整个预算的片段不缓存，单独计数。
+     */
+    @Test
+    void evictsLeastRecentlyUsedFragmentsOverBudget() throws Exception {
+        NodeFragment first = fragment("一".repeat(100));
+        NodeFragment second = fragment("二".repeat(100));
+        NodeFragment third = fragment("三".repeat(100));
+        long size = first.getSize();
+        assertThat(second.getSize()).isEqualTo(size);
+        NodeFragmentCache cache = new NodeFragmentCache(new FragmentCacheProperties()
+                .setMemoryBudget(DataSize.ofBytes(size * 2)), meterRegistry);
+
+        cache.put("1", first);
+        cache.put("2", second);
+        cache.put("2", second);
+        assertThat(memoryBytes()).isEqualTo(size * 2);
+        assertThat(evictions()).isZero();
+
+        assertThat(cache.get("1")).isSameAs(first);
+        cache.put("3", third);
+        assertThat(memoryBytes()).isEqualTo(size * 2);
+        assertThat(evictions()).isEqualTo(1);
+        assertThat(cache.get("2")).isNull();
+        assertThat(cache.get("1")).isSameAs(first);
+        assertThat(cache.get("3")).isSameAs(third);
+
+        cache.put("4", fragment("四".repeat((int) size)));
+        assertThat(cache.get("4")).isNull();
+        assertThat(memoryBytes()).isEqualTo(size * 2);
+        assertThat(evictions()).isEqualTo(1);
+        assertThat(meterRegistry.get("export.fragment.cache.rejected").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("export.fragment.cache.hits").counter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("export.fragment.cache.misses").counter().count()).isEqualTo(2);
+    }
+
+    private double memoryBytes() {
+        return meterRegistry.get("export.fragment.cache.memory.bytes").gauge().value();
+    }
+
+    private double evictions() {
+        return meterRegistry.get("export.fragment.cache.evictions").counter().count();
+    }
+
+    private static NodeFragment fragment(String text) throws Exception {
+        Text t = Context.getWmlObjectFactory().createText();
+        t.setValue(text);
+        R run = Context.getWmlObjectFactory().createR();
+        run.getContent().add(t);
+        P paragraph = Context.getWmlObjectFactory().createP();
+        paragraph.getContent().add(run);
+        return NodeFragment.capture(WordprocessingMLPackage.createPackage(), Collections.singletonList(paragraph));
+    }
+}
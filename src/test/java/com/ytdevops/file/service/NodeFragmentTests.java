@@ -0,0 +1,139 @@
+package com.ytdevops.file.service;
+
+import com.ytdevops.common.service.InMemoryImageResolver;
+import com.ytdevops.resource.ResourceContent;
+import org.docx4j.XmlUtils;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPartAbstractImage;
+import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
+import org.docx4j.openpackaging.parts.relationships.Namespaces;
+import org.docx4j.relationships.Relationship;
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NodeFragmentTests {
+    private static final Pattern REFERENCE = Pattern.compile("r:(?:embed|id)=\"([^\"]+)\"|<w:numId w:val=\"(\\d+)\"|<wp:docPr id=\"(\\d+)\"");
+
+    /**
+     * 含图片、超链接和列表的片段放入另一个文档两次：关系 id、编号 id、图片 id 都换成新文档中的值，
+     * 相同的图片只创建一个部件，每次放入都有独立的超链接关系和编号定义。
+     */
+    @Test
+    void replaysImagesHyperlinksAndListsIntoAnotherPackage() throws Exception {
+        WordprocessingMLPackage source = WordprocessingMLPackage.createPackage();
+        InMemoryImageResolver imageResolver = new InMemoryImageResolver();
+        String src = imageResolver.register(ResourceContent.of(png()));
+        HtmlWordMLConverter converter = new HtmlWordMLConverter(source, new AtomicInteger(2), new HashMap<>(), imageResolver);
+        List<Object> contents = converter.convert(Jsoup.parse("<ol><li>一</li><li>二</li></ol>"
+                + "<p><a href=\"http://example.com/a\">链接</a><img src=\"" + src + "\"><img src=\"" + src + "\"></p>").body());
+        assertThat(contents).isNotNull();
+        source.getMainDocumentPart().getContent().addAll(contents);
+
+        NodeFragment fragment = NodeFragment.capture(source, contents);
+        assertThat(fragment).isNotNull();
+        assertThat(fragment.getSize()).isGreaterThan(png().length);
+
+        WordprocessingMLPackage target = WordprocessingMLPackage.createPackage();
+        MainDocumentPart mdp = target.getMainDocumentPart();
+        // 目标文档中已有的超链接占用了部分关系 id
+        Relationship existing = new org.docx4j.relationships.ObjectFactory().createRelationship();
+        existing.setType(Namespaces.HYPERLINK);
+        existing.setTarget("http://example.com/existing");
+        existing.setTargetMode("External");
+        mdp.getRelationshipsPart().addRelationship(existing);
+        int parts = target.getParts().getParts().size();
+
+        AtomicInteger drawingIds = new AtomicInteger(20);
+        Map<String, BinaryPartAbstractImage> imageParts = new HashMap<>();
+        String first = marshal(fragment.replay(target, drawingIds, imageParts));
+        String second = marshal(fragment.replay(target, drawingIds, imageParts));
+
+        List<Relationship> images = relationships(mdp, Namespaces.IMAGE);
+        List<Relationship> hyperlinks = relationships(mdp, Namespaces.HYPERLINK);
+        assertThat(images).hasSize(1);
+        assertThat(imageParts).hasSize(1);
+        // 新增一个图片部件和一个编号定义部件
+        assertThat(target.getParts().getParts()).hasSize(parts + 2);
+        assertThat(hyperlinks).hasSize(3);
+        assertThat(mdp.getNumberingDefinitionsPart().getInstanceListDefinitions()).hasSize(2);
+
+        References firstReferences = new References(first);
+        References secondReferences = new References(second);
+        assertThat(firstReferences.images).containsExactly(images.get(0).getId(), images.get(0).getId());
+        assertThat(secondReferences.images).isEqualTo(firstReferences.images);
+        assertThat(firstReferences.hyperlinks).singleElement().isNotEqualTo(existing.getId());
+        assertThat(secondReferences.hyperlinks).singleElement().isNotEqualTo(firstReferences.hyperlinks.get(0)).isNotEqualTo(existing.getId());
+        for (String hyperlink : List.of(firstReferences.hyperlinks.get(0), secondReferences.hyperlinks.get(0))) {
+            Relationship relationship = mdp.getRelationshipsPart().getRelationshipByID(hyperlink);
+            assertThat(relationship.getType()).isEqualTo(Namespaces.HYPERLINK);
+            assertThat(relationship.getTarget()).isEqualTo("http://example.com/a");
+        }
+        assertThat(new HashSet<>(firstReferences.numIds)).singleElement();
+        assertThat(new HashSet<>(secondReferences.numIds)).singleElement().isNotEqualTo(firstReferences.numIds.get(0));
+        assertThat(mdp.getNumberingDefinitionsPart().getInstanceListDefinitions())
+                .containsKeys(firstReferences.numIds.get(0), secondReferences.numIds.get(0));
+        assertThat(firstReferences.docPrIds).containsExactly("20", "21");
+        assertThat(secondReferences.docPrIds).containsExactly("22", "23");
+        assertThat(drawingIds.get()).isEqualTo(24);
+    }
+
+    /**
+     * 引用了图片和超链接以外的关系时不能复用。
+     */
+    @Test
+    void rejectsUnknownRelationships() throws Exception {
+        WordprocessingMLPackage source = WordprocessingMLPackage.createPackage();
+        List<Object> contents = new ArrayList<>();
+        contents.add(XmlUtils.unmarshalString("<w:p xmlns:w=\"" + Namespaces.NS_WORD12 + "\" xmlns:r=\"" + Namespaces.RELATIONSHIPS_OFFICEDOC + "\">"
+                + "<w:hyperlink r:id=\"rId999\"><w:r><w:t>悬空</w:t></w:r></w:hyperlink></w:p>"));
+
+        assertThat(NodeFragment.capture(source, contents)).isNull();
+    }
+
+    private static String marshal(List<Object> contents) {
+        return contents.stream().map(XmlUtils::marshaltoString).collect(Collectors.joining());
+    }
+
+    private static List<Relationship> relationships(MainDocumentPart mdp, String type) {
+        return mdp.getRelationshipsPart().getRelationships().getRelationship().stream()
+                .filter(relationship -> type.equals(relationship.getType()))
+                .collect(Collectors.toList());
+    }
+
+    private static byte[] png() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB), "png", outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private static class References {
+        private final List<String> images = new ArrayList<>();
+        private final List<String> hyperlinks = new ArrayList<>();
+        private final List<String> numIds = new ArrayList<>();
+        private final List<String> docPrIds = new ArrayList<>();
+
+        private References(String xml) {
+            Matcher matcher = REFERENCE.matcher(xml);
+            while (matcher.find()) {
+                if (Objects.nonNull(matcher.group(1))) {
+                    (matcher.group(0).startsWith("r:embed") ? images : hyperlinks).add(matcher.group(1));
+                } else if (Objects.nonNull(matcher.group(2))) {
+                    numIds.add(matcher.group(2));
+                } else {
+                    docPrIds.add(matcher.group(3));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.ytdevops.file.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ytdevops.benchmark.FakeResourceServer;
+import com.ytdevops.benchmark.FileDetailDtoGenerator;
+import com.ytdevops.common.ExportResultCacheProperties;
+import com.ytdevops.common.ExportTraceProperties;
+import com.ytdevops.common.PdfRenderProperties;
+import com.ytdevops.common.service.ExportResultCache;
+import com.ytdevops.common.service.ExportTracer;
+import com.ytdevops.common.service.NativePdfRenderer;
+import com.ytdevops.common.service.WordPackagePool;
+import com.ytdevops.file.DiagramRasterizeProperties;
+import com.ytdevops.file.FileDetailDto;
+import com.ytdevops.file.FragmentCacheProperties;
+import com.ytdevops.file.ParallelRenderProperties;
+import com.ytdevops.file.StreamingExportProperties;
+import com.ytdevops.resource.ImageOptimizeProperties;
+import com.ytdevops.resource.ResourceCacheProperties;
+import com.ytdevops.resource.ResourceFetchProperties;
+import com.ytdevops.resource.service.DataUriSource;
+import com.ytdevops.resource.service.ImageOptimizer;
+import com.ytdevops.resource.service.ResourceCache;
+import com.ytdevops.resource.service.ResourceFetcher;
+import com.ytdevops.resource.service.ResourcePrefetchService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.FileUtils;
+import org.docx4j.openpackaging.exceptions.InvalidFormatException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.util.unit.DataSize;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个节点的渲染步骤：insertDescription（含图片，能直接生成 WordML 的走直接生成）、convertToXhtml（Tidy），
+ * 以及 downloadDiagram 中架构图的栅格化（关闭架构图缓存，每次都经 Batik 渲染）。
+ * 每轮迭代重建文档包，避免正文和部件无限增长。放在 file.service 包下以调用包内可见的方法。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NodeRenderBenchmark {
+    private static final int NODE_COUNT = 50;
+    private static final String HTML_TEMPLATE = "<!DOCTYPE html><html><head><meta charset=\"UTF-8\"></head><body></body></html>";
+
+    @Param({"1", "10"})
+    private int descriptionParagraphs;
+
+    private FakeResourceServer resourceServer;
+
+    private ResourcePrefetchService resourcePrefetchService;
+
+    private DiagramRasterizer diagramRasterizer;
+
+    private WordPackagePool wordPackagePool;
+
+    private WordExportService wordExportService;
+
+    private WordExportContext context;
+
+    private List<FileDetailDto.Data> nodes;
+
+    private List<String> htmls;
+
+    private List<String> diagramUrls;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        resourceServer = new FakeResourceServer();
+        FileDetailDto fileDetailDto = FileDetailDtoGenerator.generate(new FileDetailDtoGenerator.Shape()
+                .setNodeCount(NODE_COUNT)
+                .setDescriptionParagraphs(descriptionParagraphs)
+                .setImageCount(NODE_COUNT / 2)
+                .setDrawIoCount(3)
+                .setResourceBaseUrl(resourceServer.getBaseUrl()));
+        nodes = fileDetailDto.getData();
+        htmls = new ArrayList<>(nodes.size());
+        for (FileDetailDto.Data node : nodes) {
+            Document document = Jsoup.parse(HTML_TEMPLATE);
+            document.body().append(Jsoup.parse(node.getDescription()).html());
+            htmls.add(document.html());
+        }
+        diagramUrls = new ArrayList<>();
+        List<String> resourceUrls = new ArrayList<>();
+        for (FileDetailDto.Data node : nodes) {
+            Jsoup.parse(node.getDescription()).select("img").forEach(image -> resourceUrls.add(image.attr("src")));
+            node.getArchitectureDiagrams().forEach(diagram -> diagramUrls.add(diagram.getData()));
+        }
+        resourceUrls.addAll(diagramUrls);
+
+        ResourceFetchProperties resourceFetchProperties = new ResourceFetchProperties();
+        diagramRasterizer = new DiagramRasterizer(new DiagramRasterizeProperties().setThreads(1).setCacheBudget(DataSize.ofBytes(0)), new SimpleMeterRegistry());
+        resourcePrefetchService = new ResourcePrefetchService(List.of(new DataUriSource()), new ResourceFetcher(resourceFetchProperties,
+                new ResourceCache(new ResourceCacheProperties().setEnabled(false), new SimpleMeterRegistry())), resourceFetchProperties);
+        wordPackagePool = new WordPackagePool(0, false);
+        wordExportService = new WordExportService(resourcePrefetchService, new ImageOptimizer(new ImageOptimizeProperties().setEnabled(false)),
+                diagramRasterizer, wordPackagePool,
+                new NativePdfRenderer(new PdfRenderProperties()), new ObjectMapper(), new StreamingExportProperties(),
+                new ParallelRenderProperties().setEnabled(false),
+                new ExportResultCache(new ExportResultCacheProperties().setEnabled(false), new SimpleMeterRegistry()),
+                new NodeFragmentCache(new FragmentCacheProperties().setEnabled(false), new SimpleMeterRegistry()),
+                new ExportTracer(new ExportTraceProperties().setEnabled(false), new SimpleMeterRegistry()));
+
+        context = new WordExportContext().setTmpDir(Files.createTempDirectory("node-render-").toFile());
+        context.setPrefetchedResources(resourcePrefetchService.prefetch(resourceUrls, context.getTmpDir()));
+    }
+
+    @Setup(Level.Iteration)
+    public void newPackage() throws InvalidFormatException {
+        context.setWordMLPackage(wordPackagePool.acquire());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        resourcePrefetchService.shutdown();
+        diagramRasterizer.shutdown();
+        wordPackagePool.shutdown();
+        resourceServer.close();
+        FileUtils.deleteDirectory(context.getTmpDir());
+    }
+
+    @Benchmark
+    public void insertDescription() {
+        wordExportService.insertDescription(context, nodes.get(next++ % nodes.size()));
+    }
+
+    @Benchmark
+    public String convertToXhtml() {
+        return wordExportService.convertToXhtml(htmls.get(next++ % htmls.size()));
+    }
+
+    /**
+     * 栅格化写出的 PNG 随即删除。
+     */
+    @Benchmark
+    public String downloadDiagram() {
+        String diagramUrl = diagramUrls.get(next++ % diagramUrls.size());
+        context.setRenderedDiagrams(wordExportService.rasterizeDiagrams(context, Collections.singletonList(diagramUrl)));
+        String imagePath = wordExportService.downloadDiagram(context, diagramUrl);
+        FileUtils.deleteQuietly(new File(imagePath));
+        return imagePath;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(NodeRenderBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
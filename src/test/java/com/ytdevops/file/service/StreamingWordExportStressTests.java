@@ -0,0 +1,144 @@
+package com.ytdevops.file.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ytdevops.benchmark.FileDetailDtoGenerator;
+import com.ytdevops.common.ExportResultCacheProperties;
+import com.ytdevops.common.ExportTraceProperties;
+import com.ytdevops.common.PdfRenderProperties;
+import com.ytdevops.common.service.ExportResultCache;
+import com.ytdevops.common.service.ExportTracer;
+import com.ytdevops.common.service.NativePdfRenderer;
+import com.ytdevops.common.service.WordPackagePool;
+import com.ytdevops.file.DiagramRasterizeProperties;
+import com.ytdevops.file.FragmentCacheProperties;
+import com.ytdevops.file.ParallelRenderProperties;
+import com.ytdevops.file.StreamingExportProperties;
+import com.ytdevops.resource.ImageOptimizeProperties;
+import com.ytdevops.resource.ResourceCacheProperties;
+import com.ytdevops.resource.ResourceFetchProperties;
+import com.ytdevops.resource.service.DataUriSource;
+import com.ytdevops.resource.service.ImageOptimizer;
+import com.ytdevops.resource.service.ResourceCache;
+import com.ytdevops.resource.service.ResourceFetcher;
+import com.ytdevops.resource.service.ResourcePrefetchService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 在固定 -Xmx 的子进程中流式导出 5 万节点的思维导图。耗时较长，使用 -Dstress=true 运行。
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "stress", matches = "true")
+class StreamingWordExportStressTests {
+    private static final int NODE_COUNT = 50_000;
+    private static final String MAX_HEAP = "-Xmx192m";
+
+    @Test
+    void exportsFiftyThousandNodesWithinFixedHeap(@TempDir Path tempDir) throws Exception {
+        File input = tempDir.resolve("file.json").toFile();
+        File output = tempDir.resolve("file.docx").toFile();
+        new ObjectMapper().writeValue(input, FileDetailDtoGenerator.generate(NODE_COUNT));
+
+        List<String> command = Arrays.asList(
+                new File(System.getProperty("java.home"), "bin/java").getAbsolutePath(), MAX_HEAP,
+                "-cp", System.getProperty("java.class.path"),
+                StreamingWordExportStressTests.class.getName(), input.getAbsolutePath(), output.getAbsolutePath());
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String processOutput = IOUtils.toString(process.getInputStream(), StandardCharsets.UTF_8);
+        assertThat(process.waitFor(30, TimeUnit.MINUTES)).isTrue();
+        log.info("子进程输出:\n{}", processOutput.substring(Math.max(0, processOutput.length() - 2000)));
+
+        assertThat(process.exitValue()).isZero();
+        assertThat(countHeadings(output)).isEqualTo(NODE_COUNT - 1);
+    }
+
+    private static int countHeadings(File docx) throws IOException {
+        try (ZipInputStream zipInputStream = new ZipInputStream(new FileInputStream(docx))) {
+            ZipEntry entry;
+            while ((entry = zipInputStream.getNextEntry()) != null) {
+                if ("word/document.xml".equals(entry.getName())) {
+                    return count(new InputStreamReader(zipInputStream, StandardCharsets.UTF_8), "<w:pStyle w:val=\"Heading");
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int count(Reader reader, String pattern) throws IOException {
+        int matches = 0;
+        int matched = 0;
+        int c;
+        while ((c = reader.read()) != -1) {
+            matched = c == pattern.charAt(matched) ? matched + 1 : (c == pattern.charAt(0) ? 1 : 0);
+            if (matched == pattern.length()) {
+                matches++;
+                matched = 0;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * 子进程入口：参数为输入 JSON 和输出 docx 路径。
+     */
+    public static void main(String[] args) throws IOException {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ResourceFetchProperties resourceFetchProperties = new ResourceFetchProperties();
+        ResourcePrefetchService resourcePrefetchService = new ResourcePrefetchService(List.of(new DataUriSource()), new ResourceFetcher(resourceFetchProperties,
+                new ResourceCache(new ResourceCacheProperties(), meterRegistry)), resourceFetchProperties);
+        ImageOptimizer imageOptimizer = new ImageOptimizer(new ImageOptimizeProperties());
+        DiagramRasterizer diagramRasterizer = new DiagramRasterizer(new DiagramRasterizeProperties(), meterRegistry);
+        ObjectMapper objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        WordPackagePool wordPackagePool = new WordPackagePool(0, false);
+        WordExportService wordExportService = new WordExportService(resourcePrefetchService, imageOptimizer, diagramRasterizer, wordPackagePool, new NativePdfRenderer(new PdfRenderProperties()), objectMapper, new StreamingExportProperties(), new ParallelRenderProperties(),
+                new ExportResultCache(new ExportResultCacheProperties().setEnabled(false), meterRegistry),
+                new NodeFragmentCache(new FragmentCacheProperties().setEnabled(false), meterRegistry),
+                new ExportTracer(new ExportTraceProperties(), meterRegistry));
+
+        long start = System.currentTimeMillis();
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(args[0]));
+             OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(args[1]))) {
+            wordExportService.exportWordStreaming(inputStream, outputStream, (completed, total) -> {
+                if (completed % 10_000 == 0) {
+                    log.info("{}/{} 节点，已用堆 {} MB", completed, total, usedHeapMegabytes());
+                }
+            });
+        } finally {
+            resourcePrefetchService.shutdown();
+            imageOptimizer.shutdown();
+            diagramRasterizer.shutdown();
+            wordPackagePool.shutdown();
+        }
+        long peak = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .map(MemoryPoolMXBean::getPeakUsage)
+                .mapToLong(usage -> usage.getUsed())
+                .sum();
+        log.info("导出完成，耗时 {} ms，最大堆 {} MB，各堆区峰值之和 {} MB",
+                System.currentTimeMillis() - start, Runtime.getRuntime().maxMemory() >> 20, peak >> 20);
+    }
+
+    private static long usedHeapMegabytes() {
+        Runtime runtime = Runtime.getRuntime();
+        return (runtime.totalMemory() - runtime.freeMemory()) >> 20;
+    }
+}
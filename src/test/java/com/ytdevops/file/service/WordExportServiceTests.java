@@ -0,0 +1,326 @@
+package com.ytdevops.file.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ytdevops.benchmark.FakeResourceServer;
+import com.ytdevops.benchmark.FileDetailDtoGenerator;
+import com.ytdevops.common.ExportProgressListener;
+import com.ytdevops.common.ExportResultCacheProperties;
+import com.ytdevops.common.ExportTraceProperties;
+import com.ytdevops.common.PdfRenderProperties;
+import com.ytdevops.common.service.ExportResultCache;
+import com.ytdevops.common.service.ExportTracer;
+import com.ytdevops.common.service.NativePdfRenderer;
+import com.ytdevops.common.service.WordPackagePool;
+import com.ytdevops.file.AltChunkConversionMode;
+import com.ytdevops.file.DiagramRasterizeProperties;
+import com.ytdevops.file.FieldType;
+import com.ytdevops.file.FileDetailDto;
+import com.ytdevops.file.FragmentCacheProperties;
+import com.ytdevops.file.ParallelRenderProperties;
+import com.ytdevops.file.StreamingExportProperties;
+import com.ytdevops.resource.ImageOptimizeProperties;
+import com.ytdevops.resource.ResourceCacheProperties;
+import com.ytdevops.resource.ResourceFetchProperties;
+import com.ytdevops.resource.service.DataUriSource;
+import com.ytdevops.resource.service.ImageOptimizer;
+import com.ytdevops.resource.service.ResourceCache;
+import com.ytdevops.resource.service.ResourceFetcher;
+import com.ytdevops.resource.service.ResourcePrefetchService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.docx4j.TextUtils;
+import org.docx4j.XmlUtils;
+import org.docx4j.jaxb.Context;
+import org.docx4j.model.listnumbering.ListNumberingDefinition;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
+import org.docx4j.openpackaging.parts.relationships.Namespaces;
+import org.docx4j.relationships.Relationship;
+import org.docx4j.wml.CTAltChunk;
+import org.docx4j.wml.Numbering;
+import org.docx4j.wml.P;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WordExportServiceTests {
+    private static final Pattern RELATIONSHIP_REFERENCE = Pattern.compile("r:(embed|id|link)=\"([^\"]+)\"");
+    private static final Pattern NUMBERING_REFERENCE = Pattern.compile("<w:numId w:val=\"(\\d+)\"");
+    private static final Pattern DRAWING_ID = Pattern.compile("(<(?:wp:docPr|pic:cNvPr) id=\")\\d+");
+    private static final Pattern STYLE_REFERENCE = Pattern.compile("<w:(?:pStyle|rStyle|tblStyle) w:val=\"([^\"]+)\"");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private FakeResourceServer resourceServer;
+
+    private ResourcePrefetchService resourcePrefetchService;
+
+    private ImageOptimizer imageOptimizer;
+
+    private DiagramRasterizer diagramRasterizer;
+
+    private WordPackagePool wordPackagePool;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        resourceServer = new FakeResourceServer();
+        ResourceFetchProperties resourceFetchProperties = new ResourceFetchProperties();
+        resourcePrefetchService = new ResourcePrefetchService(List.of(new DataUriSource()), new ResourceFetcher(resourceFetchProperties,
+                new ResourceCache(new ResourceCacheProperties().setEnabled(false), meterRegistry)), resourceFetchProperties);
+        imageOptimizer = new ImageOptimizer(new ImageOptimizeProperties());
+        diagramRasterizer = new DiagramRasterizer(new DiagramRasterizeProperties(), meterRegistry);
+        wordPackagePool = new WordPackagePool(0, false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        resourcePrefetchService.shutdown();
+        imageOptimizer.shutdown();
+        diagramRasterizer.shutdown();
+        wordPackagePool.shutdown();
+        resourceServer.close();
+    }
+
+    /**
+     * 直接生成、XHTML 导入、字段表格、图片、架构图、超链接和列表混合的文件，并行渲染子树与顺序渲染的正文一致：
+     * 关系 id 换成图片内容哈希或链接地址，编号 id 换成编号定义，图片 id 不比较。
+     * 子树内的 XHTML 立即导入，顺序导出按默认配置在保存前统一导入 AltChunk 作为对照。
+     */
+    @Test
+    void parallelSubtreesMatchSequentialExport() throws Exception {
+        FileDetailDto fileDetailDto = FileDetailDtoGenerator.generate(new FileDetailDtoGenerator.Shape()
+                .setNodeCount(60)
+                .setImageCount(20)
+                .setDrawIoCount(6)
+                .setResourceBaseUrl(resourceServer.getBaseUrl()));
+        List<FileDetailDto.Data> nodes = fileDetailDto.getData();
+        for (int i = 0; i < nodes.size(); i++) {
+            FileDetailDto.Data node = nodes.get(i);
+            if (i % 7 == 0) {
+                node.setDescription(node.getDescription() + "<blockquote>引用 " + i + "</blockquote><ol><li>一</li><li>二</li></ol>");
+            }
+            if (i % 5 == 0) {
+                node.setDescription(node.getDescription() + "<p><a href=\"http://example.com/" + i + "\">链接</a></p><ol><li>甲</li></ol>");
+            }
+            if (i % 3 == 0) {
+                node.setContent(Collections.singletonList(new FileDetailDto.Content()
+                        .setFieldId("field-" + i).setName("字段").setOrderNumber(1).setFieldType(FieldType.TEXT).setValue("值 " + i)));
+            }
+        }
+
+        byte[] sequential = exportWord(fileDetailDto, new ParallelRenderProperties().setEnabled(false));
+        byte[] parallel = exportWord(fileDetailDto, new ParallelRenderProperties().setThreads(4).setMinNodes(0));
+
+        assertThat(meterRegistry.find("export.phase").tag("phase", "subtree-merge").timer()).isNotNull();
+        WordprocessingMLPackage parallelPackage = WordprocessingMLPackage.load(new ByteArrayInputStream(parallel));
+        String parallelBody = normalize(parallelPackage);
+        assertThat(parallelBody).isEqualTo(normalize(WordprocessingMLPackage.load(new ByteArrayInputStream(sequential))));
+        Matcher styleMatcher = STYLE_REFERENCE.matcher(XmlUtils.marshaltoString(parallelPackage.getMainDocumentPart().getJaxbElement(), true, false));
+        while (styleMatcher.find()) {
+            assertThat(parallelPackage.getMainDocumentPart().getStyleDefinitionsPart().getStyleById(styleMatcher.group(1))).isNotNull();
+        }
+    }
+
+    /**
+     * 多段落描述都走 Tidy + AltChunk 并在保存前统一导入时，每段仍留在所属节点的标题之后，顺序不变也不丢失。
+     */
+    @Test
+    void singlePassKeepsFallbackDescriptionsInNodeOrder() throws Exception {
+        FileDetailDto fileDetailDto = FileDetailDtoGenerator.generate(new FileDetailDtoGenerator.Shape()
+                .setNodeCount(4)
+                .setDepth(2)
+                .setResourceBaseUrl(resourceServer.getBaseUrl()));
+        List<String> expected = new ArrayList<>();
+        List<FileDetailDto.Data> nodes = fileDetailDto.getData();
+        for (int i = 0; i < nodes.size(); i++) {
+            if (i > 0) {
+                expected.add(nodes.get(i).getTopic());
+            }
+            StringBuilder description = new StringBuilder();
+            for (String paragraph : List.of("A", "B", "C")) {
+                description.append("<p>").append(paragraph).append(i).append("</p>");
+                expected.add(paragraph + i);
+            }
+            nodes.get(i).setDescription(description.toString());
+        }
+
+        WordExportService wordExportService = newWordExportService(new ParallelRenderProperties().setEnabled(false));
+        wordExportService.setDirectHtmlConversion(false);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            wordExportService.exportWord(fileDetailDto, outputStream);
+        } finally {
+            wordExportService.shutdown();
+        }
+
+        MainDocumentPart mdp = WordprocessingMLPackage.load(new ByteArrayInputStream(outputStream.toByteArray())).getMainDocumentPart();
+        assertThat(mdp.getContent()).noneMatch(content -> XmlUtils.unwrap(content) instanceof CTAltChunk);
+        assertThat(mdp.getContent().stream()
+                .filter(content -> XmlUtils.unwrap(content) instanceof P)
+                .map(TextUtils::getText)
+                .filter(StringUtils::isNotBlank))
+                .containsExactlyElementsOf(expected);
+    }
+
+    /**
+     * 逐节点转换 AltChunk 时，直接生成的内容在转换前后共用同一个图片部件和项目符号列表，图片 id 不重复。
+     */
+    @Test
+    void perNodeConversionKeepsImagePartsAndBulletList() throws Exception {
+        FileDetailDto fileDetailDto = FileDetailDtoGenerator.generate(new FileDetailDtoGenerator.Shape()
+                .setNodeCount(6)
+                .setDepth(2)
+                .setResourceBaseUrl(resourceServer.getBaseUrl()));
+        List<FileDetailDto.Data> nodes = fileDetailDto.getData();
+        for (int i = 0; i < nodes.size(); i++) {
+            nodes.get(i).setDescription(i % 2 == 0
+                    ? "<p><img src=\"" + resourceServer.getBaseUrl() + "/image/0.png\"></p><ul><li>条目 " + i + "</li></ul>"
+                    : "<blockquote>引用 " + i + "</blockquote>");
+        }
+
+        WordExportService wordExportService = newWordExportService(new ParallelRenderProperties().setEnabled(false));
+        wordExportService.setAltChunkConversionMode(AltChunkConversionMode.PER_NODE);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            wordExportService.exportWord(fileDetailDto, outputStream);
+        } finally {
+            wordExportService.shutdown();
+        }
+
+        MainDocumentPart mdp = WordprocessingMLPackage.load(new ByteArrayInputStream(outputStream.toByteArray())).getMainDocumentPart();
+        assertThat(mdp.getRelationshipsPart().getRelationships().getRelationship())
+                .filteredOn(relationship -> Namespaces.IMAGE.equals(relationship.getType()))
+                .hasSize(1);
+        String xml = XmlUtils.marshaltoString(mdp.getJaxbElement(), true, false);
+        List<String> drawingIds = new ArrayList<>();
+        Matcher drawingIdMatcher = Pattern.compile("<wp:docPr id=\"(\\d+)\"").matcher(xml);
+        while (drawingIdMatcher.find()) {
+            drawingIds.add(drawingIdMatcher.group(1));
+        }
+        assertThat(drawingIds).hasSize(3).doesNotHaveDuplicates();
+        Set<String> numIds = new HashSet<>();
+        Matcher numberingMatcher = NUMBERING_REFERENCE.matcher(xml);
+        while (numberingMatcher.find()) {
+            numIds.add(numberingMatcher.group(1));
+        }
+        assertThat(numIds).hasSize(1);
+    }
+
+    /**
+     * 异步导出取消时进度回调抛出的 CancellationException 原样抛给调用方，不包装成导出失败。
+     */
+    @Test
+    void cancellationFromProgressListenerIsNotWrapped() {
+        FileDetailDto fileDetailDto = FileDetailDtoGenerator.generate(new FileDetailDtoGenerator.Shape()
+                .setNodeCount(5)
+                .setResourceBaseUrl(resourceServer.getBaseUrl()));
+        WordExportService wordExportService = newWordExportService(new ParallelRenderProperties().setEnabled(false));
+        try {
+            assertThatThrownBy(() -> wordExportService.exportWord(fileDetailDto, new ByteArrayOutputStream(), (completed, total) -> {
+                if (completed > 1) {
+                    throw new CancellationException();
+                }
+            })).isExactlyInstanceOf(CancellationException.class);
+        } finally {
+            wordExportService.shutdown();
+        }
+    }
+
+    /**
+     * 按估算字节数把每个节点单独分批时，流式导出的正文与按节点数分批相同。
+     */
+    @Test
+    void streamingBatchesBoundedByBytesMatchNodeBatches() throws Exception {
+        FileDetailDto fileDetailDto = FileDetailDtoGenerator.generate(new FileDetailDtoGenerator.Shape()
+                .setNodeCount(30)
+                .setImageCount(10)
+                .setResourceBaseUrl(resourceServer.getBaseUrl()));
+        byte[] json = new ObjectMapper().writeValueAsBytes(fileDetailDto);
+
+        byte[] byNodes = exportWordStreaming(json, new StreamingExportProperties());
+        byte[] byBytes = exportWordStreaming(json, new StreamingExportProperties().setMaxBatchBytes(DataSize.ofBytes(1)));
+
+        assertThat(normalize(WordprocessingMLPackage.load(new ByteArrayInputStream(byBytes))))
+                .isEqualTo(normalize(WordprocessingMLPackage.load(new ByteArrayInputStream(byNodes))));
+    }
+
+    private byte[] exportWordStreaming(byte[] json, StreamingExportProperties streamingExportProperties) {
+        WordExportService wordExportService = newWordExportService(new ParallelRenderProperties().setEnabled(false), streamingExportProperties);
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            wordExportService.exportWordStreaming(new ByteArrayInputStream(json), outputStream, ExportProgressListener.NONE);
+            return outputStream.toByteArray();
+        } finally {
+            wordExportService.shutdown();
+        }
+    }
+
+    private byte[] exportWord(FileDetailDto fileDetailDto, ParallelRenderProperties parallelRenderProperties) {
+        WordExportService wordExportService = newWordExportService(parallelRenderProperties);
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            wordExportService.exportWord(fileDetailDto, outputStream);
+            return outputStream.toByteArray();
+        } finally {
+            wordExportService.shutdown();
+        }
+    }
+
+    private WordExportService newWordExportService(ParallelRenderProperties parallelRenderProperties) {
+        return newWordExportService(parallelRenderProperties, new StreamingExportProperties());
+    }
+
+    private WordExportService newWordExportService(ParallelRenderProperties parallelRenderProperties, StreamingExportProperties streamingExportProperties) {
+        return new WordExportService(resourcePrefetchService, imageOptimizer, diagramRasterizer, wordPackagePool,
+                new NativePdfRenderer(new PdfRenderProperties()), new ObjectMapper(), streamingExportProperties, parallelRenderProperties,
+                new ExportResultCache(new ExportResultCacheProperties().setEnabled(false), meterRegistry),
+                new NodeFragmentCache(new FragmentCacheProperties().setEnabled(false), meterRegistry),
+                new ExportTracer(new ExportTraceProperties(), meterRegistry));
+    }
+
+    private static String normalize(WordprocessingMLPackage wordMLPackage) {
+        MainDocumentPart mdp = wordMLPackage.getMainDocumentPart();
+        String xml = XmlUtils.marshaltoString(mdp.getJaxbElement(), true, false);
+        xml = DRAWING_ID.matcher(xml).replaceAll("$1#");
+
+        Matcher relationshipMatcher = RELATIONSHIP_REFERENCE.matcher(xml);
+        StringBuilder resolved = new StringBuilder();
+        while (relationshipMatcher.find()) {
+            Relationship relationship = mdp.getRelationshipsPart().getRelationshipByID(relationshipMatcher.group(2));
+            String target = Namespaces.HYPERLINK.equals(relationship.getType()) ? relationship.getTarget()
+                    : DigestUtils.sha256Hex(((BinaryPart) mdp.getRelationshipsPart().getPart(relationship)).getBytes());
+            relationshipMatcher.appendReplacement(resolved, Matcher.quoteReplacement("r:" + relationshipMatcher.group(1) + "=\"" + target + "\""));
+        }
+        relationshipMatcher.appendTail(resolved);
+
+        Matcher numberingMatcher = NUMBERING_REFERENCE.matcher(resolved.toString());
+        StringBuilder numbered = new StringBuilder();
+        while (numberingMatcher.find()) {
+            ListNumberingDefinition definition = mdp.getNumberingDefinitionsPart().getInstanceListDefinitions().get(numberingMatcher.group(1));
+            String abstractNum = XmlUtils.marshaltoString(definition.getAbstractListDefinition().getAbstractNumNode(), true, false,
+                    Context.jc, Namespaces.NS_WORD12, "abstractNum", Numbering.AbstractNum.class)
+                    .replaceAll(" w:abstractNumId=\"\\d+\"", "")
+                    .replaceAll("<w:nsid [^>]*/>", "");
+            numberingMatcher.appendReplacement(numbered, Matcher.quoteReplacement("<w:numId w:val=\"" + DigestUtils.sha256Hex(abstractNum) + "\""));
+        }
+        numberingMatcher.appendTail(numbered);
+        return numbered.toString();
+    }
+}
@@ -0,0 +1,195 @@
+package com.ytdevops.job.service;
+
+import com.ytdevops.common.ExportAdmissionProperties;
+import com.ytdevops.common.ExportProgressListener;
+import com.ytdevops.common.service.ExportAdmission;
+import com.ytdevops.common.service.ExportCostEstimator;
+import com.ytdevops.file.FileDetailDto;
+import com.ytdevops.file.StreamingExportProperties;
+import com.ytdevops.file.service.WordExportService;
+import com.ytdevops.job.ExportJob;
+import com.ytdevops.job.ExportJobProperties;
+import com.ytdevops.job.ExportJobStatus;
+import com.ytdevops.knowledgebase.service.KnowledgeBaseWordExportService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class ExportJobServiceTests {
+    private final WordExportService wordExportService = mock(WordExportService.class);
+    private final KnowledgeBaseWordExportService knowledgeBaseWordExportService = mock(KnowledgeBaseWordExportService.class);
+    private final ExportAdmissionProperties exportAdmissionProperties = new ExportAdmissionProperties().setMaxConcurrency(2);
+    private final ExportAdmission exportAdmission = new ExportAdmission(exportAdmissionProperties, new SimpleMeterRegistry());
+    /**
+     * 主题为"阻塞"的导出汇报一半进度后等待，直到 release 或线程被中断。
+     */
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @TempDir
+    File resultDir;
+
+    private ExportJobService exportJobService;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            String topic = invocation.<FileDetailDto>getArgument(0).getData().get(0).getTopic();
+            ExportProgressListener progressListener = invocation.getArgument(2);
+            progressListener.onProgress(0, 2);
+            if (topic.equals("阻塞")) {
+                progressListener.onProgress(1, 2);
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            progressListener.onProgress(2, 2);
+            invocation.<OutputStream>getArgument(1).write(topic.getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(wordExportService).exportWord(any(FileDetailDto.class), any(OutputStream.class), any(ExportProgressListener.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        exportJobService.shutdown();
+    }
+
+    @Test
+    void reportsProgressAndKeepsResultInOwnedDirectory() throws Exception {
+        File unrelated = new File(resultDir, "unrelated.txt");
+        Files.writeString(unrelated.toPath(), "keep");
+        exportJobService = newService(new ExportJobProperties().setThreads(1));
+
+        ExportJob blocked = exportJobService.submitFileWord(file("阻塞"));
+        awaitJob(blocked, job -> job.getProgress() == 50);
+        assertThat(blocked.getStatus()).isEqualTo(ExportJobStatus.RUNNING);
+        assertThatThrownBy(() -> exportJobService.getResult(blocked.getId()))
+                .isInstanceOfSatisfying(ResponseStatusException.class, e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.CONFLICT));
+
+        release.countDown();
+        awaitJob(blocked, job -> job.getStatus().getFinished());
+        assertThat(blocked.getStatus()).isEqualTo(ExportJobStatus.SUCCEEDED);
+        assertThat(blocked.getProgress()).isEqualTo(100);
+        File result = exportJobService.getResult(blocked.getId());
+        assertThat(result).usingCharset(StandardCharsets.UTF_8).hasContent("阻塞");
+        assertThat(result.getParentFile().getParentFile()).isEqualTo(resultDir);
+        assertThat(unrelated).exists();
+    }
+
+    @Test
+    void rejectsSubmissionsWhenQueueIsFull() throws Exception {
+        exportJobService = newService(new ExportJobProperties().setThreads(1).setQueueCapacity(1));
+        ExportJob running = exportJobService.submitFileWord(file("阻塞"));
+        awaitJob(running, job -> job.getStatus() == ExportJobStatus.RUNNING);
+        ExportJob queued = exportJobService.submitFileWord(file("排队"));
+
+        assertThatThrownBy(() -> exportJobService.submitFileWord(file("拒绝")))
+                .isInstanceOfSatisfying(ResponseStatusException.class, e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS));
+        assertThat(queued.getStatus()).isEqualTo(ExportJobStatus.QUEUED);
+
+        release.countDown();
+        awaitJob(queued, job -> job.getStatus().getFinished());
+        assertThat(queued.getStatus()).isEqualTo(ExportJobStatus.SUCCEEDED);
+    }
+
+    /**
+     * 取消运行中的任务时中断导出线程，进度回调抛出的 CancellationException 不按导出失败处理。
+     */
+    @Test
+    void cancelsRunningAndQueuedJobs() throws Exception {
+        exportJobService = newService(new ExportJobProperties().setThreads(1));
+        ExportJob running = exportJobService.submitFileWord(file("阻塞"));
+        awaitJob(running, job -> job.getProgress() == 50);
+        ExportJob queued = exportJobService.submitFileWord(file("排队"));
+
+        exportJobService.cancel(queued.getId());
+        exportJobService.cancel(running.getId());
+
+        awaitJob(running, job -> exportJobService.getExecutor().getActiveCount() == 0);
+        assertThat(running.getStatus()).isEqualTo(ExportJobStatus.CANCELLED);
+        assertThat(running.getErrorMessage()).isNull();
+        assertThat(running.getResult()).doesNotExist();
+        assertThat(queued.getStatus()).isEqualTo(ExportJobStatus.CANCELLED);
+        assertThat(exportJobService.getExecutor().getQueue()).isEmpty();
+        assertThat(exportJobService.cancel(running.getId()).getStatus()).isEqualTo(ExportJobStatus.CANCELLED);
+    }
+
+    /**
+     * 与同步导出共用准入控制：没有名额时任务保持排队状态，同步导出结束后开始导出。
+     */
+    @Test
+    void waitsForAdmissionBeforeRunning() throws Exception {
+        exportJobService = newService(new ExportJobProperties().setThreads(2));
+        ExportJob blocked = exportJobService.submitFileWord(file("阻塞"));
+        awaitJob(blocked, job -> job.getProgress() == 50);
+
+        ExportJob waiting;
+        try (ExportAdmission.Permit running = exportAdmission.admit("a", 1)) {
+            waiting = exportJobService.submitFileWord(file("等待"));
+            Thread.sleep(200);
+            assertThat(waiting.getStatus()).isEqualTo(ExportJobStatus.QUEUED);
+        }
+
+        awaitJob(waiting, job -> job.getStatus().getFinished());
+        assertThat(waiting.getStatus()).isEqualTo(ExportJobStatus.SUCCEEDED);
+        assertThat(blocked.getStatus()).isEqualTo(ExportJobStatus.RUNNING);
+    }
+
+    @Test
+    void removesExpiredJobsWithTheirResults() throws Exception {
+        exportJobService = newService(new ExportJobProperties().setResultTtl(Duration.ZERO));
+        ExportJob finished = exportJobService.submitFileWord(file("完成"));
+        ExportJob blocked = exportJobService.submitFileWord(file("阻塞"));
+        awaitJob(finished, job -> job.getStatus().getFinished());
+        awaitJob(blocked, job -> job.getProgress() == 50);
+        File result = finished.getResult();
+        assertThat(result).exists();
+
+        Thread.sleep(5);
+        exportJobService.removeExpiredJobs();
+
+        assertThat(result).doesNotExist();
+        assertThatThrownBy(() -> exportJobService.getJob(finished.getId()))
+                .isInstanceOfSatisfying(ResponseStatusException.class, e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.NOT_FOUND));
+        assertThat(exportJobService.getJob(blocked.getId())).isSameAs(blocked);
+    }
+
+    private ExportJobService newService(ExportJobProperties exportJobProperties) throws Exception {
+        return new ExportJobService(wordExportService, knowledgeBaseWordExportService, exportJobProperties.setResultDir(resultDir.getPath()),
+                exportAdmission, new ExportCostEstimator(exportAdmissionProperties, new StreamingExportProperties()));
+    }
+
+    private static FileDetailDto file(String topic) {
+        return new FileDetailDto().setData(Collections.singletonList(new FileDetailDto.Data().setTopic(topic)));
+    }
+
+    private static void awaitJob(ExportJob job, Predicate<ExportJob> condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.test(job) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(condition.test(job)).isTrue();
+    }
+}
@@ -0,0 +1,130 @@
+package com.ytdevops.knowledgebase.service;
+
+import com.ytdevops.knowledgebase.PdfConvertProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PdfConverterTests {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<PdfConverter> converters = new ArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        converters.forEach(PdfConverter::shutdown);
+    }
+
+    @Test
+    void pipesHtmlThroughConverterWhileDrainingStderr() throws Exception {
+        PdfConverter pdfConverter = converter("ok", 2, 10, Duration.ofSeconds(10));
+        String html = "<html><body><p>知识库</p></body></html>";
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        pdfConverter.convert(html, outputStream);
+
+        String pdf = outputStream.toString(StandardCharsets.UTF_8);
+        assertThat(pdf).startsWith("%PDF-1.4").contains(html).endsWith("%%EOF\n");
+        assertThat(meterRegistry.get("export.pdf.conversion").tag("outcome", "success").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void killsConversionAfterTimeout() {
+        PdfConverter pdfConverter = converter("hang", 1, 10, Duration.ofMillis(500));
+
+        long start = System.currentTimeMillis();
+        assertThatThrownBy(() -> pdfConverter.convert("<p>x</p>", OutputStream.nullOutputStream()))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("超时");
+        assertThat(System.currentTimeMillis() - start).isLessThan(10_000);
+        assertThat(meterRegistry.get("export.pdf.conversion").tag("outcome", "timeout").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void failsWhenConverterProducesNoOutput() {
+        PdfConverter pdfConverter = converter("fail", 1, 10, Duration.ofSeconds(10));
+
+        assertThatThrownBy(() -> pdfConverter.convert("<p>x</p>", OutputStream.nullOutputStream()))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("HostNotFoundError");
+    }
+
+    /**
+     * 已经写出部分内容但退出码不为 0 时同样失败，调用方不会把不完整的 PDF 写回响应。
+     */
+    @Test
+    void failsOnNonZeroExitEvenWithPartialOutput() {
+        PdfConverter pdfConverter = converter("partial", 1, 10, Duration.ofSeconds(10));
+
+        assertThatThrownBy(() -> pdfConverter.convert("<p>x</p>", OutputStream.nullOutputStream()))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("ContentNotFoundError");
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() throws Exception {
+        PdfConverter pdfConverter = converter("hang", 1, 1, Duration.ofSeconds(3));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> running = executor.submit(() -> convertQuietly(pdfConverter));
+            waitForGauge("export.pdf.running", 1);
+            Future<?> queued = executor.submit(() -> convertQuietly(pdfConverter));
+            waitForGauge("export.pdf.queue.depth", 1);
+
+            assertThatThrownBy(() -> pdfConverter.convert("<p>x</p>", OutputStream.nullOutputStream()))
+                    .isInstanceOfSatisfying(ResponseStatusException.class, e -> {
+                        assertThat(e.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+                        assertThat(e.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+                    });
+
+            running.get(10, TimeUnit.SECONDS);
+            queued.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private PdfConverter converter(String mode, int maxConcurrency, int queueCapacity, Duration timeout) {
+        String script = new File(getClass().getResource("/pdf/fake-wkhtmltopdf.sh").getFile()).getAbsolutePath();
+        PdfConvertProperties properties = new PdfConvertProperties()
+                .setCommand(Arrays.asList("sh", script, mode))
+                .setMaxConcurrency(maxConcurrency)
+                .setQueueCapacity(queueCapacity)
+                .setTimeout(timeout);
+        PdfConverter pdfConverter = new PdfConverter(properties, meterRegistry);
+        converters.add(pdfConverter);
+        return pdfConverter;
+    }
+
+    private void convertQuietly(PdfConverter pdfConverter) {
+        try {
+            pdfConverter.convert("<p>x</p>", OutputStream.nullOutputStream());
+        } catch (IOException ignored) {
+            // 超时属于预期
+        }
+    }
+
+    private void waitForGauge(String name, double expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get(name).gauge().value() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(meterRegistry.get(name).gauge().value()).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,138 @@
+package com.ytdevops.resource.service;
+
+import com.ytdevops.common.ExportTrace;
+import com.ytdevops.resource.ResourceContent;
+import com.ytdevops.resource.ImageOptimizeProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageOptimizerTests {
+    private final ImageOptimizer imageOptimizer = new ImageOptimizer(new ImageOptimizeProperties());
+
+    @AfterEach
+    void tearDown() {
+        imageOptimizer.shutdown();
+    }
+
+    @Test
+    void downscalesPhotosToJpegAndSharesDuplicates() throws Exception {
+        ResourceContent photo = ResourceContent.of(photo());
+        ResourceContent copy = ResourceContent.of(photo.getBytes().clone());
+        ResourceContent drawIo = ResourceContent.of("data:image/svg+xml;base64,".getBytes(StandardCharsets.UTF_8));
+        Map<String, ResourceContent> resources = Map.of("http://a/photo.png", photo, "http://b/photo.png", copy, "http://a/diagram", drawIo);
+        ExportTrace trace = new ExportTrace("file-word");
+
+        Map<String, ResourceContent> optimized = imageOptimizer.optimize(resources, List.of("http://a/photo.png", "http://b/photo.png"), trace);
+
+        ResourceContent optimizedPhoto = optimized.get("http://a/photo.png");
+        assertThat(ImageIO.getImageReaders(ImageIO.createImageInputStream(optimizedPhoto.openStream())).next().getFormatName())
+                .isEqualToIgnoringCase("jpeg");
+        assertThat(optimized.get("http://b/photo.png")).isSameAs(optimizedPhoto);
+        assertThat(optimized.get("http://a/diagram")).isSameAs(drawIo);
+        assertThat(ImageIO.read(new ByteArrayInputStream(optimizedPhoto.getBytes())).getWidth()).isEqualTo(844);
+        assertThat(trace.getOriginalImageBytes()).isEqualTo(photo.getLength() + copy.getLength());
+        assertThat(trace.getOptimizedImageBytes()).isEqualTo(optimizedPhoto.getLength());
+    }
+
+    @Test
+    void keepsSmallLineArt() throws Exception {
+        BufferedImage image = new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, 400, 200);
+        graphics.setColor(Color.BLACK);
+        graphics.drawRect(10, 10, 380, 180);
+        graphics.dispose();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", outputStream);
+        ResourceContent lineArt = ResourceContent.of(outputStream.toByteArray());
+
+        Map<String, ResourceContent> optimized = imageOptimizer.optimize(Map.of("http://a/line-art.png", lineArt), List.of("http://a/line-art.png"),
+                ExportTrace.NONE);
+
+        assertThat(optimized.get("http://a/line-art.png")).isSameAs(lineArt);
+    }
+
+    /**
+     * 方向为 6 时顺时针旋转 90 度显示：按旋转后的宽度缩小，存储的左半部分变为上半部分。
+     */
+    @Test
+    void appliesExifOrientationBeforeReencoding() throws Exception {
+        ResourceContent rotated = ResourceContent.of(ImageSizeProbeTests.withOrientation(halves(1600, 900), 6, ByteOrder.BIG_ENDIAN));
+        ResourceContent flipped = ResourceContent.of(ImageSizeProbeTests.withOrientation(halves(200, 100), 3, ByteOrder.LITTLE_ENDIAN));
+
+        Map<String, ResourceContent> optimized = imageOptimizer.optimize(Map.of("http://a/rotated.jpg", rotated, "http://a/flipped.jpg", flipped),
+                List.of("http://a/rotated.jpg", "http://a/flipped.jpg"), ExportTrace.NONE);
+
+        BufferedImage upright = ImageIO.read(new ByteArrayInputStream(optimized.get("http://a/rotated.jpg").getBytes()));
+        assertThat(upright.getWidth()).isEqualTo(844);
+        assertThat(upright.getHeight()).isEqualTo(1500);
+        assertThat(new Color(upright.getRGB(422, 100)).getRed()).isGreaterThan(200);
+        assertThat(new Color(upright.getRGB(422, 1400)).getBlue()).isGreaterThan(200);
+        // 小图不需要缩小，旋转后即使变大也重新编码
+        BufferedImage unflipped = ImageIO.read(new ByteArrayInputStream(optimized.get("http://a/flipped.jpg").getBytes()));
+        assertThat(unflipped.getWidth()).isEqualTo(200);
+        assertThat(new Color(unflipped.getRGB(10, 50)).getBlue()).isGreaterThan(200);
+        assertThat(new Color(unflipped.getRGB(190, 50)).getRed()).isGreaterThan(200);
+    }
+
+    @Test
+    void keepsImagesOverDecodeBudget() throws Exception {
+        ImageOptimizer limited = new ImageOptimizer(new ImageOptimizeProperties().setDecodeMemory(DataSize.ofMegabytes(1)));
+        try {
+            ResourceContent photo = ResourceContent.of(photo());
+
+            Map<String, ResourceContent> optimized = limited.optimize(Map.of("http://a/photo.png", photo), List.of("http://a/photo.png"),
+                    ExportTrace.NONE);
+
+            assertThat(optimized.get("http://a/photo.png")).isSameAs(photo);
+        } finally {
+            limited.shutdown();
+        }
+    }
+
+    /**
+     * 左半红色、右半蓝色的 JPEG。
+     */
+    private static byte[] halves(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.RED);
+        graphics.fillRect(0, 0, width / 2, height);
+        graphics.setColor(Color.BLUE);
+        graphics.fillRect(width / 2, 0, width - width / 2, height);
+        graphics.dispose();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] photo() throws IOException {
+        BufferedImage image = new BufferedImage(1600, 900, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(1);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, (x * 255 / image.getWidth()) << 16 | (y * 255 / image.getHeight()) << 8 | random.nextInt(64));
+            }
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", outputStream);
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,130 @@
+package com.ytdevops.resource.service;
+
+import com.ytdevops.resource.ResourceContent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageSizeProbeTests {
+    @TempDir
+    File tempDir;
+
+    @Test
+    void readsDimensionsFromHeaders() throws Exception {
+        assertThat(probe(encode("png", 37, 21))).isEqualTo(new Dimension(37, 21));
+        assertThat(probe(encode("jpg", 37, 21))).isEqualTo(new Dimension(37, 21));
+        assertThat(probe(encode("gif", 37, 21))).isEqualTo(new Dimension(37, 21));
+        assertThat(probe(webp("VP8 ", new byte[]{0x10, 0x02, 0x00, (byte) 0x9D, 0x01, 0x2A, 37, 0, 21, 0}))).isEqualTo(new Dimension(37, 21));
+        assertThat(probe(webp("VP8L", ByteBuffer.allocate(5).order(ByteOrder.LITTLE_ENDIAN)
+                .put((byte) 0x2F).putInt((37 - 1) | (21 - 1) << 14).array()))).isEqualTo(new Dimension(37, 21));
+        assertThat(probe(webp("VP8X", new byte[]{0x10, 0, 0, 0, 36, 0, 0, 20, 0, 0}))).isEqualTo(new Dimension(37, 21));
+    }
+
+    /**
+     * SOF 之前有 APP/DQT 等段时跳过这些段。
+     */
+    @Test
+    void skipsJpegSegmentsBeforeStartOfFrame() throws Exception {
+        byte[] jpeg = encode("jpg", 5, 3);
+        byte[] comment = {(byte) 0xFF, (byte) 0xFE, 0x00, 0x06, 'h', 'e', 'l', 'l'};
+        byte[] withComment = new byte[jpeg.length + comment.length];
+        System.arraycopy(jpeg, 0, withComment, 0, 2);
+        System.arraycopy(comment, 0, withComment, 2, comment.length);
+        System.arraycopy(jpeg, 2, withComment, 2 + comment.length, jpeg.length - 2);
+
+        assertThat(probe(withComment)).isEqualTo(new Dimension(5, 3));
+    }
+
+    @Test
+    void fallsBackToImageReaderForOtherFormats() throws Exception {
+        byte[] bmp = encode("bmp", 7, 4);
+        File spilled = new File(tempDir, "image.bmp");
+        Files.write(spilled.toPath(), bmp);
+
+        assertThat(probe(bmp)).isEqualTo(new Dimension(7, 4));
+        assertThat(ImageSizeProbe.probe(ResourceContent.spilled(spilled, "http"))).isEqualTo(new Dimension(7, 4));
+    }
+
+    @Test
+    void returnsNullForTruncatedOrCorruptInput() throws Exception {
+        byte[] png = encode("png", 37, 21);
+        byte[] jpeg = encode("jpg", 37, 21);
+
+        assertThat(probe(new byte[0])).isNull();
+        assertThat(probe(Arrays.copyOf(png, 8))).isNull();
+        assertThat(probe(Arrays.copyOf(png, 20))).isNull();
+        assertThat(probe(Arrays.copyOf(jpeg, 12))).isNull();
+        assertThat(probe(new byte[]{(byte) 0xFF, (byte) 0xD8, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00})).isNull();
+        assertThat(probe(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0x00, 0x01, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00})).isNull();
+        assertThat(probe(Arrays.copyOf("GIF89a".getBytes(StandardCharsets.US_ASCII), 12))).isNull();
+        assertThat(probe(Arrays.copyOf(webp("VP8X", new byte[]{0x10, 0, 0, 0, 36, 0, 0, 20, 0, 0}), 24))).isNull();
+        assertThat(probe(webp("ALPH", new byte[]{0, 0, 0, 0}))).isNull();
+        assertThat(probe("not an image at all".getBytes(StandardCharsets.US_ASCII))).isNull();
+    }
+
+    @Test
+    void readsExifOrientation() throws Exception {
+        byte[] jpeg = encode("jpg", 37, 21);
+
+        assertThat(ImageSizeProbe.jpegOrientation(jpeg)).isEqualTo(1);
+        assertThat(ImageSizeProbe.jpegOrientation(withOrientation(jpeg, 6, ByteOrder.BIG_ENDIAN))).isEqualTo(6);
+        assertThat(ImageSizeProbe.jpegOrientation(withOrientation(jpeg, 8, ByteOrder.LITTLE_ENDIAN))).isEqualTo(8);
+        assertThat(ImageSizeProbe.jpegOrientation(withOrientation(jpeg, 9, ByteOrder.BIG_ENDIAN))).isEqualTo(1);
+        assertThat(ImageSizeProbe.jpegOrientation(Arrays.copyOf(withOrientation(jpeg, 6, ByteOrder.BIG_ENDIAN), 20))).isEqualTo(1);
+        assertThat(ImageSizeProbe.jpegOrientation(encode("png", 37, 21))).isEqualTo(1);
+        // 方向不影响存储的宽高
+        assertThat(probe(withOrientation(jpeg, 6, ByteOrder.BIG_ENDIAN))).isEqualTo(new Dimension(37, 21));
+    }
+
+    /**
+     * 在 SOI 之后插入只有方向一项的 EXIF 段。
+     */
+    static byte[] withOrientation(byte[] jpeg, int orientation, ByteOrder byteOrder) {
+        ByteBuffer tiff = ByteBuffer.allocate(26).order(byteOrder);
+        tiff.put(byteOrder == ByteOrder.BIG_ENDIAN ? "MM".getBytes(StandardCharsets.US_ASCII) : "II".getBytes(StandardCharsets.US_ASCII))
+                .putShort((short) 42).putInt(8)
+                .putShort((short) 1)
+                .putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) orientation).putShort((short) 0)
+                .putInt(0);
+        byte[] exif = "Exif\0\0".getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocate(jpeg.length + 4 + exif.length + tiff.capacity());
+        buffer.put(jpeg, 0, 2)
+                .put((byte) 0xFF).put((byte) 0xE1).putShort((short) (2 + exif.length + tiff.capacity()))
+                .put(exif).put(tiff.array())
+                .put(jpeg, 2, jpeg.length - 2);
+        return buffer.array();
+    }
+
+    private static Dimension probe(byte[] data) throws IOException {
+        return ImageSizeProbe.probe(ResourceContent.of(data));
+    }
+
+    private static byte[] encode(String format, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, format, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] webp(String chunk, byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.allocate(20 + payload.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put("RIFF".getBytes(StandardCharsets.US_ASCII)).putInt(12 + payload.length)
+                .put("WEBP".getBytes(StandardCharsets.US_ASCII))
+                .put(chunk.getBytes(StandardCharsets.US_ASCII)).putInt(payload.length)
+                .put(payload);
+        return buffer.array();
+    }
+}
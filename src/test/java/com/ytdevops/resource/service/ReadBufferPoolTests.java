@@ -0,0 +1,59 @@
+package com.ytdevops.resource.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReadBufferPoolTests {
+    private static final int CHUNK_SIZE = 16;
+
+    private final ReadBufferPool readBufferPool = new ReadBufferPool(CHUNK_SIZE, 2);
+
+    /**
+     * 内容跨越多个块（含池中保留之外临时分配的块），每次只读到几个字节时也能拼接完整。
+     */
+    @Test
+    void readsContentSpanningChunks() throws Exception {
+        for (int length : new int[]{0, 1, CHUNK_SIZE, CHUNK_SIZE + 1, CHUNK_SIZE * 5 + 3}) {
+            byte[] content = content(length);
+            assertThat(readBufferPool.read(new ByteArrayInputStream(content), Long.MAX_VALUE)).as("%d", length).isEqualTo(content);
+            assertThat(readBufferPool.read(trickle(content), Long.MAX_VALUE)).as("%d", length).isEqualTo(content);
+        }
+    }
+
+    @Test
+    void rejectsContentOverLimit() throws Exception {
+        byte[] content = content(CHUNK_SIZE * 3);
+
+        assertThat(readBufferPool.read(new ByteArrayInputStream(content), content.length)).isEqualTo(content);
+        assertThatThrownBy(() -> readBufferPool.read(new ByteArrayInputStream(content), content.length - 1))
+                .isInstanceOf(IOException.class);
+        // 失败后归还的块不影响之后的读取
+        assertThat(readBufferPool.read(new ByteArrayInputStream(content(5)), Long.MAX_VALUE)).isEqualTo(content(5));
+    }
+
+    private static byte[] content(int length) {
+        byte[] content = new byte[length];
+        new Random(length).nextBytes(content);
+        return content;
+    }
+
+    /**
+     * 每次最多读到 3 个字节。
+     */
+    private static InputStream trickle(byte[] content) {
+        return new FilterInputStream(new ByteArrayInputStream(content)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 3));
+            }
+        };
+    }
+}
@@ -0,0 +1,279 @@
+package com.ytdevops.resource.service;
+
+import com.sun.net.httpserver.HttpServer;
+import com.ytdevops.common.ExportTrace;
+import com.ytdevops.resource.ResourceContent;
+import com.ytdevops.resource.ResourceCacheProperties;
+import com.ytdevops.resource.ResourceFetchProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResourcePrefetchServiceTests {
+    private static final int MAX_PER_HOST = 3;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger logoDownloads = new AtomicInteger();
+    private final AtomicInteger imageDownloads = new AtomicInteger();
+
+    private HttpServer server;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ResourceCache resourceCache;
+
+    private ResourceFetchProperties resourceFetchProperties;
+
+    private ResourcePrefetchService resourcePrefetchService;
+
+    @TempDir
+    File tmpDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/image/", exchange -> {
+            imageDownloads.incrementAndGet();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(exchange.getRequestURI().getPath().contains("slow") ? 3000 : 300);
+                byte[] body = exchange.getRequestURI().getPath().getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream outputStream = exchange.getResponseBody()) {
+                    outputStream.write(body);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+        server.createContext("/missing/", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.createContext("/chunked", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(chunkedBody());
+            }
+        });
+        server.createContext("/large", exchange -> {
+            byte[] body = chunkedBody();
+            exchange.sendResponseHeaders(200, exchange.getRequestURI().getQuery() == null ? body.length : 0);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            } catch (IOException e) {
+                // 客户端超出上限后断开
+            }
+        });
+        server.createContext("/logo", exchange -> {
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            logoDownloads.incrementAndGet();
+            byte[] body = "logo".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        resourceFetchProperties = new ResourceFetchProperties()
+                .setMaxConcurrency(8)
+                .setMaxPerHost(MAX_PER_HOST)
+                .setReadTimeout(Duration.ofSeconds(5))
+                .setDeadline(Duration.ofSeconds(1));
+        ResourceCacheProperties resourceCacheProperties = new ResourceCacheProperties()
+                .setDiskDir(new File(tmpDir, "cache").getAbsolutePath())
+                .setFreshFor(Duration.ZERO);
+        resourceCache = new ResourceCache(resourceCacheProperties, meterRegistry);
+        resourcePrefetchService = new ResourcePrefetchService(List.of(new DataUriSource(), new LocalMountSource(resourceFetchProperties)),
+                new ResourceFetcher(resourceFetchProperties, resourceCache), resourceFetchProperties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        resourcePrefetchService.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void prefetchesConcurrentlyWithinPerHostLimit() throws Exception {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            urls.add(url("/image/" + i));
+        }
+        urls.add(url("/image/0"));
+
+        long start = System.nanoTime();
+        Map<String, ResourceContent> prefetched = resourcePrefetchService.prefetch(urls, tmpDir);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(prefetched).hasSize(6);
+        assertThat(new String(prefetched.get(url("/image/3")).getBytes(), StandardCharsets.UTF_8)).isEqualTo("/image/3");
+        assertThat(tmpDir.list()).allMatch("cache"::equals);
+        assertThat(maxInFlight.get()).isLessThanOrEqualTo(MAX_PER_HOST);
+        assertThat(elapsedMillis).isLessThan(1500);
+    }
+
+    /**
+     * 主机的下载全部完成后其队列从 hostQueues 中移除，不会随访问过的主机数增长。
+     */
+    @Test
+    void removesDrainedHostQueues() throws Exception {
+        String otherHost = "http://localhost:" + server.getAddress().getPort() + "/image/other";
+        Map<String, ResourceContent> prefetched = resourcePrefetchService.prefetch(List.of(url("/image/0"), url("/image/1"), otherHost), tmpDir);
+
+        assertThat(prefetched).hasSize(3);
+        // 最后一个下载的队列在结果返回后才由工作线程移除
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!resourcePrefetchService.getHostQueues().isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(resourcePrefetchService.getHostQueues()).isEmpty();
+    }
+
+    @Test
+    void skipsFailedAndOverdueResources() {
+        List<String> urls = List.of(url("/image/ok"), url("/image/slow"), url("/missing/1"), "data:image/png;base64,A", "");
+
+        Map<String, ResourceContent> prefetched = resourcePrefetchService.prefetch(urls, tmpDir);
+
+        assertThat(prefetched).containsOnlyKeys(url("/image/ok"));
+    }
+
+    @Test
+    void resolvesDataUrisAndMountedPrefixesWithoutHttp() throws Exception {
+        File mountDir = new File(tmpDir, "mount");
+        FileUtils.writeStringToFile(new File(mountDir, "a b.png"), "mounted", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(tmpDir, "secret"), "secret", StandardCharsets.UTF_8);
+        resourceFetchProperties.getMounts().add(new ResourceFetchProperties.Mount().setUrlPrefix(url("/image/")).setDir(mountDir));
+        String dataUri = "data:image/png;base64,aW5s\r\naW5l";
+        List<String> urls = List.of(dataUri, url("/image/a%20b.png?x=1"), url("/image/..%2Fsecret"), url("/image/remote"));
+
+        Map<String, ResourceContent> prefetched = resourcePrefetchService.prefetch(urls, tmpDir);
+        ExportTrace trace = new ExportTrace("file-word");
+        trace.addImages(prefetched.values());
+
+        assertThat(new String(prefetched.get(dataUri).getBytes(), StandardCharsets.UTF_8)).isEqualTo("inline");
+        assertThat(new String(prefetched.get(url("/image/a%20b.png?x=1")).getBytes(), StandardCharsets.UTF_8)).isEqualTo("mounted");
+        assertThat(prefetched.get(url("/image/..%2Fsecret")).getSource()).isEqualTo(ResourcePrefetchService.HTTP_SOURCE);
+        assertThat(imageDownloads.get()).isEqualTo(2);
+        assertThat(trace.getSourceImages()).containsOnlyKeys("data", "mount", ResourcePrefetchService.HTTP_SOURCE);
+        assertThat(trace.getSourceImages().get("mount").get(1)).isEqualTo(7);
+    }
+
+    /**
+     * 等待主机名额的下载不占用线程：一个慢主机排满之后，其他主机和 data: 链接照常完成。
+     */
+    @Test
+    void slowHostDoesNotBlockOtherDownloads() {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            urls.add(url("/image/slow-" + i));
+        }
+        String otherHost = "http://localhost:" + server.getAddress().getPort() + "/image/other";
+        urls.add(otherHost);
+        urls.add("data:image/png;base64,aW5saW5l");
+
+        Map<String, ResourceContent> prefetched = resourcePrefetchService.prefetch(urls, tmpDir);
+
+        assertThat(prefetched).containsOnlyKeys(otherHost, "data:image/png;base64,aW5saW5l");
+        assertThat(maxInFlight.get()).isLessThanOrEqualTo(MAX_PER_HOST + 1);
+    }
+
+    @Test
+    void readsResponsesWithoutContentLength() throws Exception {
+        Map<String, ResourceContent> prefetched = resourcePrefetchService.prefetch(List.of(url("/chunked")), tmpDir);
+
+        assertThat(prefetched.get(url("/chunked")).getBytes()).isEqualTo(chunkedBody());
+    }
+
+    /**
+     * 超过大小上限的资源：有 Content-Length 的不读取内容，没有的读到上限为止，本地挂载的文件不读取。
+     */
+    @Test
+    void skipsResourcesOverMaxSize() throws Exception {
+        File mountDir = new File(tmpDir, "mount");
+        FileUtils.writeByteArrayToFile(new File(mountDir, "large.png"), chunkedBody());
+        FileUtils.writeStringToFile(new File(mountDir, "small.png"), "small", StandardCharsets.UTF_8);
+        resourceFetchProperties.setMaxResourceSize(DataSize.ofKilobytes(512))
+                .getMounts().add(new ResourceFetchProperties.Mount().setUrlPrefix(url("/mount/")).setDir(mountDir));
+        List<String> urls = List.of(url("/large"), url("/large?chunked"), url("/mount/large.png"), url("/mount/small.png"), url("/image/ok"));
+
+        Map<String, ResourceContent> prefetched = resourcePrefetchService.prefetch(urls, tmpDir);
+
+        assertThat(prefetched).containsOnlyKeys(url("/mount/small.png"), url("/image/ok"));
+    }
+
+    @Test
+    void revalidatesCachedContentAcrossExports() throws Exception {
+        Map<String, ResourceContent> first = resourcePrefetchService.prefetch(List.of(url("/logo")), new File(tmpDir, "first"));
+        Map<String, ResourceContent> second = resourcePrefetchService.prefetch(List.of(url("/logo")), new File(tmpDir, "second"));
+
+        assertThat(new String(second.get(url("/logo")).getBytes(), StandardCharsets.UTF_8)).isEqualTo("logo");
+        assertThat(first.get(url("/logo"))).isNotEqualTo(second.get(url("/logo")));
+        assertThat(logoDownloads.get()).isEqualTo(1);
+        assertThat(meterRegistry.counter("export.resource.cache.revalidations").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("export.resource.cache.misses").count()).isEqualTo(1);
+    }
+
+    @Test
+    void downloadsSharedResourcesOncePerBatch() throws Exception {
+        resourceFetchProperties.setSpillToDisk(true).setSpillThreshold(DataSize.ofBytes(0));
+        List<String> firstUrls = List.of(url("/image/a"), url("/image/b"));
+        List<String> secondUrls = List.of(url("/image/b"), url("/image/c"));
+
+        try (SharedDownloads sharedDownloads = new SharedDownloads(new File(tmpDir, "shared"))) {
+            CompletableFuture<Map<String, ResourceContent>> first = CompletableFuture.supplyAsync(() ->
+                    resourcePrefetchService.prefetch(firstUrls, new File(tmpDir, "first"), sharedDownloads));
+            Map<String, ResourceContent> second = resourcePrefetchService.prefetch(secondUrls, new File(tmpDir, "second"), sharedDownloads);
+
+            assertThat(first.get()).containsOnlyKeys(firstUrls);
+            assertThat(second).containsOnlyKeys(secondUrls);
+            assertThat(first.get().get(url("/image/b"))).isEqualTo(second.get(url("/image/b")));
+            assertThat(second.get(url("/image/c")).getFile()).hasParent(sharedDownloads.getDir());
+            assertThat(imageDownloads.get()).isEqualTo(3);
+        }
+        assertThat(new File(tmpDir, "shared")).doesNotExist();
+    }
+
+    private static byte[] chunkedBody() {
+        byte[] body = new byte[600 * 1024];
+        Arrays.fill(body, (byte) 'x');
+        body[body.length - 1] = 'y';
+        return body;
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+}
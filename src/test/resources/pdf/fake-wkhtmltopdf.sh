@@ -0,0 +1,31 @@
+#!/bin/sh
+# 测试用的 wkhtmltopdf 替身：从标准输入读 HTML，向标准输出写一个假 PDF。
+# 第一个参数为 hang 时不退出，为 fail 时只写标准错误并以 1 退出，为 partial 时写出一部分 PDF 后以 1 退出。
+case "$1" in
+  hang)
+    cat > /dev/null
+    sleep 60
+    ;;
+  fail)
+    cat > /dev/null
+    echo "Exit with code 1 due to network error: HostNotFoundError" >&2
+    exit 1
+    ;;
+  partial)
+    cat > /dev/null
+    printf '%%PDF-1.4\n'
+    echo "Exit with code 1 due to network error: ContentNotFoundError" >&2
+    exit 1
+    ;;
+  *)
+    # 先写满标准错误的管道缓冲区，调用方不并发读取时进程会卡住
+    i=0
+    while [ $i -lt 2000 ]; do
+      echo "Loading page ($i/2000) ..................................................." >&2
+      i=$((i + 1))
+    done
+    printf '%%PDF-1.4\n'
+    cat
+    printf '\n%%%%EOF\n'
+    ;;
+esac